@@ -21,12 +21,8 @@
 
 package org.voltdb.catalog;
 
-import java.io.IOException;
-import java.io.StringReader;
-
 import com.google_voltpatches.common.cache.Cache;
 import com.google_voltpatches.common.cache.CacheBuilder;
-import com.google_voltpatches.common.io.LineReader;
 
 /**
  * The root class in the Catalog hierarchy, which is essentially a tree of
@@ -86,26 +82,33 @@ public class Catalog extends CatalogType {
      * newlines
      */
     public void execute(final String commands) {
-
-        LineReader lines = new LineReader(new StringReader(commands));
-
+        // Walk the command string in place, catalogs can be tens of megabytes and
+        // going through a Reader copies all of it once more
+        final int length = commands.length();
         int ctr = 0;
-        String line = null;
-        try {
-            while ((line = lines.readLine()) != null) {
+        int start = 0;
+        while (start < length) {
+            int end = commands.indexOf('\n', start);
+            if (end == -1) {
+                end = length;
+            }
+            int lineEnd = end;
+            if (lineEnd > start && commands.charAt(lineEnd - 1) == '\r') {
+                lineEnd--;
+            }
+            if (lineEnd > start) {
+                String line = commands.substring(start, lineEnd);
                 try {
-                    if (line.length() > 0) executeOne(line);
+                    executeOne(line);
                 }
                 catch (Exception ex) {
                     String msg = "Invalid catalog command on line " + ctr + "\n" +
                         "Contents: '" + line + "'\n";
                     throw new RuntimeException(msg, ex);
                 }
-                ctr++;
             }
-        } catch (IOException e) {
-            // TODO Auto-generated catch block
-            e.printStackTrace();
+            ctr++;
+            start = end + 1;
         }
     }
 
@@ -44,6 +44,10 @@ public final class CatalogMap<T extends CatalogType> implements Iterable<T> {
     String m_name;
     String m_cachedPath = null;
     boolean m_hasComputedOrder = false;
+    // Set when items were added or removed after the relative indexes were assigned.
+    // They are reassigned on the next read rather than on every change, so applying a
+    // diff that adds many items to a large map isn't quadratic.
+    volatile boolean m_relativeIndexesStale = false;
     int m_depth;
 
     CatalogMap(Catalog catalog, CatalogType parent, String name, Class<T> cls, int depth) {
@@ -157,7 +161,7 @@ public final class CatalogMap<T extends CatalogType> implements Iterable<T> {
             m_items.put(mapKey, x);
 
             if (m_hasComputedOrder) {
-                recomputeRelativeIndexes();
+                m_relativeIndexesStale = true;
             }
 
             return x;
@@ -179,11 +183,8 @@ public final class CatalogMap<T extends CatalogType> implements Iterable<T> {
 
             m_items.remove(mapKey);
 
-            // assign a relative index to every child item
-            int index = 1;
-            for (Entry<String, T> e : m_items.entrySet()) {
-                e.getValue().m_relativeIndex = index++;
-            }
+            // reassign the relative index of every child item when next asked for
+            m_relativeIndexesStale = true;
         } catch (Exception ex) {
             throw new RuntimeException(ex);
         }
@@ -209,6 +210,7 @@ public final class CatalogMap<T extends CatalogType> implements Iterable<T> {
     void copyFrom(CatalogMap<? extends CatalogType> catalogMap) {
         CatalogMap<T> castedMap = (CatalogMap<T>) catalogMap;
         m_hasComputedOrder = castedMap.m_hasComputedOrder;
+        m_relativeIndexesStale = castedMap.m_relativeIndexesStale;
         if (castedMap.m_items == null) {
             return;
         }
@@ -283,6 +285,7 @@ public final class CatalogMap<T extends CatalogType> implements Iterable<T> {
             e.getValue().m_relativeIndex = index++;
         }
         m_hasComputedOrder = true;
+        m_relativeIndexesStale = false;
     }
 
 }
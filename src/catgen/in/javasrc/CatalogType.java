@@ -188,7 +188,7 @@ public abstract class CatalogType implements Comparable<CatalogType> {
      * @return The index of this CatalogType instance
      */
     public int getRelativeIndex() {
-        if (m_relativeIndex == null) {
+        if (m_relativeIndex == null || (m_parentMap != null && m_parentMap.m_relativeIndexesStale)) {
             m_parentMap.recomputeRelativeIndexes();
         }
         return m_relativeIndex;
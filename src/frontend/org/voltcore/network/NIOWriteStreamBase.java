@@ -26,6 +26,7 @@ import java.util.concurrent.TimeUnit;
 
 import org.voltcore.logging.Level;
 import org.voltcore.logging.VoltLogger;
+import org.voltcore.utils.ChunkedDeferredSerialization;
 import org.voltcore.utils.DBBPool.BBContainer;
 import org.voltcore.utils.DeferredSerialization;
 import org.voltcore.utils.RateLimitedLogger;
@@ -43,6 +44,24 @@ public abstract class NIOWriteStreamBase {
 
     protected BBContainer m_currentWriteBuffer = null;
 
+    /*
+     * Number of buffers a large chunked message may be serialized ahead of what the socket
+     * has taken. The rest of the message waits until they drain, so a slow client reading a
+     * large response doesn't make the network thread buffer all of it.
+     */
+    private static final int MAX_CHUNKED_BUFFERS_QUEUED = Integer.getInteger("CHUNKED_WRITE_MAX_QUEUED_BUFFERS", 4);
+
+    /*
+     * A chunked message partly serialized, and the writes queued after it that wait for it
+     * to be finished. Only touched by the network thread, other threads go by
+     * m_pendingChunkedMessages, the number of messages the two hold
+     */
+    private ChunkedDeferredSerialization m_chunkedWrite = null;
+    private int m_chunkedWriteSize = 0;
+    private int m_chunkedWriteWritten = 0;
+    private final ArrayDeque<DeferredSerialization> m_writesAfterChunked = new ArrayDeque<DeferredSerialization>();
+    private volatile int m_pendingChunkedMessages = 0;
+
     /**
      * Contains serialized buffers ready to write to the socket
      */
@@ -78,12 +97,13 @@ public abstract class NIOWriteStreamBase {
      */
     public int getOutstandingMessageCount()
     {
-        return m_queuedBuffers.size();
+        return m_queuedBuffers.size() + m_pendingChunkedMessages;
     }
 
     public boolean isEmpty()
     {
-        return m_queuedBuffers.isEmpty() && m_currentWriteBuffer == null;
+        return m_queuedBuffers.isEmpty() && m_currentWriteBuffer == null
+                && m_pendingChunkedMessages == 0;
     }
 
     abstract int drainTo (final GatheringByteChannel channel) throws IOException;
@@ -92,21 +112,61 @@ public abstract class NIOWriteStreamBase {
 
     /**
      * Serialize all queued writes into the queue of pending buffers, which are allocated from
-     * thread local memory pool.
+     * thread local memory pool. A large chunked message is only serialized a few buffers ahead
+     * of the socket, it and the writes queued after it are continued by later calls as the
+     * buffers drain.
      * @return number of queued writes processed
      * @throws IOException
      */
     int serializeQueuedWrites(final NetworkDBBPool pool) throws IOException {
+        try {
+            return serializeQueuedAndChunkedWrites(pool);
+        } finally {
+            m_pendingChunkedMessages = (m_chunkedWrite == null ? 0 : 1) + m_writesAfterChunked.size();
+        }
+    }
+
+    private int serializeQueuedAndChunkedWrites(final NetworkDBBPool pool) throws IOException {
         int processedWrites = 0;
+        if (m_chunkedWrite != null) {
+            if (!continueChunkedWrite(pool)) {
+                return 0;
+            }
+            processedWrites++;
+        }
+        if (!m_writesAfterChunked.isEmpty()) {
+            processedWrites += serializeWrites(m_writesAfterChunked, pool);
+            if (m_chunkedWrite != null) {
+                return processedWrites;
+            }
+        }
+
         final Deque<DeferredSerialization> oldlist = getQueuedWrites();
-        if (oldlist.isEmpty()) return 0;
+        if (oldlist.isEmpty()) return processedWrites;
+        processedWrites += serializeWrites(oldlist, pool);
+        if (m_chunkedWrite != null) {
+            // The queue is handed back to be filled again, keep what is left of it in order
+            // behind the unfinished chunked message
+            m_writesAfterChunked.addAll(oldlist);
+            oldlist.clear();
+        }
+        return processedWrites;
+    }
 
+    /*
+     * Serialize writes from the head of the queue until it is empty or a chunked message
+     * is left unfinished
+     */
+    private int serializeWrites(final Deque<DeferredSerialization> writes, final NetworkDBBPool pool) throws IOException {
+        int processedWrites = 0;
         DeferredSerialization ds = null;
         int bytesQueued = 0;
-        while ((ds = oldlist.poll()) != null) {
-            processedWrites++;
+        while ((ds = writes.poll()) != null) {
             final int serializedSize = ds.getSerializedSize();
-            if (serializedSize == DeferredSerialization.EMPTY_MESSAGE_LENGTH) continue;
+            if (serializedSize == DeferredSerialization.EMPTY_MESSAGE_LENGTH) {
+                processedWrites++;
+                continue;
+            }
             BBContainer outCont = m_queuedBuffers.peekLast();
             ByteBuffer outbuf = null;
             if (outCont == null || !outCont.b().hasRemaining()) {
@@ -128,6 +188,17 @@ public abstract class NIOWriteStreamBase {
                 bytesQueued += slice.remaining();
                 outbuf.position(outbuf.limit());
                 outbuf.limit(oldLimit);
+            } else if (ds instanceof ChunkedDeferredSerialization) {
+                // Large message that can be written in pieces, serialize it directly to pooled
+                // buffers a few at a time instead of materializing the whole thing first
+                updateQueued(bytesQueued, true);
+                bytesQueued = 0;
+                m_chunkedWrite = (ChunkedDeferredSerialization)ds;
+                m_chunkedWriteSize = serializedSize;
+                m_chunkedWriteWritten = 0;
+                if (!continueChunkedWrite(pool)) {
+                    return processedWrites;
+                }
             } else {
                 // Slow path serialize to heap, and then put in buffers
                 ByteBuffer buf = ByteBuffer.allocate(serializedSize);
@@ -153,11 +224,45 @@ public abstract class NIOWriteStreamBase {
                     }
                 }
             }
+            processedWrites++;
         }
         updateQueued(bytesQueued, true);
         return processedWrites;
     }
 
+    /*
+     * Serialize more of the unfinished chunked message, until it is done or the buffers
+     * queued for the socket reach the limit
+     * @return true if the message was finished
+     */
+    private boolean continueChunkedWrite(final NetworkDBBPool pool) throws IOException {
+        int written = 0;
+        boolean done = false;
+        try {
+            BBContainer outCont = m_queuedBuffers.peekLast();
+            while (!done) {
+                if (outCont == null || !outCont.b().hasRemaining()) {
+                    if (m_queuedBuffers.size() >= MAX_CHUNKED_BUFFERS_QUEUED) {
+                        return false;
+                    }
+                    outCont = pool.acquire();
+                    outCont.b().clear();
+                    m_queuedBuffers.offer(outCont);
+                }
+                final ByteBuffer outbuf = outCont.b();
+                final int startPosition = outbuf.position();
+                done = m_chunkedWrite.serializeChunk(outbuf);
+                written += outbuf.position() - startPosition;
+            }
+        } finally {
+            m_chunkedWriteWritten += written;
+            updateQueued(written, true);
+        }
+        checkSloppyChunkedSerialization(m_chunkedWriteWritten, m_chunkedWriteSize, m_chunkedWrite);
+        m_chunkedWrite = null;
+        return true;
+    }
+
     private static final boolean ASSERT_ON;
     static {
         boolean assertOn = false;
@@ -183,6 +288,21 @@ public abstract class NIOWriteStreamBase {
         }
     }
 
+    /*
+     * Same as checkSloppySerialization for messages serialized one chunk at a time
+     */
+    protected static void checkSloppyChunkedSerialization(int written, int expected, DeferredSerialization ds) {
+        if (written != expected) {
+            assert false : "Sloppy chunked serialization size for message class " + ds +
+                    ", expected " + expected + " bytes but wrote " + written;
+            RateLimitedLogger.tryLogForMessage(
+                    System.currentTimeMillis(),
+                    1, TimeUnit.HOURS,
+                    networkLog,
+                    Level.WARN, "Sloppy chunked serialization size for message class %s", ds);
+        }
+    }
+
     /**
      * Free the pool resources that are held by this WriteStream. The pool itself is thread local
      * and will be freed when the thread terminates.
@@ -202,6 +322,15 @@ public abstract class NIOWriteStreamBase {
             c.discard();
         }
         updateQueued(-bytesReleased, false);
+        if (m_chunkedWrite != null) {
+            m_chunkedWrite.cancel();
+            m_chunkedWrite = null;
+        }
+        DeferredSerialization ds = null;
+        while ((ds = m_writesAfterChunked.poll()) != null) {
+            ds.cancel();
+        }
+        m_pendingChunkedMessages = 0;
     }
 
     /*
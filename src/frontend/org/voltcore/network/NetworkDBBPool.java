@@ -17,70 +17,201 @@
 
 package org.voltcore.network;
 
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Deque;
-
+import java.util.List;
+import java.util.Set;
+import java.util.WeakHashMap;
 import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
 import org.voltcore.utils.DBBPool;
 import org.voltcore.utils.DBBPool.BBContainer;
 
+/**
+ * Pool of fixed size direct buffers used by a network thread for socket reads and writes.
+ * Buffers can be acquired only by the owning thread but may be discarded from any thread.
+ *
+ * Every pool accounts for the direct memory it has allocated, split into memory that is
+ * handed out to connections and memory that is idle in the pool, and keeps track of the
+ * lowest number of idle buffers seen since the last call to {@link #trim()}. Buffers
+ * that stayed idle for a whole trim interval were not needed to serve the traffic in
+ * that interval and are released, so a burst of connections doesn't keep its buffers
+ * pinned forever while a busy pool keeps what it is actually cycling through.
+ *
+ * Live pools are tracked by name so @Statistics NETWORKBUFFERS can break the
+ * totals down by network thread and buffer size.
+ */
 public class NetworkDBBPool {
 
     private final Deque<BBContainer> m_buffers = new ConcurrentLinkedDeque<BBContainer>();
     private static final int LIMIT = Integer.getInteger("NETWORK_DBB_LIMIT", 512);
     private static final int SIZE = Integer.getInteger("NETWORK_DBB_SIZE", (1024 * 32));
+    /*
+     * How often the owning network thread should call trim(), network threads wake up
+     * at least this often so an idle thread still gives its memory back
+     */
+    static final long TRIM_INTERVAL_MS = Long.getLong("NETWORK_DBB_TRIM_INTERVAL_MS", 5000);
 
+    /*
+     * Direct memory held by all network pools in this process, for @Statistics MEMORY
+     */
+    private static final AtomicLong s_totalAllocatedBytes = new AtomicLong();
+    private static final AtomicLong s_totalPooledBytes = new AtomicLong();
+    /*
+     * Pools that haven't been cleared, weakly held so a pool that is dropped
+     * without clear() (tests, benchmarks) doesn't stay reachable
+     */
+    private static final Set<NetworkDBBPool> s_pools =
+            Collections.synchronizedSet(Collections.newSetFromMap(new WeakHashMap<NetworkDBBPool, Boolean>()));
+
+    private final String m_name;
     private final int m_numBuffers;
     private final int m_allocationSize;
-    public NetworkDBBPool(int numBuffers) {
-        m_numBuffers = numBuffers;
-        m_allocationSize = SIZE;
+
+    // Size of m_buffers, ConcurrentLinkedDeque.size() walks the whole deque
+    private final AtomicInteger m_pooledCount = new AtomicInteger();
+    private final AtomicInteger m_allocatedCount = new AtomicInteger();
+    // Fewest idle buffers since the last trim, only touched by the thread that acquires
+    private int m_lowWatermark = 0;
+
+    public NetworkDBBPool(String name, int numBuffers) {
+        this(name, numBuffers, SIZE);
     }
 
-    NetworkDBBPool(int numBuffers, int allocSize) {
+    NetworkDBBPool(String name, int numBuffers, int allocSize) {
+        m_name = name;
         m_numBuffers = numBuffers;
         m_allocationSize = allocSize;
+        s_pools.add(this);
     }
 
-    public NetworkDBBPool() {
-        m_numBuffers = LIMIT;
-        m_allocationSize = SIZE;
+    public NetworkDBBPool(String name) {
+        this(name, LIMIT, SIZE);
     }
 
     BBContainer acquire() {
-       final BBContainer cont = m_buffers.poll();
+        BBContainer cont = m_buffers.poll();
         if (cont == null) {
-           final BBContainer originContainer = DBBPool.allocateDirect(m_allocationSize);
-           return new BBContainer(originContainer.b()) {
-                @Override
-                public void discard() {
-                    checkDoubleFree();
-                    //If we had to allocate over the desired limit, start discarding
-                    if (m_buffers.size() > m_numBuffers) {
-                        originContainer.discard();
-                        return;
-                    }
-                    m_buffers.push(originContainer);
-                }
-           };
-       }
-       return new BBContainer(cont.b()) {
-           @Override
-           public void discard() {
-               checkDoubleFree();
-               if (m_buffers.size() > m_numBuffers) {
-                   cont.discard();
-                   return;
-               }
-               m_buffers.push(cont);
-           }
-       };
+            cont = DBBPool.allocateDirect(m_allocationSize);
+            m_allocatedCount.incrementAndGet();
+            s_totalAllocatedBytes.addAndGet(m_allocationSize);
+            m_lowWatermark = 0;
+        } else {
+            final int pooled = m_pooledCount.decrementAndGet();
+            s_totalPooledBytes.addAndGet(-m_allocationSize);
+            if (pooled < m_lowWatermark) {
+                m_lowWatermark = pooled;
+            }
+        }
+        final BBContainer originContainer = cont;
+        return new BBContainer(originContainer.b()) {
+            @Override
+            public void discard() {
+                checkDoubleFree();
+                release(originContainer);
+            }
+        };
     }
 
-    void clear() {
-        BBContainer cont = null;
-        while ((cont = m_buffers.poll()) != null) {
-            cont.discard();
+    private void release(BBContainer cont) {
+        //If we had to allocate over the desired limit, start discarding
+        if (m_pooledCount.get() >= m_numBuffers) {
+            free(cont);
+            return;
         }
+        m_pooledCount.incrementAndGet();
+        s_totalPooledBytes.addAndGet(m_allocationSize);
+        m_buffers.push(cont);
+    }
+
+    private void free(BBContainer cont) {
+        m_allocatedCount.decrementAndGet();
+        s_totalAllocatedBytes.addAndGet(-m_allocationSize);
+        cont.discard();
     }
 
+    private boolean freeOne() {
+        final BBContainer cont = m_buffers.pollLast();
+        if (cont == null) {
+            return false;
+        }
+        m_pooledCount.decrementAndGet();
+        s_totalPooledBytes.addAndGet(-m_allocationSize);
+        free(cont);
+        return true;
+    }
+
+    /**
+     * Release the buffers that sat idle in the pool since the previous call. Must be called
+     * from the thread that acquires from this pool.
+     * @return number of buffers released
+     */
+    int trim() {
+        int released = 0;
+        while (released < m_lowWatermark && freeOne()) {
+            released++;
+        }
+        m_lowWatermark = m_pooledCount.get();
+        return released;
+    }
+
+    void clear() {
+        while (freeOne()) {}
+        m_lowWatermark = 0;
+        s_pools.remove(this);
+    }
+
+    /**
+     * @return name of the network thread that owns this pool
+     */
+    public String getName() {
+        return m_name;
+    }
+
+    /**
+     * @return size in bytes of every buffer in this pool
+     */
+    public int getAllocationSize() {
+        return m_allocationSize;
+    }
+
+    /**
+     * @return bytes of direct memory allocated by this pool, whether in use or idle
+     */
+    public long getAllocatedBytes() {
+        return (long)m_allocatedCount.get() * m_allocationSize;
+    }
+
+    /**
+     * @return bytes of direct memory idle in this pool
+     */
+    public long getPooledBytes() {
+        return (long)m_pooledCount.get() * m_allocationSize;
+    }
+
+    /**
+     * @return bytes of direct memory allocated by all network pools, whether in use or idle
+     */
+    public static long getTotalAllocatedBytes() {
+        return s_totalAllocatedBytes.get();
+    }
+
+    /**
+     * @return bytes of direct memory idle in all network pools
+     */
+    public static long getTotalPooledBytes() {
+        return s_totalPooledBytes.get();
+    }
+
+    /**
+     * @return snapshot of the pools in this process that haven't been cleared
+     */
+    public static List<NetworkDBBPool> getPools() {
+        synchronized (s_pools) {
+            return new ArrayList<NetworkDBBPool>(s_pools);
+        }
+    }
 }
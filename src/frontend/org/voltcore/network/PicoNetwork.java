@@ -98,7 +98,8 @@ public class PicoNetwork implements Runnable, Connection, IOStatsIntf
     private static final VoltLogger networkLog = new VoltLogger("NETWORK");
 
     private final Selector m_selector;
-    private final NetworkDBBPool m_pool = new NetworkDBBPool(64);
+    private final NetworkDBBPool m_pool;
+    private long m_lastPoolTrim = System.currentTimeMillis();
     private final NIOReadStream m_readStream = new NIOReadStream();
     private final PicoNIOWriteStream m_writeStream = new PicoNIOWriteStream();
     private final ConcurrentLinkedQueue<Runnable> m_tasks = new ConcurrentLinkedQueue<Runnable>();
@@ -150,6 +151,7 @@ public class PicoNetwork implements Runnable, Connection, IOStatsIntf
         }
 
         m_thread = new Thread(this, "Pico Network - " + m_threadName);
+        m_pool = new NetworkDBBPool(m_thread.getName(), 64);
         m_thread.setDaemon(true);
         try {
             sc.configureBlocking(false);
@@ -187,11 +189,12 @@ public class PicoNetwork implements Runnable, Connection, IOStatsIntf
             while (m_shouldStop == false) {
                 LatencyWatchdog.pet();
 
-                //Choose a non-blocking select if things are busy
+                //Choose a non-blocking select if things are busy, otherwise wake up
+                //in time to give idle buffers back to the pool
                 if (m_hadWork) {
                     m_selector.selectNow();
                 } else {
-                    m_selector.select();
+                    m_selector.select(NetworkDBBPool.TRIM_INTERVAL_MS);
                 }
 
                 m_hadWork = false;
@@ -202,6 +205,12 @@ public class PicoNetwork implements Runnable, Connection, IOStatsIntf
                 }
                 dispatchReadStream();
                 drainWriteStream();
+
+                final long now = System.currentTimeMillis();
+                if (now - m_lastPoolTrim >= NetworkDBBPool.TRIM_INTERVAL_MS) {
+                    m_lastPoolTrim = now;
+                    m_pool.trim();
+                }
             }
         } catch (CancelledKeyException e) {
             networkLog.warn(
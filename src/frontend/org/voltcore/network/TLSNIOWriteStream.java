@@ -49,6 +49,14 @@ public class TLSNIOWriteStream extends VoltNIOWriteStream {
         m_tlsEncryptAdapter = new TLSEncryptionAdapter(connection, engine, cipherExecutor, m_encrypted);
     }
 
+    /*
+     * Large ChunkedDeferredSerialization messages are not written a chunk at a time here the
+     * way NIOWriteStreamBase does it. A message too big for one TLS frame is serialized once
+     * into a single allocator buffer that the encryption gateway slices into frames, so there
+     * is no heap copy to avoid, but the whole message is still held until it is encrypted
+     * and written. Pacing it to the socket would need the gateway to pull chunks as frames
+     * are encrypted.
+     */
     @Override
     int serializeQueuedWrites(NetworkDBBPool pool) throws IOException {
         m_tlsEncryptAdapter.checkForGatewayExceptions();
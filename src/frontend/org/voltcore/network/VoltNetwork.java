@@ -104,7 +104,8 @@ class VoltNetwork implements Runnable, IOStatsIntf
     private final Thread m_thread;
     private final HashSet<VoltPort> m_ports = new HashSet<VoltPort>();
     private final AtomicInteger m_numPorts = new AtomicInteger();
-    final NetworkDBBPool m_pool = new NetworkDBBPool();
+    final NetworkDBBPool m_pool;
+    private long m_lastPoolTrim = System.currentTimeMillis();
     private final String m_coreBindId;
     final String networkThreadName;
 
@@ -125,6 +126,7 @@ class VoltNetwork implements Runnable, IOStatsIntf
     VoltNetwork(int networkId, String coreBindId, String networkName) {
         m_thread = new Thread(this, "Volt " + networkName + " Network - " + networkId);
         networkThreadName = new String("Volt " + networkName + " Network - " + networkId);
+        m_pool = new NetworkDBBPool(networkThreadName);
         m_thread.setDaemon(true);
         m_coreBindId = coreBindId;
         try {
@@ -141,6 +143,7 @@ class VoltNetwork implements Runnable, IOStatsIntf
         m_selector = s;
         m_coreBindId = null;
         networkThreadName = new String("Test Selector Thread");
+        m_pool = new NetworkDBBPool(networkThreadName);
         m_ninjaSelectedKeys = NinjaKeySet.instrumentSelector(m_selector);
     }
 
@@ -313,7 +316,7 @@ class VoltNetwork implements Runnable, IOStatsIntf
                     while (m_shouldStop == false) {
                         LatencyWatchdog.pet();
 
-                        final int readyKeys = m_selector.select();
+                        final int readyKeys = m_selector.select(NetworkDBBPool.TRIM_INTERVAL_MS);
 
                         /*
                          * Run the task queue immediately after selection to catch
@@ -340,6 +343,12 @@ class VoltNetwork implements Runnable, IOStatsIntf
                         while ((task = m_tasks.poll()) != null) {
                             task.run();
                         }
+
+                        final long now = System.currentTimeMillis();
+                        if (now - m_lastPoolTrim >= NetworkDBBPool.TRIM_INTERVAL_MS) {
+                            m_lastPoolTrim = now;
+                            m_pool.trim();
+                        }
                     }
                 } catch (Throwable ex) {
                     ex.printStackTrace();
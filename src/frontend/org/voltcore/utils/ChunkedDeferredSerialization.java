@@ -0,0 +1,38 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2017 VoltDB Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with VoltDB.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.voltcore.utils;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * A DeferredSerialization that can also write itself out a piece at a time. The network
+ * write path uses this for messages that don't fit in a single pooled buffer so that large
+ * messages (e.g. big query results) are copied straight into pooled network buffers instead
+ * of first being flattened into a heap buffer the size of the whole message.
+ *
+ * The bytes produced by successive calls to {@link #serializeChunk(ByteBuffer)} must be
+ * identical to those produced by {@link #serialize(ByteBuffer)}.
+ */
+public interface ChunkedDeferredSerialization extends DeferredSerialization {
+    /**
+     * Serialize as much of the remaining message as fits in <code>buf</code>.
+     * @return true once the last byte of the message has been written
+     * @throws IOException Thrown here because FastSerialzier throws IOException
+     */
+    boolean serializeChunk(ByteBuffer buf) throws IOException;
+}
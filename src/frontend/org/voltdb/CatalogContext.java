@@ -57,9 +57,18 @@ public class CatalogContext {
     public static final class ProcedurePartitionInfo {
         VoltType type;
         int index;
+        final PartitionKeyRouter router;
         public ProcedurePartitionInfo(VoltType type, int index) {
             this.type = type;
             this.index = index;
+            this.router = PartitionKeyRouter.create(type, index);
+        }
+
+        /**
+         * @return The partition a single partition invocation of this procedure hashes to.
+         */
+        public int getPartition(StoredProcedureInvocation task) {
+            return router.getPartition(task);
         }
     }
 
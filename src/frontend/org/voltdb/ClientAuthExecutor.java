@@ -0,0 +1,81 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2017 VoltDB Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with VoltDB.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.voltdb;
+
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import com.google_voltpatches.common.base.Preconditions;
+
+/**
+ * Runs the handshakes and logins of one client listener. A fixed number of threads
+ * authenticate at once and up to a fixed number of accepted connections wait for one
+ * of them. Once both are full {@link #execute(Runnable)} blocks the acceptor, so
+ * further connections wait in the listen backlog instead of the acceptor spinning
+ * on a rejected hand off.
+ */
+class ClientAuthExecutor {
+
+    private final ThreadPoolExecutor m_executor;
+    // One permit for every connection authenticating or waiting to
+    private final Semaphore m_permits;
+
+    ClientAuthExecutor(int threads, int queued, ThreadFactory threadFactory) {
+        Preconditions.checkArgument(threads > 0, "Client authentication threads must be positive, was %s", threads);
+        Preconditions.checkArgument(queued >= 0, "Client authentication queue must not be negative, was %s", queued);
+        m_permits = new Semaphore(threads + queued);
+        // The semaphore bounds the queue, idle threads exit after 10 seconds
+        m_executor = new ThreadPoolExecutor(threads, threads, 10L, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<Runnable>(), threadFactory);
+        m_executor.allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * Queue task, blocking while the authentication threads and queue are full
+     */
+    void execute(final Runnable task) throws InterruptedException {
+        m_permits.acquire();
+        try {
+            m_executor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        task.run();
+                    } finally {
+                        m_permits.release();
+                    }
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            m_permits.release();
+            throw e;
+        }
+    }
+
+    void shutdownNow() {
+        m_executor.shutdownNow();
+    }
+
+    boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+        return m_executor.awaitTermination(timeout, unit);
+    }
+}
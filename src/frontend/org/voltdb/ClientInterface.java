@@ -35,12 +35,10 @@ import java.util.concurrent.Callable;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.ExecutionException;
-import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
 import java.util.concurrent.FutureTask;
 import java.util.concurrent.LinkedBlockingQueue;
-import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.TimeUnit;
@@ -70,6 +68,7 @@ import org.voltcore.network.VoltNetworkPool;
 import org.voltcore.network.VoltPort;
 import org.voltcore.network.VoltProtocolHandler;
 import org.voltcore.network.WriteStream;
+import org.voltcore.utils.ChunkedDeferredSerialization;
 import org.voltcore.utils.CoreUtils;
 import org.voltcore.utils.DeferredSerialization;
 import org.voltcore.utils.EstTime;
@@ -253,6 +252,11 @@ public class ClientInterface implements SnapshotDaemon.DaemonInitiator {
 
     private final AtomicBoolean m_isAcceptingConnections = new AtomicBoolean(false);
 
+    // Number of connections authenticating at once per listener
+    private static final int AUTH_THREADS = Integer.getInteger("CLIENT_AUTH_THREADS", 512);
+    // Number of accepted connections per listener waiting for an authentication thread
+    private static final int AUTH_QUEUE = Integer.getInteger("CLIENT_AUTH_QUEUE", 4096);
+
     /** A port that accepts client connections */
     public class ClientAcceptor implements Runnable {
         private final int m_port;
@@ -265,10 +269,13 @@ public class ClientInterface implements SnapshotDaemon.DaemonInitiator {
         private final SSLContext m_sslContext;
 
         /**
-         * Used a cached thread pool to accept new connections.
+         * Handshakes and logins block on the client, so a reconnect storm is authenticated
+         * CLIENT_AUTH_THREADS at a time with up to CLIENT_AUTH_QUEUE connections waiting for
+         * a thread. The thread is released as soon as the connection is registered with the
+         * network, established connections stay on the selector threads.
          */
-        private final ExecutorService m_executor = CoreUtils.getBoundedThreadPoolExecutor(128, 10L, TimeUnit.SECONDS,
-                        CoreUtils.getThreadFactory("Client authentication threads", "Client authenticator"));
+        private final ClientAuthExecutor m_executor = new ClientAuthExecutor(AUTH_THREADS, AUTH_QUEUE,
+                CoreUtils.getThreadFactory("Client authentication threads", "Client authenticator"));
 
         ClientAcceptor(InetAddress intf, int port, VoltNetworkPool network, boolean isAdmin, SSLContext sslContext)
         {
@@ -509,15 +516,7 @@ public class ClientInterface implements SnapshotDaemon.DaemonInitiator {
                         }
                     }
 
-                    final AuthRunnable authRunnable = new AuthRunnable(socket);
-                    while (true) {
-                        try {
-                            m_executor.execute(authRunnable);
-                            break;
-                        } catch (RejectedExecutionException e) {
-                            Thread.sleep(1);
-                        }
-                    }
+                    m_executor.execute(new AuthRunnable(socket));
                 } while (m_running);
             } catch (Exception e) {
                 if (m_running) {
@@ -916,12 +915,15 @@ public class ClientInterface implements SnapshotDaemon.DaemonInitiator {
      * Runs on the network thread to prepare client response. If a transaction needs to be
      * restarted, it will get restarted here.
      */
-    public class ClientResponseWork implements DeferredSerialization {
+    public class ClientResponseWork implements ChunkedDeferredSerialization {
         private final ClientInterfaceHandleManager cihm;
         private final InitiateResponseMessage response;
         private final Procedure catProc;
         private ClientResponseImpl clientResponse;
         private boolean restartMispartitionedTxn;
+        // Remaining pieces of a response being written out one network buffer at a time
+        private ByteBuffer[] chunkSegments;
+        private int chunkSegmentIndex;
 
         private ClientResponseWork(InitiateResponseMessage response,
                                    ClientInterfaceHandleManager cihm,
@@ -941,6 +943,36 @@ public class ClientInterface implements SnapshotDaemon.DaemonInitiator {
             clientResponse.flattenToBuffer(buf);
         }
 
+        /**
+         * Large responses are copied straight from the result tables into network buffers
+         * so that the network thread never holds a second, full size copy of the results.
+         */
+        @Override
+        public boolean serializeChunk(ByteBuffer buf) throws IOException
+        {
+            if (chunkSegments == null) {
+                ByteBuffer[] responseSegments = clientResponse.flattenToSegments();
+                chunkSegments = new ByteBuffer[responseSegments.length + 1];
+                chunkSegments[0] = ByteBuffer.allocate(4);
+                chunkSegments[0].putInt(0, clientResponse.getSerializedSize());
+                System.arraycopy(responseSegments, 0, chunkSegments, 1, responseSegments.length);
+                chunkSegmentIndex = 0;
+            }
+            while (chunkSegmentIndex < chunkSegments.length && buf.hasRemaining()) {
+                ByteBuffer segment = chunkSegments[chunkSegmentIndex];
+                if (segment.remaining() <= buf.remaining()) {
+                    buf.put(segment);
+                    chunkSegmentIndex++;
+                } else {
+                    final int oldLimit = segment.limit();
+                    segment.limit(segment.position() + buf.remaining());
+                    buf.put(segment);
+                    segment.limit(oldLimit);
+                }
+            }
+            return chunkSegmentIndex == chunkSegments.length;
+        }
+
         @Override
         public void cancel() {
         }
@@ -1045,8 +1077,7 @@ public class ClientInterface implements SnapshotDaemon.DaemonInitiator {
 
             try {
                 ProcedurePartitionInfo ppi = (ProcedurePartitionInfo)catProc.getAttachment();
-                int partition = InvocationDispatcher.getPartitionForProcedureParameter(ppi.index,
-                        ppi.type, response.getInvocation());
+                int partition = ppi.getPartition(response.getInvocation());
                 m_dispatcher.createTransaction(cihm.connection.connectionId(),
                         response.getInvocation(),
                         catProc.getReadonly(),
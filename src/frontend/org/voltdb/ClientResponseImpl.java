@@ -246,6 +246,41 @@ public class ClientResponseImpl implements ClientResponse, JSONString {
      * @return buf to allow call chaining.
      */
     public ByteBuffer flattenToBuffer(ByteBuffer buf) {
+        flattenHeaderToBuffer(buf);
+        for (VoltTable vt : results)
+        {
+            vt.flattenToBuffer(buf);
+        }
+        return buf;
+    }
+
+    /**
+     * Get the serialized form of this response as a sequence of buffers that can be
+     * copied out piecemeal. The first buffer holds everything up to and including the
+     * table count, followed by a length and a read-only view of the data for each result table.
+     * Table data is not copied, so this costs the same regardless of result size.
+     * Like {@link #flattenToBuffer(ByteBuffer)}, requires {@link #getSerializedSize()} to
+     * have been called first.
+     */
+    public ByteBuffer[] flattenToSegments() {
+        int headerSize = getSerializedSize();
+        for (VoltTable vt : results) {
+            headerSize -= vt.getSerializedSize();
+        }
+        ByteBuffer[] segments = new ByteBuffer[1 + results.length * 2];
+        segments[0] = flattenHeaderToBuffer(ByteBuffer.allocate(headerSize));
+        segments[0].flip();
+        for (int i = 0; i < results.length; i++) {
+            ByteBuffer tableData = results[i].getBuffer();
+            ByteBuffer tableLength = ByteBuffer.allocate(4);
+            tableLength.putInt(0, tableData.limit());
+            segments[i * 2 + 1] = tableLength;
+            segments[i * 2 + 2] = tableData;
+        }
+        return segments;
+    }
+
+    private ByteBuffer flattenHeaderToBuffer(ByteBuffer buf) {
         assert setProperly;
         buf.put((byte)0); //version
         buf.putLong(clientHandle);
@@ -279,10 +314,6 @@ public class ClientResponseImpl implements ClientResponse, JSONString {
             }
         }
         buf.putShort((short) results.length);
-        for (VoltTable vt : results)
-        {
-            vt.flattenToBuffer(buf);
-        }
         return buf;
     }
 
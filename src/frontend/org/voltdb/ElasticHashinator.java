@@ -343,6 +343,11 @@ public class ElasticHashinator extends TheHashinator {
         return partitionForToken(token);
     }
 
+    @Override
+    public int getHashedPartitionForBytes(ByteBuffer buf, int offset, int length) {
+        return partitionForToken(MurmurHash3.hash3_x64_128(buf, offset, length, 0));
+    }
+
     @Override
     public HashinatorConfig pGetCurrentConfig() {
         return new HashinatorConfig(HashinatorType.ELASTIC, m_configBytes.get(), m_tokens, m_tokenCount) {
@@ -113,10 +113,14 @@ public final class InvocationDispatcher {
     private final Cartographer m_cartographer;
     private final ConcurrentMap<Long, ClientInterfaceHandleManager> m_cihm;
     private final AtomicReference<Map<Integer,Long>> m_localReplicas = new AtomicReference<>(ImmutableMap.of());
+    private final AtomicReference<Map<Integer,QueueDepthTracker>> m_localReplicaQueues = new AtomicReference<>(ImmutableMap.of());
     private final SnapshotDaemon m_snapshotDaemon;
     private final AtomicBoolean m_isInitialRestore = new AtomicBoolean(true);
     // used to decide if we should shortcut reads
     private final Consistency.ReadLevel m_defaultConsistencyReadLevel;
+    // FAST reads are sent to the partition leader instead of the local replica once
+    // the replica's site queue holds this many tasks, 0 always uses the local replica
+    static final int REPLICA_READ_MAX_QUEUE_DEPTH = Integer.getInteger("REPLICA_READ_MAX_QUEUE_DEPTH", 0);
 
     private final NTProcedureService m_NTProcedureService;
 
@@ -254,15 +258,27 @@ public final class InvocationDispatcher {
                  * if single part reads can be delivered and executed at local replicas
                  */
                 final int thisHostId = CoreUtils.getHostIdFromHSId(m_mailbox.getHSId());
+                final StatsAgent statsAgent = VoltDB.instance().getStatsAgent();
                 ImmutableMap.Builder<Integer, Long> localReplicas = ImmutableMap.builder();
+                ImmutableMap.Builder<Integer, QueueDepthTracker> localReplicaQueues = ImmutableMap.builder();
                 for (int partition : m_cartographer.getPartitions()) {
                     for (Long replica : m_cartographer.getReplicasForPartition(partition)) {
                         if (CoreUtils.getHostIdFromHSId(replica) == thisHostId) {
                             localReplicas.put(partition, replica);
+                            if (statsAgent == null) {
+                                continue;
+                            }
+                            for (StatsSource source : statsAgent.getStatsSources(StatsSelector.QUEUE, replica)) {
+                                if (source instanceof QueueDepthTracker) {
+                                    localReplicaQueues.put(partition, (QueueDepthTracker) source);
+                                    break;
+                                }
+                            }
                         }
                     }
                 }
                 m_localReplicas.set(localReplicas.build());
+                m_localReplicaQueues.set(localReplicaQueues.build());
             }
 
         });
@@ -1192,7 +1208,8 @@ public final class InvocationDispatcher {
         /*
          * ReadLevel.FAST:
          * If this is a read only single part, check if there is a local replica,
-         * if there is, send it to the replica as a short circuit read
+         * if there is, send it to the replica as a short circuit read, unless the
+         * replica is backed up and the leader could take it instead
          *
          * ReadLevel.SAFE:
          * Send the read to the partition leader only
@@ -1202,6 +1219,9 @@ public final class InvocationDispatcher {
             if (isReadOnly && m_defaultConsistencyReadLevel == ReadLevel.FAST &&
                     !("@MigratePartitionLeader".equals(invocation.getProcName()))) {
                 initiatorHSId = m_localReplicas.get().get(partitions[0]);
+                if (initiatorHSId != null && isLocalReplicaBackedUp(partitions[0], initiatorHSId)) {
+                    initiatorHSId = null;
+                }
             }
             if (initiatorHSId != null) {
                 isShortCircuitRead = true;
@@ -1252,12 +1272,28 @@ public final class InvocationDispatcher {
         return true;
     }
 
+    /**
+     * Check whether the site queue of a local replica is too deep to take more reads
+     * and the partition leader is a different site that could.
+     */
+    private boolean isLocalReplicaBackedUp(int partition, long replicaHSId) {
+        if (REPLICA_READ_MAX_QUEUE_DEPTH <= 0) {
+            return false;
+        }
+        QueueDepthTracker queue = m_localReplicaQueues.get().get(partition);
+        if (queue == null || queue.getQueueDepth() < REPLICA_READ_MAX_QUEUE_DEPTH) {
+            return false;
+        }
+        Long leader = m_cartographer.getHSIdForSinglePartitionMaster(partition);
+        return leader != null && leader != replicaHSId;
+    }
+
     final static int[] getPartitionsForProcedure(Procedure procedure, StoredProcedureInvocation task) {
         final CatalogContext.ProcedurePartitionInfo ppi =
                 (CatalogContext.ProcedurePartitionInfo) procedure.getAttachment();
         if (procedure.getSinglepartition()) {
-            // break out the Hashinator and calculate the appropriate partition
-            return new int[] { getPartitionForProcedureParameter( ppi.index, ppi.type, task) };
+            // hash the partition parameter straight from the serialized parameters
+            return new int[] { ppi.getPartition(task) };
         } else if (procedure.getPartitioncolumn2() != null) {
             // two-partition procedure
             VoltType partitionParamType1 = VoltType.get((byte)procedure.getPartitioncolumn().getType());
@@ -22,6 +22,7 @@ import java.util.Iterator;
 import java.util.Map;
 import java.util.TreeMap;
 
+import org.voltcore.network.NetworkDBBPool;
 import org.voltdb.VoltTable.ColumnInfo;
 import org.voltdb.utils.PlatformProperties;
 import org.voltdb.utils.SystemStatsCollector;
@@ -82,6 +83,8 @@ public class MemoryStats extends StatsSource {
         columns.add(new VoltTable.ColumnInfo("POOLEDMEMORY", VoltType.BIGINT));
         columns.add(new VoltTable.ColumnInfo("PHYSICALMEMORY", VoltType.BIGINT));
         columns.add(new VoltTable.ColumnInfo("JAVAMAXHEAP", VoltType.INTEGER));
+        columns.add(new VoltTable.ColumnInfo("NETWORKBUFFERUSED", VoltType.BIGINT));
+        columns.add(new VoltTable.ColumnInfo("NETWORKBUFFERPOOLED", VoltType.BIGINT));
     }
 
     @Override
@@ -119,6 +122,12 @@ public class MemoryStats extends StatsSource {
         //in kb to make math simpler with other mem values.
         rowValues[columnNameToIndex.get("PHYSICALMEMORY")] = PlatformProperties.getPlatformProperties().ramInMegabytes * 1024;
         rowValues[columnNameToIndex.get("JAVAMAXHEAP")] = Runtime.getRuntime().maxMemory() / 1024;
+        // direct memory held by the network threads, split into buffers held by connections and idle buffers,
+        // broken down per thread by @Statistics NETWORKBUFFERS
+        final long networkPooled = NetworkDBBPool.getTotalPooledBytes();
+        rowValues[columnNameToIndex.get("NETWORKBUFFERUSED")] =
+                Math.max(0, NetworkDBBPool.getTotalAllocatedBytes() - networkPooled) / 1024;
+        rowValues[columnNameToIndex.get("NETWORKBUFFERPOOLED")] = networkPooled / 1024;
         super.updateStatsRow(rowKey, rowValues);
     }
 
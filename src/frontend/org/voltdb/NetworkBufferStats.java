@@ -0,0 +1,78 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2017 VoltDB Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with VoltDB.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.voltdb;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+
+import org.voltcore.network.NetworkDBBPool;
+import org.voltdb.VoltTable.ColumnInfo;
+
+/**
+ * Direct memory held by each network thread's buffer pool, one row per pool. The
+ * NETWORKBUFFERUSED and NETWORKBUFFERPOOLED columns of @Statistics MEMORY are the
+ * sums of these rows.
+ */
+public class NetworkBufferStats extends StatsSource {
+
+    public NetworkBufferStats() {
+        super(false);
+    }
+
+    @Override
+    protected Iterator<Object> getStatsRowKeyIterator(boolean interval) {
+        final Iterator<NetworkDBBPool> pools = NetworkDBBPool.getPools().iterator();
+        return new Iterator<Object>() {
+            @Override
+            public boolean hasNext() {
+                return pools.hasNext();
+            }
+
+            @Override
+            public Object next() {
+                return pools.next();
+            }
+
+            @Override
+            public void remove() {
+                throw new UnsupportedOperationException();
+            }
+        };
+    }
+
+    @Override
+    protected void populateColumnSchema(ArrayList<ColumnInfo> columns) {
+        super.populateColumnSchema(columns);
+        columns.add(new VoltTable.ColumnInfo("NETWORK_THREAD", VoltType.STRING));
+        columns.add(new VoltTable.ColumnInfo("BUFFER_SIZE", VoltType.INTEGER));
+        columns.add(new VoltTable.ColumnInfo("USED", VoltType.BIGINT));
+        columns.add(new VoltTable.ColumnInfo("POOLED", VoltType.BIGINT));
+    }
+
+    @Override
+    protected void updateStatsRow(Object rowKey, Object[] rowValues) {
+        final NetworkDBBPool pool = (NetworkDBBPool)rowKey;
+        final long pooled = pool.getPooledBytes();
+        rowValues[columnNameToIndex.get("NETWORK_THREAD")] = pool.getName();
+        rowValues[columnNameToIndex.get("BUFFER_SIZE")] = pool.getAllocationSize();
+        // in kb like the network columns of MEMORY
+        rowValues[columnNameToIndex.get("USED")] = Math.max(0, pool.getAllocatedBytes() - pooled) / 1024;
+        rowValues[columnNameToIndex.get("POOLED")] = pooled / 1024;
+        super.updateStatsRow(rowKey, rowValues);
+    }
+}
@@ -21,6 +21,7 @@ import java.io.IOException;
 import java.math.BigDecimal;
 import java.nio.ByteBuffer;
 import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicReferenceArray;
 
 import org.apache.commons.lang.ArrayUtils;
 import org.json_voltpatches.JSONArray;
@@ -66,6 +67,19 @@ public class ParameterSet implements JSONString {
     // memoized serialized size (start assuming valid size for empty ParameterSet)
     private final int m_serializedSize;
 
+    /*
+     * Sets created by fromByteBufferLazily keep their serialized form and the
+     * offset of each parameter in it instead of m_params. Parameters are decoded
+     * into m_decoded the first time they are read, until then their slot holds
+     * UNDECODED. Threads reading the same parameter at once may both decode it,
+     * the first one to swap it in wins and all of them return that copy. These
+     * are null for sets that are fully deserialized up front.
+     */
+    private static final Object UNDECODED = new Object();
+    private final ByteBuffer m_serialized;
+    private final int[] m_offsets;
+    private final AtomicReferenceArray<Object> m_decoded;
+
     public static ParameterSet emptyParameterSet() {
         return fromArrayNoCopy();
     }
@@ -312,11 +326,84 @@ public class ParameterSet implements JSONString {
         return new ParameterSet(params, size, encodedStrings, encodedStringArrays);
     }
 
+    /**
+     * Like {@link #fromByteBuffer(ByteBuffer)}, but only locates each parameter in
+     * the buffer. A parameter is deserialized the first time it is read and the
+     * serialized bytes are written back out as they are by {@link #flattenToBuffer},
+     * so the set holds on to the buffer and it must not be modified afterwards.
+     */
+    public static ParameterSet fromByteBufferLazily(ByteBuffer buffer) throws IOException {
+        final ByteBuffer serialized = buffer.slice();
+
+        short count = serialized.getShort();
+        if (count < 0) {
+            throw new IllegalArgumentException("Invalid parameter length " + count + " for ParameterSet." );
+        }
+        int[] offsets = new int[count];
+        for (int i = 0; i < count; ++i) {
+            offsets[i] = serialized.position();
+            skipOneParameter(serialized);
+        }
+        serialized.flip();
+        buffer.position(buffer.position() + serialized.limit());
+
+        return new ParameterSet(serialized, offsets);
+    }
+
     private ParameterSet(Object[] params, int serializedSize, byte[][] encodedStrings, byte[][][] encodedStringArrays) {
         m_params = params;
         m_serializedSize = serializedSize;
         m_encodedStrings = encodedStrings;
         m_encodedStringArrays = encodedStringArrays;
+        m_serialized = null;
+        m_offsets = null;
+        m_decoded = null;
+    }
+
+    private ParameterSet(ByteBuffer serialized, int[] offsets) {
+        Object[] undecoded = new Object[offsets.length];
+        Arrays.fill(undecoded, UNDECODED);
+        m_params = null;
+        m_serializedSize = serialized.limit();
+        m_encodedStrings = null;
+        m_encodedStringArrays = null;
+        m_serialized = serialized;
+        m_offsets = offsets;
+        m_decoded = new AtomicReferenceArray<Object>(undecoded);
+    }
+
+    private Object decode(int index) {
+        Object param = m_decoded.get(index);
+        if (param == UNDECODED) {
+            ByteBuffer in = m_serialized.duplicate();
+            in.position(m_offsets[index]);
+            try {
+                param = readOneParameter(in).value;
+            }
+            catch (IOException e) {
+                throw new RuntimeException("Failed to deserialize parameter " + index, e);
+            }
+            if (!m_decoded.compareAndSet(index, UNDECODED, param)) {
+                // another thread decoded it first, keep handing out a single copy
+                param = m_decoded.get(index);
+            }
+        }
+        return param;
+    }
+
+    /*
+     * The parameter array with every parameter decoded, for the methods that
+     * need all of them. A new array for lazily decoded sets.
+     */
+    private Object[] decodedParams() {
+        if (m_serialized != null) {
+            Object[] params = new Object[m_offsets.length];
+            for (int i = 0; i < params.length; i++) {
+                params[i] = decode(i);
+            }
+            return params;
+        }
+        return m_params;
     }
 
     static Object limitType(Object o) {
@@ -329,11 +416,14 @@ public class ParameterSet implements JSONString {
     }
 
     public Object getParam(int index) {
+        if (m_serialized != null) {
+            return decode(index);
+        }
         return m_params[index];
     }
 
     public boolean hasParam(int index) {
-        return m_params.length > index;
+        return size() > index;
     }
 
     /**
@@ -341,10 +431,16 @@ public class ParameterSet implements JSONString {
      * @return
      */
     public Object[] toArray() {
+        if (m_serialized != null) {
+            return decodedParams();
+        }
         return m_params.clone();
     }
 
     public int size() {
+        if (m_serialized != null) {
+            return m_offsets.length;
+        }
         return m_params.length;
     }
 
@@ -362,17 +458,92 @@ public class ParameterSet implements JSONString {
      * Do not use for large strings or varbinary (> 1MB).
      */
     static Object getParameterAtIndex(int partitionIndex, ByteBuffer unserializedParams) throws IOException {
+        seekToParameter(partitionIndex, unserializedParams);
+        OneParamInfo opi = readOneParameter(unserializedParams);
+        unserializedParams.rewind();
+        return opi.value;
+    }
+
+    /*
+     * Position a serialized parameter set at the type byte of the indexed
+     * parameter without materializing any of the parameters before it.
+     */
+    static void seekToParameter(int partitionIndex, ByteBuffer unserializedParams) throws IOException {
         int paramLen = unserializedParams.getShort();
         if (partitionIndex >= paramLen) {
             // error if caller desires out of bounds parameter
             throw new RuntimeException("Invalid partition parameter requested.");
         }
         for (int i = 0; i < partitionIndex; ++i) {
-            readOneParameter(unserializedParams);
+            skipOneParameter(unserializedParams);
+        }
+    }
+
+    /*
+     * Advance past one serialized parameter. Fixed width and length prefixed
+     * values are skipped over, arrays and geographies are not length prefixed
+     * and are read the slow way.
+     */
+    static private void skipOneParameter(ByteBuffer in) throws IOException {
+        final int start = in.position();
+        byte nextTypeByte = in.get();
+        if (nextTypeByte == ARRAY) {
+            in.position(start);
+            readOneParameter(in);
+            return;
+        }
+        VoltType nextType;
+        try {
+            nextType = VoltType.get(nextTypeByte);
+        } catch (AssertionError ae) {
+            throw new RuntimeException("ParameterSet doesn't support type " + nextTypeByte);
+        }
+        int len;
+        switch (nextType) {
+            case NULL:
+                break;
+            case TINYINT:
+            case BOOLEAN:
+                in.position(in.position() + 1);
+                break;
+            case SMALLINT:
+                in.position(in.position() + 2);
+                break;
+            case INTEGER:
+                in.position(in.position() + 4);
+                break;
+            case BIGINT:
+            case FLOAT:
+            case TIMESTAMP:
+                in.position(in.position() + 8);
+                break;
+            case DECIMAL:
+                in.position(in.position() + 16);
+                break;
+            case GEOGRAPHY_POINT:
+                in.position(in.position() + GeographyPointValue.getLengthInBytes());
+                break;
+            case STRING:
+            case VARBINARY:
+                len = in.getInt();
+                if (len != VoltType.NULL_STRING_LENGTH) {
+                    if (len < 0) {
+                        throw new IOException("String length is negative " + len);
+                    }
+                    in.position(in.position() + len);
+                }
+                break;
+            case VOLTTABLE:
+                len = in.getInt();
+                if (len < 0) {
+                    throw new IOException("Table length is negative " + len);
+                }
+                in.position(in.position() + len);
+                break;
+            default:
+                in.position(start);
+                readOneParameter(in);
         }
-        OneParamInfo opi = readOneParameter(unserializedParams);
-        unserializedParams.rewind();
-        return opi.value;
     }
 
     static Object getAKosherArray(Object[] array) {
@@ -488,11 +659,12 @@ public class ParameterSet implements JSONString {
 
     @Override
     public String toString() {
+        final Object[] params = decodedParams();
         StringBuilder b = new StringBuilder();
         b.append("ParameterSet:");
-        for (int i = 0; i < m_params.length; ++i) {
-            b.append(",param[" + i + "]=" + (m_params[i] == null ? "NULL"
-                    : m_params[i].toString() + "(" + m_params[i].getClass().getName() + ")"));
+        for (int i = 0; i < params.length; ++i) {
+            b.append(",param[" + i + "]=" + (params[i] == null ? "NULL"
+                    : params[i].toString() + "(" + params[i].getClass().getName() + ")"));
         }
         return new String(b);
     }
@@ -502,7 +674,7 @@ public class ParameterSet implements JSONString {
         JSONStringer js = new JSONStringer();
         try {
             js.array();
-            for (Object o : m_params) {
+            for (Object o : decodedParams()) {
                 if(o instanceof Double) {
                     Double dval = (Double) o;
                     if (dval.isNaN()) {
@@ -680,6 +852,10 @@ public class ParameterSet implements JSONString {
     }
 
     public void flattenToBuffer(ByteBuffer buf) throws IOException {
+        if (m_serialized != null) {
+            buf.put(m_serialized.duplicate());
+            return;
+        }
 
         buf.putShort((short)m_params.length);
 
@@ -933,7 +1109,7 @@ public class ParameterSet implements JSONString {
             return false;
         }
         ParameterSet other = (ParameterSet) obj;
-        return Arrays.deepEquals(m_params, other.m_params);
+        return Arrays.deepEquals(decodedParams(), other.decodedParams());
     }
 
     /* (non-Javadoc)
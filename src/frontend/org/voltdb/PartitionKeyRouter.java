@@ -0,0 +1,156 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2017 VoltDB Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with VoltDB.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.voltdb;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Computes the partition of a single partition procedure invocation from its
+ * partition parameter. One is built per procedure when the catalog is loaded,
+ * specialized on the type of the partition column, and kept on the procedure's
+ * {@link CatalogContext.ProcedurePartitionInfo} attachment.
+ *
+ * Invocations that came off the wire still have their parameters in serialized
+ * form. The router skips to the partition parameter and hashes it straight out
+ * of the buffer, so neither the parameters in front of it nor the key itself are
+ * deserialized. Anything the fast path doesn't recognize (a string for a number
+ * column, nulls, arrays, the legacy hashinator) goes through
+ * {@link TheHashinator#getPartitionForParameter(VoltType, Object)} like before.
+ */
+abstract class PartitionKeyRouter {
+
+    // returned by the fast paths when the parameter has to be deserialized
+    private static final int UNROUTED = -1;
+
+    final VoltType m_type;
+    final int m_index;
+
+    static PartitionKeyRouter create(VoltType partitionType, int partitionIndex) {
+        if (partitionType.isAnyIntegerType()) {
+            return new IntegerKeyRouter(partitionType, partitionIndex);
+        }
+        else if (partitionType == VoltType.STRING || partitionType == VoltType.VARBINARY) {
+            return new BytesKeyRouter(partitionType, partitionIndex);
+        }
+        return new PartitionKeyRouter(partitionType, partitionIndex) {
+            @Override
+            int route(ByteBuffer params, TheHashinator hashinator) {
+                return UNROUTED;
+            }
+        };
+    }
+
+    private PartitionKeyRouter(VoltType partitionType, int partitionIndex) {
+        m_type = partitionType;
+        m_index = partitionIndex;
+    }
+
+    /**
+     * @return The partition of the invocation.
+     * @throws VoltTypeException if the partition parameter can't be hashed as
+     * the partition column type
+     */
+    int getPartition(StoredProcedureInvocation task) {
+        final ByteBuffer params = task.getSerializedParams();
+        if (params != null) {
+            final TheHashinator hashinator = TheHashinator.getCurrentHashinator();
+            int partition = UNROUTED;
+            try {
+                ParameterSet.seekToParameter(m_index, params);
+                partition = route(params, hashinator);
+            } catch (Exception e) {
+                // let the slow path produce the error for a malformed parameter set
+            }
+            if (partition != UNROUTED) {
+                return partition;
+            }
+        }
+        Object key = task.getParameterAtIndex(m_index);
+        if (key == null) {
+            // a parameter set hashes a java null as the volt null, as it would after a round trip
+            key = VoltType.NULL_STRING_OR_VARBINARY;
+        }
+        return TheHashinator.getPartitionForParameter(m_type, key);
+    }
+
+    /**
+     * Hash the parameter at the buffer's position, which is the type byte of
+     * the partition parameter.
+     * @return The partition, or {@link #UNROUTED} if the parameter has to be
+     * deserialized to be hashed.
+     */
+    abstract int route(ByteBuffer params, TheHashinator hashinator);
+
+    /**
+     * Integer columns hash any integer parameter the same way once it is widened
+     * to a long, only the null value differs between the serialized types.
+     */
+    private static final class IntegerKeyRouter extends PartitionKeyRouter {
+        IntegerKeyRouter(VoltType partitionType, int partitionIndex) {
+            super(partitionType, partitionIndex);
+        }
+
+        @Override
+        int route(ByteBuffer params, TheHashinator hashinator) {
+            final byte typeByte = params.get();
+            long value;
+            if (typeByte == VoltType.BIGINT.getValue()) {
+                value = params.getLong();
+            }
+            else if (typeByte == VoltType.INTEGER.getValue()) {
+                final int v = params.getInt();
+                value = v == VoltType.NULL_INTEGER ? VoltType.NULL_BIGINT : v;
+            }
+            else if (typeByte == VoltType.SMALLINT.getValue()) {
+                final short v = params.getShort();
+                value = v == VoltType.NULL_SMALLINT ? VoltType.NULL_BIGINT : v;
+            }
+            else if (typeByte == VoltType.TINYINT.getValue()) {
+                final byte v = params.get();
+                value = v == VoltType.NULL_TINYINT ? VoltType.NULL_BIGINT : v;
+            }
+            else {
+                return UNROUTED;
+            }
+            return hashinator.getHashedPartitionForLong(value);
+        }
+    }
+
+    /**
+     * String and varbinary columns hash the UTF-8 or raw bytes, which is exactly
+     * what is in the buffer for either serialized type.
+     */
+    private static final class BytesKeyRouter extends PartitionKeyRouter {
+        BytesKeyRouter(VoltType partitionType, int partitionIndex) {
+            super(partitionType, partitionIndex);
+        }
+
+        @Override
+        int route(ByteBuffer params, TheHashinator hashinator) {
+            final byte typeByte = params.get();
+            if (typeByte != VoltType.STRING.getValue() && typeByte != VoltType.VARBINARY.getValue()) {
+                return UNROUTED;
+            }
+            final int length = params.getInt();
+            if (length < 0 || length > params.remaining()) {
+                return UNROUTED;
+            }
+            return hashinator.getHashedPartitionForBytes(params, params.position(), length);
+        }
+    }
+}
@@ -186,6 +186,33 @@ public class PlannerStatsCollector extends StatsSource {
         }
     }
 
+    /**
+     * Same as {@link #startStatsCollection()} for a collector shared by threads that plan
+     * concurrently. The start time is handed back to the caller instead of being kept in
+     * the collector.
+     *
+     * @return  start time to pass to {@link #endConcurrentStatsCollection}, null if this
+     *          invocation is not timed
+     */
+    public synchronized Long startConcurrentStatsCollection() {
+        if (getInvocations() % m_collectionFrequency == 0) {
+            return System.nanoTime();
+        }
+        return null;
+    }
+
+    /**
+     * Same as {@link #endStatsCollection} for a collector shared by threads that plan
+     * concurrently.
+     *
+     * @param startTime    value returned by {@link #startConcurrentStatsCollection()}
+     */
+    public synchronized void endConcurrentStatsCollection(Long startTime, long cache1Size, long cache2Size,
+            CacheUse cacheUse, long partitionId) {
+        m_currentStartTime = startTime;
+        endStatsCollection(cache1Size, cache2Size, cacheUse, partitionId);
+    }
+
     /**
      * Called after planning or failing to plan. Records timer and cache stats.
      *
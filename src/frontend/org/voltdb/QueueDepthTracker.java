@@ -14,37 +14,34 @@
  * You should have received a copy of the GNU Affero General Public License
  * along with VoltDB.  If not, see <http://www.gnu.org/licenses/>.
  */
+
 package org.voltdb;
 
 import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.concurrent.ArrayBlockingQueue;
-import java.util.concurrent.LinkedTransferQueue;
 import java.util.concurrent.atomic.AtomicInteger;
 
 import org.voltcore.logging.VoltLogger;
 import org.voltdb.VoltTable.ColumnInfo;
 import org.voltdb.iv2.SiteTasker;
+import org.voltdb.iv2.SiteTaskerQueue;
 
 /**
  * A class to track and generate statistics regarding queue depth.
  * Generate information on instantaneous queue depth and number of tasks
  * pulled from queue, average wait time and max wait time (in microseconds)
- * within a 5-second window
+ * within a 5-second window, of all tasks and of the tasks of each priority
  */
 public class QueueDepthTracker extends SiteStatsSource {
 
     private static final VoltLogger s_logger = new VoltLogger("HOST");
 
     private final AtomicInteger m_depth;
-    private long m_lastWaitTime;
-    private final ArrayBlockingQueue<QueueStatus> m_historicalData;
-    private LinkedTransferQueue<SiteTasker> m_tasks;
+    private final SiteTaskerQueue m_tasks;
+    private final WaitWindow m_allTasks = new WaitWindow();
+    private final WaitWindow[] m_tasksByPriority = new WaitWindow[SiteTasker.Priority.values().length];
     private long m_maxWaitTimeWindowSize = 5_000_000_000L; // window size set to 5 seconds
-    private long m_maxWaitLastLogTime;
-    private volatile long m_recentMaxWaitTime;
-    private long m_recentTotalWaitTime;
-    private long m_recentPollCount;
     private long m_recentWindowSize = m_maxWaitTimeWindowSize / 10; // recent window size set to 0.5 second
 
     public class QueueStatus {
@@ -61,52 +58,96 @@ public class QueueDepthTracker extends SiteStatsSource {
         }
     }
 
-    public QueueDepthTracker(long siteId, LinkedTransferQueue<SiteTasker> tasks) {
+    /**
+     * The wait times of the tasks polled within the last m_maxWaitTimeWindowSize,
+     * in windows of m_recentWindowSize.
+     */
+    private class WaitWindow {
+        private final ArrayBlockingQueue<QueueStatus> m_historicalData = new ArrayBlockingQueue<>(10);
+        private long m_maxWaitLastLogTime = System.nanoTime();
+        private volatile long m_recentMaxWaitTime = 0;
+        private long m_recentTotalWaitTime = 0;
+        private long m_recentPollCount = 0;
+
+        void pollUpdate(long currentTime, long waitTime) {
+            // if max wait time was last logged less than m_recentWindowSize ago
+            // keep the max wait time in m_recentMaxWaitTime
+            // or log and reset the recentMaxWaitTime, update last log time
+            if (currentTime - m_maxWaitLastLogTime < m_recentWindowSize) {
+                if (m_recentMaxWaitTime < waitTime) m_recentMaxWaitTime = waitTime;
+                m_recentTotalWaitTime += waitTime;
+                m_recentPollCount++;
+            } else {
+                // remove out of date historical data
+                while (!m_historicalData.isEmpty() &&
+                        m_historicalData.peek().timestamp <
+                        currentTime - m_maxWaitTimeWindowSize) {
+                    m_historicalData.poll();
+                }
+                if (!m_historicalData.offer(new QueueStatus(currentTime,
+                        m_recentMaxWaitTime,
+                        m_recentTotalWaitTime,
+                        m_recentPollCount))) {
+                    //This should never happen...
+                    s_logger.warn("Could not insert queue stats data. Current data size: " + m_historicalData.size());
+                }
+                m_recentMaxWaitTime = waitTime;
+                m_recentTotalWaitTime = waitTime;
+                m_recentPollCount = 1;
+                m_maxWaitLastLogTime = currentTime;
+            }
+        }
+
+        /**
+         * @return the poll count, total wait and max wait within the window, the max
+         * including the current wait of a task still in the queue
+         */
+        long[] getWindow(long currentTime, long currentWaitTime) {
+            // check historicalMaxWaitTime, report max wait time and mean wait time in window
+            long maxWaitTimeInWindow = Math.max(currentWaitTime, m_recentMaxWaitTime);
+            long totalWaitTimeInWindow = 0;
+            long totalPollCountInWindow = 0;
+            if (!m_historicalData.isEmpty()) {
+                // iterate through all past max wait times
+                // only process those within the window
+                for (QueueStatus status : m_historicalData) {
+                    if (status.timestamp >= currentTime - m_maxWaitTimeWindowSize) {
+                        maxWaitTimeInWindow = Math.max(maxWaitTimeInWindow, status.maxWait);
+                        totalWaitTimeInWindow += status.totalWait;
+                        totalPollCountInWindow += status.pollCount;
+                    }
+                }
+            }
+            return new long[] { totalPollCountInWindow, totalWaitTimeInWindow, maxWaitTimeInWindow };
+        }
+    }
+
+    public QueueDepthTracker(long siteId, SiteTaskerQueue tasks) {
         super(siteId, false);
-        m_historicalData = new ArrayBlockingQueue<>(10);
-        m_depth = new AtomicInteger(tasks.size());
-        m_lastWaitTime = 0;
-        m_maxWaitLastLogTime = System.nanoTime();
-        m_recentMaxWaitTime = 0;
-        m_recentTotalWaitTime = 0;
-        m_recentPollCount = 0;
+        m_depth = new AtomicInteger(0);
         m_tasks = tasks;
+        for (int i = 0; i < m_tasksByPriority.length; i++) {
+            m_tasksByPriority[i] = new WaitWindow();
+        }
+    }
+
+    /**
+     * Number of tasks currently waiting in the site's queue.
+     */
+    public int getQueueDepth() {
+        return m_depth.get();
     }
 
     public void offerUpdate() {
         m_depth.incrementAndGet();
     }
 
-    public void pollUpdate(long offerTime) {
+    public void pollUpdate(long offerTime, SiteTasker.Priority priority) {
         m_depth.decrementAndGet();
         long currentTime = System.nanoTime();
-        m_lastWaitTime = currentTime - offerTime;
-        // if max wait time was last logged less than m_recentWindowSize ago
-        // keep the max wait time in m_recentMaxWaitTime
-        // or log and reset the recentMaxWaitTime, update last log time
-        if (currentTime - m_maxWaitLastLogTime < m_recentWindowSize) {
-            if (m_recentMaxWaitTime < m_lastWaitTime) m_recentMaxWaitTime = m_lastWaitTime;
-            m_recentTotalWaitTime += m_lastWaitTime;
-            m_recentPollCount++;
-        } else {
-            // remove out of date historical data
-            while (!m_historicalData.isEmpty() &&
-                    m_historicalData.peek().timestamp <
-                    currentTime - m_maxWaitTimeWindowSize) {
-                m_historicalData.poll();
-            }
-            if (!m_historicalData.offer(new QueueStatus(currentTime,
-                    m_recentMaxWaitTime,
-                    m_recentTotalWaitTime,
-                    m_recentPollCount))) {
-                //This should never happen...
-                s_logger.warn("Could not insert queue stats data. Current data size: " + m_historicalData.size());
-            }
-            m_recentMaxWaitTime = m_lastWaitTime;
-            m_recentTotalWaitTime = m_lastWaitTime;
-            m_recentPollCount = 1;
-            m_maxWaitLastLogTime = currentTime;
-        }
+        long waitTime = currentTime - offerTime;
+        m_allTasks.pollUpdate(currentTime, waitTime);
+        m_tasksByPriority[priority.ordinal()].pollUpdate(currentTime, waitTime);
     }
 
     @Override
@@ -116,6 +157,10 @@ public class QueueDepthTracker extends SiteStatsSource {
         columns.add(new ColumnInfo("POLL_COUNT", VoltType.BIGINT));
         columns.add(new ColumnInfo("AVG_WAIT", VoltType.BIGINT));
         columns.add(new ColumnInfo("MAX_WAIT", VoltType.BIGINT));
+        for (SiteTasker.Priority priority : SiteTasker.Priority.values()) {
+            columns.add(new ColumnInfo(priority.name() + "_AVG_WAIT", VoltType.BIGINT));
+            columns.add(new ColumnInfo(priority.name() + "_MAX_WAIT", VoltType.BIGINT));
+        }
     }
 
     @Override
@@ -129,26 +174,19 @@ public class QueueDepthTracker extends SiteStatsSource {
         } else {
             currentWaitTime = currentTime - nextTask.getQueueOfferTime();
         }
-        // check historicalMaxWaitTime, report max wait time and mean wait time in window
-        long maxWaitTimeInWindow = Math.max(currentWaitTime, m_recentMaxWaitTime);
-        long totalWaitTimeInWindow = 0;
-        long totalPollCountInWindow = 0;
-        if (!m_historicalData.isEmpty()) {
-            // iterate through all past max wait times
-            // only process those within the window
-            for (QueueStatus status : m_historicalData) {
-                if (status.timestamp >= currentTime - m_maxWaitTimeWindowSize) {
-                    maxWaitTimeInWindow = Math.max(maxWaitTimeInWindow, status.maxWait);
-                    totalWaitTimeInWindow += status.totalWait;
-                    totalPollCountInWindow += status.pollCount;
-                }
-            }
-        }
+        long[] window = m_allTasks.getWindow(currentTime, currentWaitTime);
         rowValues[columnNameToIndex.get("CURRENT_DEPTH")] = m_depth;
-        rowValues[columnNameToIndex.get("POLL_COUNT")] = totalPollCountInWindow;
+        rowValues[columnNameToIndex.get("POLL_COUNT")] = window[0];
         // wait times are in microseconds
-        rowValues[columnNameToIndex.get("AVG_WAIT")] = (totalWaitTimeInWindow / Math.max(1, totalPollCountInWindow)) / 1000;
-        rowValues[columnNameToIndex.get("MAX_WAIT")] = maxWaitTimeInWindow / 1000;
+        rowValues[columnNameToIndex.get("AVG_WAIT")] = (window[1] / Math.max(1, window[0])) / 1000;
+        rowValues[columnNameToIndex.get("MAX_WAIT")] = window[2] / 1000;
+        for (SiteTasker.Priority priority : SiteTasker.Priority.values()) {
+            long[] priorityWindow = m_tasksByPriority[priority.ordinal()].getWindow(currentTime,
+                    nextTask != null && nextTask.getPriority() == priority ? currentWaitTime : 0);
+            rowValues[columnNameToIndex.get(priority.name() + "_AVG_WAIT")] =
+                    (priorityWindow[1] / Math.max(1, priorityWindow[0])) / 1000;
+            rowValues[columnNameToIndex.get(priority.name() + "_MAX_WAIT")] = priorityWindow[2] / 1000;
+        }
 
         super.updateStatsRow(rowKey, rowValues);
     }
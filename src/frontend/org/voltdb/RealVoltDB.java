@@ -1302,6 +1302,8 @@ public class RealVoltDB implements VoltDBInterface, RestoreAgent.Callback, HostM
             m_gcStats = new GcStats();
             getStatsAgent().registerStatsSource(StatsSelector.GC,
                     0, m_gcStats);
+            getStatsAgent().registerStatsSource(StatsSelector.NETWORKBUFFERS,
+                    0, new NetworkBufferStats());
             // ENG-6321
             m_commandLogStats = new CommandLogStats(m_commandLog);
             getStatsAgent().registerStatsSource(StatsSelector.COMMANDLOG, 0, m_commandLogStats);
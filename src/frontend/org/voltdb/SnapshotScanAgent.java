@@ -17,8 +17,6 @@
 package org.voltdb;
 
 import java.io.File;
-import java.io.FileInputStream;
-import java.io.IOException;
 import java.io.StringWriter;
 import java.nio.ByteBuffer;
 import java.util.ArrayList;
@@ -30,6 +28,7 @@ import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.TreeMap;
+import java.util.concurrent.ExecutionException;
 
 import org.json_voltpatches.JSONArray;
 import org.json_voltpatches.JSONException;
@@ -41,9 +40,13 @@ import org.voltdb.VoltTable.ColumnInfo;
 import org.voltdb.client.ClientResponse;
 import org.voltdb.sysprocs.saverestore.SnapshotUtil;
 import org.voltdb.sysprocs.saverestore.SnapshotPathType;
-import org.voltdb.sysprocs.saverestore.TableSaveFile;
+import org.voltdb.sysprocs.saverestore.TableSaveFileScanner;
+import org.voltdb.sysprocs.saverestore.TableSaveFileScanner.ScannedFile;
 import org.voltdb.utils.VoltFile;
 
+import com.google_voltpatches.common.util.concurrent.ListenableFuture;
+import com.google_voltpatches.common.util.concurrent.Uninterruptibles;
+
 /**
  * Agent responsible for collecting SnapshotScan info on this host.
  *
@@ -252,60 +255,66 @@ public class SnapshotScanAgent extends OpsAgent
                     "FAILURE",
                     m_errorString));
         } else {
+            // read the headers of the table files a few at a time before listing them
+            List<File> tableFiles = new ArrayList<File>();
+            for (final File f : relevantFiles) {
+                if (!f.getName().endsWith(".digest") && f.canRead()) {
+                    tableFiles.add(f);
+                }
+            }
+            List<ListenableFuture<ScannedFile>> scans =
+                    TableSaveFileScanner.scan(tableFiles, false, TableSaveFileScanner.DEFAULT_THREADS, SNAP_LOG);
+            Map<File, ListenableFuture<ScannedFile>> scansByFile = new HashMap<File, ListenableFuture<ScannedFile>>();
+            for (int ii = 0; ii < tableFiles.size(); ii++) {
+                scansByFile.put(tableFiles.get(ii), scans.get(ii));
+            }
+
             for (final File f : relevantFiles) {
                 if (f.getName().endsWith(".digest")) {
                     continue;
                 }
-                if (f.canRead()) {
+                ListenableFuture<ScannedFile> scan = scansByFile.get(f);
+                if (scan != null) {
+                    ScannedFile savefile;
                     try {
-                        FileInputStream savefile_input = new FileInputStream(f);
-                        try {
-                            TableSaveFile savefile =
-                                new TableSaveFile(
-                                        savefile_input,
-                                        1,
-                                        null);
-                            String partitions = "";
-
-                            for (int partition : savefile.getPartitionIds()) {
-                                partitions = partitions + "," + partition;
-                            }
+                        savefile = Uninterruptibles.getUninterruptibly(scan);
+                    } catch (ExecutionException e) {
+                        SNAP_LOG.warn(e.getCause());
+                        continue;
+                    }
+                    String partitions = "";
 
-                            if (partitions.startsWith(",")) {
-                                partitions = partitions.substring(1);
-                            }
-                            SnapshotPathType stype = SnapshotPathType.SNAP_PATH;
-                            if (f.getParent().equals(VoltDB.instance().getCommandLogSnapshotPath())) {
-                                stype = SnapshotPathType.SNAP_CL;
-                            } else if (f.getParent().equals(VoltDB.instance().getSnapshotPath())) {
-                                stype = SnapshotPathType.SNAP_AUTO;
-                            }
-                            results.add(new SnapshotResultRow(
-                                    m_messenger.getHostId(),
-                                    m_hostname,
-                                    f.getParent(),
-                                    stype.toString(),
-                                    f.getName(),
-                                    savefile.getTxnId(),
-                                    savefile.getTimestamp(),
-                                    savefile.getTableName(),
-                                    savefile.getCompleted() ? "TRUE" : "FALSE",
-                                    f.length(),
-                                    savefile.isReplicated() ? "TRUE" : "FALSE",
-                                    partitions,
-                                    savefile.getTotalPartitions(),
-                                    f.canRead() ? "TRUE" : "FALSE",
-                                    "SUCCESS",
-                                    ""
-                                    ));
-                        } catch (IOException e) {
-                            SNAP_LOG.warn(e);
-                        } finally {
-                            savefile_input.close();
-                        }
-                    } catch (IOException e) {
-                        SNAP_LOG.warn(e);
+                    for (int partition : savefile.m_partitionIds) {
+                        partitions = partitions + "," + partition;
+                    }
+
+                    if (partitions.startsWith(",")) {
+                        partitions = partitions.substring(1);
                     }
+                    SnapshotPathType stype = SnapshotPathType.SNAP_PATH;
+                    if (f.getParent().equals(VoltDB.instance().getCommandLogSnapshotPath())) {
+                        stype = SnapshotPathType.SNAP_CL;
+                    } else if (f.getParent().equals(VoltDB.instance().getSnapshotPath())) {
+                        stype = SnapshotPathType.SNAP_AUTO;
+                    }
+                    results.add(new SnapshotResultRow(
+                            m_messenger.getHostId(),
+                            m_hostname,
+                            f.getParent(),
+                            stype.toString(),
+                            f.getName(),
+                            savefile.m_txnId,
+                            savefile.m_timestamp,
+                            savefile.m_tableName,
+                            savefile.m_completed ? "TRUE" : "FALSE",
+                            f.length(),
+                            savefile.m_isReplicated ? "TRUE" : "FALSE",
+                            partitions,
+                            savefile.m_totalPartitions,
+                            f.canRead() ? "TRUE" : "FALSE",
+                            "SUCCESS",
+                            ""
+                            ));
                 } else {
                     SnapshotPathType stype = SnapshotPathType.SNAP_PATH;
                     if (f.getParent().equals(VoltDB.instance().getCommandLogSnapshotPath())) {
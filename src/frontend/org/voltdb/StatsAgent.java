@@ -16,9 +16,11 @@
  */
 package org.voltdb;
 
+import java.util.Collections;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.NoSuchElementException;
+import java.util.Set;
 
 import org.cliffc_voltpatches.high_scale_lib.NonBlockingHashMap;
 import org.cliffc_voltpatches.high_scale_lib.NonBlockingHashSet;
@@ -566,6 +568,9 @@ public class StatsAgent extends OpsAgent
         case GC:
             stats = collectStats(StatsSelector.GC, interval);
             break;
+        case NETWORKBUFFERS:
+            stats = collectStats(StatsSelector.NETWORKBUFFERS, interval);
+            break;
         default:
             // Should have been successfully groomed in collectStatsImpl().  Log something
             // for our information but let the null check below return harmlessly
@@ -677,6 +682,21 @@ public class StatsAgent extends OpsAgent
         statsSources.add(source);
     }
 
+    /**
+     * Get the stats sources registered for a selector and site.
+     * @return the sources, or an empty set if none are registered
+     */
+    public Set<StatsSource> getStatsSources(StatsSelector selector, long siteId) {
+        assert selector != null;
+        final NonBlockingHashMap<Long, NonBlockingHashSet<StatsSource>> siteIdToStatsSources =
+                m_registeredStatsSources.get(selector);
+        if (siteIdToStatsSources == null) {
+            return Collections.emptySet();
+        }
+        NonBlockingHashSet<StatsSource> statsSources = siteIdToStatsSources.get(siteId);
+        return statsSources == null ? Collections.<StatsSource>emptySet() : statsSources;
+    }
+
     public void deregisterStatsSource(StatsSelector selector, long siteId, StatsSource source) {
         assert selector != null;
         assert source != null;
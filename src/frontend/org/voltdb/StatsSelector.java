@@ -58,6 +58,7 @@ public enum StatsSelector {
     KSAFETY,        // return ksafety coverage information
     CPU,            // return CPU Stats
     GC,             // return GC Stats
+    NETWORKBUFFERS, // return direct memory held by each network thread's buffer pool
 
     COMMANDLOG,     // return number of outstanding bytes and txns on this node
     IMPORTER
@@ -191,7 +191,7 @@ public class StoredProcedureInvocation implements JSONString {
             if (serializedParams != null) {
                 return ParameterSet.getParameterAtIndex(partitionIndex, serializedParams.duplicate());
             } else {
-                return params.get().getParam(partitionIndex);
+                return getParams().getParam(partitionIndex);
             }
         }
         catch (Exception ex) {
@@ -429,7 +429,7 @@ public class StoredProcedureInvocation implements JSONString {
         params = new FutureTask<ParameterSet>(new Callable<ParameterSet>() {
             @Override
             public ParameterSet call() throws Exception {
-                return ParameterSet.fromByteBuffer(duplicate);
+                return ParameterSet.fromByteBufferLazily(duplicate);
             }
         });
     }
@@ -500,7 +500,7 @@ public class StoredProcedureInvocation implements JSONString {
         params = new FutureTask<ParameterSet>(new Callable<ParameterSet>() {
             @Override
             public ParameterSet call() throws Exception {
-                return ParameterSet.fromByteBuffer(duplicate);
+                return ParameterSet.fromByteBufferLazily(duplicate);
             }
         });
     }
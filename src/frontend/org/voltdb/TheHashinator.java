@@ -322,6 +322,27 @@ public abstract class TheHashinator {
         return pHashToPartition(partitionParamType, partitionValue);
     }
 
+    /**
+     * Hash an integer partition value that has already been read from a serialized
+     * parameter and widened to a long. Gives the same partition as
+     * {@link #getHashedPartitionForParameter(VoltType, Object)} on the boxed value,
+     * the caller must map the null value of the serialized type to
+     * {@link VoltType#NULL_BIGINT}.
+     */
+    public int getHashedPartitionForLong(long value) {
+        return pHashinateLong(value);
+    }
+
+    /**
+     * Hash a string or varbinary partition value in place from the buffer it was
+     * serialized in, without copying it out. Gives the same partition as
+     * {@link #getHashedPartitionForParameter(VoltType, Object)} on the equivalent
+     * String or byte[], or -1 if this hashinator has to deserialize the value first.
+     */
+    public int getHashedPartitionForBytes(ByteBuffer buf, int offset, int length) {
+        return -1;
+    }
+
     /**
      * Update the hashinator in a thread safe manner with a newer version of the hash function.
      * A version number must be provided and the new config will only be used if it is greater than
@@ -717,6 +717,18 @@ public final class VoltTable extends VoltTableRow implements JSONString {
         throw new IllegalArgumentException(msg);
     }
 
+    /**
+     * Return a new {@link VoltTableCursor} positioned before the first row. The
+     * cursor iterates independently of this table's own row position and reads
+     * values without allocating, which makes it the cheapest way to scan large
+     * results.
+     * @return A new cursor over the rows of this table.
+     */
+    public final VoltTableCursor cursor() {
+        assert(verifyTableInvariants());
+        return new VoltTableCursor(this);
+    }
+
     /**
      * Return a {@link VoltTableRow} instance with the specified index. This method
      * is not performant because it has to scan the length prefix of every row preceding
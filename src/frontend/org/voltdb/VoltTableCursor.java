@@ -0,0 +1,452 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2017 VoltDB Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with VoltDB.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.voltdb;
+
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * <p>A forward-only cursor over the rows of a {@link VoltTable} that doesn't
+ * allocate per row or per value once it is set up.</p>
+ *
+ * <p>Fixed width columns are returned as primitives. String and varbinary
+ * columns are returned as views into the table's buffer: {@link #getBytes(int)}
+ * returns a {@link ByteBuffer} owned by the cursor, one per column, that is
+ * repositioned on every call, and {@link #getString(int, StringView)} decodes
+ * into a caller supplied, reusable {@link StringView}. Neither is valid after
+ * the cursor moves to another row. Use {@link VoltTable} getters when a value
+ * needs to outlive the row.</p>
+ *
+ * <p>Column names should be resolved once with {@link #getColumnIndex(String)}
+ * before iterating, the name to index map is built once per cursor.</p>
+ *
+ * <p>The cursor reads the table as it was when the cursor was created or last
+ * {@link #reset()}. A cursor is not thread safe, but any number of cursors may
+ * read the same table. It works the same way on tables in a stored procedure and
+ * on tables returned to a client.</p>
+ *
+ * <h3>Example</h3>
+ *
+ * <code>
+ * VoltTableCursor cursor = table.cursor();<br>
+ * int idCol = cursor.getColumnIndex("ID");<br>
+ * VoltTableCursor.StringView name = new VoltTableCursor.StringView();<br>
+ * while (cursor.advance()) {<br>
+ * &nbsp;&nbsp;&nbsp;&nbsp;long id = cursor.getLong(idCol);<br>
+ * &nbsp;&nbsp;&nbsp;&nbsp;if (cursor.getString(1, name) != null) { ... }<br>
+ * }
+ * </code>
+ */
+public final class VoltTableCursor {
+
+    private final VoltTable m_table;
+    private final int m_columnCount;
+    private final VoltType[] m_types;
+    /** Width of each fixed length column, -1 for variable length columns */
+    private final int[] m_widths;
+    /** Offsets of each column of the active row, valid up to m_calculatedOffsets */
+    private final int[] m_offsets;
+    /** Reusable per column views for string and varbinary values */
+    private final ByteBuffer[] m_views;
+    private Map<String, Integer> m_columnIndexes = null;
+
+    private ByteBuffer m_buffer;
+    private int m_rowCount;
+    private int m_activeRowIndex;
+    /** Position of the active row's length prefix */
+    private int m_rowPosition;
+    /** Number of leading entries in m_offsets that are valid for the active row */
+    private int m_calculatedOffsets;
+    private boolean m_wasNull = false;
+
+    VoltTableCursor(VoltTable table) {
+        m_table = table;
+        m_columnCount = table.getColumnCount();
+        m_types = new VoltType[m_columnCount];
+        m_widths = new int[m_columnCount];
+        for (int i = 0; i < m_columnCount; i++) {
+            m_types[i] = table.getColumnType(i);
+            m_widths[i] = m_types[i].isVariableLength() ? -1 : m_types[i].getLengthInBytesForFixedTypesWithoutCheck();
+        }
+        m_offsets = new int[m_columnCount];
+        m_views = new ByteBuffer[m_columnCount];
+        reset();
+    }
+
+    /**
+     * Move the cursor before the first row. This also picks up rows added to the
+     * table since the cursor was created.
+     */
+    public void reset() {
+        m_buffer = m_table.m_buffer;
+        m_rowCount = m_table.getRowCount();
+        m_activeRowIndex = VoltTableRow.INVALID_ROW_INDEX;
+        m_rowPosition = m_table.getRowStart() + VoltTableRow.ROW_COUNT_SIZE;
+        m_calculatedOffsets = 0;
+        for (int i = 0; i < m_columnCount; i++) {
+            m_views[i] = null;
+        }
+    }
+
+    /**
+     * Make the next row active.
+     * @return True if a valid row became active. False at the end of the table.
+     */
+    public boolean advance() {
+        if (m_activeRowIndex + 1 >= m_rowCount) {
+            m_activeRowIndex = m_rowCount;
+            return false;
+        }
+        if (m_activeRowIndex != VoltTableRow.INVALID_ROW_INDEX) {
+            final int rowLength = m_buffer.getInt(m_rowPosition);
+            if (rowLength <= 0) {
+                throw new RuntimeException("Invalid row length.");
+            }
+            m_rowPosition += rowLength + VoltTableRow.ROW_HEADER_SIZE;
+        }
+        m_activeRowIndex++;
+        m_offsets[0] = m_rowPosition + VoltTableRow.ROW_HEADER_SIZE;
+        m_calculatedOffsets = 1;
+        return true;
+    }
+
+    /**
+     * @return The index of the active row, -1 before the first call to {@link #advance()}.
+     */
+    public int getActiveRowIndex() {
+        return m_activeRowIndex;
+    }
+
+    public int getRowCount() {
+        return m_rowCount;
+    }
+
+    public int getColumnCount() {
+        return m_columnCount;
+    }
+
+    public VoltType getColumnType(int columnIndex) {
+        return m_types[columnIndex];
+    }
+
+    /**
+     * Return the index of the column with the specified name, ignoring case like
+     * {@link VoltTable#getColumnIndex(String)}, but from a map built once per cursor.
+     * @param columnName Name of the column
+     * @return Index of the column
+     */
+    public int getColumnIndex(String columnName) {
+        if (m_columnIndexes == null) {
+            Map<String, Integer> indexes = new HashMap<String, Integer>();
+            for (int i = m_columnCount - 1; i >= 0; i--) {
+                // first column wins if names collide, matching VoltTable
+                final String name = m_table.getColumnName(i);
+                indexes.put(name, i);
+                indexes.put(name.toUpperCase(), i);
+            }
+            m_columnIndexes = indexes;
+        }
+        Integer index = m_columnIndexes.get(columnName);
+        if (index == null) {
+            index = m_columnIndexes.get(columnName.toUpperCase());
+            if (index == null) {
+                // let the table build the error message
+                return m_table.getColumnIndex(columnName);
+            }
+        }
+        return index;
+    }
+
+    /**
+     * Returns whether last retrieved value was SQL <tt>null</tt>.
+     */
+    public boolean wasNull() {
+        return m_wasNull;
+    }
+
+    /**
+     * Retrieve the value of a TINYINT, SMALLINT, INTEGER or BIGINT column.
+     * @see #wasNull()
+     */
+    public long getLong(int columnIndex) {
+        final int offset = offsetOf(columnIndex);
+        switch (m_types[columnIndex]) {
+        case TINYINT:
+            final byte value1 = m_buffer.get(offset);
+            m_wasNull = (value1 == VoltType.NULL_TINYINT);
+            return value1;
+        case SMALLINT:
+            final short value2 = m_buffer.getShort(offset);
+            m_wasNull = (value2 == VoltType.NULL_SMALLINT);
+            return value2;
+        case INTEGER:
+            final int value3 = m_buffer.getInt(offset);
+            m_wasNull = (value3 == VoltType.NULL_INTEGER);
+            return value3;
+        case BIGINT:
+            final long value4 = m_buffer.getLong(offset);
+            m_wasNull = (value4 == VoltType.NULL_BIGINT);
+            return value4;
+        default:
+            throw new IllegalArgumentException("getLong() called on non-integral column.");
+        }
+    }
+
+    /**
+     * Retrieve the value of a FLOAT column.
+     * @see #wasNull()
+     */
+    public double getDouble(int columnIndex) {
+        validateColumnType(columnIndex, VoltType.FLOAT);
+        final double value = m_buffer.getDouble(offsetOf(columnIndex));
+        m_wasNull = (value <= VoltType.NULL_FLOAT); // see value.h
+        return value;
+    }
+
+    /**
+     * Retrieve the value of a TIMESTAMP column as microseconds since the epoch.
+     * @see #wasNull()
+     */
+    public long getTimestampAsLong(int columnIndex) {
+        validateColumnType(columnIndex, VoltType.TIMESTAMP);
+        final long value = m_buffer.getLong(offsetOf(columnIndex));
+        m_wasNull = (value == Long.MIN_VALUE); // see value.h
+        return value;
+    }
+
+    /**
+     * Retrieve the value of a DECIMAL column as its unscaled value, the decimal
+     * multiplied by 10^{@link org.voltdb.types.VoltDecimalHelper#kDefaultScale}.
+     * @throws ArithmeticException if the unscaled value doesn't fit in a long
+     * @see #wasNull()
+     */
+    public long getDecimalAsUnscaledLong(int columnIndex) {
+        validateColumnType(columnIndex, VoltType.DECIMAL);
+        final int offset = offsetOf(columnIndex);
+        final long high = m_buffer.getLong(offset);
+        final long low = m_buffer.getLong(offset + 8);
+        if (high == Long.MIN_VALUE && low == 0) {
+            m_wasNull = true;
+            return 0;
+        }
+        m_wasNull = false;
+        if (high != (low >> 63)) {
+            throw new ArithmeticException("Unscaled decimal value of column " + columnIndex + " exceeds long range");
+        }
+        return low;
+    }
+
+    /**
+     * Return a view of the bytes of a STRING or VARBINARY column, positioned at the
+     * start of the value with its limit at the end of the value. The buffer is owned
+     * by the cursor and reused for every call on the same column.
+     * @return The view, or null if the value is SQL <tt>null</tt>
+     * @see #wasNull()
+     */
+    public ByteBuffer getBytes(int columnIndex) {
+        validateColumnType(columnIndex, VoltType.STRING, VoltType.VARBINARY);
+        final int offset = offsetOf(columnIndex);
+        final int len = m_buffer.getInt(offset);
+        if (len == VoltTable.NULL_STRING_INDICATOR) {
+            m_wasNull = true;
+            return null;
+        }
+        m_wasNull = false;
+        ByteBuffer view = m_views[columnIndex];
+        if (view == null) {
+            view = m_buffer.asReadOnlyBuffer();
+            m_views[columnIndex] = view;
+        }
+        view.limit(offset + VoltTableRow.STRING_LEN_SIZE + len);
+        view.position(offset + VoltTableRow.STRING_LEN_SIZE);
+        return view;
+    }
+
+    /**
+     * Decode the value of a STRING column into <tt>holder</tt>, replacing its contents.
+     * @return <tt>holder</tt>, or null if the value is SQL <tt>null</tt>
+     * @see #wasNull()
+     */
+    public StringView getString(int columnIndex, StringView holder) {
+        validateColumnType(columnIndex, VoltType.STRING);
+        final ByteBuffer bytes = getBytes(columnIndex);
+        if (bytes == null) {
+            return null;
+        }
+        holder.decode(bytes);
+        return holder;
+    }
+
+    /** Validates that type and columnIndex match and a row is active. */
+    private void validateColumnType(int columnIndex, VoltType... types) {
+        if (columnIndex < 0 || columnIndex >= m_columnCount) {
+            throw new IndexOutOfBoundsException("Column index " + columnIndex +
+                    " is beyond number of columns " + m_columnCount);
+        }
+        final VoltType columnType = m_types[columnIndex];
+        for (VoltType type : types) {
+            if (columnType == type) {
+                return;
+            }
+        }
+        throw new IllegalArgumentException("Column index " + columnIndex + " is type " + columnType);
+    }
+
+    /**
+     * Offset of a column in the active row. Offsets are computed on demand and only
+     * as far as the requested column, so reading the leading columns of wide rows
+     * doesn't walk the whole row.
+     */
+    private int offsetOf(int columnIndex) {
+        if (m_activeRowIndex < 0 || m_activeRowIndex >= m_rowCount) {
+            throw new RuntimeException("VoltTableCursor.advance() must return true before any access.");
+        }
+        if (columnIndex < 0 || columnIndex >= m_columnCount) {
+            throw new IndexOutOfBoundsException("Column index " + columnIndex +
+                    " is beyond number of columns " + m_columnCount);
+        }
+        for (int i = m_calculatedOffsets; i <= columnIndex; i++) {
+            final int prev = m_offsets[i - 1];
+            final int width = m_widths[i - 1];
+            if (width >= 0) {
+                m_offsets[i] = prev + width;
+            }
+            else {
+                final int len = m_buffer.getInt(prev);
+                if (len == VoltTable.NULL_STRING_INDICATOR) {
+                    m_offsets[i] = prev + VoltTableRow.STRING_LEN_SIZE;
+                }
+                else if (len < 0) {
+                    throw new RuntimeException("Invalid object length for column: " + i);
+                }
+                else {
+                    m_offsets[i] = prev + VoltTableRow.STRING_LEN_SIZE + len;
+                }
+            }
+            m_calculatedOffsets = i + 1;
+        }
+        return m_offsets[columnIndex];
+    }
+
+    /**
+     * A reusable holder for decoded string values. The character storage grows to
+     * fit the longest value seen and is reused afterwards. Decoding takes a fast
+     * path for ASCII and otherwise uses a UTF-8 decoder owned by the holder.
+     */
+    public static final class StringView implements CharSequence {
+        private char[] m_chars;
+        private int m_length = 0;
+        private CharsetDecoder m_decoder = null;
+        private CharBuffer m_out = null;
+
+        public StringView() {
+            this(64);
+        }
+
+        public StringView(int initialCapacity) {
+            m_chars = new char[Math.max(initialCapacity, 1)];
+        }
+
+        void decode(ByteBuffer bytes) {
+            final int start = bytes.position();
+            final int len = bytes.remaining();
+            if (m_chars.length < len) {
+                m_chars = new char[Math.max(len, m_chars.length * 2)];
+                m_out = null;
+            }
+            // UTF-8 never produces more chars than bytes, ASCII is one to one
+            for (int i = 0; i < len; i++) {
+                final byte b = bytes.get(start + i);
+                if (b < 0) {
+                    decodeUTF8(bytes);
+                    return;
+                }
+                m_chars[i] = (char) b;
+            }
+            m_length = len;
+        }
+
+        private void decodeUTF8(ByteBuffer bytes) {
+            if (m_decoder == null) {
+                m_decoder = VoltTable.ROWDATA_ENCODING.newDecoder()
+                        .onMalformedInput(CodingErrorAction.REPLACE)
+                        .onUnmappableCharacter(CodingErrorAction.REPLACE);
+            }
+            final int start = bytes.position();
+            if (m_out == null) {
+                m_out = CharBuffer.wrap(m_chars);
+            }
+            final CharBuffer out = m_out;
+            out.clear();
+            m_decoder.reset();
+            CoderResult result = m_decoder.decode(bytes, out, true);
+            if (!result.isUnderflow()) {
+                throw new IllegalStateException("Unable to decode string value: " + result);
+            }
+            m_decoder.flush(out);
+            m_length = out.position();
+            bytes.position(start);
+        }
+
+        @Override
+        public int length() {
+            return m_length;
+        }
+
+        @Override
+        public char charAt(int index) {
+            if (index < 0 || index >= m_length) {
+                throw new IndexOutOfBoundsException("index = " + index + "; length = " + m_length);
+            }
+            return m_chars[index];
+        }
+
+        @Override
+        public CharSequence subSequence(int start, int end) {
+            if (start < 0 || end > m_length || start > end) {
+                throw new IndexOutOfBoundsException("start = " + start + ", end = " + end + "; length = " + m_length);
+            }
+            return new String(m_chars, start, end - start);
+        }
+
+        /**
+         * Compare the contents with another character sequence without allocating.
+         */
+        public boolean contentEquals(CharSequence other) {
+            if (other == null || other.length() != m_length) {
+                return false;
+            }
+            for (int i = 0; i < m_length; i++) {
+                if (m_chars[i] != other.charAt(i)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        @Override
+        public String toString() {
+            return new String(m_chars, 0, m_length);
+        }
+    }
+}
@@ -0,0 +1,174 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2017 VoltDB Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with VoltDB.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.voltdb.client;
+
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+import com.google_voltpatches.common.base.Throwables;
+
+/**
+ * Limit the requests a connection may have waiting on a response, adjusting the limit
+ * to the latency of the responses. While the moving average of the latency is within
+ * the target, every limit's worth of responses raise the limit by one. Once it isn't,
+ * or on a timeout or a response arriving while the connection can't write as fast as
+ * requests are queued, the limit is cut by a quarter, at most once per round trip.
+ *
+ * Taking and returning a permit don't lock, only a sender waiting for one parks.
+ */
+class AdaptiveLimiter {
+
+    static final int INITIAL_LIMIT = 20;
+    static final double BACKOFF = 0.75;
+
+    private final long m_targetLatencyNanos;
+    private final int m_maxLimit;
+    private final AtomicInteger m_outstanding = new AtomicInteger();
+    // raw bits of the double limit, so that each response can raise it by a fraction
+    private final AtomicLong m_limit = new AtomicLong(Double.doubleToRawLongBits(INITIAL_LIMIT));
+    // the responses to requests sent before the last cut don't tell anything new
+    private final AtomicLong m_averageLatencyNanos = new AtomicLong();
+    private final AtomicLong m_lastCutNanos = new AtomicLong(System.nanoTime());
+    private final ConcurrentLinkedQueue<Thread> m_waiters = new ConcurrentLinkedQueue<>();
+
+    AdaptiveLimiter(long targetLatencyNanos, int maxLimit) {
+        m_targetLatencyNanos = targetLatencyNanos;
+        m_maxLimit = maxLimit;
+        if (maxLimit < INITIAL_LIMIT) {
+            m_limit.set(Double.doubleToRawLongBits(maxLimit));
+        }
+    }
+
+    /** The number of requests that may be waiting on a response right now */
+    int getLimit() {
+        return (int) Double.longBitsToDouble(m_limit.get());
+    }
+
+    int getOutstanding() {
+        return m_outstanding.get();
+    }
+
+    boolean tryAcquire() {
+        while (true) {
+            final int outstanding = m_outstanding.get();
+            if (outstanding >= getLimit()) {
+                return false;
+            }
+            if (m_outstanding.compareAndSet(outstanding, outstanding + 1)) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Take a permit, waiting for up to timeoutNanos for one to be returned.
+     * @return the time as measured when the call returns
+     */
+    long acquire(long nowNanos, long timeoutNanos) throws TimeoutException {
+        if (tryAcquire()) {
+            return nowNanos;
+        }
+        final long deadline = nowNanos + timeoutNanos;
+        final Thread current = Thread.currentThread();
+        m_waiters.offer(current);
+        try {
+            // a permit returned between the offer and the park unparks this thread beforehand
+            while (!tryAcquire()) {
+                final long remaining = deadline - System.nanoTime();
+                if (remaining <= 0) {
+                    throw new TimeoutException();
+                }
+                LockSupport.parkNanos(this, remaining);
+                if (Thread.interrupted()) {
+                    Throwables.propagate(new InterruptedException());
+                }
+            }
+        } finally {
+            m_waiters.remove(current);
+        }
+        return System.nanoTime();
+    }
+
+    /**
+     * Return the permit of a request that got a response.
+     * @param latencyNanos the time from the request being sent to the response
+     * @param congested whether something other than the latency shows the server
+     * or the network falling behind
+     */
+    void release(long nowNanos, long latencyNanos, boolean congested) {
+        final int outstanding = m_outstanding.decrementAndGet();
+        if (congested || averageLatency(latencyNanos) > m_targetLatencyNanos) {
+            final long lastCut = m_lastCutNanos.get();
+            if (nowNanos - latencyNanos - lastCut > 0 && m_lastCutNanos.compareAndSet(lastCut, nowNanos)) {
+                while (true) {
+                    final long bits = m_limit.get();
+                    final double limit = Math.max(1.0, Double.longBitsToDouble(bits) * BACKOFF);
+                    if (m_limit.compareAndSet(bits, Double.doubleToRawLongBits(limit))) {
+                        break;
+                    }
+                }
+            }
+        } else {
+            while (true) {
+                final long bits = m_limit.get();
+                final double limit = Double.longBitsToDouble(bits);
+                // only a limit that is being used has shown it is not too low
+                if (outstanding + 1 < limit / 2 || limit >= m_maxLimit) {
+                    break;
+                }
+                if (m_limit.compareAndSet(bits, Double.doubleToRawLongBits(Math.min(m_maxLimit, limit + 1.0 / limit)))) {
+                    break;
+                }
+            }
+        }
+        wakeWaiter();
+    }
+
+    /**
+     * Add a latency to the moving average, weighing it an eighth.
+     * @return the new average
+     */
+    private long averageLatency(long latencyNanos) {
+        while (true) {
+            final long average = m_averageLatencyNanos.get();
+            final long updated = average + ((latencyNanos - average) >> 3);
+            if (m_averageLatencyNanos.compareAndSet(average, updated)) {
+                return updated;
+            }
+        }
+    }
+
+    /**
+     * Return the permit of a request that ended without a response telling
+     * anything about the latency, such as one failed by a lost connection.
+     */
+    void release() {
+        m_outstanding.decrementAndGet();
+        wakeWaiter();
+    }
+
+    private void wakeWaiter() {
+        final Thread waiter = m_waiters.peek();
+        if (waiter != null) {
+            LockSupport.unpark(waiter);
+        }
+    }
+}
@@ -57,6 +57,7 @@ public class ClientConfig {
     int m_maxTransactionsPerSecond = Integer.MAX_VALUE;
     boolean m_autoTune = false;
     int m_autoTuneTargetInternalLatency = 5;
+    int m_adaptiveLimitTargetLatency = 0;
     long m_procedureCallTimeoutNanos = DEFAULT_PROCEDURE_TIMOUT_NANOS;
     long m_connectionResponseTimeoutMS = DEFAULT_CONNECTION_TIMOUT_MS;
     boolean m_useClientAffinity = true;
@@ -340,6 +341,27 @@ public class ClientConfig {
         m_autoTune = true;
     }
 
+    /**
+     * <p>Adjust the number of transactions each connection may have outstanding to the
+     * round-trip latency of the responses. The limit starts low, rises while responses come
+     * back within the target latency and comes down quickly when they don't, when
+     * transactions time out or when the server stops reading requests as fast as the client
+     * sends them, so that a slowdown of the cluster doesn't pile up ever more queued
+     * transactions. The limit of a connection never goes above
+     * {@link #setMaxOutstandingTxns(int)}, which still caps all connections together.</p>
+     *
+     * <p>The current limit is reported by {@link ClientStats#getOutstandingLimit()}.</p>
+     *
+     * @param targetLatency Target round-trip latency in milliseconds.
+     */
+    public void enableAdaptiveLimit(int targetLatency) {
+        if (targetLatency < 1) {
+            throw new IllegalArgumentException(
+                    "Adaptive limit target latency must be greater than 0, " + targetLatency + " was specified");
+        }
+        m_adaptiveLimitTargetLatency = targetLatency;
+    }
+
     /**
      * <p>Attempts to route transactions to the correct master partition improving latency
      * and throughput</p>
@@ -367,7 +389,13 @@ public class ClientConfig {
      * <p>By default, reads are sent to the leader replica for each partition. This
      * is usually optimal for the default read consistency value, SAFE. If you are
      * using FAST reads, enabling this setting will load balance reads amongst
-     * partition replicas, often increasing throughput and decreasing latency.</p>
+     * partition replicas, often increasing throughput and decreasing latency.
+     * Each read goes to the replica with the fewest requests outstanding from this
+     * client. Reads of a partition that this client has unanswered writes to are
+     * sent to the leader instead, so they are never served by a replica that hasn't
+     * applied those writes yet. Ad hoc SQL isn't parsed by the client, so while any
+     * ad hoc call (including a SELECT) is unanswered, reads of every partition are
+     * sent to the leaders.</p>
      *
      * <p>See section <a href="https://docs.voltdb.com/AdminGuide/HostConfigDBOpts.php">
      * A.3.4 of the Administrators Guide</a> for info on SAFE vs. FAST.</p>
@@ -179,6 +179,9 @@ public final class ClientImpl implements Client {
             m_distributer.m_rateLimiter.setLimits(
                     config.m_maxTransactionsPerSecond, config.m_maxOutstandingTxns);
         }
+        if (config.m_adaptiveLimitTargetLatency > 0) {
+            m_distributer.enableAdaptiveLimit(config.m_adaptiveLimitTargetLatency, config.m_maxOutstandingTxns);
+        }
     }
 
     private boolean verifyCredentialsAreAlwaysTheSame(String username, byte[] hashedPassword) {
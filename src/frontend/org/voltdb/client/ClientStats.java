@@ -24,7 +24,9 @@ import java.util.Date;
 import java.util.Iterator;
 import java.util.concurrent.TimeUnit;
 
+import org.HdrHistogram_voltpatches.AbstractHistogram;
 import org.HdrHistogram_voltpatches.Histogram;
+import org.HdrHistogram_voltpatches.IntCountsHistogram;
 
 import com.google_voltpatches.common.base.Charsets;
 import com.google_voltpatches.common.base.Throwables;
@@ -74,6 +76,9 @@ public class ClientStats {
     long m_bytesSent;
     long m_bytesReceived;
 
+    // the adaptive limit of the connection(s) when the stats were taken
+    int m_outstandingLimit;
+
     private static final long LOWEST_TRACKABLE = 50;
     private static final long HIGHEST_TRACKABLE = 10L * (1000L * 1000L);
     private static final int SIGNIFICANT_VALUE_DIGITS = 2;
@@ -86,6 +91,13 @@ public class ClientStats {
         return new Histogram( LOWEST_TRACKABLE, HIGHEST_TRACKABLE, SIGNIFICANT_VALUE_DIGITS);
     }
 
+    static IntCountsHistogram constructIntervalHistogram() {
+        return new IntCountsHistogram(LOWEST_TRACKABLE, HIGHEST_TRACKABLE, SIGNIFICANT_VALUE_DIGITS);
+    }
+
+    // the histogram of stats that cover no invocations, never recorded into
+    private static final Histogram EMPTY_HISTOGRAM = constructHistogram();
+
     ClientStats() {
         m_procName = "";
         m_connectionId = -1;
@@ -100,6 +112,10 @@ public class ClientStats {
     }
 
     ClientStats(ClientStats other) {
+        this(other, other.m_latencyHistogram.copy());
+    }
+
+    private ClientStats(ClientStats other, Histogram latencyHistogram) {
         m_procName = other.m_procName;
         m_connectionId = other.m_connectionId;
         m_hostname = other.m_hostname;
@@ -112,16 +128,25 @@ public class ClientStats {
         m_invocationTimeouts = other.m_invocationTimeouts;
         m_roundTripTimeNanos = other.m_roundTripTimeNanos;
         m_clusterRoundTripTime = other.m_clusterRoundTripTime;
-        m_latencyHistogram = other.m_latencyHistogram.copy();
-        m_latencyHistogram.reestablishTotalCount();
+        m_latencyHistogram = latencyHistogram;
         m_bytesSent = other.m_bytesSent;
         m_bytesReceived = other.m_bytesReceived;
+        m_outstandingLimit = other.m_outstandingLimit;
     }
 
     static ClientStats diff(ClientStats newer, ClientStats older) {
         if ((newer.m_procName != older.m_procName) || (newer.m_connectionId != older.m_connectionId)) {
             throw new IllegalArgumentException("Can't diff these ClientStats instances.");
         }
+        if (newer == older) {
+            // the same snapshot, nothing happened in between
+            ClientStats retval = new ClientStats(newer, EMPTY_HISTOGRAM);
+            retval.m_invocationsCompleted = retval.m_invocationAborts = 0;
+            retval.m_invocationErrors = retval.m_invocationTimeouts = 0;
+            retval.m_roundTripTimeNanos = retval.m_clusterRoundTripTime = 0;
+            retval.m_bytesSent = retval.m_bytesReceived = 0;
+            return retval;
+        }
 
         ClientStats retval = new ClientStats();
         retval.m_procName = older.m_procName;
@@ -147,6 +172,8 @@ public class ClientStats {
         retval.m_bytesSent = newer.m_bytesSent - older.m_bytesSent;
         retval.m_bytesReceived = newer.m_bytesReceived - older.m_bytesReceived;
 
+        retval.m_outstandingLimit = newer.m_outstandingLimit;
+
         return retval;
     }
 
@@ -174,6 +201,12 @@ public class ClientStats {
     }
 
     void add(ClientStats other) {
+        // each connection has a limit, the procedures called on it share it
+        if (m_connectionId == other.m_connectionId) {
+            m_outstandingLimit = Math.max(m_outstandingLimit, other.m_outstandingLimit);
+        } else {
+            m_outstandingLimit += other.m_outstandingLimit;
+        }
         if (m_procName.equals(other.m_procName) == false)  m_procName = "";
         if (m_connectionId != other.m_connectionId) m_connectionId = -1;
         if (m_hostname.equals(other.m_hostname) == false) m_hostname = "";
@@ -197,25 +230,18 @@ public class ClientStats {
         m_bytesReceived += other.m_bytesReceived;
     }
 
-    void update(long roundTripTimeNanos, int clusterRoundTripTime, boolean abort, boolean error, boolean timeout) {
-        m_invocationsCompleted++;
-        if (abort) m_invocationAborts++;
-        if (error) m_invocationErrors++;
-        if (timeout) m_invocationTimeouts++;
-        m_roundTripTimeNanos += roundTripTimeNanos;
-        m_clusterRoundTripTime += clusterRoundTripTime;
-
+    static void recordLatency(AbstractHistogram latencyHistogram, long roundTripTimeNanos) {
         //Round up to 50 microseconds. Average is still accurate and it doesn't change the percentile distribution
         //above 50 micros
         final long roundTripMicros = Math.max(LOWEST_TRACKABLE, TimeUnit.NANOSECONDS.toMicros(roundTripTimeNanos));
         if (roundTripMicros > HIGHEST_TRACKABLE) {
-            m_latencyHistogram.recordValue(roundTripMicros % HIGHEST_TRACKABLE);
+            latencyHistogram.recordValue(roundTripMicros % HIGHEST_TRACKABLE);
             int count = (int)(roundTripMicros / HIGHEST_TRACKABLE);
             for (int ii = 0; ii < count; ii++) {
-                m_latencyHistogram.recordValue(HIGHEST_TRACKABLE);
+                latencyHistogram.recordValue(HIGHEST_TRACKABLE);
             }
         } else {
-            m_latencyHistogram.recordValue(roundTripMicros);
+            latencyHistogram.recordValue(roundTripMicros);
         }
     }
 
@@ -448,6 +474,18 @@ public class ClientStats {
         return m_bytesReceived;
     }
 
+    /**
+     * Return the number of transactions the connection may have outstanding when
+     * {@link ClientConfig#enableAdaptiveLimit(int)} is used, as of the end of the time
+     * period covered by this stats instance. This is the sum of the limits of the
+     * connections for statistics covering several connections.
+     *
+     * @return The limit on outstanding transactions or 0 if the limit is not adaptive.
+     */
+    public int getOutstandingLimit() {
+        return m_outstandingLimit;
+    }
+
     /**
      * <p>Using the latency bucketing statistics gathered by the client, estimate
      * the k-percentile latency value for the time period covered by this stats
@@ -24,6 +24,8 @@ import java.util.Map;
 import java.util.Map.Entry;
 import java.util.TreeMap;
 
+import org.HdrHistogram_voltpatches.HistogramLogWriter;
+
 /**
  * <p>An object to store and manipulate statistics information from
  * the VoltDB Java client. Each instance has a set of timestamped
@@ -271,6 +273,24 @@ public class ClientStatsContext {
         return ClientStats.merge(statsForProc);
     }
 
+    /**
+     * <p>Write the latency histogram of all procedures and connections for the time period
+     * currently covered by the context as an interval of an HdrHistogram log. Calling it after
+     * each {@link #fetchAndResetBaseline()} streams consecutive intervals to the log, which
+     * <code>LatencyLogger</code> and the HdrHistogram log tools can read. Latencies are in
+     * microseconds, the max value of each interval in milliseconds.</p>
+     *
+     * <p>Write the header of the log with <code>outputLogFormatVersion()</code>,
+     * <code>outputStartTime(long)</code> and <code>outputLegend()</code> before the first
+     * interval.</p>
+     *
+     * @param log The log to append the interval to.
+     */
+    public void writeLatencyHistogram(HistogramLogWriter log) {
+        log.outputIntervalHistogram(m_baselineTS / 1000.0, m_currentTS / 1000.0,
+                getStats().m_latencyHistogram, 1000.0);
+    }
+
     Map<Long, ClientIOStats> diffIO(Map<Long, ClientIOStats> newer, Map<Long, ClientIOStats> older) {
         Map<Long, ClientIOStats> retval = new TreeMap<Long, ClientIOStats>();
         if (newer == null) {
@@ -0,0 +1,135 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2017 VoltDB Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with VoltDB.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.voltdb.client;
+
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.TreeMap;
+
+import org.HdrHistogram_voltpatches.IntCountsHistogram;
+import org.HdrHistogram_voltpatches.WriterReaderPhaser;
+
+/**
+ * Records the invocations of one procedure on one connection, in the manner of
+ * HdrHistogram's Recorder. The network thread of the connection records into the
+ * active interval, which a snapshot swaps for the inactive one rather than copying
+ * it while it is being written.
+ *
+ * A snapshot adds the interval it swapped out to the last {@link ClientStats} it
+ * published and publishes the sum. Published instances are never modified, so
+ * until there is an invocation to add the same instance is handed to every
+ * snapshot, and a context diffing it against itself needs no histogram.
+ *
+ * Recorded into by one thread at a time.
+ */
+class ClientStatsRecorder {
+
+    private static class Interval {
+        long m_invocationsCompleted;
+        long m_invocationAborts;
+        long m_invocationErrors;
+        long m_invocationTimeouts;
+        long m_roundTripTimeNanos;
+        long m_clusterRoundTripTime;
+        // an interval's counts fit in an int, at half the size of the published histogram
+        final IntCountsHistogram m_latencyHistogram = ClientStats.constructIntervalHistogram();
+
+        void reset() {
+            m_invocationsCompleted = m_invocationAborts = m_invocationErrors = m_invocationTimeouts = 0;
+            m_roundTripTimeNanos = m_clusterRoundTripTime = 0;
+            m_latencyHistogram.reset();
+        }
+    }
+
+    private final WriterReaderPhaser m_phaser = new WriterReaderPhaser();
+    private volatile Interval m_active = new Interval();
+    private Interval m_inactive = new Interval();
+    private ClientStats m_published;
+
+    ClientStatsRecorder(String procName, long connectionId, String hostname, int port) {
+        m_published = new ClientStats();
+        m_published.m_procName = procName;
+        m_published.m_connectionId = connectionId;
+        m_published.m_hostname = hostname;
+        m_published.m_port = port;
+        m_published.m_startTS = System.currentTimeMillis();
+        m_published.m_endTS = Long.MIN_VALUE;
+    }
+
+    void update(long roundTripTimeNanos, int clusterRoundTripTime, boolean abort, boolean error, boolean timeout) {
+        final long criticalValueAtEnter = m_phaser.writerCriticalSectionEnter();
+        try {
+            final Interval interval = m_active;
+            interval.m_invocationsCompleted++;
+            if (abort) interval.m_invocationAborts++;
+            if (error) interval.m_invocationErrors++;
+            if (timeout) interval.m_invocationTimeouts++;
+            interval.m_roundTripTimeNanos += roundTripTimeNanos;
+            interval.m_clusterRoundTripTime += clusterRoundTripTime;
+            ClientStats.recordLatency(interval.m_latencyHistogram, roundTripTimeNanos);
+        } finally {
+            m_phaser.writerCriticalSectionExit(criticalValueAtEnter);
+        }
+    }
+
+    /**
+     * @param outstandingLimit the limit of the connection to report with the stats
+     * @return the stats of everything recorded so far, not to be modified
+     */
+    synchronized ClientStats snapshot(int outstandingLimit) {
+        m_phaser.readerLock();
+        try {
+            final Interval sampled = m_active;
+            m_active = m_inactive;
+            m_inactive = sampled;
+            // wait out the recording that may have started on the sampled interval
+            m_phaser.flipPhase(500000L);
+        } finally {
+            m_phaser.readerUnlock();
+        }
+
+        final Interval interval = m_inactive;
+        if (interval.m_invocationsCompleted == 0 && m_published.m_outstandingLimit == outstandingLimit) {
+            return m_published;
+        }
+        final ClientStats published = new ClientStats(m_published);
+        published.m_invocationsCompleted += interval.m_invocationsCompleted;
+        published.m_invocationAborts += interval.m_invocationAborts;
+        published.m_invocationErrors += interval.m_invocationErrors;
+        published.m_invocationTimeouts += interval.m_invocationTimeouts;
+        published.m_roundTripTimeNanos += interval.m_roundTripTimeNanos;
+        published.m_clusterRoundTripTime += interval.m_clusterRoundTripTime;
+        published.m_latencyHistogram.add(interval.m_latencyHistogram);
+        published.m_outstandingLimit = outstandingLimit;
+        interval.reset();
+        m_published = published;
+        return published;
+    }
+
+    /**
+     * Take a snapshot of the recorders of a connection.
+     * @return a map from procedure name to the stats of the procedure
+     */
+    static Map<String, ClientStats> snapshot(Map<String, ClientStatsRecorder> recorders, int outstandingLimit) {
+        Map<String, ClientStats> retval = new TreeMap<>();
+        for (Entry<String, ClientStatsRecorder> e : recorders.entrySet()) {
+            retval.put(e.getKey(), e.getValue().snapshot(outstandingLimit));
+        }
+        return retval;
+    }
+}
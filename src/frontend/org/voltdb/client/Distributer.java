@@ -137,6 +137,13 @@ class Distributer {
     private final Map<Integer, NodeConnection> m_partitionMasters = new HashMap<>();
     private final Map<Integer, NodeConnection[]> m_partitionReplicas = new HashMap<>();
     private final Map<Integer, NodeConnection> m_hostIdToConnection = new HashMap<>();
+    /*
+     * Writes sent to each partition that haven't been answered yet, MP writes are counted
+     * under MP_INIT_PID. While a partition has outstanding writes its reads go to the leader,
+     * so a read is never answered by a replica that hasn't seen a write this client sent
+     * earlier. Only maintained when reads are sent to replicas.
+     */
+    private final ConcurrentMap<Integer, AtomicInteger> m_outstandingWrites = new ConcurrentHashMap<>();
     private final AtomicReference<ImmutableSortedMap<String, Procedure>> m_procedureInfo =
                                 new AtomicReference<ImmutableSortedMap<String, Procedure>>();
     private final AtomicReference<ImmutableSet<Integer>> m_partitionKeys = new AtomicReference<ImmutableSet<Integer>>();
@@ -153,6 +160,9 @@ class Distributer {
         new HashMap<>();
 
     public final RateLimiter m_rateLimiter = new RateLimiter();
+    // When set, the requests each connection may have waiting on a response follow the latency
+    private volatile long m_adaptiveLimitTargetNanos = 0;
+    private volatile int m_adaptiveLimitMax = Integer.MAX_VALUE;
 
     private final AtomicReference<ImmutableSet<Integer>> m_unconnectedHosts = new AtomicReference<ImmutableSet<Integer>>();
     private AtomicBoolean m_createConnectionUponTopoChangeInProgress = new AtomicBoolean(false);
@@ -409,12 +419,14 @@ class Distributer {
     class NodeConnection extends VoltProtocolHandler implements org.voltcore.network.QueueMonitor {
         private final AtomicInteger m_callbacksToInvoke = new AtomicInteger(0);
         private final ConcurrentMap<Long, CallbackBookeeping> m_callbacks = new ConcurrentHashMap<>();
-        private final NonBlockingHashMap<String, ClientStats> m_stats = new NonBlockingHashMap<>();
+        private final NonBlockingHashMap<String, ClientStatsRecorder> m_stats = new NonBlockingHashMap<>();
         private Connection m_connection;
         private volatile boolean m_isConnected = true;
 
         volatile long m_lastResponseTimeNanos = System.nanoTime();
         boolean m_outstandingPing = false;
+        final AdaptiveLimiter m_adaptiveLimiter = m_adaptiveLimitTargetNanos > 0 ?
+                new AdaptiveLimiter(m_adaptiveLimitTargetNanos, m_adaptiveLimitMax) : null;
         ClientStatusListenerExt.DisconnectCause m_closeCause = DisconnectCause.CONNECTION_CLOSED;
 
         public NodeConnection(long ids[]) {}
@@ -457,6 +469,18 @@ class Distributer {
                 return;
             }
 
+            // then wait for the connection to have room for one more outstanding request
+            if (m_adaptiveLimiter != null && !ignoreBackpressure) {
+                try {
+                    afterRateLimitNanos = m_adaptiveLimiter.acquire(afterRateLimitNanos,
+                            timeoutTime - afterRateLimitNanos);
+                } catch (TimeoutException e) {
+                    final long deltaNanos = Math.max(1, System.nanoTime() - nowNanos);
+                    invokeCallbackWithTimeout(name, callback, deltaNanos, System.nanoTime(), timeoutNanos, handle, ignoreBackpressure);
+                    return;
+                }
+            }
+
             assert(m_callbacks.containsKey(handle) == false);
 
             //Drain needs to know when all callbacks have been invoked
@@ -499,6 +523,7 @@ class Distributer {
 
                 //for bookkeeping, but it feels dishonest to call this here
                 m_rateLimiter.transactionResponseReceived(nowNanos, -1, ignoreBackpressure);
+                releaseAdaptivePermit(ignoreBackpressure);
                 return;
             } else {
                 m_connection.writeStream().enqueue(c);
@@ -541,9 +566,23 @@ class Distributer {
 
             final long deltaNanos = Math.max(1, nowNanos - cb.timestampNanos);
 
+            if (m_adaptiveLimiter != null && !cb.ignoreBackpressure) {
+                m_adaptiveLimiter.release(nowNanos, deltaNanos, true);
+            }
             invokeCallbackWithTimeout(cb.name, cb.callback, deltaNanos, nowNanos, cb.procedureTimeoutNanos, handle, cb.ignoreBackpressure);
         }
 
+        private void releaseAdaptivePermit(boolean ignoreBackpressure) {
+            if (m_adaptiveLimiter != null && !ignoreBackpressure) {
+                m_adaptiveLimiter.release();
+            }
+        }
+
+        /** The requests this connection may have waiting on a response, 0 when that isn't adaptive */
+        int getOutstandingLimit() {
+            return m_adaptiveLimiter == null ? 0 : m_adaptiveLimiter.getLimit();
+        }
+
         /*
          * Factor out the boilerplate involved in invoking a callback with a timeout response
          */
@@ -618,15 +657,10 @@ class Distributer {
                 boolean abort,
                 boolean failure,
                 boolean timeout) {
-            ClientStats stats = m_stats.get(procName);
+            ClientStatsRecorder stats = m_stats.get(procName);
             if (stats == null) {
-                stats = new ClientStats();
-                stats.m_connectionId = connectionId();
-                stats.m_hostname = m_connection.getHostnameOrIP();
-                stats.m_port = m_connection.getRemotePort();
-                stats.m_procName = procName;
-                stats.m_startTS = System.currentTimeMillis();
-                stats.m_endTS = Long.MIN_VALUE;
+                stats = new ClientStatsRecorder(procName, connectionId(),
+                        m_connection.getHostnameOrIP(), m_connection.getRemotePort());
                 m_stats.put(procName, stats);
             }
             stats.update(roundTripNanos, clusterRoundTrip, abort, failure, timeout);
@@ -710,6 +744,10 @@ class Distributer {
 
                 int clusterRoundTrip = response.getClusterRoundtrip();
                 m_rateLimiter.transactionResponseReceived(nowNanos, clusterRoundTrip, stuff.ignoreBackpressure);
+                if (m_adaptiveLimiter != null && !stuff.ignoreBackpressure) {
+                    m_adaptiveLimiter.release(nowNanos, deltaNanos,
+                            status == ClientResponse.SERVER_UNAVAILABLE || hadBackPressure());
+                }
                 updateStats(stuff.name, deltaNanos, clusterRoundTrip, abort, error, false);
                 response.setClientRoundtrip(deltaNanos);
                 assert(response.getHashes() == null) : "A determinism hash snuck into the client wire protocol";
@@ -734,6 +772,11 @@ class Distributer {
             return m_connection.writeStream().hadBackPressure();
         }
 
+        /** Number of requests sent on this connection that are still waiting on a response */
+        int getOutstandingRequestCount() {
+            return m_callbacksToInvoke.get();
+        }
+
         public void setConnection(Connection c) {
             m_connection = c;
             for (ClientStatusListenerExt listener : m_listeners) {
@@ -855,6 +898,7 @@ class Distributer {
                 assert(remainingToInvoke >= 0);
 
                 m_rateLimiter.transactionResponseReceived(System.nanoTime(), -1, callBk.ignoreBackpressure);
+                releaseAdaptivePermit(callBk.ignoreBackpressure);
             }
         }
 
@@ -1144,6 +1188,7 @@ class Distributer {
 
         NodeConnection cxn = null;
         boolean backpressure = true;
+        Integer writePartition = null;
 
         /*
          * Synchronization is necessary to ensure that m_connections is not modified
@@ -1183,19 +1228,11 @@ class Distributer {
                      * If the procedure is read only and single part and the user wants it, load balance across replicas
                      * This is probably slower for SAFE consistency.
                      */
-                    if (!procedureInfo.multiPart && procedureInfo.readOnly && m_sendReadsToReplicasBytDefaultIfCAEnabled) {
+                    if (!procedureInfo.multiPart && procedureInfo.readOnly && m_sendReadsToReplicasBytDefaultIfCAEnabled &&
+                            !hasOutstandingWrites(hashedPartition)) {
                         NodeConnection partitionReplicas[] = m_partitionReplicas.get(hashedPartition);
                         if (partitionReplicas != null && partitionReplicas.length > 0) {
-                            cxn = partitionReplicas[ThreadLocalRandom.current().nextInt(partitionReplicas.length)];
-                            if (cxn.hadBackPressure()) {
-                                //See if there is one without backpressure, make sure it's still connected
-                                for (NodeConnection nc : partitionReplicas) {
-                                    if (!nc.hadBackPressure() && nc.m_isConnected) {
-                                        cxn = nc;
-                                        break;
-                                    }
-                                }
-                            }
+                            cxn = leastLoadedReplica(partitionReplicas);
                             if (!cxn.hadBackPressure() || ignoreBackpressure) {
                                 backpressure = false;
                             }
@@ -1216,6 +1253,15 @@ class Distributer {
                     // and let the round-robin choice pick a connection
                     cxn = null;
                 }
+                if (m_sendReadsToReplicasBytDefaultIfCAEnabled) {
+                    if (procedureInfo != null && !procedureInfo.readOnly) {
+                        writePartition = hashedPartition;
+                    } else if (procedureInfo == null && invocation.getProcName().startsWith("@AdHoc")) {
+                        // ad hoc SQL may write to any partition and isn't parsed here,
+                        // so count it like a multi-partition write until it's answered
+                        writePartition = Constants.MP_INIT_PID;
+                    }
+                }
                 ClientAffinityStats stats = m_clientAffinityStats.get(hashedPartition);
                 if (stats == null) {
                     stats = new ClientAffinityStats(hashedPartition, 0, 0, 0, 0);
@@ -1270,6 +1316,9 @@ class Distributer {
             } catch (Exception e) {
                 Throwables.propagate(e);
             }
+            if (writePartition != null) {
+                cb = trackOutstandingWrite(writePartition, cb);
+            }
             cxn.createWork(nowNanos, invocation.getHandle(), invocation.getProcName(), buf, cb, ignoreBackpressure, timeoutNanos);
         }
         if (m_topologyChangeAware) {
@@ -1278,6 +1327,62 @@ class Distributer {
         return !backpressure;
     }
 
+    /**
+     * Pick the replica connection with the fewest requests waiting on a response,
+     * preferring connected ones without backpressure. Ties are broken from a random
+     * starting point so equally loaded replicas share the reads.
+     */
+    private static NodeConnection leastLoadedReplica(NodeConnection[] replicas) {
+        final int start = ThreadLocalRandom.current().nextInt(replicas.length);
+        NodeConnection best = null;
+        int bestOutstanding = Integer.MAX_VALUE;
+        boolean bestUsable = false;
+        for (int i = 0; i < replicas.length; i++) {
+            final NodeConnection nc = replicas[(start + i) % replicas.length];
+            final boolean usable = nc.m_isConnected && !nc.hadBackPressure();
+            final int outstanding = nc.getOutstandingRequestCount();
+            if (best == null || (usable && !bestUsable) ||
+                    (usable == bestUsable && outstanding < bestOutstanding)) {
+                best = nc;
+                bestOutstanding = outstanding;
+                bestUsable = usable;
+            }
+        }
+        return best;
+    }
+
+    private boolean hasOutstandingWrites(int partition) {
+        AtomicInteger writes = m_outstandingWrites.get(partition);
+        if (writes != null && writes.get() > 0) {
+            return true;
+        }
+        writes = m_outstandingWrites.get(Constants.MP_INIT_PID);
+        return writes != null && writes.get() > 0;
+    }
+
+    /**
+     * Count a write as outstanding against its partition until its callback runs.
+     */
+    private ProcedureCallback trackOutstandingWrite(int partition, final ProcedureCallback cb) {
+        AtomicInteger writes = m_outstandingWrites.get(partition);
+        if (writes == null) {
+            writes = new AtomicInteger();
+            AtomicInteger existing = m_outstandingWrites.putIfAbsent(partition, writes);
+            if (existing != null) {
+                writes = existing;
+            }
+        }
+        final AtomicInteger outstanding = writes;
+        outstanding.incrementAndGet();
+        return new ProcedureCallback() {
+            @Override
+            public void clientCallback(ClientResponse response) throws Exception {
+                outstanding.decrementAndGet();
+                cb.clientCallback(response);
+            }
+        };
+    }
+
     /**
      * Shutdown the VoltNetwork allowing the Ports to close and free resources
      * like memory pools
@@ -1328,6 +1433,18 @@ class Distributer {
         return m_listeners.remove(listener);
     }
 
+    /**
+     * Let each connection have as many requests waiting on a response as the latency of
+     * the responses allows, instead of only the fixed limit of all connections. Applies
+     * to connections created afterwards.
+     * @param targetLatencyMillis the round trip latency above which the limit comes down
+     * @param maxOutstanding the highest the limit of a connection may go
+     */
+    void enableAdaptiveLimit(int targetLatencyMillis, int maxOutstanding) {
+        m_adaptiveLimitMax = maxOutstanding;
+        m_adaptiveLimitTargetNanos = TimeUnit.MILLISECONDS.toNanos(targetLatencyMillis);
+    }
+
     ClientStatsContext createStatsContext() {
         return new ClientStatsContext(this, getStatsSnapshot(), getIOStatsSnapshot(),
                 getAffinityStatsSnapshot());
@@ -1338,11 +1455,7 @@ class Distributer {
                 new TreeMap<>();
 
             for (NodeConnection conn : m_connections) {
-                Map<String, ClientStats> connMap = new TreeMap<>();
-                for (Entry<String, ClientStats> e : conn.m_stats.entrySet()) {
-                    connMap.put(e.getKey(), (ClientStats) e.getValue().clone());
-                }
-                retval.put(conn.connectionId(), connMap);
+                retval.put(conn.connectionId(), ClientStatsRecorder.snapshot(conn.m_stats, conn.getOutstandingLimit()));
             }
 
 
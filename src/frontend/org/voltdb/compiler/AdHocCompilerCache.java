@@ -18,12 +18,10 @@
 package org.voltdb.compiler;
 
 import java.io.Serializable;
-import java.util.ArrayList;
-import java.util.LinkedHashMap;
 import java.util.List;
-import java.util.Map;
 import java.util.Timer;
 import java.util.TimerTask;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 import org.voltdb.common.Constants;
 import org.voltdb.planner.BoundPlan;
@@ -31,6 +29,8 @@ import org.voltdb.utils.Encoder;
 
 import com.google_voltpatches.common.cache.Cache;
 import com.google_voltpatches.common.cache.CacheBuilder;
+import com.google_voltpatches.common.cache.CacheStats;
+import com.google_voltpatches.common.cache.Weigher;
 
 /**
  * Keep a cache two level cache of plans generated by the Ad Hoc
@@ -83,22 +83,24 @@ public class AdHocCompilerCache implements Serializable {
     final long MAX_LITERAL_MEM  = Long.getLong("ADHOC_COMPILER_CACHE_MAX_LITERAL_MEM_BYTES", 32*1024*1024);
     final int MAX_CORE_ENTRIES;
 
+    /*
+     * Both caches are read without a lock so cache hits from concurrent planning
+     * threads don't wait on each other or on a plan being inserted. Eviction is
+     * least recently used per cache segment rather than across the whole cache.
+     */
     /** cache of literals to full plans */
-    final Map<String, AdHocPlannedStatement> m_literalCache;
+    final Cache<String, AdHocPlannedStatement> m_literalCache;
     /** cache of parameterized plan descriptions to one or more core parameterized plans,
      *  each plan optionally has its own requirements for which parameters need to be bound
-     *  to what values to enable its specialized (expression-indexed) plan. */
-    final Map<String, List<BoundPlan> > m_coreCache;
+     *  to what values to enable its specialized (expression-indexed) plan.
+     *  The lists are only appended to, under the cache monitor, while readers iterate them. */
+    final Cache<String, List<BoundPlan> > m_coreCache;
 
     // placeholder stats used during development that may/may not survive
-    long m_literalHits = 0;
-    long m_literalQueries = 0;
     long m_literalInsertions = 0;
-    long m_literalEvictions = 0;
-    long m_planHits = 0;
-    long m_planQueries = 0;
     long m_planInsertions = 0;
-    long m_planEvictions = 0;
+    CacheStats m_lastLiteralStats = new CacheStats(0, 0, 0, 0, 0, 0);
+    CacheStats m_lastPlanStats = new CacheStats(0, 0, 0, 0, 0, 0);
 
     /** {@see this#startPeriodicStatsPrinting() } */
     Timer m_statsTimer = null;
@@ -120,84 +122,25 @@ public class AdHocCompilerCache implements Serializable {
         MAX_LITERAL_ENTRIES = maxLiteralEntries;
         MAX_CORE_ENTRIES = maxCoreEntries;
 
-        // an LRU cache map
-        m_literalCache = new AdHocStatementCache(MAX_LITERAL_ENTRIES, MAX_LITERAL_MEM);
-
-        // an LRU cache map
-        m_coreCache = new LinkedHashMap<String, List<BoundPlan> >(MAX_CORE_ENTRIES * 2, .75f, true) {
-            private static final long serialVersionUID = 1L;
-
-            // This method is called just after a new entry has been added
-            @Override
-            public boolean removeEldestEntry(Map.Entry<String, List<BoundPlan> > eldest) {
-                if (size() > MAX_CORE_ENTRIES) {
-                    ++m_planEvictions;
-                    return true;
-                }
-                return false;
-            }
-
-        };
-    }
-
-    // define a LinkedHashMap based LRU cache bounds by both entry number and entry value on-heap size
-    // without changing Map.Entry, only works for value of type AdHocPlannedStatement
-    // only extend put, remove,clear and removeEldestEntry methods to account weight
-    public class AdHocStatementCache extends LinkedHashMap<String, AdHocPlannedStatement>{
-       private static final long serialVersionUID = 2988383448026641836L;
-        private final int maxEntries;
-        private final long maxMemory; // in bytes
-        private long currentMemory;   // in bytes
-
-        public AdHocStatementCache() {
-            // default max entry of 1000
-            // default max value size of 32MB
-            this(1000, 32 * 1024 * 1024);
-        }
-
-        public AdHocStatementCache(final int maxEntries) {
-            this(maxEntries, 32 * 1024 * 1024);
-        }
-
-        public AdHocStatementCache(final int maxEntries, final long maxMemory) {
-            // set accessOrder to true for LRU
-            super(maxEntries * 2, .75f, true);
-            this.maxEntries = maxEntries;
-            this.maxMemory = maxMemory;
-            this.currentMemory = 0;
-        }
-
-        // This method is called just after a new entry has been added
-        @Override
-        public boolean removeEldestEntry(final Map.Entry<String, AdHocPlannedStatement> eldest) {
-            if ((size() > maxEntries) || (this.currentMemory > this.maxMemory))  {
-                ++m_literalEvictions;
-                this.currentMemory -= eldest.getValue().getSerializedSize();
-                return true;
-            }
-            return false;
-        }
-
-        @Override
-        public AdHocPlannedStatement put(String key, AdHocPlannedStatement value) {
-            this.currentMemory += value.getSerializedSize();
-            return super.put(key,value);
-        }
-
-        @Override
-        public AdHocPlannedStatement remove(Object key) {
-            AdHocPlannedStatement value = super.remove(key);
-            if (value != null) {
-                this.currentMemory -= value.getSerializedSize();
-            }
-            return value;
-        }
-
-        @Override
-        public void clear() {
-            super.clear();
-            this.currentMemory = 0;
-        }
+        // an LRU cache bound by both entry number and entry on-heap size: every entry weighs
+        // at least its share of the memory limit, so no more than MAX_LITERAL_ENTRIES fit
+        final int minWeight = (int) Math.max(1, MAX_LITERAL_MEM / MAX_LITERAL_ENTRIES);
+        m_literalCache = CacheBuilder.newBuilder()
+                .maximumWeight(MAX_LITERAL_MEM)
+                .weigher(new Weigher<String, AdHocPlannedStatement>() {
+                    @Override
+                    public int weigh(String sql, AdHocPlannedStatement plan) {
+                        return Math.max(minWeight, plan.getSerializedSize());
+                    }
+                })
+                .recordStats()
+                .build();
+
+        // an LRU cache
+        m_coreCache = CacheBuilder.newBuilder()
+                .maximumSize(MAX_CORE_ENTRIES)
+                .recordStats()
+                .build();
     }
 
     /**
@@ -205,38 +148,33 @@ public class AdHocCompilerCache implements Serializable {
      * Probably shouldn't live past real stats integration.
      */
     synchronized void printStats() {
+        final CacheStats literalStats = m_literalCache.stats();
+        final CacheStats planStats = m_coreCache.stats();
+        final CacheStats literals = literalStats.minus(m_lastLiteralStats);
+        final CacheStats plans = planStats.minus(m_lastPlanStats);
         String line1 = String.format("CACHE STATS - Literals: Hits %d/%d (%.1f%%), Inserts %d Evictions %d\n",
-                m_literalHits, m_literalQueries, (m_literalHits * 100.0) / m_literalQueries,
-                m_literalInsertions, m_literalEvictions);
+                literals.hitCount(), literals.requestCount(), literals.hitRate() * 100.0,
+                m_literalInsertions, literals.evictionCount());
         String line2 = String.format("CACHE STATS - Plans:    Hits %d/%d (%.1f%%), Inserts %d Evictions %d\n",
-                m_planHits, m_planQueries, (m_planHits * 100.0) /m_planQueries,
-                m_planInsertions, m_planEvictions);
+                plans.hitCount(), plans.requestCount(), plans.hitRate() * 100.0,
+                m_planInsertions, plans.evictionCount());
 
         System.out.print(line1 + line2);
         System.out.flush();
 
         // reset these
-        m_literalHits = 0;
-        m_literalQueries = 0;
+        m_lastLiteralStats = literalStats;
+        m_lastPlanStats = planStats;
         m_literalInsertions = 0;
-        m_literalEvictions = 0;
-        m_planHits = 0;
-        m_planQueries = 0;
         m_planInsertions = 0;
-        m_planEvictions = 0;
     }
 
     /**
      * @param sql SQL literal
      * @return full, ready-to-go plan
      */
-    public synchronized AdHocPlannedStatement getWithSQL(String sql) {
-        ++m_literalQueries;
-        AdHocPlannedStatement retval = m_literalCache.get(sql);
-        if (retval != null) {
-            ++m_literalHits;
-        }
-        return retval;
+    public AdHocPlannedStatement getWithSQL(String sql) {
+        return m_literalCache.getIfPresent(sql);
     }
 
     /**
@@ -244,13 +182,8 @@ public class AdHocCompilerCache implements Serializable {
      * SQL statement
      * @return A CorePlan that needs parameter values to run.
      */
-    public synchronized List<BoundPlan> getWithParsedToken(String parsedToken) {
-        ++m_planQueries;
-        List<BoundPlan> retval = m_coreCache.get(parsedToken);
-        if (retval != null) {
-            ++m_planHits;
-        }
-        return retval;
+    public List<BoundPlan> getWithParsedToken(String parsedToken) {
+        return m_coreCache.getIfPresent(parsedToken);
     }
 
     /**
@@ -296,9 +229,11 @@ public class AdHocCompilerCache implements Serializable {
             BoundPlan matched = null;
             BoundPlan unmatched = new BoundPlan(planIn.core, planIn.parameterBindings(extractedLiterals));
             // deal with the parameterized plan cache first
-            List<BoundPlan> boundVariants = m_coreCache.get(parsedToken);
+            List<BoundPlan> boundVariants = m_coreCache.asMap().get(parsedToken);
             if (boundVariants == null) {
-                boundVariants = new ArrayList<BoundPlan>();
+                // published with its first plan so readers never see an empty list
+                boundVariants = new CopyOnWriteArrayList<BoundPlan>();
+                boundVariants.add(unmatched);
                 m_coreCache.put(parsedToken, boundVariants);
                 // Note that there is an edge case in which more than one plan is getting counted as one
                 // "plan insertion". This only happens when two different plans arose from the same parameterized
@@ -322,17 +257,17 @@ public class AdHocCompilerCache implements Serializable {
                         plan.setBoundConstants(matched.m_constants);
                     }
                 }
-            }
-            if (matched == null) {
-                // Don't count insertions (of possibly repeated tokens) here
-                //  -- see the comment above where only UNIQUE token insertions are being counted, instead.
-                boundVariants.add(unmatched);
+                else {
+                    // Don't count insertions (of possibly repeated tokens) here
+                    //  -- see the comment above where only UNIQUE token insertions are being counted, instead.
+                    boundVariants.add(unmatched);
+                }
             }
         }
 
         // then deal with the L1 cache
         if (! hasUserQuestionMarkParameters) {
-            AdHocPlannedStatement cachedPlan = m_literalCache.get(sql);
+            AdHocPlannedStatement cachedPlan = m_literalCache.asMap().get(sql);
             if (cachedPlan == null) {
                 //* enable to debug */ System.out.println("DEBUG: Caching literal '" + sql + "'");
                 m_literalCache.put(sql, plan);
@@ -365,7 +300,7 @@ public class AdHocCompilerCache implements Serializable {
      * @return  literal cache size as a count
      */
     public int getLiteralCacheSize() {
-        return m_literalCache.size();
+        return (int) m_literalCache.size();
     }
 
     /**
@@ -373,6 +308,6 @@ public class AdHocCompilerCache implements Serializable {
      * @return  core cache size as a count
      */
     public int getCoreCacheSize() {
-        return m_coreCache.size();
+        return (int) m_coreCache.size();
     }
 }
@@ -46,14 +46,19 @@ import org.voltdb.utils.Encoder;
  * interactively accept SQL and outputs plans on standard out.
  *
  * Used only for ad hoc queries.
+ *
+ * Planning can be called from many threads at once. Parsing and planning a
+ * statement is serialized by the global lock taken in {@link QueryPlanner},
+ * which also covers the HSQL session, but statements answered from the
+ * plan cache don't wait for planning in progress.
  */
 public class PlannerTool {
     private static final VoltLogger hostLog = new VoltLogger("HOST");
     private static final VoltLogger compileLog = new VoltLogger("COMPILE");
 
-    private Database m_database;
-    private byte[] m_catalogHash;
-    private AdHocCompilerCache m_cache;
+    private volatile Database m_database;
+    private volatile byte[] m_catalogHash;
+    private volatile AdHocCompilerCache m_cache;
 
     private final HSQLInterface m_hsql;
 
@@ -126,7 +131,7 @@ public class PlannerTool {
     /**
      * Stripped down compile that is ONLY used to plan default procedures.
      */
-    public synchronized CompiledPlan planSqlCore(String sql, StatementPartitioning partitioning) {
+    public CompiledPlan planSqlCore(String sql, StatementPartitioning partitioning) {
         TrivialCostModel costModel = new TrivialCostModel();
         DatabaseEstimates estimates = new DatabaseEstimates();
 
@@ -163,12 +168,18 @@ public class PlannerTool {
         return plan;
     }
 
-    public synchronized AdHocPlannedStatement planSql(String sqlIn, StatementPartitioning partitioning,
+    public AdHocPlannedStatement planSql(String sqlIn, StatementPartitioning partitioning,
             boolean isExplainMode, final Object[] userParams, boolean isSwapTables, boolean isLargeQuery) {
 
+        // Read once, a catalog update without schema change may swap these while planning
+        final Database database = m_database;
+        final byte[] catalogHash = m_catalogHash;
+        final AdHocCompilerCache cache = m_cache;
+
         CacheUse cacheUse = CacheUse.FAIL;
+        Long statsStartTime = null;
         if (m_plannerStats != null) {
-            m_plannerStats.startStatsCollection();
+            statsStartTime = m_plannerStats.startConcurrentStatsCollection();
         }
         boolean hasUserQuestionMark = false;
         boolean wrongNumberParameters = false;
@@ -192,7 +203,7 @@ public class PlannerTool {
             // point it seems worthwhile to cache such plans, we can explore it.
             if (partitioning.isInferred() && !isLargeQuery) {
                 // Check the literal cache for a match.
-                AdHocPlannedStatement cachedPlan = m_cache.getWithSQL(sqlIn);
+                AdHocPlannedStatement cachedPlan = cache.getWithSQL(sqlIn);
                 if (cachedPlan != null) {
                     cacheUse = CacheUse.HIT1;
                     return cachedPlan;
@@ -219,7 +230,7 @@ public class PlannerTool {
                     sql,
                     "PlannerTool",
                     "PlannerToolProc",
-                    m_database,
+                    database,
                     partitioning,
                     m_hsql,
                     estimates,
@@ -257,7 +268,7 @@ public class PlannerTool {
                     // QueryPlanner.
                     assert(parsedToken != null);
                     extractedLiterals = planner.extractedParamLiteralValues();
-                    List<BoundPlan> boundVariants = m_cache.getWithParsedToken(parsedToken);
+                    List<BoundPlan> boundVariants = cache.getWithParsedToken(parsedToken);
                     if (boundVariants != null) {
                         assert( ! boundVariants.isEmpty());
                         BoundPlan matched = null;
@@ -285,7 +296,7 @@ public class PlannerTool {
                                                                                    null);
                             ahps.setBoundConstants(matched.m_constants);
                             // parameterized plan from the cache does not have exception
-                            m_cache.put(sql, parsedToken, ahps, extractedLiterals, hasUserQuestionMark, false);
+                            cache.put(sql, parsedToken, ahps, extractedLiterals, hasUserQuestionMark, false);
                             cacheUse = CacheUse.HIT2;
                             return ahps;
                         }
@@ -317,7 +328,7 @@ public class PlannerTool {
             //////////////////////
             // OUTPUT THE RESULT
             //////////////////////
-            CorePlan core = new CorePlan(plan, m_catalogHash);
+            CorePlan core = new CorePlan(plan, catalogHash);
             AdHocPlannedStatement ahps = new AdHocPlannedStatement(plan, core);
 
             // Do not put wrong parameter explain query into cache.
@@ -334,13 +345,14 @@ public class PlannerTool {
 
                 assert(parsedToken != null);
                 // Again, plans with inferred partitioning are the only ones supported in the cache.
-                m_cache.put(sqlIn, parsedToken, ahps, extractedLiterals, hasUserQuestionMark, planHasExceptionsWhenParameterized);
+                cache.put(sqlIn, parsedToken, ahps, extractedLiterals, hasUserQuestionMark, planHasExceptionsWhenParameterized);
             }
             return ahps;
         }
         finally {
             if (m_plannerStats != null) {
-                m_plannerStats.endStatsCollection(m_cache.getLiteralCacheSize(), m_cache.getCoreCacheSize(), cacheUse, -1);
+                m_plannerStats.endConcurrentStatsCollection(statsStartTime,
+                        cache.getLiteralCacheSize(), cache.getCoreCacheSize(), cacheUse, -1);
             }
         }
     }
@@ -110,16 +110,14 @@ public abstract class StatementCompiler {
         String keyPrefix = compiler.getKeyPrefix(partitioning, detMode, joinOrder);
         // if the key is cache-able, look for a previous statement
         if (keyPrefix != null) {
-            Statement previousStatement = compiler.getCachedStatement(keyPrefix, stmt);
+            Statement previousStatement = compiler.getCachedStatement(catalogStmt, keyPrefix, stmt);
             // check if the stmt exists and if it's the same sql text
             if (previousStatement != null) {
                 if (m_logger.isDebugEnabled()) {
-                    Procedure prevproc = (Procedure)previousStatement.getParent();
-                    Procedure currproc = (Procedure)catalogStmt.getParent();
                     m_logger.debug(String.format("Recovering statement %s.%s from statement %s.%s\n",
-                                                 currproc.getTypeName(),
+                                                 catalogStmt.getParent().getTypeName(),
                                                  catalogStmt.getTypeName(),
-                                                 prevproc.getTypeName(),
+                                                 previousStatement.getParent().getTypeName(),
                                                  previousStatement.getTypeName()));
                 }
                 catalogStmt.setAnnotation(previousStatement.getAnnotation());
@@ -167,9 +165,8 @@ public abstract class StatementCompiler {
 
 
         if (m_logger.isDebugEnabled()) {
-            Procedure procedure = (Procedure)catalogStmt.getParent();
             m_logger.debug(String.format("Compiling %s.%s: sql = \"%s\"\n",
-                                         procedure.getTypeName(),
+                                         catalogStmt.getParent().getTypeName(),
                                          catalogStmt.getTypeName(),
                                          catalogStmt.getSqltext()));
         }
@@ -282,40 +279,23 @@ public abstract class StatementCompiler {
                 assert(function != null);
                 addUDFDependences(function, catalogStmt);
             }
-            // compute a hash of the plan
-            MessageDigest md = null;
-            try {
-                md = MessageDigest.getInstance("SHA-1");
-            }
-            catch (NoSuchAlgorithmException e) {
-                e.printStackTrace();
-                assert(false);
-                System.exit(-1); // should never happen with healthy jvm
-            }
 
             // Now update our catalog information
+            // The plan trees and hashes of the fragments may be filled in on another
+            // thread, see VoltCompiler.writePlanFragment()
             PlanFragment planFragment = catalogStmt.getFragments().add("0");
             planFragment.setHasdependencies(plan.subPlanGraph != null);
             // mark a fragment as non-transactional if it never touches a persistent table
             planFragment.setNontransactional(!fragmentReferencesPersistentTable(plan.rootPlanGraph));
             planFragment.setMultipartition(plan.subPlanGraph != null);
-            byte[] planBytes = writePlanBytes(compiler, planFragment, plan.rootPlanGraph);
-            md.update(planBytes, 0, planBytes.length);
-            // compute the 40 bytes of hex from the 20 byte sha1 hash of the plans
-            md.reset();
-            md.update(planBytes);
-            planFragment.setPlanhash(Encoder.hexEncode(md.digest()));
+            compiler.writePlanFragment(planFragment, plan.rootPlanGraph);
 
             if (plan.subPlanGraph != null) {
                 planFragment = catalogStmt.getFragments().add("1");
                 planFragment.setHasdependencies(false);
                 planFragment.setNontransactional(false);
                 planFragment.setMultipartition(true);
-                byte[] subBytes = writePlanBytes(compiler, planFragment, plan.subPlanGraph);
-                // compute the 40 bytes of hex from the 20 byte sha1 hash of the plans
-                md.reset();
-                md.update(subBytes);
-                planFragment.setPlanhash(Encoder.hexEncode(md.digest()));
+                compiler.writePlanFragment(planFragment, plan.subPlanGraph);
             }
 
             // Planner should have rejected with an exception any statement with an unrecognized type.
@@ -432,6 +412,27 @@ public abstract class StatementCompiler {
                 null, sqlText, joinOrder, detMode, partitioning);
     }
 
+    /**
+     * Set the plan tree of the fragment and the hash of the plan
+     */
+    static void writePlanFragment(VoltCompiler compiler, PlanFragment fragment, AbstractPlanNode planGraph)
+    throws VoltCompilerException {
+        byte[] planBytes = writePlanBytes(compiler, fragment, planGraph);
+        // compute a hash of the plan
+        MessageDigest md = null;
+        try {
+            md = MessageDigest.getInstance("SHA-1");
+        }
+        catch (NoSuchAlgorithmException e) {
+            e.printStackTrace();
+            assert(false);
+            System.exit(-1); // should never happen with healthy jvm
+        }
+        // compute the 40 bytes of hex from the 20 byte sha1 hash of the plans
+        md.update(planBytes);
+        fragment.setPlanhash(Encoder.hexEncode(md.digest()));
+    }
+
     /**
      * Update the plan fragment and return the bytes of the plan
      */
@@ -37,6 +37,9 @@ import java.util.NavigableMap;
 import java.util.NavigableSet;
 import java.util.Set;
 import java.util.TreeSet;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
 import java.util.jar.JarEntry;
 import java.util.jar.JarFile;
 import java.util.regex.Matcher;
@@ -59,11 +62,15 @@ import org.voltdb.VoltDBInterface;
 import org.voltdb.VoltNonTransactionalProcedure;
 import org.voltdb.catalog.Catalog;
 import org.voltdb.catalog.CatalogMap;
+import org.voltdb.catalog.CatalogType;
 import org.voltdb.catalog.Cluster;
 import org.voltdb.catalog.Column;
 import org.voltdb.catalog.Database;
 import org.voltdb.catalog.Deployment;
 import org.voltdb.catalog.FilteredCatalogDiffEngine;
+import org.voltdb.catalog.MaterializedViewHandlerInfo;
+import org.voltdb.catalog.MaterializedViewInfo;
+import org.voltdb.catalog.PlanFragment;
 import org.voltdb.catalog.Procedure;
 import org.voltdb.catalog.Statement;
 import org.voltdb.catalog.Table;
@@ -74,6 +81,7 @@ import org.voltdb.compilereport.ReportMaker;
 import org.voltdb.parser.SQLParser;
 import org.voltdb.planner.ParameterizationInfo;
 import org.voltdb.planner.StatementPartitioning;
+import org.voltdb.plannodes.AbstractPlanNode;
 import org.voltdb.settings.ClusterSettings;
 import org.voltdb.utils.CatalogSchemaTools;
 import org.voltdb.utils.CatalogUtil;
@@ -254,6 +262,13 @@ public class VoltCompiler {
 
     private List<String> m_capturedDiagnosticDetail = null;
 
+    // Statements can only be planned one at a time (the planner holds a global lock and
+    // there is a single HSQL session), but serializing, compressing and hashing the finished
+    // plans doesn't need either. While procedures are compiled that is done on the common
+    // fork-join pool so it overlaps with planning the following statements. Null when plan
+    // fragments are written inline.
+    private List<ForkJoinTask<?>> m_pendingPlanWrites = null;
+
     private static VoltLogger compilerLog = new VoltLogger("COMPILER");
     private static final VoltLogger consoleLog = new VoltLogger("CONSOLE");
     private static final VoltLogger Log = new VoltLogger("org.voltdb.compiler.VoltCompiler");
@@ -1143,6 +1158,12 @@ public class VoltCompiler {
             // When A/A is enabled, create an export table for every DR table to log possible conflicts
             ddlcompiler.loadAutogenExportTableSchema(db, previousDBIfAny, whichProcs, m_isXDCR);
 
+            // plans of statements that only touch tables the new DDL left alone
+            // can be carried over from the previous catalog
+            if (previousDBIfAny != null) {
+                cachePreviousStatements(previousDBIfAny);
+            }
+
             ddlcompiler.compileToCatalog(db, m_isXDCR);
 
             // add database estimates info
@@ -1165,11 +1186,7 @@ public class VoltCompiler {
 
             if (whichProcs != DdlProceduresToLoad.NO_DDL_PROCEDURES) {
                 Collection<ProcedureDescriptor> allProcs = voltDdlTracker.getProcedureDescriptors();
-                CatalogMap<Procedure> previousProcsIfAny = null;
-                if (previousDBIfAny != null) {
-                    previousProcsIfAny = previousDBIfAny.getProcedures();
-                }
-                compileProcedures(db, hsql, allProcs, classDependencies, whichProcs, previousProcsIfAny, jarOutput);
+                compileProcedures(db, hsql, allProcs, classDependencies, whichProcs, jarOutput);
             }
 
             // add extra classes from the DDL
@@ -1182,6 +1199,10 @@ public class VoltCompiler {
             ddlcompiler.restoreSavedFunctions();
             throw ex;
         }
+        finally {
+            // allow gc to reclaim any cache memory here
+            m_previousCatalogStmts.clear();
+        }
         ddlcompiler.clearSavedFunctions();
     }
 
@@ -1256,19 +1277,8 @@ public class VoltCompiler {
                                    Collection<ProcedureDescriptor> allProcs,
                                    Collection<Class<?>> classDependencies,
                                    DdlProceduresToLoad whichProcs,
-                                   CatalogMap<Procedure> prevProcsIfAny,
                                    InMemoryJarfile jarOutput) throws VoltCompilerException
     {
-        // build a cache of previous SQL stmts
-        m_previousCatalogStmts.clear();
-        if (prevProcsIfAny != null) {
-            for (Procedure prevProc : prevProcsIfAny) {
-                for (Statement prevStmt : prevProc.getStatements()) {
-                    addStatementToCache(prevStmt);
-                }
-            }
-        }
-
         // Ignore class dependencies if ignoring java stored procs.
         // This extra qualification anticipates some (undesirable) overlap between planner
         // testing and additional library code in the catalog jar file.
@@ -1287,6 +1297,24 @@ public class VoltCompiler {
         procedures.addAll(allProcs);
 
         // Actually parse and handle all the Procedures
+        m_pendingPlanWrites = new ArrayList<>();
+        try {
+            compileProcedureList(db, hsql, procedures, whichProcs, jarOutput);
+            finishPlanWrites();
+        }
+        finally {
+            cancelPlanWrites();
+        }
+        // done handling files
+        m_currentFilename = NO_FILENAME;
+    }
+
+    private void compileProcedureList(Database db,
+                                      HSQLInterface hsql,
+                                      List<ProcedureDescriptor> procedures,
+                                      DdlProceduresToLoad whichProcs,
+                                      InMemoryJarfile jarOutput) throws VoltCompilerException
+    {
         for (final ProcedureDescriptor procedureDescriptor : procedures) {
             final String procedureName = procedureDescriptor.m_className;
             if (procedureDescriptor.m_singleStmt == null) {
@@ -1306,11 +1334,69 @@ public class VoltCompiler {
             }
             ProcedureCompiler.compile(this, hsql, m_estimates, db, procedureDescriptor, jarOutput);
         }
-        // done handling files
-        m_currentFilename = NO_FILENAME;
+    }
 
-        // allow gc to reclaim any cache memory here
-        m_previousCatalogStmts.clear();
+    /**
+     * Fill in the plan tree and plan hash of a catalog plan fragment, either right
+     * away or on the fork-join pool while procedures are being compiled. The
+     * fragment itself must already be in the catalog so that the catalog is
+     * built in the same order either way.
+     */
+    void writePlanFragment(final PlanFragment fragment, final AbstractPlanNode planGraph)
+            throws VoltCompilerException
+    {
+        // captured json fragments are expected in statement order
+        if (m_pendingPlanWrites == null || m_capturedDiagnosticDetail != null) {
+            StatementCompiler.writePlanFragment(this, fragment, planGraph);
+            return;
+        }
+        m_pendingPlanWrites.add(ForkJoinPool.commonPool().submit(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    StatementCompiler.writePlanFragment(VoltCompiler.this, fragment, planGraph);
+                }
+                catch (VoltCompilerException e) {
+                    throw new RuntimeException(e);
+                }
+            }
+        }));
+    }
+
+    /**
+     * Wait for all the plan fragments handed to the fork-join pool to be written.
+     */
+    private void finishPlanWrites() throws VoltCompilerException
+    {
+        for (ForkJoinTask<?> write : m_pendingPlanWrites) {
+            try {
+                write.get();
+            }
+            catch (InterruptedException e) {
+                throw new VoltCompilerException(e);
+            }
+            catch (ExecutionException e) {
+                Throwable cause = e.getCause();
+                if (cause instanceof RuntimeException && cause.getCause() instanceof VoltCompilerException) {
+                    throw (VoltCompilerException) cause.getCause();
+                }
+                throw new VoltCompilerException("Failed to write plan fragment", cause);
+            }
+        }
+        m_pendingPlanWrites = null;
+    }
+
+    /**
+     * Drop any plan fragment writes left over from a failed compilation.
+     */
+    private void cancelPlanWrites()
+    {
+        if (m_pendingPlanWrites != null) {
+            for (ForkJoinTask<?> write : m_pendingPlanWrites) {
+                write.cancel(false);
+            }
+            m_pendingPlanWrites = null;
+        }
     }
 
     /** Provide a feedback path to monitor plan output via harvestCapturedDetail */
@@ -2294,17 +2380,65 @@ public class VoltCompiler {
     }
 
     void addStatementToCache(Statement stmt) {
-        String key = stmt.getCachekeyprefix() + stmt.getSqltext();
+        String key = getStatementScope(stmt) + stmt.getCachekeyprefix() + stmt.getSqltext();
         m_previousCatalogStmts.put(key, stmt);
     }
 
+    /**
+     * Build a cache of every planned statement in the previous catalog: those of the
+     * procedures, the materialized view maintenance queries and the row limit deletes.
+     */
+    private void cachePreviousStatements(Database previousDB) {
+        m_previousCatalogStmts.clear();
+        for (Procedure prevProc : previousDB.getProcedures()) {
+            for (Statement prevStmt : prevProc.getStatements()) {
+                addStatementToCache(prevStmt);
+            }
+        }
+        for (Table prevTable : previousDB.getTables()) {
+            for (Statement prevStmt : prevTable.getTuplelimitdeletestmt()) {
+                addStatementToCache(prevStmt);
+            }
+            for (MaterializedViewInfo prevView : prevTable.getViews()) {
+                for (Statement prevStmt : prevView.getFallbackquerystmts()) {
+                    addStatementToCache(prevStmt);
+                }
+            }
+            for (MaterializedViewHandlerInfo prevHandler : prevTable.getMvhandlerinfo()) {
+                for (Statement prevStmt : prevHandler.getFallbackquerystmts()) {
+                    addStatementToCache(prevStmt);
+                }
+                for (Statement prevStmt : prevHandler.getCreatequery()) {
+                    addStatementToCache(prevStmt);
+                }
+            }
+        }
+    }
+
+    /**
+     * Procedure statements are interchangeable whenever their text matches, but the
+     * view and row limit statements are planned from XML built for their owner, e.g.
+     * all the min/max fallback queries of a view share the view's text. Those only
+     * match the statement at the same place in the previous catalog.
+     */
+    private static String getStatementScope(Statement stmt) {
+        if (stmt.getParent() instanceof Procedure) {
+            return "";
+        }
+        StringBuilder scope = new StringBuilder();
+        for (CatalogType node = stmt; !(node instanceof Database); node = node.getParent()) {
+            scope.insert(0, "/" + node.getClass().getSimpleName() + "#" + node.getTypeName());
+        }
+        return scope.toString();
+    }
+
     // track hits and misses for debugging
     static long m_stmtCacheHits = 0;
     static long m_stmtCacheMisses = 0;
 
     /** Look for a match from the previous catalog that matches the key + sql */
-    Statement getCachedStatement(String keyPrefix, String sql) {
-        String key = keyPrefix + sql;
+    Statement getCachedStatement(Statement catalogStmt, String keyPrefix, String sql) {
+        String key = getStatementScope(catalogStmt) + keyPrefix + sql;
 
         Statement candidate = m_previousCatalogStmts.get(key);
         if (candidate == null) {
@@ -2312,6 +2446,16 @@ public class VoltCompiler {
             return null;
         }
 
+        // a changed view or a table owning the statement invalidates it too
+        for (CatalogType owner = candidate.getParent(); !(owner instanceof Database); owner = owner.getParent()) {
+            if ((owner instanceof Table && isDirtyTable(owner.getTypeName())) ||
+                    (owner instanceof MaterializedViewInfo &&
+                     isDirtyTable(((MaterializedViewInfo) owner).getDest().getTypeName()))) {
+                ++m_stmtCacheMisses;
+                return null;
+            }
+        }
+
         // check that no underlying tables have been modified since the proc had been compiled
         String[] tablesTouched = candidate.getTablesread().split(",");
         for (String tableName : tablesTouched) {
@@ -17,17 +17,18 @@
 
 package org.voltdb.compilereport;
 
-import static org.apache.commons.lang3.StringEscapeUtils.escapeHtml4;
-
 import java.io.IOException;
 import java.net.URL;
 import java.text.DateFormat;
 import java.text.SimpleDateFormat;
 import java.util.ArrayList;
 import java.util.Date;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.SortedSet;
 
+import org.apache.commons.lang3.StringEscapeUtils;
 import org.apache.commons.lang3.StringUtils;
 import org.voltdb.VoltDB;
 import org.voltdb.VoltType;
@@ -68,6 +69,50 @@ public class ReportMaker {
 
     static Date m_timestamp = new Date();
 
+    /**
+     * Escape text for the report. The commons-lang translator is slow enough to
+     * dominate the report for a large schema, but outside of ASCII it is only
+     * needed for the named entities, so plain ASCII text is escaped here.
+     */
+    static String escapeHtml4(String text) {
+        if (text == null) {
+            return null;
+        }
+        StringBuilder sb = null;
+        int pos = 0;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            String entity;
+            if (c == '&') {
+                entity = "&amp;";
+            }
+            else if (c == '<') {
+                entity = "&lt;";
+            }
+            else if (c == '>') {
+                entity = "&gt;";
+            }
+            else if (c == '"') {
+                entity = "&quot;";
+            }
+            else if (c < 0x80) {
+                continue;
+            }
+            else {
+                return StringEscapeUtils.escapeHtml4(text);
+            }
+            if (sb == null) {
+                sb = new StringBuilder(text.length() + 16);
+            }
+            sb.append(text, pos, i).append(entity);
+            pos = i + 1;
+        }
+        if (sb == null) {
+            return text;
+        }
+        return sb.append(text, pos, text.length()).toString();
+    }
+
     /**
      * Make an html bootstrap tag with our custom css class.
      */
@@ -1061,52 +1106,72 @@ public class ReportMaker {
 
 
         URL url = Resources.getResource(ReportMaker.class, "template.html");
-        String contents = Resources.toString(url, Charsets.UTF_8);
+        String template = Resources.toString(url, Charsets.UTF_8);
+
+        String msg = Encoder.hexEncode(VoltDB.instance().getVersionString() + "," + System.currentTimeMillis());
+        template = template.replace("get.py?a=KEY&", String.format("get.py?a=%s&", msg));
 
         Cluster cluster = catalog.getClusters().get("cluster");
         assert(cluster != null);
         Database db = cluster.getDatabases().get("database");
         assert(db != null);
 
-        String statsData = getStatsHTML(db, minHeap, warnings);
-        contents = contents.replace("##STATS##", statsData);
+        Map<String, String> sections = new HashMap<>();
+        sections.put("STATS", getStatsHTML(db, minHeap, warnings));
 
         // generateProceduresTable needs to happen before generateSchemaTable
         // because some metadata used in the later is generated in the former
-        String procData = generateProceduresTable(db.getTables(), db.getProcedures());
-        contents = contents.replace("##PROCS##", procData);
-
-        String schemaData = generateSchemaTable(db);
-        contents = contents.replace("##SCHEMA##", schemaData);
+        sections.put("PROCS", generateProceduresTable(db.getTables(), db.getProcedures()));
+        sections.put("SCHEMA", generateSchemaTable(db));
 
         DatabaseSizes sizes = CatalogSizing.getCatalogSizes(db, DrRoleType.XDCR.value().equals(cluster.getDrrole()));
 
-        String sizeData = generateSizeTable(sizes);
-        contents = contents.replace("##SIZES##", sizeData);
-
-        String clusterConfig = generateClusterConfiguration(isPro, hostCount, sitesPerHost, kfactor);
-        contents = contents.replace("##CLUSTERCONFIG##", clusterConfig);
-
-        String sizeSummary = generateSizeSummary(sizes);
-        contents = contents.replace("##SIZESUMMARY##", sizeSummary);
-
-        String heapSummary = generateRecommendedServerSettings(sizes);
-        contents = contents.replace("##RECOMMENDEDSERVERSETTINGS##", heapSummary);
-
-        String platformData = PlatformProperties.getPlatformProperties().toHTML();
-        contents = contents.replace("##PLATFORM##", platformData);
-
-        contents = contents.replace("##VERSION##", VoltDB.instance().getVersionString());
-
-        contents = contents.replace("##DDL##", escapeHtml4(autoGenDDL));
+        sections.put("SIZES", generateSizeTable(sizes));
+        sections.put("CLUSTERCONFIG", generateClusterConfiguration(isPro, hostCount, sitesPerHost, kfactor));
+        sections.put("SIZESUMMARY", generateSizeSummary(sizes));
+        sections.put("RECOMMENDEDSERVERSETTINGS", generateRecommendedServerSettings(sizes));
+        sections.put("PLATFORM", PlatformProperties.getPlatformProperties().toHTML());
+        sections.put("VERSION", VoltDB.instance().getVersionString());
+        sections.put("DDL", escapeHtml4(autoGenDDL));
 
         DateFormat df = new SimpleDateFormat("d MMM yyyy HH:mm:ss z");
-        contents = contents.replace("##TIMESTAMP##", df.format(m_timestamp));
+        sections.put("TIMESTAMP", df.format(m_timestamp));
 
-        String msg = Encoder.hexEncode(VoltDB.instance().getVersionString() + "," + System.currentTimeMillis());
-        contents = contents.replace("get.py?a=KEY&", String.format("get.py?a=%s&", msg));
+        return fillTemplate(template, sections);
+    }
 
-        return contents;
+    /**
+     * Replace the ##NAME## placeholders of the template that have a value in one pass.
+     * The generated sections of a large schema run to megabytes, replacing them one
+     * after the other copied the whole report again for each placeholder.
+     * Placeholders without a value, like the ones for the live report, are kept.
+     */
+    static String fillTemplate(String template, Map<String, String> values) {
+        int length = template.length();
+        for (String value : values.values()) {
+            length += value.length();
+        }
+        StringBuilder sb = new StringBuilder(length);
+        int pos = 0;
+        int start;
+        while ((start = template.indexOf("##", pos)) >= 0) {
+            int end = template.indexOf("##", start + 2);
+            if (end < 0) {
+                break;
+            }
+            String value = values.get(template.substring(start + 2, end));
+            if (value == null) {
+                // not a placeholder we fill, the closing marker may open the next one
+                sb.append(template, pos, start + 2);
+                pos = start + 2;
+            }
+            else {
+                sb.append(template, pos, start).append(value);
+                pos = end + 2;
+            }
+        }
+        sb.append(template, pos, template.length());
+        return sb.toString();
     }
 
     public static String getLiveSystemOverview()
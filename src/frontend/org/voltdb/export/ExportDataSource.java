@@ -25,6 +25,7 @@ import java.io.IOException;
 import java.lang.management.ManagementFactory;
 import java.nio.ByteBuffer;
 import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.concurrent.Callable;
@@ -92,6 +93,10 @@ public class ExportDataSource implements Comparable<ExportDataSource> {
     private boolean m_drained = false;
     private Runnable m_onMastership;
     private SettableFuture<BBContainer> m_pollFuture;
+    // Blocks handed out by poll() that haven't been acked yet, in USO order. The processor
+    // may poll again before acking, acks are applied in USO order so an ack that comes
+    // in ahead of an earlier block's waits for it.
+    private final ArrayDeque<AckingContainer> m_inFlightBlocks = new ArrayDeque<>();
     private final AtomicReference<Pair<Mailbox, ImmutableList<Long>>> m_ackMailboxRefs =
             new AtomicReference<Pair<Mailbox,ImmutableList<Long>>>(Pair.of((Mailbox)null, ImmutableList.<Long>builder().build()));
     private final Semaphore m_bufferPushPermits = new Semaphore(16);
@@ -717,6 +722,33 @@ public class ExportDataSource implements Comparable<ExportDataSource> {
         return stashOrSubmitTask(runnable, false, false);
     }
 
+    /**
+     * Forget the blocks handed out by poll that haven't been acked, because the processor
+     * that polled them was shut down and won't export them. The next poll hands them out
+     * again from the first one on, and a late ack of any of them is ignored. An outstanding
+     * poll of that processor is cancelled.
+     */
+    public ListenableFuture<?> forgetInFlightBlocks() {
+        RunnableWithES runnable = new RunnableWithES("forgetInFlightBlocks") {
+            @Override
+            public void run() {
+                if (m_pollFuture != null) {
+                    m_pollFuture.cancel(false);
+                    m_pollFuture = null;
+                }
+                if (m_inFlightBlocks.isEmpty()) {
+                    return;
+                }
+                m_firstUnpolledUso = Math.min(m_firstUnpolledUso, m_inFlightBlocks.peekFirst().m_startUso);
+                for (AckingContainer cont : m_inFlightBlocks) {
+                    cont.m_forgotten = true;
+                }
+                m_inFlightBlocks.clear();
+            }
+        };
+        return stashOrSubmitTask(runnable, false, false);
+    }
+
     public ListenableFuture<BBContainer> poll() {
         final SettableFuture<BBContainer> fut = SettableFuture.create();
         RunnableWithES runnable = new RunnableWithES("poll") {
@@ -784,6 +816,12 @@ public class ExportDataSource implements Comparable<ExportDataSource> {
             try {
                 Iterator<StreamBlock> iter = m_committedBuffers.iterator();
                 long fuso = getFirstUnpolledUso();
+                // blocks from the first one in flight on stay queued until they are acked
+                long inFlightUso = Long.MAX_VALUE;
+                if (!m_inFlightBlocks.isEmpty()) {
+                    inFlightUso = m_inFlightBlocks.peekFirst().m_startUso;
+                    fuso = Math.max(fuso, m_inFlightBlocks.peekLast().m_uso);
+                }
                 while (iter.hasNext()) {
                     StreamBlock block = iter.next();
                     // find the first block that has unpolled data
@@ -791,6 +829,8 @@ public class ExportDataSource implements Comparable<ExportDataSource> {
                         first_unpolled_block = block;
                         m_firstUnpolledUso = (block.uso() + block.totalUso());
                         break;
+                    } else if (block.uso() >= inFlightUso) {
+                        continue;
                     } else {
                         blocksToDelete.add(block);
                         iter.remove();
@@ -814,7 +854,9 @@ public class ExportDataSource implements Comparable<ExportDataSource> {
                 m_pollFuture = fut;
             } else {
                 final AckingContainer ackingContainer = new AckingContainer(first_unpolled_block.unreleasedContainer(),
+                                                                            first_unpolled_block.uso(),
                                                                             first_unpolled_block.uso() + first_unpolled_block.totalUso());
+                m_inFlightBlocks.offer(ackingContainer);
                 try {
                     fut.set(ackingContainer);
                 } catch (RejectedExecutionException reex) {
@@ -835,10 +877,15 @@ public class ExportDataSource implements Comparable<ExportDataSource> {
     }
 
     class AckingContainer extends BBContainer {
+        final long m_startUso;
         final long m_uso;
         final BBContainer m_backingCont;
-        public AckingContainer(BBContainer cont, long uso) {
+        // only accessed from the data source's executor
+        boolean m_acked = false;
+        boolean m_forgotten = false;
+        public AckingContainer(BBContainer cont, long startUso, long uso) {
             super(cont.b());
+            m_startUso = startUso;
             m_uso = uso;
             m_backingCont = cont;
         }
@@ -851,12 +898,24 @@ public class ExportDataSource implements Comparable<ExportDataSource> {
                 public void run() {
                     try {
                         m_backingCont.discard();
+                        final long ackUso = ackInFlightBlock(AckingContainer.this);
+                        if (ackUso == 0) {
+                            // an earlier block is still being exported, or this one was forgotten
+                            return;
+                        }
                         try {
                             if (!getLocalExecutorService().isShutdown()) {
-                                ackImpl(m_uso, null);
+                                ackImpl(ackUso, null);
+                                if (m_pollFuture != null && m_endOfStream) {
+                                    // a poll that came in while blocks were in flight
+                                    // may be the one to see the end of the stream
+                                    final SettableFuture<BBContainer> fut = m_pollFuture;
+                                    m_pollFuture = null;
+                                    pollImpl(fut);
+                                }
                             }
                         } finally {
-                            forwardAckToOtherReplicas(m_uso);
+                            forwardAckToOtherReplicas(ackUso);
                         }
                     } catch (Exception e) {
                         exportLog.error("Error acking export buffer", e);
@@ -869,6 +928,31 @@ public class ExportDataSource implements Comparable<ExportDataSource> {
         }
     }
 
+    /**
+     * Mark a block handed out by poll as acked.
+     * @return the USO up to which every block handed out has been acked now, or 0 if
+     * the block is behind one that is still in flight or was forgotten
+     */
+    private long ackInFlightBlock(AckingContainer cont) {
+        if (cont.m_forgotten) {
+            // the block is handed out again and released by the ack of that copy
+            if (exportLog.isDebugEnabled()) {
+                exportLog.debug("Dropping ack of forgotten block for " + getTableName() + " partition "
+                        + getPartitionId() + " USO: " + cont.m_startUso + " to " + cont.m_uso);
+            }
+            return 0;
+        }
+        if (!m_inFlightBlocks.contains(cont)) {
+            return cont.m_uso;
+        }
+        cont.m_acked = true;
+        long ackUso = 0;
+        while (!m_inFlightBlocks.isEmpty() && m_inFlightBlocks.peekFirst().m_acked) {
+            ackUso = m_inFlightBlocks.poll().m_uso;
+        }
+        return ackUso;
+    }
+
     private void forwardAckToOtherReplicas(long uso) {
         if (m_runEveryWhere && m_replicaRunning) {
             //we dont forward if we are running as replica in replicated export
@@ -19,6 +19,7 @@ package org.voltdb.export.processors;
 
 import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
@@ -26,6 +27,8 @@ import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Properties;
 import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.Semaphore;
 import java.util.concurrent.ThreadLocalRandom;
@@ -46,11 +49,14 @@ import org.voltdb.exportclient.ExportDecoderBase.RestartBlockException;
 
 import com.google_voltpatches.common.base.Preconditions;
 import com.google_voltpatches.common.base.Throwables;
+import com.google_voltpatches.common.util.concurrent.Futures;
 import com.google_voltpatches.common.util.concurrent.ListenableFuture;
 
 public class GuestProcessor implements ExportDataProcessor {
 
     public static final String EXPORT_TO_TYPE = "__EXPORT_TO_TYPE__";
+    // how many blocks of a data source can be waiting to be acked, for clients that complete blocks asynchronously
+    public static final String MAX_INFLIGHT_BLOCKS_PN = "maxinflightblocks";
 
     private ExportGeneration m_generation;
     private boolean m_shutdown = false;
@@ -60,6 +66,7 @@ public class GuestProcessor implements ExportDataProcessor {
     private Map<String, String> m_targetsByTableName = new HashMap<>();
 
     private final List<Pair<ExportDecoderBase, AdvertisedDataSource>> m_decoders = new ArrayList<Pair<ExportDecoderBase, AdvertisedDataSource>>();
+    private final List<BlockPoller> m_pollers = new ArrayList<>();
 
     private final Semaphore m_pollBarrier = new Semaphore(0);
 
@@ -93,7 +100,7 @@ public class GuestProcessor implements ExportDataProcessor {
             try {
                 final Class<?> clientClass = Class.forName(exportClientClass);
                 ExportClientBase client = (ExportClientBase) clientClass.newInstance();
-                client.configure(properties);
+                configureClient(client, properties);
                 m_clientsByTarget.put(targetName, client);
             } catch(Throwable t) {
                 Throwables.propagate(t);
@@ -113,12 +120,30 @@ public class GuestProcessor implements ExportDataProcessor {
         try {
             final Class<?> clientClass = Class.forName(exportClientClass);
             ExportClientBase client = (ExportClientBase) clientClass.newInstance();
-            client.configure(properties);
+            configureClient(client, properties);
         } catch(Throwable t) {
             Throwables.propagate(t);
         }
     }
 
+    private static void configureClient(ExportClientBase client, Properties properties) throws Exception {
+        String inFlight = properties.getProperty(MAX_INFLIGHT_BLOCKS_PN);
+        if (inFlight == null) {
+            client.configure(properties);
+            return;
+        }
+        // the property is the processor's, don't pass it on to the client
+        Properties clientProperties = new Properties();
+        clientProperties.putAll(properties);
+        clientProperties.remove(MAX_INFLIGHT_BLOCKS_PN);
+        client.configure(clientProperties);
+        try {
+            client.setMaxInFlightBlocks(Integer.parseInt(inFlight.trim()));
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid " + MAX_INFLIGHT_BLOCKS_PN + " value " + inFlight, e);
+        }
+    }
+
     @Override
     public void setExportGeneration(ExportGeneration generation) {
         // This is called when a persisted generation is ready to be drained. So, activate the data sources
@@ -194,8 +219,9 @@ public class GuestProcessor implements ExportDataProcessor {
                                         final ExportDecoderBase edb = m_client.constructExportDecoder(ads);
 
                                         m_decoders.add(Pair.of(edb, ads));
-                                        final ListenableFuture<BBContainer> fut = m_source.poll();
-                                        constructListener(m_source, fut, edb, ads, isRunEvewhere());
+                                        final BlockPoller poller = new BlockPoller(m_source, edb, m_client.getMaxInFlightBlocks(), m_logger);
+                                        m_pollers.add(poller);
+                                        poller.poll();
                                     }
                                 } else {
                                     resubmitSelf();
@@ -231,8 +257,9 @@ public class GuestProcessor implements ExportDataProcessor {
                         final ExportDecoderBase edb = m_client.constructExportDecoder(ads);
 
                         m_decoders.add(Pair.of(edb, ads));
-                        final ListenableFuture<BBContainer> fut = m_source.poll();
-                        constructListener(m_source, fut, edb, ads, isRunEvewhere());
+                        final BlockPoller poller = new BlockPoller(m_source, edb, m_client.getMaxInFlightBlocks(), m_logger);
+                        m_pollers.add(poller);
+                        poller.poll();
                     }
                 }
             }
@@ -292,75 +319,301 @@ public class GuestProcessor implements ExportDataProcessor {
         }
     }
 
-    private void constructListener(
-            final ExportDataSource source,
-            final ListenableFuture<BBContainer> fut,
-            final ExportDecoderBase edb,
-            final AdvertisedDataSource ads, final boolean runEveryWhere) {
-        /*
-         * The listener runs in the thread specified by the EDB.
-         *
-         * For JDBC we want a dedicated thread to block on calls to the remote database
-         * so the data source thread can overflow data to disk.
+    /**
+     * Feeds the blocks of a data source to its decoder. Blocks are decoded one at a time
+     * in the order they are polled, while up to the client's max in flight blocks can be
+     * waiting on their {@link ExportDecoderBase#onBlockCompletionAsync()} future. A block
+     * is acked, by discarding it, once its future and those of the blocks polled before it
+     * are done.
+     *
+     * A future that fails with a {@link RestartBlockException} stops the polling of new
+     * blocks. Once every block in flight has completed, that block and every block polled
+     * after it are decoded again in poll order, so the destination sees them in the order
+     * of the stream again.
+     */
+    static class BlockPoller {
+        private final ExportDataSource m_source;
+        private final ExportDecoderBase m_edb;
+        private final int m_maxInFlight;
+        private final VoltLogger m_logger;
+        // a block that has to be decoded again can race with the next one polled
+        private final Object m_decodeLock = new Object();
+
+        // the blocks decoded and not acked yet in poll order, guarded by this
+        private final ArrayDeque<InFlightBlock> m_inFlightBlocks = new ArrayDeque<>();
+        private boolean m_polling = false;
+        private boolean m_done = false;
+        private boolean m_shutdown = false;
+        // a block has to be decoded again, set until the blocks from it on are sent again
+        private boolean m_restarting = false;
+        // set while one thread decodes the blocks from the restarted one on again
+        private boolean m_resending = false;
+
+        private static final class InFlightBlock {
+            final BBContainer m_cont;
+            // position to restart at on error
+            final int m_startPosition;
+            int m_backoffQuantity = initialBackoff();
+            // guarded by the poller
+            boolean m_completed = false;
+            boolean m_restart = false;
+            boolean m_requestBackoff = false;
+
+            InFlightBlock(BBContainer cont) {
+                m_cont = cont;
+                m_startPosition = cont.b().position();
+            }
+        }
+
+        BlockPoller(ExportDataSource source, ExportDecoderBase edb, int maxInFlight, VoltLogger logger) {
+            m_source = source;
+            m_edb = edb;
+            m_maxInFlight = maxInFlight;
+            m_logger = logger;
+        }
+
+        void poll() {
+            synchronized (this) {
+                if (m_done || m_shutdown || m_polling || m_restarting || m_resending
+                        || m_inFlightBlocks.size() >= m_maxInFlight) {
+                    return;
+                }
+                m_polling = true;
+            }
+            /*
+             * The listener runs in the thread specified by the EDB.
+             *
+             * For JDBC we want a dedicated thread to block on calls to the remote database
+             * so the data source thread can overflow data to disk.
+             */
+            final ListenableFuture<BBContainer> fut = m_source.poll();
+            fut.addListener(new Runnable() {
+                @Override
+                public void run() {
+                    onPolled(fut);
+                }
+            }, m_edb.getExecutor());
+        }
+
+        synchronized int getInFlight() {
+            return m_inFlightBlocks.size();
+        }
+
+        /**
+         * Stop polling and have the data source forget the blocks that weren't acked, so
+         * the next processor polls them again. Blocks still completing are let go without
+         * being decoded again.
          */
-        if (fut == null) {
-            return;
+        void shutdown() {
+            synchronized (this) {
+                m_shutdown = true;
+            }
+            m_source.forgetInFlightBlocks();
         }
-        fut.addListener(new Runnable() {
-            @Override
-            public void run() {
-                try {
-                    BBContainer cont = fut.get();
-                    if (cont == null) {
+
+        private void onPolled(ListenableFuture<BBContainer> fut) {
+            final BBContainer cont;
+            try {
+                cont = fut.get();
+            } catch (CancellationException e) {
+                // the data source was told to forget this poller on shutdown
+                synchronized (this) {
+                    m_polling = false;
+                }
+                return;
+            } catch (Exception e) {
+                m_logger.error("Error processing export block", e);
+                synchronized (this) {
+                    m_polling = false;
+                }
+                poll();
+                return;
+            }
+            if (cont == null) {
+                synchronized (this) {
+                    m_polling = false;
+                    m_done = true;
+                }
+                return;
+            }
+            final InFlightBlock block = new InFlightBlock(cont);
+            synchronized (this) {
+                if (m_shutdown) {
+                    m_polling = false;
+                    // forgotten by the data source, discarding it doesn't ack it
+                    cont.discard();
+                    return;
+                }
+                m_inFlightBlocks.add(block);
+            }
+            send(block);
+            synchronized (this) {
+                m_polling = false;
+            }
+            poll();
+        }
+
+        /**
+         * If there is an error processing the block the decoder thinks is recoverable
+         * start the block from the beginning and repeat until it is processed.
+         * Also allow the decoder to request exponential backoff
+         */
+        private ListenableFuture<?> decode(BBContainer cont, int startPosition, int backoffQuantity)
+                throws InterruptedException {
+            synchronized (m_decodeLock) {
+                while (true) {
+                    try {
+                        final ByteBuffer buf = cont.b();
+                        buf.position(startPosition);
+                        m_edb.onBlockStart();
+                        buf.order(ByteOrder.LITTLE_ENDIAN);
+                        while (buf.hasRemaining()) {
+                            int length = buf.getInt();
+                            byte[] rowdata = new byte[length];
+                            buf.get(rowdata, 0, length);
+                            m_edb.processRow(length, rowdata);
+                        }
+                        return m_edb.onBlockCompletionAsync();
+                    } catch (RestartBlockException e) {
+                        if (e.requestBackoff) {
+                            Thread.sleep(backoffQuantity);
+                            backoffQuantity = nextBackoff(backoffQuantity);
+                        }
+                    }
+                }
+            }
+        }
+
+        // a block that can't be processed is logged and acked like any other
+        private ListenableFuture<?> decodeOrAck(BBContainer cont, int startPosition, int backoffQuantity) {
+            try {
+                return decode(cont, startPosition, backoffQuantity);
+            } catch (Exception e) {
+                m_logger.error("Error processing export block", e);
+                return Futures.immediateFuture(null);
+            }
+        }
+
+        private void send(final InFlightBlock block) {
+            final ListenableFuture<?> done = decodeOrAck(block.m_cont, block.m_startPosition, block.m_backoffQuantity);
+            done.addListener(new Runnable() {
+                @Override
+                public void run() {
+                    completed(block, done);
+                }
+            }, m_edb.getExecutor());
+        }
+
+        private void completed(InFlightBlock block, ListenableFuture<?> done) {
+            boolean restart = false;
+            boolean requestBackoff = false;
+            try {
+                done.get();
+            } catch (ExecutionException e) {
+                if (e.getCause() instanceof RestartBlockException) {
+                    restart = true;
+                    requestBackoff = ((RestartBlockException) e.getCause()).requestBackoff;
+                } else {
+                    m_logger.error("Error processing export block", e.getCause());
+                }
+            } catch (Exception e) {
+                m_logger.error("Error processing export block", e);
+            }
+            synchronized (this) {
+                block.m_completed = true;
+                block.m_restart = restart;
+                block.m_requestBackoff = requestBackoff;
+                m_restarting |= restart;
+            }
+            settle();
+        }
+
+        /*
+         * Ack the completed blocks at the head of the window and poll for more. Once a
+         * block is to be restarted and every block sent has come back, send the blocks
+         * from the first one not acked on again, in poll order.
+         */
+        private void settle() {
+            while (true) {
+                final List<InFlightBlock> acked = new ArrayList<>();
+                List<InFlightBlock> resend = null;
+                int backoff = 0;
+                synchronized (this) {
+                    if (m_resending) {
+                        // the thread sending the blocks again settles when it is done
                         return;
                     }
-                    try {
-                        //Position to restart at on error
-                        final int startPosition = cont.b().position();
-
-                        //Track the amount of backoff to use next time, will be updated on repeated failure
-                        int backoffQuantity = 10 + (int)(10 * ThreadLocalRandom.current().nextDouble());
-
-                        /*
-                         * If there is an error processing the block the decoder thinks is recoverable
-                         * start the block from the beginning and repeat until it is processed.
-                         * Also allow the decoder to request exponential backoff
-                         */
-                        while (true) {
-                            try {
-                                final ByteBuffer buf = cont.b();
-                                buf.position(startPosition);
-                                edb.onBlockStart();
-                                buf.order(ByteOrder.LITTLE_ENDIAN);
-                                while (buf.hasRemaining()) {
-                                    int length = buf.getInt();
-                                    byte[] rowdata = new byte[length];
-                                    buf.get(rowdata, 0, length);
-                                    edb.processRow(length, rowdata);
-                                }
-                                edb.onBlockCompletion();
-                                break;
-                            } catch (RestartBlockException e) {
-                                if (e.requestBackoff) {
-                                    Thread.sleep(backoffQuantity);
-                                    //Cap backoff to 8 seconds, then double modulo some randomness
-                                    if (backoffQuantity < 8000) {
-                                        backoffQuantity += (backoffQuantity * .5);
-                                        backoffQuantity +=
-                                                (backoffQuantity * .5 * ThreadLocalRandom.current().nextDouble());
-                                    }
-                                }
+                    while (!m_inFlightBlocks.isEmpty() && m_inFlightBlocks.peek().m_completed
+                            && !m_inFlightBlocks.peek().m_restart) {
+                        acked.add(m_inFlightBlocks.poll());
+                    }
+                    if (m_restarting && allCompleted()) {
+                        m_restarting = false;
+                        if (m_shutdown) {
+                            // forgotten by the data source, the next processor sends them
+                            acked.addAll(m_inFlightBlocks);
+                            m_inFlightBlocks.clear();
+                        } else {
+                            resend = new ArrayList<>(m_inFlightBlocks);
+                            final InFlightBlock first = m_inFlightBlocks.peek();
+                            if (first.m_requestBackoff) {
+                                backoff = first.m_backoffQuantity;
+                                first.m_backoffQuantity = nextBackoff(first.m_backoffQuantity);
                             }
+                            for (InFlightBlock block : resend) {
+                                block.m_completed = false;
+                                block.m_restart = false;
+                                block.m_requestBackoff = false;
+                            }
+                            m_resending = true;
                         }
-                    } finally {
-                        cont.discard();
                     }
-                } catch (Exception e) {
-                    m_logger.error("Error processing export block", e);
                 }
-                constructListener(source, source.poll(), edb, ads, runEveryWhere);
+                for (InFlightBlock block : acked) {
+                    block.m_cont.discard();
+                }
+                if (resend == null) {
+                    poll();
+                    return;
+                }
+                if (backoff > 0) {
+                    try {
+                        Thread.sleep(backoff);
+                    } catch (InterruptedException e) {
+                        m_logger.error("Error processing export block", e);
+                    }
+                }
+                for (InFlightBlock block : resend) {
+                    send(block);
+                }
+                synchronized (this) {
+                    m_resending = false;
+                }
             }
-        }, edb.getExecutor());
+        }
+
+        private boolean allCompleted() {
+            for (InFlightBlock block : m_inFlightBlocks) {
+                if (!block.m_completed) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        //Track the amount of backoff to use next time, will be updated on repeated failure
+        private static int initialBackoff() {
+            return 10 + (int)(10 * ThreadLocalRandom.current().nextDouble());
+        }
+
+        //Cap backoff to 8 seconds, then double modulo some randomness
+        private static int nextBackoff(int backoffQuantity) {
+            if (backoffQuantity < 8000) {
+                backoffQuantity += (backoffQuantity * .5);
+                backoffQuantity += (backoffQuantity * .5 * ThreadLocalRandom.current().nextDouble());
+            }
+            return backoffQuantity;
+        }
     }
 
     @Override
@@ -372,6 +625,10 @@ public class GuestProcessor implements ExportDataProcessor {
     public void shutdown() {
         synchronized (this) {
             m_shutdown = true;
+            // blocks this processor didn't get acked are sent again by the next one
+            for (BlockPoller poller : m_pollers) {
+                poller.shutdown();
+            }
             for (final Pair<ExportDecoderBase, AdvertisedDataSource> p : m_decoders) {
                 try {
                     if (p == null) {
@@ -0,0 +1,275 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2017 VoltDB Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with VoltDB.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.voltdb.exportclient;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import com.google_voltpatches.common.util.concurrent.Futures;
+import com.google_voltpatches.common.util.concurrent.ListenableFuture;
+import com.google_voltpatches.common.util.concurrent.SettableFuture;
+
+/**
+ * Write-behind output stream. Bytes written to it are collected in chunks that are
+ * written to the underlying stream by a task on a shared executor, at most one task
+ * per stream at a time so the chunks are written in order. Writers block once
+ * {@code maxQueuedChunks} chunks are queued or being written.
+ *
+ * {@link #flush()} only hands the buffered bytes to the executor, {@link #sync()}
+ * tells when they and everything before them have been written and flushed. A failure
+ * to write fails the stream for good: nothing more is written to the underlying stream,
+ * whose content past the failure is unknown, e.g. a broken gzip stream, and every later
+ * write, sync and close fails with the same error. The file has to be replaced by a
+ * new one.
+ *
+ * Written to by one thread at a time.
+ */
+class AsyncFileOutputStream extends OutputStream {
+
+    static final int CHUNK_SIZE = 64 * 1024;
+    // bound the time a busy stream holds on to an executor thread
+    private static final int MAX_CHUNKS_PER_TASK = 16;
+
+    private static class Item {
+        final byte[] m_bytes;
+        final int m_length;
+        final SettableFuture<Object> m_done;
+        final boolean m_close;
+
+        Item(byte[] bytes, int length, SettableFuture<Object> done, boolean close) {
+            m_bytes = bytes;
+            m_length = length;
+            m_done = done;
+            m_close = close;
+        }
+    }
+
+    private final OutputStream m_out;
+    private final Executor m_executor;
+    private final Semaphore m_queuedChunks;
+    private final ConcurrentLinkedQueue<Item> m_queue = new ConcurrentLinkedQueue<>();
+    private final ConcurrentLinkedQueue<byte[]> m_freeChunks = new ConcurrentLinkedQueue<>();
+    private final AtomicBoolean m_scheduled = new AtomicBoolean(false);
+    private final Runnable m_drain = new Runnable() {
+        @Override
+        public void run() {
+            drain();
+        }
+    };
+
+    // owned by the writing thread
+    private byte[] m_chunk = new byte[CHUNK_SIZE];
+    private int m_position = 0;
+    private SettableFuture<Object> m_closed = null;
+
+    // set by the drain task, never cleared
+    private volatile IOException m_error = null;
+
+    AsyncFileOutputStream(OutputStream out, Executor executor, int maxQueuedChunks) {
+        m_out = out;
+        m_executor = executor;
+        m_queuedChunks = new Semaphore(maxQueuedChunks);
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        if (m_position == CHUNK_SIZE) {
+            queueChunk();
+        }
+        m_chunk[m_position++] = (byte) b;
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        while (len > 0) {
+            if (m_position == CHUNK_SIZE) {
+                queueChunk();
+            }
+            int length = Math.min(len, CHUNK_SIZE - m_position);
+            System.arraycopy(b, off, m_chunk, m_position, length);
+            m_position += length;
+            off += length;
+            len -= length;
+        }
+    }
+
+    private void queueChunk() throws IOException {
+        checkOpen();
+        try {
+            m_queuedChunks.acquire();
+        } catch (InterruptedException e) {
+            throw new InterruptedIOException();
+        }
+        queue(new Item(m_chunk, m_position, null, false));
+        m_chunk = m_freeChunks.poll();
+        if (m_chunk == null) {
+            m_chunk = new byte[CHUNK_SIZE];
+        }
+        m_position = 0;
+    }
+
+    private void checkOpen() throws IOException {
+        if (m_closed != null) {
+            throw new IOException("Stream closed");
+        }
+        final IOException error = m_error;
+        if (error != null) {
+            throw new IOException("Stream failed", error);
+        }
+    }
+
+    /**
+     * @return whether writing to the underlying stream failed
+     */
+    public boolean hasFailed() {
+        return m_error != null;
+    }
+
+    private void queue(Item item) {
+        m_queue.offer(item);
+        if (m_scheduled.compareAndSet(false, true)) {
+            m_executor.execute(m_drain);
+        }
+    }
+
+    /**
+     * Hand the buffered bytes to the executor to be written, without waiting for them.
+     */
+    @Override
+    public void flush() throws IOException {
+        if (m_position > 0) {
+            queueChunk();
+        }
+    }
+
+    /**
+     * @return a future that is done once everything written so far has been written
+     * and flushed to the underlying stream, or fails with the error that failed the stream
+     */
+    public ListenableFuture<?> sync() throws IOException {
+        final IOException error = m_error;
+        if (error != null) {
+            return Futures.immediateFailedFuture(error);
+        }
+        flush();
+        SettableFuture<Object> done = SettableFuture.create();
+        queue(new Item(null, 0, done, false));
+        return done;
+    }
+
+    /**
+     * Write what is buffered and close the underlying stream, without waiting.
+     * @return a future that is done once the underlying stream is closed, or fails
+     * if the stream failed
+     */
+    public ListenableFuture<?> closeAsync() throws IOException {
+        if (m_closed == null) {
+            if (m_error == null) {
+                flush();
+            }
+            m_closed = SettableFuture.create();
+            queue(new Item(null, 0, m_closed, true));
+        }
+        return m_closed;
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            closeAsync().get();
+        } catch (InterruptedException e) {
+            throw new InterruptedIOException();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            throw new IOException(e.getCause());
+        }
+    }
+
+    private void drain() {
+        Item item;
+        int chunks = 0;
+        while (chunks < MAX_CHUNKS_PER_TASK && (item = m_queue.poll()) != null) {
+            if (item.m_bytes != null) {
+                chunks++;
+                write(item);
+            } else if (item.m_close) {
+                close(item.m_done);
+            } else {
+                sync(item.m_done);
+            }
+        }
+        m_scheduled.set(false);
+        // an item may have been queued after the poll came up empty, but before
+        // the flag was cleared
+        if (!m_queue.isEmpty() && m_scheduled.compareAndSet(false, true)) {
+            m_executor.execute(m_drain);
+        }
+    }
+
+    private void write(Item item) {
+        try {
+            if (m_error == null) {
+                m_out.write(item.m_bytes, 0, item.m_length);
+            }
+        } catch (IOException e) {
+            m_error = e;
+        } finally {
+            m_freeChunks.offer(item.m_bytes);
+            m_queuedChunks.release();
+        }
+    }
+
+    private void sync(SettableFuture<Object> done) {
+        try {
+            if (m_error == null) {
+                m_out.flush();
+            }
+        } catch (IOException e) {
+            m_error = e;
+        }
+        if (m_error != null) {
+            done.setException(m_error);
+        } else {
+            done.set(null);
+        }
+    }
+
+    private void close(SettableFuture<Object> done) {
+        try {
+            m_out.close();
+        } catch (IOException e) {
+            if (m_error == null) {
+                m_error = e;
+            }
+        }
+        m_freeChunks.clear();
+        if (m_error != null) {
+            done.setException(m_error);
+        } else {
+            done.set(null);
+        }
+    }
+}
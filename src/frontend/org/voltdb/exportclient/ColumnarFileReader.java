@@ -0,0 +1,251 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2017 VoltDB Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with VoltDB.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.voltdb.exportclient;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.voltdb.VoltType;
+import org.voltdb.common.Constants;
+import org.voltdb.types.GeographyPointValue;
+import org.voltdb.types.GeographyValue;
+import org.voltdb.types.TimestampType;
+import org.xerial.snappy.Snappy;
+
+/**
+ * Reads the files written by {@link ColumnarFileWriter} a row group at a time.
+ * Values come back as the same java types {@link ExportDecoderBase} decodes rows to.
+ */
+public class ColumnarFileReader implements Closeable {
+
+    private final DataInputStream m_in;
+    private final List<String> m_columnNames;
+    private final List<VoltType> m_columnTypes;
+    private boolean m_complete = false;
+    private long m_rowsRead = 0;
+
+    public ColumnarFileReader(File file) throws IOException {
+        m_in = new DataInputStream(new BufferedInputStream(new FileInputStream(file), 64 * 1024));
+        try {
+            byte[] magic = new byte[ColumnarFileWriter.MAGIC.length];
+            m_in.readFully(magic);
+            if (!Arrays.equals(magic, ColumnarFileWriter.MAGIC)) {
+                throw new IOException(file + " is not a columnar export file");
+            }
+            byte version = m_in.readByte();
+            if (version != ColumnarFileWriter.VERSION) {
+                throw new IOException("Unsupported columnar export file version " + version);
+            }
+            int columns = (int) readVarLong(m_in);
+            List<String> names = new ArrayList<>(columns);
+            List<VoltType> types = new ArrayList<>(columns);
+            for (int i = 0; i < columns; i++) {
+                byte[] name = new byte[(int) readVarLong(m_in)];
+                m_in.readFully(name);
+                names.add(new String(name, Constants.UTF8ENCODING));
+                types.add(VoltType.get(m_in.readByte()));
+            }
+            m_columnNames = Collections.unmodifiableList(names);
+            m_columnTypes = Collections.unmodifiableList(types);
+        } catch (IOException e) {
+            m_in.close();
+            throw e;
+        }
+    }
+
+    public List<String> getColumnNames() {
+        return m_columnNames;
+    }
+
+    public List<VoltType> getColumnTypes() {
+        return m_columnTypes;
+    }
+
+    /**
+     * @return true once the footer was read, false if the file ended without one
+     */
+    public boolean isComplete() {
+        return m_complete;
+    }
+
+    /**
+     * Read the next row group.
+     * @return the values of each row by column, or null when there are no more row groups
+     */
+    public Object[][] readRowGroup() throws IOException {
+        if (m_complete) {
+            return null;
+        }
+        int rows;
+        try {
+            rows = m_in.readInt();
+        } catch (EOFException e) {
+            return null;
+        }
+        if (rows == 0) {
+            long totalRows = m_in.readLong();
+            if (totalRows != m_rowsRead) {
+                throw new IOException("Footer counts " + totalRows + " rows, read " + m_rowsRead);
+            }
+            m_complete = true;
+            return null;
+        }
+
+        Object[][] result = new Object[rows][m_columnTypes.size()];
+        for (int column = 0; column < m_columnTypes.size(); column++) {
+            byte encoding = m_in.readByte();
+            byte[] chunk = new byte[m_in.readInt()];
+            byte[] compressed = new byte[m_in.readInt()];
+            m_in.readFully(compressed);
+            Snappy.rawUncompress(compressed, 0, compressed.length, chunk, 0);
+            readChunk(ByteBuffer.wrap(chunk), encoding, m_columnTypes.get(column), column, result);
+        }
+        m_rowsRead += rows;
+        return result;
+    }
+
+    private static void readChunk(ByteBuffer chunk, byte encoding, VoltType type, int column, Object[][] rows)
+            throws IOException {
+        boolean[] nulls = new boolean[rows.length];
+        if ((encoding & ColumnarFileWriter.ENCODING_HAS_NULLS) != 0) {
+            byte[] bitmap = new byte[(rows.length + 7) >> 3];
+            chunk.get(bitmap);
+            for (int row = 0; row < rows.length; row++) {
+                nulls[row] = (bitmap[row >> 3] & (0x80 >>> (row & 7))) != 0;
+            }
+        }
+        encoding &= ~ColumnarFileWriter.ENCODING_HAS_NULLS;
+
+        String[] dictionary = null;
+        if (encoding == ColumnarFileWriter.ENCODING_DICTIONARY) {
+            dictionary = new String[(int) readVarLong(chunk)];
+            for (int i = 0; i < dictionary.length; i++) {
+                dictionary[i] = readString(chunk);
+            }
+        } else if (encoding != ColumnarFileWriter.ENCODING_PLAIN && encoding != ColumnarFileWriter.ENCODING_DELTA) {
+            throw new IOException("Unknown column encoding " + encoding);
+        }
+
+        long previous = 0;
+        for (int row = 0; row < rows.length; row++) {
+            if (nulls[row]) {
+                continue;
+            }
+            Object value;
+            switch (type) {
+            case TINYINT:
+                value = (byte) unzigzag(readVarLong(chunk));
+                break;
+            case SMALLINT:
+                value = (short) unzigzag(readVarLong(chunk));
+                break;
+            case INTEGER:
+                value = (int) unzigzag(readVarLong(chunk));
+                break;
+            case BIGINT:
+                previous += unzigzag(readVarLong(chunk));
+                value = previous;
+                break;
+            case TIMESTAMP:
+                previous += unzigzag(readVarLong(chunk));
+                value = new TimestampType(previous);
+                break;
+            case FLOAT:
+                value = Double.longBitsToDouble(chunk.getLong());
+                break;
+            case DECIMAL: {
+                int scale = chunk.get();
+                byte[] unscaled = readBytes(chunk);
+                value = new BigDecimal(new BigInteger(unscaled), scale);
+                break;
+            }
+            case STRING:
+                value = dictionary != null ? dictionary[(int) readVarLong(chunk)] : readString(chunk);
+                break;
+            case VARBINARY:
+                value = readBytes(chunk);
+                break;
+            case GEOGRAPHY_POINT:
+                value = GeographyPointValue.unflattenFromBuffer(ByteBuffer.wrap(readBytes(chunk)));
+                break;
+            case GEOGRAPHY:
+                value = GeographyValue.unflattenFromBuffer(ByteBuffer.wrap(readBytes(chunk)));
+                break;
+            default:
+                throw new IOException("Unsupported column type " + type);
+            }
+            rows[row][column] = value;
+        }
+    }
+
+    private static byte[] readBytes(ByteBuffer buf) {
+        byte[] bytes = new byte[(int) readVarLong(buf)];
+        buf.get(bytes);
+        return bytes;
+    }
+
+    private static String readString(ByteBuffer buf) {
+        int length = (int) readVarLong(buf);
+        String s = new String(buf.array(), buf.arrayOffset() + buf.position(), length, Constants.UTF8ENCODING);
+        buf.position(buf.position() + length);
+        return s;
+    }
+
+    private static long readVarLong(ByteBuffer buf) {
+        long value = 0;
+        for (int shift = 0; ; shift += 7) {
+            byte b = buf.get();
+            value |= (long) (b & 0x7F) << shift;
+            if (b >= 0) {
+                return value;
+            }
+        }
+    }
+
+    private static long readVarLong(DataInputStream in) throws IOException {
+        long value = 0;
+        for (int shift = 0; ; shift += 7) {
+            byte b = in.readByte();
+            value |= (long) (b & 0x7F) << shift;
+            if (b >= 0) {
+                return value;
+            }
+        }
+    }
+
+    static long unzigzag(long value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    @Override
+    public void close() throws IOException {
+        m_in.close();
+    }
+}
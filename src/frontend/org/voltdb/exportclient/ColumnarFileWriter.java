@@ -0,0 +1,506 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2017 VoltDB Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with VoltDB.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.voltdb.exportclient;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.Flushable;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.voltdb.VoltType;
+import org.voltdb.common.Constants;
+import org.voltdb.types.GeographyPointValue;
+import org.voltdb.types.GeographyValue;
+import org.voltdb.types.TimestampType;
+import org.xerial.snappy.Snappy;
+
+/**
+ * Writes export rows to a file in a compressed columnar layout. Rows are buffered
+ * per column and written as a row group on {@link #flush()}, or when a row group
+ * reaches its row limit. {@link ColumnarFileReader} reads the files back.
+ *
+ * All integers in the layout are big endian and varints are unsigned LEB128.
+ * <pre>
+ * header:    "VCOL" version:byte columns:varint
+ *            { name-length:varint name:utf8 type:byte(VoltType) } * columns
+ * row group: rows:int { encoding:byte uncompressed:int compressed:int snappy-data } * columns
+ * footer:    0:int total-rows:long
+ * </pre>
+ * The data of a column chunk is a null bitmap, one bit per row with the most
+ * significant bit first, if the encoding has the HAS_NULLS bit set, followed by the
+ * values of the non-null rows.
+ * <ul>
+ * <li>TINYINT, SMALLINT, INTEGER: zigzag varints</li>
+ * <li>BIGINT, TIMESTAMP (microseconds): zigzag varint deltas from the previous value
+ * in the chunk</li>
+ * <li>FLOAT: 8 byte IEEE 754 double</li>
+ * <li>DECIMAL: scale:byte, then the unscaled two's complement value as length:varint bytes</li>
+ * <li>STRING: either length:varint utf8 per value, or a dictionary of count:varint
+ * entries stored that way followed by an index:varint per value</li>
+ * <li>VARBINARY, GEOGRAPHY_POINT, GEOGRAPHY: length:varint bytes, the geo types in
+ * their serialized form</li>
+ * </ul>
+ * A file without the footer is still being written, or was cut short by a crash.
+ *
+ * Not thread safe.
+ */
+public class ColumnarFileWriter implements Closeable, Flushable {
+
+    static final byte[] MAGIC = { 'V', 'C', 'O', 'L' };
+    static final byte VERSION = 1;
+
+    static final byte ENCODING_PLAIN = 0;
+    static final byte ENCODING_DELTA = 1;
+    static final byte ENCODING_DICTIONARY = 2;
+    static final byte ENCODING_HAS_NULLS = (byte) 0x80;
+
+    public static final int DEFAULT_ROW_GROUP_ROWS = 64 * 1024;
+
+    // strings are written plain when the dictionary would grow past this,
+    // or when fewer than half of the values in the chunk repeat
+    private static final int MAX_DICTIONARY_ENTRIES = 64 * 1024;
+    // buffers that grew past this for an unusually large row group are released
+    private static final int SHRINK_THRESHOLD = 8 * 1024 * 1024;
+
+    private final File m_file;
+    private final FileOutputStream m_out;
+    private final VoltType[] m_types;
+    private final Column[] m_columns;
+    private final int m_rowGroupRows;
+    private final Buffer m_rowGroup = new Buffer(64 * 1024);
+    private final Buffer m_chunk = new Buffer(64 * 1024);
+    private byte[] m_compressed = new byte[0];
+    private int m_rows = 0;
+    private long m_totalRows = 0;
+    // length of the file up to the last complete row group
+    private long m_committedBytes;
+    private boolean m_closed = false;
+
+    public ColumnarFileWriter(File file, List<String> columnNames, List<VoltType> columnTypes) throws IOException {
+        this(file, columnNames, columnTypes, DEFAULT_ROW_GROUP_ROWS);
+    }
+
+    public ColumnarFileWriter(File file, List<String> columnNames, List<VoltType> columnTypes, int rowGroupRows)
+            throws IOException {
+        if (columnNames.size() != columnTypes.size()) {
+            throw new IllegalArgumentException("Column names and types differ in length");
+        }
+        if (rowGroupRows < 1) {
+            throw new IllegalArgumentException("Row groups need at least one row");
+        }
+        m_file = file;
+        m_types = columnTypes.toArray(new VoltType[columnTypes.size()]);
+        m_columns = new Column[m_types.length];
+        for (int i = 0; i < m_types.length; i++) {
+            m_columns[i] = m_types[i] == VoltType.STRING ? new StringColumn() : new Column(m_types[i]);
+        }
+        m_rowGroupRows = rowGroupRows;
+
+        Buffer header = new Buffer(256);
+        header.put(MAGIC, 0, MAGIC.length);
+        header.put(VERSION);
+        header.putVarLong(m_types.length);
+        for (int i = 0; i < m_types.length; i++) {
+            byte[] name = columnNames.get(i).getBytes(Constants.UTF8ENCODING);
+            header.putVarLong(name.length);
+            header.put(name, 0, name.length);
+            header.put(m_types[i].getValue());
+        }
+        m_out = new FileOutputStream(file, false);
+        try {
+            m_out.write(header.m_bytes, 0, header.m_size);
+        } catch (IOException e) {
+            m_out.close();
+            throw e;
+        }
+        m_committedBytes = header.m_size;
+    }
+
+    public File getFile() {
+        return m_file;
+    }
+
+    /**
+     * Buffer a row, taking the values of the columns from
+     * {@code values[offset]} on.
+     */
+    public void writeRow(Object[] values, int offset) throws IOException {
+        for (int i = 0; i < m_columns.length; i++) {
+            m_columns[i].add(m_rows, values[offset + i]);
+        }
+        if (++m_rows == m_rowGroupRows) {
+            writeRowGroup();
+        }
+    }
+
+    /**
+     * Write the buffered rows as a row group and flush them to the file.
+     */
+    @Override
+    public void flush() throws IOException {
+        writeRowGroup();
+    }
+
+    /**
+     * Drop the buffered rows and anything a failed flush left past the last
+     * complete row group, so the rows can be written again.
+     */
+    public void reset() throws IOException {
+        clearColumns();
+        if (m_out.getChannel().size() > m_committedBytes) {
+            m_out.getChannel().truncate(m_committedBytes);
+        }
+        m_out.getChannel().position(m_committedBytes);
+    }
+
+    /**
+     * @return the bytes written to the file, not counting buffered rows
+     */
+    public long getFileSize() {
+        return m_committedBytes;
+    }
+
+    public long getRowCount() {
+        return m_totalRows + m_rows;
+    }
+
+    /**
+     * Write the buffered rows and the footer that marks the file as complete.
+     */
+    @Override
+    public void close() throws IOException {
+        if (m_closed) {
+            return;
+        }
+        try {
+            writeRowGroup();
+            m_rowGroup.clear();
+            m_rowGroup.putInt(0);
+            m_rowGroup.putLong(m_totalRows);
+            m_out.write(m_rowGroup.m_bytes, 0, m_rowGroup.m_size);
+            m_committedBytes += m_rowGroup.m_size;
+        } finally {
+            m_closed = true;
+            m_out.close();
+        }
+    }
+
+    private void writeRowGroup() throws IOException {
+        if (m_rows == 0) {
+            return;
+        }
+        m_rowGroup.clear();
+        m_rowGroup.putInt(m_rows);
+        for (Column column : m_columns) {
+            m_chunk.clear();
+            byte encoding = column.encode(m_rows, m_chunk);
+            int maxLength = Snappy.maxCompressedLength(m_chunk.m_size);
+            if (m_compressed.length < maxLength) {
+                m_compressed = new byte[maxLength];
+            }
+            int compressedLength = Snappy.rawCompress(m_chunk.m_bytes, 0, m_chunk.m_size, m_compressed, 0);
+            m_rowGroup.put(encoding);
+            m_rowGroup.putInt(m_chunk.m_size);
+            m_rowGroup.putInt(compressedLength);
+            m_rowGroup.put(m_compressed, 0, compressedLength);
+        }
+        m_out.write(m_rowGroup.m_bytes, 0, m_rowGroup.m_size);
+        m_committedBytes += m_rowGroup.m_size;
+        m_totalRows += m_rows;
+        clearColumns();
+    }
+
+    private void clearColumns() {
+        for (Column column : m_columns) {
+            column.clear();
+        }
+        m_rows = 0;
+        m_rowGroup.shrink();
+        m_chunk.shrink();
+    }
+
+    private static class Column {
+        final VoltType m_type;
+        final Buffer m_values = new Buffer(1024);
+        byte[] m_nulls = new byte[128];
+        boolean m_hasNulls = false;
+        long m_previous = 0;
+
+        Column(VoltType type) {
+            m_type = type;
+        }
+
+        void add(int row, Object value) {
+            if (value == null) {
+                setNull(row);
+                return;
+            }
+            switch (m_type) {
+            case TINYINT:
+            case SMALLINT:
+            case INTEGER:
+                m_values.putVarLong(zigzag(((Number) value).longValue()));
+                break;
+            case BIGINT:
+                putDelta((Long) value);
+                break;
+            case TIMESTAMP:
+                putDelta(((TimestampType) value).getTime());
+                break;
+            case FLOAT:
+                m_values.putLong(Double.doubleToLongBits((Double) value));
+                break;
+            case DECIMAL: {
+                BigDecimal decimal = (BigDecimal) value;
+                byte[] unscaled = decimal.unscaledValue().toByteArray();
+                m_values.put((byte) decimal.scale());
+                m_values.putVarLong(unscaled.length);
+                m_values.put(unscaled, 0, unscaled.length);
+                break;
+            }
+            case VARBINARY: {
+                byte[] bytes = (byte[]) value;
+                m_values.putVarLong(bytes.length);
+                m_values.put(bytes, 0, bytes.length);
+                break;
+            }
+            case GEOGRAPHY_POINT: {
+                GeographyPointValue point = (GeographyPointValue) value;
+                m_values.putVarLong(GeographyPointValue.getLengthInBytes());
+                point.flattenToBuffer(m_values.slice(GeographyPointValue.getLengthInBytes()));
+                break;
+            }
+            case GEOGRAPHY: {
+                GeographyValue geography = (GeographyValue) value;
+                m_values.putVarLong(geography.getLengthInBytes());
+                geography.flattenToBuffer(m_values.slice(geography.getLengthInBytes()));
+                break;
+            }
+            default:
+                throw new IllegalArgumentException("Unsupported column type " + m_type);
+            }
+        }
+
+        void setNull(int row) {
+            if (m_nulls.length <= row >> 3) {
+                m_nulls = Arrays.copyOf(m_nulls, Math.max(m_nulls.length * 2, (row >> 3) + 1));
+            }
+            m_nulls[row >> 3] |= (byte) (0x80 >>> (row & 7));
+            m_hasNulls = true;
+        }
+
+        private void putDelta(long value) {
+            m_values.putVarLong(zigzag(value - m_previous));
+            m_previous = value;
+        }
+
+        /**
+         * Write the chunk for the buffered rows to out.
+         * @return the encoding of the chunk
+         */
+        byte encode(int rows, Buffer out) {
+            byte encoding = m_type == VoltType.BIGINT || m_type == VoltType.TIMESTAMP ? ENCODING_DELTA : ENCODING_PLAIN;
+            return (byte) (encodeNulls(rows, out) | encoding | encodeValues(out));
+        }
+
+        byte encodeNulls(int rows, Buffer out) {
+            if (!m_hasNulls) {
+                return 0;
+            }
+            int length = (rows + 7) >> 3;
+            if (m_nulls.length < length) {
+                m_nulls = Arrays.copyOf(m_nulls, length);
+            }
+            out.put(m_nulls, 0, length);
+            return ENCODING_HAS_NULLS;
+        }
+
+        byte encodeValues(Buffer out) {
+            out.put(m_values.m_bytes, 0, m_values.m_size);
+            return 0;
+        }
+
+        void clear() {
+            m_values.clear();
+            m_values.shrink();
+            if (m_hasNulls) {
+                Arrays.fill(m_nulls, (byte) 0);
+                m_hasNulls = false;
+            }
+            m_previous = 0;
+        }
+    }
+
+    /**
+     * Strings are kept until the chunk is written, when the chunk is dictionary
+     * encoded if enough of them repeat.
+     */
+    private static class StringColumn extends Column {
+        final List<String> m_strings = new ArrayList<>();
+        final Map<String, Integer> m_dictionary = new HashMap<>();
+
+        StringColumn() {
+            super(VoltType.STRING);
+        }
+
+        @Override
+        void add(int row, Object value) {
+            if (value == null) {
+                setNull(row);
+            } else {
+                m_strings.add((String) value);
+            }
+        }
+
+        @Override
+        byte encode(int rows, Buffer out) {
+            return (byte) (encodeNulls(rows, out) | encodeValues(out));
+        }
+
+        @Override
+        byte encodeValues(Buffer out) {
+            m_dictionary.clear();
+            for (String s : m_strings) {
+                if (!m_dictionary.containsKey(s)) {
+                    if (m_dictionary.size() == MAX_DICTIONARY_ENTRIES) {
+                        break;
+                    }
+                    m_dictionary.put(s, m_dictionary.size());
+                }
+            }
+            if (m_dictionary.size() == MAX_DICTIONARY_ENTRIES || m_dictionary.size() * 2 > m_strings.size()) {
+                for (String s : m_strings) {
+                    putString(out, s);
+                }
+                return ENCODING_PLAIN;
+            }
+            String[] entries = new String[m_dictionary.size()];
+            for (Map.Entry<String, Integer> e : m_dictionary.entrySet()) {
+                entries[e.getValue()] = e.getKey();
+            }
+            out.putVarLong(entries.length);
+            for (String s : entries) {
+                putString(out, s);
+            }
+            for (String s : m_strings) {
+                out.putVarLong(m_dictionary.get(s));
+            }
+            return ENCODING_DICTIONARY;
+        }
+
+        private static void putString(Buffer out, String s) {
+            byte[] bytes = s.getBytes(Constants.UTF8ENCODING);
+            out.putVarLong(bytes.length);
+            out.put(bytes, 0, bytes.length);
+        }
+
+        @Override
+        void clear() {
+            super.clear();
+            m_strings.clear();
+            m_dictionary.clear();
+        }
+    }
+
+    static long zigzag(long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+
+    /**
+     * A growable byte array, cheaper than a ByteArrayOutputStream wrapped in a
+     * DataOutputStream for the small writes the columns do.
+     */
+    private static final class Buffer {
+        private final int m_initialCapacity;
+        byte[] m_bytes;
+        int m_size = 0;
+
+        Buffer(int initialCapacity) {
+            m_initialCapacity = initialCapacity;
+            m_bytes = new byte[initialCapacity];
+        }
+
+        private void ensure(int more) {
+            if (m_size + more > m_bytes.length) {
+                m_bytes = Arrays.copyOf(m_bytes, Math.max(m_bytes.length * 2, m_size + more));
+            }
+        }
+
+        void put(byte b) {
+            ensure(1);
+            m_bytes[m_size++] = b;
+        }
+
+        void put(byte[] bytes, int offset, int length) {
+            ensure(length);
+            System.arraycopy(bytes, offset, m_bytes, m_size, length);
+            m_size += length;
+        }
+
+        void putInt(int value) {
+            ensure(4);
+            for (int shift = 24; shift >= 0; shift -= 8) {
+                m_bytes[m_size++] = (byte) (value >>> shift);
+            }
+        }
+
+        void putLong(long value) {
+            ensure(8);
+            for (int shift = 56; shift >= 0; shift -= 8) {
+                m_bytes[m_size++] = (byte) (value >>> shift);
+            }
+        }
+
+        void putVarLong(long value) {
+            ensure(10);
+            while ((value & ~0x7FL) != 0) {
+                m_bytes[m_size++] = (byte) ((value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+            m_bytes[m_size++] = (byte) value;
+        }
+
+        /**
+         * @return a buffer over the next length bytes, which are counted as written
+         */
+        ByteBuffer slice(int length) {
+            ensure(length);
+            ByteBuffer buf = ByteBuffer.wrap(m_bytes, m_size, length);
+            m_size += length;
+            return buf;
+        }
+
+        void clear() {
+            m_size = 0;
+        }
+
+        void shrink() {
+            if (m_bytes.length > SHRINK_THRESHOLD) {
+                m_bytes = new byte[m_initialCapacity];
+            }
+        }
+    }
+}
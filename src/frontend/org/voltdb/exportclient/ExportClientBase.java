@@ -38,6 +38,7 @@ public abstract class ExportClientBase {
             new java.util.concurrent.locks.ReentrantLock(true);
     protected boolean m_hasPrintedAutodiscoveryWarning = false;
     private boolean m_runEveryWhere = false;
+    private int m_maxInFlightBlocks = 1;
     /**
      * Override this to take in configuration properties and setup your export
      * client connector.
@@ -58,6 +59,22 @@ public abstract class ExportClientBase {
         m_runEveryWhere = flag;
     }
 
+    /**
+     * How many blocks of a data source may be handed to its decoder before the
+     * oldest one is acked. Only decoders that complete blocks asynchronously, see
+     * {@link ExportDecoderBase#onBlockCompletionAsync()}, benefit from more than one.
+     */
+    public int getMaxInFlightBlocks() {
+        return m_maxInFlightBlocks;
+    }
+
+    public void setMaxInFlightBlocks(int maxInFlightBlocks) {
+        if (maxInFlightBlocks < 1) {
+            throw new IllegalArgumentException("The number of in flight export blocks must be at least 1");
+        }
+        m_maxInFlightBlocks = maxInFlightBlocks;
+    }
+
     /**
      * Called when the export client is going to shutdown.
      */
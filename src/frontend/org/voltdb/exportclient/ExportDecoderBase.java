@@ -40,6 +40,8 @@ import au.com.bytecode.opencsv_voltpatches.CSVWriter;
 
 import com.google_voltpatches.common.base.Charsets;
 import com.google_voltpatches.common.base.Preconditions;
+import com.google_voltpatches.common.util.concurrent.Futures;
+import com.google_voltpatches.common.util.concurrent.ListenableFuture;
 import com.google_voltpatches.common.util.concurrent.ListeningExecutorService;
 
 /**
@@ -108,6 +110,18 @@ public abstract class ExportDecoderBase {
     public void onBlockCompletion() throws RestartBlockException {
     }
 
+    /**
+     * Like {@link #onBlockCompletion()}, for decoders that hand the block's rows off to
+     * be written in the background. The block is acked once the returned future
+     * completes, and the next blocks may be decoded in the meantime, up to the client's
+     * {@link ExportClientBase#getMaxInFlightBlocks()}. A future that fails with a
+     * {@link RestartBlockException} has the block decoded again.
+     */
+    public ListenableFuture<?> onBlockCompletionAsync() throws RestartBlockException {
+        onBlockCompletion();
+        return Futures.immediateFuture(null);
+    }
+
     /**
      * Notify that a new block of data is going to be processed now
      */
@@ -21,6 +21,7 @@ import java.io.BufferedWriter;
 import java.io.File;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.OutputStream;
 import java.io.OutputStreamWriter;
 import java.text.SimpleDateFormat;
 import java.util.Arrays;
@@ -29,17 +30,22 @@ import java.util.Comparator;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Properties;
 import java.util.Set;
 import java.util.TimeZone;
 import java.util.TreeMap;
-import java.util.concurrent.Callable;
-import java.util.concurrent.FutureTask;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.zip.GZIPOutputStream;
 
 import org.apache.commons.lang3.StringEscapeUtils;
 import org.json_voltpatches.JSONObject;
@@ -47,15 +53,21 @@ import org.json_voltpatches.JSONStringer;
 import org.voltcore.logging.VoltLogger;
 import org.voltcore.utils.CoreUtils;
 import org.voltdb.VoltDB;
+import org.voltdb.VoltType;
 import org.voltdb.common.Constants;
 import org.voltdb.export.AdvertisedDataSource;
 import org.voltdb.export.ExportManager;
 import org.voltdb.exportclient.ExportDecoderBase.BinaryEncoding;
+import org.voltdb.exportclient.ExportDecoderBase.RestartBlockException;
 import org.voltdb.exportclient.decode.CSVWriterDecoder;
 import org.voltdb.utils.VoltFile;
 
 import com.google_voltpatches.common.base.Throwables;
+import com.google_voltpatches.common.util.concurrent.Futures;
+import com.google_voltpatches.common.util.concurrent.ListenableFuture;
 import com.google_voltpatches.common.util.concurrent.ListeningExecutorService;
+import com.google_voltpatches.common.util.concurrent.MoreExecutors;
+import com.google_voltpatches.common.util.concurrent.SettableFuture;
 
 import au.com.bytecode.opencsv_voltpatches.CSVWriter;
 
@@ -69,6 +81,10 @@ public class ExportToFileClient extends ExportClientBase {
     private static final TimeUnit TIME_PERIOD_UNIT =
             TimeUnit.valueOf(System.getProperty("__EXPORT_FILE_ROTATE_PERIOD_UNIT__", TimeUnit.MINUTES.name()));
     private static final int EXPORT_DELIM_NUM_CHARACTERS = 4;
+    // chunks of a file that can be waiting to be written before the decoder blocks
+    private static final int WRITE_BEHIND_CHUNKS = 16;
+    // how long shutdown waits for the blocks being written to the last batch
+    private static final int SHUTDOWN_TIMEOUT_SECONDS = Integer.getInteger("EXPORT_FILE_SHUTDOWN_TIMEOUT_SECONDS", 60);
 
     // These get put in from of the batch folders
     // active means the folder is being written to
@@ -91,17 +107,28 @@ public class ExportToFileClient extends ExportClientBase {
 
     protected final Set<String> m_globalSchemasWritten = new HashSet<>();
 
-    protected PeriodicExportContext m_current = null;
+    // swapped by roll(), decoders hold a reference to the batch they are writing to
+    protected volatile PeriodicExportContext m_current = null;
+    protected volatile boolean m_shutdown = false;
 
     protected boolean m_batched;
     protected boolean m_withSchema;
-
+    // write compressed column chunks instead of delimited text
+    protected boolean m_columnar;
+    // roll once a file grows past this many bytes, 0 to only roll periodically
+    protected long m_maxFileSize;
+    // gzip CSV/TSV files as they are written
+    protected boolean m_gzip;
+
+    // guards m_tableDecoders
     protected final ReentrantReadWriteLock m_batchLock = new ReentrantReadWriteLock();
 
     private static final Object m_batchDirNamingLock = new Object();
 
     // timer used to roll batches
     protected ScheduledExecutorService m_ses;
+    // writes (and compresses) CSV/TSV files behind the decoders
+    protected ListeningExecutorService m_writerPool;
 
     protected BinaryEncoding m_binaryEncoding;
 
@@ -119,7 +146,16 @@ public class ExportToFileClient extends ExportClientBase {
     class PeriodicExportContext {
         File m_dirContainingFiles;
         final Map<FileHandle, CSVWriter> m_writers = Collections.synchronizedMap(new TreeMap<FileHandle, CSVWriter>());
+        final Map<FileHandle, AsyncFileOutputStream> m_streams =
+                Collections.synchronizedMap(new TreeMap<FileHandle, AsyncFileOutputStream>());
+        final Map<FileHandle, ColumnarFileWriter> m_columnarWriters =
+                Collections.synchronizedMap(new TreeMap<FileHandle, ColumnarFileWriter>());
         boolean m_hasClosed = false;
+        final AtomicBoolean m_rollRequested = new AtomicBoolean(false);
+        // one for being the current batch and one per block being written to it,
+        // the batch is closed when it drops to zero
+        private final AtomicInteger m_references = new AtomicInteger(1);
+        final SettableFuture<Object> m_closed = SettableFuture.create();
         protected Date start;
         protected final Set<String> m_batchSchemasWritten = new HashSet<>();
 
@@ -234,6 +270,46 @@ public class ExportToFileClient extends ExportClientBase {
             }
         }
 
+        /**
+         * @return false if the batch was rolled and is being closed
+         */
+        boolean retain() {
+            while (true) {
+                int references = m_references.get();
+                if (references == 0) {
+                    return false;
+                }
+                if (m_references.compareAndSet(references, references + 1)) {
+                    return true;
+                }
+            }
+        }
+
+        /**
+         * Drop a reference, closing the batch on the roll timer thread if it was the last.
+         */
+        void release() {
+            if (m_references.decrementAndGet() > 0) {
+                return;
+            }
+            Runnable close = new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        closeAllWriters();
+                    } finally {
+                        m_closed.set(null);
+                    }
+                }
+            };
+            try {
+                m_ses.execute(close);
+            } catch (RejectedExecutionException e) {
+                // shutting down
+                close.run();
+            }
+        }
+
         String getPathOfBatchDir(String prefix) {
             assert(m_batched);
             return m_outDir.getPath() + File.separator + prefix + m_nonce + "-" + m_dateformat.get().format(start);
@@ -254,7 +330,8 @@ public class ExportToFileClient extends ExportClientBase {
             // only need to run this once per batch
             if (m_hasClosed) return;
 
-            // flush and close any files that are open
+            // flush and close any files that are open, the files are
+            // written and closed in parallel by the writer pool
             for (Entry<FileHandle, CSVWriter> entry : m_writers.entrySet()) {
                 CSVWriter writer = entry.getValue();
                 if (writer == null) {
@@ -263,6 +340,16 @@ public class ExportToFileClient extends ExportClientBase {
                 }
                 try {
                     writer.flush();
+                    m_streams.get(entry.getKey()).closeAsync();
+                } catch (IOException e) {
+                    m_logger.error("Failed to flush or close file, export file may be unavailable/unwritable, or not enough space.", e);
+                }
+            }
+            for (CSVWriter writer : m_writers.values()) {
+                if (writer == null) {
+                    continue;
+                }
+                try {
                     writer.close();
                 } catch (IOException e) {
                     m_logger.error("Failed to flush or close file, export file may be unavailable/unwritable, or not enough space.", e);
@@ -272,6 +359,13 @@ public class ExportToFileClient extends ExportClientBase {
                     }
                 }
             }
+            for (ColumnarFileWriter writer : m_columnarWriters.values()) {
+                try {
+                    writer.close();
+                } catch (IOException e) {
+                    m_logger.error("Failed to flush or close file, export file may be unavailable/unwritable, or not enough space.", e);
+                }
+            }
 
             if (m_batched)
                 closeBatch();
@@ -280,6 +374,8 @@ public class ExportToFileClient extends ExportClientBase {
 
             // empty the writer set (probably not needed)
             m_writers.clear();
+            m_streams.clear();
+            m_columnarWriters.clear();
 
             // note that we're closed now
             m_hasClosed = true;
@@ -312,14 +408,16 @@ public class ExportToFileClient extends ExportClientBase {
         }
 
         void closeFiles() {
-            File[] notifySet = new VoltFile[m_writers.size()];
+            File[] notifySet = new VoltFile[m_writers.size() + m_columnarWriters.size()];
 
             int i = 0;
             // Sort the open files by TXN ID so that we can close and rename
             // them in the order in which they were created.  This allows
             // apps interested in the files to know that whenever a new file
             // is closed, it will be the next file temporally in the export stream
-            FileHandle[] keys = m_writers.keySet().toArray(new FileHandle[] {});
+            FileHandle[] keys = new FileHandle[notifySet.length];
+            System.arraycopy(m_writers.keySet().toArray(), 0, keys, 0, m_writers.size());
+            System.arraycopy(m_columnarWriters.keySet().toArray(), 0, keys, m_writers.size(), m_columnarWriters.size());
             Arrays.sort(keys, new Comparator<FileHandle>(){
                 @Override
                 public int compare(FileHandle f1, FileHandle f2)
@@ -351,13 +449,7 @@ public class ExportToFileClient extends ExportClientBase {
             notifyRollIsComplete(notifySet);
         }
 
-        CSVWriter getWriter(String tableName, long generation) throws IOException {
-            FileHandle handle = new FileHandle(tableName, generation);
-            CSVWriter writer = m_writers.get(handle);
-            if (writer != null)
-                return writer;
-
-            String path = handle.getPath(ACTIVE_PREFIX);
+        private File getNewFile(String path) {
             File newFile = new VoltFile(path);
             if (newFile.exists()) {
                 m_logger.error("Error: Output file for next period already exists at path: " + newFile.getPath()
@@ -365,8 +457,25 @@ public class ExportToFileClient extends ExportClientBase {
                         + " ExportToFileClient will stop to prevent data loss.");
                 throw new RuntimeException();
             }
+            return newFile;
+        }
+
+        CSVWriter getWriter(String tableName, long generation) throws IOException {
+            FileHandle handle = new FileHandle(tableName, generation);
+            CSVWriter writer = m_writers.get(handle);
+            if (writer != null)
+                return writer;
+
+            String path = handle.getPath(ACTIVE_PREFIX);
+            File newFile = getNewFile(path);
+            AsyncFileOutputStream stream = null;
             try {
-                OutputStreamWriter osw = new OutputStreamWriter(new FileOutputStream(newFile, false), "UTF-8");
+                OutputStream out = new FileOutputStream(newFile, false);
+                if (m_gzip) {
+                    out = new GZIPOutputStream(out, AsyncFileOutputStream.CHUNK_SIZE, true);
+                }
+                stream = new AsyncFileOutputStream(out, m_writerPool, WRITE_BEHIND_CHUNKS);
+                OutputStreamWriter osw = new OutputStreamWriter(stream, "UTF-8");
                 if (m_fullDelimiters != null) {
                     writer = new CSVWriter(new BufferedWriter(osw, 4096 * 4),
                             m_fullDelimiters[0], m_fullDelimiters[1], m_fullDelimiters[2], String.valueOf(m_fullDelimiters[3]));
@@ -389,10 +498,38 @@ public class ExportToFileClient extends ExportClientBase {
                 }
 
             }
+            m_streams.put(handle, stream);
             m_writers.put(handle, writer);
             return writer;
         }
 
+        AsyncFileOutputStream getStream(String tableName, long generation) {
+            return m_streams.get(new FileHandle(tableName, generation));
+        }
+
+        ColumnarFileWriter getColumnarWriter(String tableName, long generation,
+                List<String> columnNames, List<VoltType> columnTypes) throws IOException {
+            FileHandle handle = new FileHandle(tableName, generation);
+            ColumnarFileWriter writer = m_columnarWriters.get(handle);
+            if (writer != null)
+                return writer;
+
+            String path = handle.getPath(ACTIVE_PREFIX);
+            File newFile = getNewFile(path);
+            try {
+                writer = new ColumnarFileWriter(newFile, columnNames, columnTypes);
+            } catch (IOException e) {
+                rateLimitedLogError(m_logger, "Failed to create output file: " + path + " , file may be unavailable/unwritable, or not enough space.");
+                throw e;
+            }
+            m_columnarWriters.put(handle, writer);
+            return writer;
+        }
+
+        long getFileSize(String tableName, long generation) {
+            return new VoltFile(new FileHandle(tableName, generation).getPath(ACTIVE_PREFIX)).length();
+        }
+
         void writeSchema(String tableName, long generation, String schema) throws IOException {
             // if no schema's enabled pretend like this worked
             if (!m_withSchema) return;
@@ -452,29 +589,25 @@ public class ExportToFileClient extends ExportClientBase {
     }
 
 
-    // This class outputs exported rows converted to CSV or TSV values
-    // for the table named in the constructor's AdvertisedDataSource
+    // This class outputs exported rows converted to CSV or TSV values,
+    // or to columnar files, for the table named in the constructor's AdvertisedDataSource
     class ExportToFileDecoder extends ExportDecoderBase {
         private final long m_generation;
         private final String m_tableName;
         protected String m_schemaString = "ERROR SERIALIZING SCHEMA";
         private final HashSet<AdvertisedDataSource> m_sources = new HashSet<>();
-        private FutureTask<CSVWriter> m_firstBlockTask;
+        // the batch the current block is written to, and the batch the writers are for
+        private PeriodicExportContext m_context;
+        private PeriodicExportContext m_writerContext;
         private CSVWriter m_writer;
+        private AsyncFileOutputStream m_stream;
+        private ColumnarFileWriter m_columnarWriter;
         private final CSVWriterDecoder m_csvWriterDecoder;
+        private final int m_firstField;
+        private final List<String> m_columnNames;
+        private final List<VoltType> m_columnTypes;
         private final ListeningExecutorService m_es;
 
-        private void resetWriter() {
-            m_firstBlockTask = new FutureTask<>(new Callable<CSVWriter>() {
-                @Override
-                public CSVWriter call() throws Exception {
-                    CSVWriter writer = m_current.getWriter(m_tableName, m_generation);
-                    m_current.writeSchema(m_tableName, m_generation, m_schemaString);
-                    return writer;
-                }
-            });;
-        }
-
         @Override
         public ListeningExecutorService getExecutor() {
             return m_es;
@@ -493,7 +626,6 @@ public class ExportToFileClient extends ExportClientBase {
                             + " table " + source.tableName + " generation " + source.m_generation, CoreUtils.MEDIUM_STACK_SIZE);
 
             setSchemaForSource(source);
-            resetWriter();
 
             CSVWriterDecoder.Builder builder = new CSVWriterDecoder.Builder();
             builder
@@ -505,6 +637,10 @@ public class ExportToFileClient extends ExportClientBase {
                 .skipInternalFields(m_skipinternal)
                 ;
             m_csvWriterDecoder = builder.build();
+
+            m_firstField = getFirstField(m_skipinternal);
+            m_columnNames = source.columnNames.subList(m_firstField, source.columnNames.size());
+            m_columnTypes = source.columnTypes.subList(m_firstField, source.columnTypes.size());
         }
 
         /**
@@ -546,7 +682,11 @@ public class ExportToFileClient extends ExportClientBase {
 
             try {
                 ExportRowData rd = decodeRow(rowData);
-                m_csvWriterDecoder.decode(m_writer,rd.values);
+                if (m_columnar) {
+                    m_columnarWriter.writeRow(rd.values, m_firstField);
+                } else {
+                    m_csvWriterDecoder.decode(m_writer,rd.values);
+                }
             }
             catch (Exception e) {
                 rateLimitedLogError(m_logger, "failed to to process export row %s", Throwables.getStackTraceAsString(e));
@@ -561,45 +701,116 @@ public class ExportToFileClient extends ExportClientBase {
          */
         @Override
         public void onBlockStart() throws RestartBlockException{
-            m_batchLock.readLock().lock();
+            m_context = acquireContext();
+            if (m_writerContext == m_context) {
+                return;
+            }
             try {
-                m_firstBlockTask.run();
-                m_writer = m_firstBlockTask.get();
-            } catch (Exception e) {
-                // if writeSchema or getWriter method fails, it will throw IOException
-                // try reset writer and restart the block
-                if (e.getCause() instanceof IOException) {
-                    m_logger.error("Failed to get writer, export file may be unavailable/unwritable, or not enough space.", e);
-
-                    resetWriter();
-                    //This means we will not reach onBlockCompletion and thus not release and roll will block
-                    //not creating new files and export may appear not working.
-                    m_batchLock.readLock().unlock();
-                    throw new RestartBlockException("Fail to start the block", e.getCause(),true);
+                if (m_columnar) {
+                    m_columnarWriter = m_context.getColumnarWriter(m_tableName, m_generation, m_columnNames, m_columnTypes);
                 } else {
-                    Throwables.propagate(e);
+                    m_writer = m_context.getWriter(m_tableName, m_generation);
+                    m_stream = m_context.getStream(m_tableName, m_generation);
                 }
+                m_context.writeSchema(m_tableName, m_generation, m_schemaString);
+                m_writerContext = m_context;
+            } catch (IOException e) {
+                // if writeSchema or getWriter method fails, it will throw IOException
+                // release the batch and restart the block
+                m_logger.error("Failed to get writer, export file may be unavailable/unwritable, or not enough space.", e);
+                releaseContext();
+                throw new RestartBlockException("Fail to start the block", e, true);
+            } catch (RuntimeException e) {
+                releaseContext();
+                throw e;
+            }
+        }
+
+        private void releaseContext() {
+            m_context.release();
+            m_context = null;
+        }
+
+        @Override
+        public void onBlockCompletion() throws RestartBlockException {
+            ListenableFuture<?> written = onBlockCompletionAsync();
+            try {
+                written.get();
+            } catch (InterruptedException e) {
+                Throwables.propagate(e);
+            } catch (ExecutionException e) {
+                Throwables.propagateIfInstanceOf(e.getCause(), RestartBlockException.class);
+                Throwables.propagate(e.getCause());
             }
         }
 
         /**
-         * Release the current batch folder.
-         * @throws RestartBlockException
+         * Hand the rows of the block to the file writer and release the current batch
+         * folder. The returned future is done when the rows have been written.
          */
         @Override
-        public void onBlockCompletion() throws RestartBlockException {
+        public ListenableFuture<?> onBlockCompletionAsync() throws RestartBlockException {
+            if (m_columnar) {
+                completeColumnarBlock();
+                return Futures.immediateFuture(null);
+            }
+            final PeriodicExportContext context = m_context;
+            final ListenableFuture<?> written;
             try {
                 m_writer.flush();
+                written = m_stream.sync();
             } catch (Throwable t) {
-                Throwables.propagate(t);
+                throw Throwables.propagate(t);
             } finally {
-                m_batchLock.readLock().unlock();
+                rollIfTooLarge(context, m_tableName, m_generation);
+                // the block's rows are queued ahead of the batch closing the file
+                releaseContext();
                 if (m_writer.checkError()) {
                     rateLimitedLogError(m_logger, "Failed to flush, export file may be unavailable/unwritable, or not enough space.");
                     m_writer.resetWriter();
+                    rollOnFailure(context);
                     throw new RestartBlockException("Failed to complete the block.", true);
                 }
             }
+
+            final SettableFuture<Object> done = SettableFuture.create();
+            written.addListener(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        written.get();
+                        done.set(null);
+                    } catch (Exception e) {
+                        rateLimitedLogError(m_logger, "Failed to write, export file may be unavailable/unwritable, or not enough space.");
+                        // the file failed for good, the block is written again to a new one
+                        rollOnFailure(context);
+                        done.setException(new RestartBlockException("Failed to complete the block.", e, true));
+                    }
+                }
+            }, MoreExecutors.sameThreadExecutor());
+            return done;
+        }
+
+        /**
+         * Write the rows of the block as a row group. On failure the rows buffered
+         * for the block, and anything partially written, are dropped so the block
+         * can be written again.
+         */
+        private void completeColumnarBlock() throws RestartBlockException {
+            try {
+                m_columnarWriter.flush();
+            } catch (IOException e) {
+                rateLimitedLogError(m_logger, "Failed to flush, export file may be unavailable/unwritable, or not enough space.");
+                try {
+                    m_columnarWriter.reset();
+                } catch (IOException e1) {
+                    m_logger.error("Failed to truncate partially written export file " + m_columnarWriter.getFile(), e1);
+                }
+                throw new RestartBlockException("Failed to complete the block.", e, true);
+            } finally {
+                rollIfTooLarge(m_context, m_tableName, m_generation);
+                releaseContext();
+            }
         }
 
         @Override
@@ -650,6 +861,22 @@ public class ExportToFileClient extends ExportClientBase {
         }
     }
 
+    /**
+     * Get and hold the current batch.
+     */
+    PeriodicExportContext acquireContext() throws RestartBlockException {
+        while (true) {
+            if (m_shutdown) {
+                throw new RestartBlockException("File export is shut down", true);
+            }
+            PeriodicExportContext context = m_current;
+            // fails if the batch was rolled since it was read
+            if (context.retain()) {
+                return context;
+            }
+        }
+    }
+
     @Override
     public void shutdown() {
         m_ses.shutdown();
@@ -658,33 +885,79 @@ public class ExportToFileClient extends ExportClientBase {
         } catch( InterruptedException iex) {
             Throwables.propagate(iex);
         }
-        m_batchLock.writeLock().lock();
-        m_current.closeAllWriters();
+        // wait for blocks being written to the batch and close it
+        m_shutdown = true;
+        m_current.release();
+        try {
+            m_current.m_closed.get(SHUTDOWN_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        } catch (TimeoutException e) {
+            // a block is stuck being written, leave its batch's files active
+            m_logger.warn("Timed out after " + SHUTDOWN_TIMEOUT_SECONDS +
+                    " seconds waiting for export files to be written and closed.");
+        } catch (InterruptedException | ExecutionException e) {
+            Throwables.propagate(e);
+        }
+        m_writerPool.shutdown();
+    }
+
+    /**
+     * Roll the batch a written file belongs to if the file grew past the size limit.
+     * The roll happens on the roll timer thread, which all rolls happen on.
+     */
+    void rollIfTooLarge(final PeriodicExportContext context, String tableName, long generation) {
+        if (m_maxFileSize == 0 || context.getFileSize(tableName, generation) < m_maxFileSize) {
+            return;
+        }
+        requestRoll(context, "Failed to roll file on size.");
+    }
+
+    /**
+     * Roll the batch a file that failed to be written belongs to, so the blocks that
+     * failed are written again to new files, in order, instead of after the failure.
+     */
+    void rollOnFailure(PeriodicExportContext context) {
+        requestRoll(context, "Failed to roll file after a write failure.");
+    }
+
+    private void requestRoll(final PeriodicExportContext context, final String failure) {
+        if (!context.m_rollRequested.compareAndSet(false, true)) {
+            return;
+        }
+        // file and batch names are timestamped at (by default) second granularity,
+        // so don't start the next batch within the same second
+        long delay = Math.max(0, 1000 - (System.currentTimeMillis() - context.start.getTime()));
+        try {
+            m_ses.schedule(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        // only roll if the batch wasn't rolled periodically in the meantime
+                        if (m_current == context) {
+                            roll();
+                        }
+                    } catch (Throwable t) {
+                        m_logger.warn(failure, t);
+                    }
+                }
+            }, delay, TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException e) {
+            // shutting down, which closes the batch anyway
+        }
     }
 
     /**
      * Deprecate the current batch and create a new one. The old one will still
      * be active until all writers have finished writing their current blocks
-     * to it.
+     * to it, new blocks go to the new batch right away. Only called on the roll
+     * timer thread.
      */
     void roll() {
-        m_batchLock.writeLock().lock();
         final PeriodicExportContext previous = m_current;
-        try {
-            m_current = new PeriodicExportContext();
+        m_current = new PeriodicExportContext();
 
-            m_logger.trace("Rolling batch.");
+        m_logger.trace("Rolling batch.");
 
-            for( Map<String, ExportToFileDecoder> genDecoders: m_tableDecoders.values()) {
-                for( ExportToFileDecoder decoder: genDecoders.values()) {
-                    decoder.resetWriter();
-                }
-            }
-
-        } finally {
-            m_batchLock.writeLock().unlock();
-        }
-        previous.closeAllWriters();
+        previous.release();
     }
 
     public String getVoltDBRootPath() {
@@ -699,16 +972,19 @@ public class ExportToFileClient extends ExportClientBase {
             throw new IllegalArgumentException("ExportToFile: must provide a filename nonce");
         }
         char delimiter = '\0';
+        boolean columnar = false;
         // Default to CSV if missing
         String type = conf.getProperty("type", "csv").trim();
         if (type.equalsIgnoreCase("csv")) {
             delimiter = ',';
         } else if (type.equalsIgnoreCase("tsv")) {
             delimiter = '\t';
+        } else if (type.equalsIgnoreCase("columnar")) {
+            columnar = true;
         } else {
-            throw new IllegalArgumentException("Error: --type must be one of CSV or TSV");
+            throw new IllegalArgumentException("Error: --type must be one of CSV, TSV or COLUMNAR");
         }
-        if (delimiter == '\0') {
+        if (delimiter == '\0' && !columnar) {
             throw new IllegalArgumentException("ExportToFile: must provide an output type");
         }
         String dir = conf.getProperty("outdir");
@@ -743,6 +1019,28 @@ public class ExportToFileClient extends ExportClientBase {
             throw new IllegalArgumentException("Error: Specified value for --period must be >= 1.");
         }
 
+        long maxFileSizeMB = Long.parseLong(conf.getProperty("maxfilesize", "0").trim());
+        if (maxFileSizeMB < 0) {
+            throw new IllegalArgumentException("Error: Specified value for maxfilesize must be >= 0.");
+        }
+
+        String compression = conf.getProperty("compression", "none").trim();
+        boolean gzip = false;
+        if (compression.equalsIgnoreCase("gzip")) {
+            if (columnar) {
+                throw new IllegalArgumentException("Error: columnar files are always compressed, compression only applies to CSV and TSV.");
+            }
+            gzip = true;
+        } else if (!compression.equalsIgnoreCase("none")) {
+            throw new IllegalArgumentException("Error: compression must be one of NONE or GZIP");
+        }
+
+        int writerThreads = Integer.parseInt(conf.getProperty("writerthreads",
+                Integer.toString(Math.max(1, CoreUtils.availableProcessors() / 4))).trim());
+        if (writerThreads < 1) {
+            throw new IllegalArgumentException("Error: Specified value for writerthreads must be >= 1.");
+        }
+
         String dateformatString = conf.getProperty("dateformat", "yyyyMMddHHmmss").trim();
         boolean batched = Boolean.parseBoolean(conf.getProperty("batched", "false"));
         boolean withSchema = Boolean.parseBoolean(conf.getProperty("with-schema", "false"));
@@ -769,9 +1067,13 @@ public class ExportToFileClient extends ExportClientBase {
         setRunEverywhere(Boolean.parseBoolean(conf.getProperty("replicated", "false")));
         configureInternal(
                 delimiter,
+                columnar,
                 nonce,
                 outdir,
                 period,
+                maxFileSizeMB * 1024 * 1024,
+                gzip,
+                writerThreads,
                 dateformatString,
                 fullDelimiters,
                 skipinternal,
@@ -783,9 +1085,13 @@ public class ExportToFileClient extends ExportClientBase {
 
     private void configureInternal(
                               final char delimiter,
+                              final boolean columnar,
                               final String nonce,
                               final File outdir,
                               final int period,
+                              final long maxFileSize,
+                              final boolean gzip,
+                              final int writerThreads,
                               final String dateformatString,
                               String fullDelimiters,
                               final boolean skipinternal,
@@ -794,11 +1100,17 @@ public class ExportToFileClient extends ExportClientBase {
                               final TimeZone tz,
                               final BinaryEncoding be) {
         m_delimiter = delimiter;
-        m_extension = (delimiter == ',') ? ".csv" : ".tsv";
+        m_columnar = columnar;
+        m_extension = columnar ? ".vcol" : (delimiter == ',') ? ".csv" : ".tsv";
+        m_gzip = gzip;
+        if (gzip) {
+            m_extension += ".gz";
+        }
         m_nonce = nonce;
         m_outDir = outdir;
         m_tableDecoders = new HashMap<>();
         m_period = period;
+        m_maxFileSize = maxFileSize;
         m_dateFormatOriginalString = dateformatString;
         // SimpleDateFormat isn't threadsafe
         // ThreadLocal variables should protect them, lamely.
@@ -825,6 +1137,8 @@ public class ExportToFileClient extends ExportClientBase {
             m_fullDelimiters = null;
         }
 
+        m_writerPool = CoreUtils.getListeningExecutorService("Export file writer for nonce " + nonce, writerThreads);
+
         // init the batch system with the first batch
         assert(m_current == null);
         m_current = new PeriodicExportContext();
@@ -20,18 +20,23 @@ package org.voltdb.exportclient;
 import java.io.IOException;
 import java.math.BigDecimal;
 import java.net.URI;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
 import java.sql.BatchUpdateException;
 import java.sql.Connection;
 import java.sql.DatabaseMetaData;
 import java.sql.PreparedStatement;
 import java.sql.SQLException;
 import java.sql.Statement;
+import java.sql.Timestamp;
 import java.sql.Types;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 import java.util.Properties;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicReference;
 
@@ -43,6 +48,7 @@ import org.voltcore.logging.VoltLogger;
 import org.voltcore.utils.CoreUtils;
 import org.voltdb.VoltType;
 import org.voltdb.export.AdvertisedDataSource;
+import org.voltdb.export.AdvertisedDataSource.ExportFormat;
 import org.voltdb.export.ExportManager;
 import org.voltdb.types.GeographyPointValue;
 import org.voltdb.types.GeographyValue;
@@ -54,7 +60,11 @@ import com.google_voltpatches.common.base.Throwables;
 import com.google_voltpatches.common.collect.ImmutableMap;
 import com.google_voltpatches.common.collect.ImmutableSet;
 import com.google_voltpatches.common.collect.Maps;
+import com.google_voltpatches.common.util.concurrent.Futures;
+import com.google_voltpatches.common.util.concurrent.ListenableFuture;
 import com.google_voltpatches.common.util.concurrent.ListeningExecutorService;
+import com.google_voltpatches.common.util.concurrent.SettableFuture;
+import com.google_voltpatches.common.util.concurrent.Uninterruptibles;
 
 public class JDBCExportClient extends ExportClientBase {
     private static final VoltLogger m_logger = new VoltLogger("ExportClient");
@@ -65,6 +75,8 @@ public class JDBCExportClient extends ExportClientBase {
     boolean m_createTable = true;
     private int firstField = 0;
     private boolean m_lowercaseNames = false;
+    private int m_rowsPerInsert = 1;
+    private int m_parallelConnections = 1;
     PoolProperties m_poolProperties = new PoolProperties();
     URI m_urlId;
     static AtomicReference<Map<URI,RefCountedDS>> m_cpds =
@@ -72,7 +84,7 @@ public class JDBCExportClient extends ExportClientBase {
 
     private static final String SQLSTATE_UNIQUE_VIOLATION = "23505";
 
-    private static enum DatabaseType {
+    static enum DatabaseType {
         POSTGRES
         ,MYSQL
         ,ORACLE
@@ -85,6 +97,27 @@ public class JDBCExportClient extends ExportClientBase {
     private final Set<DatabaseType> supportsIfNotExists =
             ImmutableSet.<DatabaseType>builder().add(
                     DatabaseType.POSTGRES).add(DatabaseType.MYSQL).add(DatabaseType.VERTICA).build();
+    // multi-row inserts have to be asked for, so an unrecognized database is taken to accept them
+    private final Set<DatabaseType> supportsMultiRowInsert =
+            ImmutableSet.<DatabaseType>builder().add(DatabaseType.POSTGRES).add(DatabaseType.MYSQL)
+                    .add(DatabaseType.SQLSERVER).add(DatabaseType.UNRECOGNIZED).build();
+    // SQL Server takes at most 2100 parameters per statement, the lowest limit among the
+    // databases that accept multi-row inserts
+    private static final int MAX_PARAMETERS_PER_INSERT = 2000;
+    // and at most 1000 rows in the VALUES of an insert
+    private static final int MAX_SQLSERVER_ROWS_PER_INSERT = 1000;
+
+    /**
+     * @return the number of rows to insert per statement into a table of the given
+     * number of columns, as many as configured that the database takes in one statement
+     */
+    int getRowsPerStatement(DatabaseType dbType, int columns) {
+        int rowsPerStatement = Math.max(1, Math.min(m_rowsPerInsert, MAX_PARAMETERS_PER_INSERT / columns));
+        if (dbType == DatabaseType.SQLSERVER) {
+            rowsPerStatement = Math.min(rowsPerStatement, MAX_SQLSERVER_ROWS_PER_INSERT);
+        }
+        return rowsPerStatement;
+    }
 
     static final class RefCountedDS {
         private final DataSource ds;
@@ -149,15 +182,141 @@ public class JDBCExportClient extends ExportClientBase {
         //If the column value is longer than the limit, truncate the value to avoid flushing too much data to log.
         private static final int MAX_COLUMN_PRINT_SIZE = 1024;
 
-        private Connection conn = null;
-        private PreparedStatement pstmt = null;
         private final ListeningExecutorService m_es;
+        // inserts and commits the blocks when each one gets its own connection, null otherwise
+        private final ListeningExecutorService m_writers;
         private String pstmtString = null;
+        // inserts m_rowsPerStatement rows, null when inserting one row per statement
+        private String m_multiRowPstmtString = null;
+        private int m_rowsPerStatement = 1;
         private boolean supportsBatchUpdates;
 
         private final RefCountedDS m_ds;
+        private final VoltType[] m_columnTypes;
+
+        // the block being decoded
+        private Batch m_batch = null;
+        // without m_writers, the connection and statements of the last committed block,
+        // which the next block goes on with
+        private Batch m_idleBatch = null;
+        // done once the last block handed to m_writers is inserted, and committed
+        private ListenableFuture<?> m_lastInsert = Futures.immediateFuture(null);
+        private ListenableFuture<?> m_lastCommit = Futures.immediateFuture(null);
+
+        /**
+         * The connection, statements and rows of a block, from the start of the block
+         * until it is committed or abandoned. Without m_writers a committed Batch is
+         * reset and used for the next block.
+         */
+        private final class Batch {
+            private final Connection m_conn;
+            private final PreparedStatement m_pstmt;
+            private final PreparedStatement m_multiRowPstmt;
+            // the encoded rows, decoded again to log the ones that failed
+            private final List<byte[]> m_rows = new ArrayList<byte[]>();
+            // rows bound to the statement being filled in m_multiRowPstmt
+            private int m_pendingRows = 0;
+            private boolean m_committed = false;
+
+            Batch(Connection conn) throws SQLException {
+                m_conn = conn;
+                if (m_logger.isDebugEnabled()) {
+                    m_logger.debug(pstmtString);
+                }
+                m_pstmt = conn.prepareStatement(pstmtString);
+                m_multiRowPstmt = m_multiRowPstmtString == null ? null : conn.prepareStatement(m_multiRowPstmtString);
+            }
 
-        private List<Object[]> m_dataRows =  new ArrayList<Object[]>();
+            void add(byte[] rowData) throws IOException, SQLException {
+                if (m_multiRowPstmt == null) {
+                    bindRow(m_pstmt, 0, rowData);
+                    addOrExecute(m_pstmt);
+                } else {
+                    bindRow(m_multiRowPstmt, m_pendingRows * (m_columnTypes.length - firstField), rowData);
+                    if (++m_pendingRows == m_rowsPerStatement) {
+                        addOrExecute(m_multiRowPstmt);
+                        m_pendingRows = 0;
+                    }
+                }
+                m_rows.add(rowData);
+            }
+
+            private void addOrExecute(PreparedStatement stmt) throws SQLException {
+                if (supportsBatchUpdates) {
+                    stmt.addBatch();
+                } else {
+                    stmt.executeUpdate();
+                }
+            }
+
+            /**
+             * Insert the rows that haven't been yet, without committing them.
+             */
+            void execute() throws IOException, SQLException {
+                int firstPending = 0;
+                if (m_multiRowPstmt != null) {
+                    // the rows that didn't fill a multi-row statement
+                    firstPending = m_rows.size() - m_pendingRows;
+                    if (supportsBatchUpdates && firstPending > 0) {
+                        executeBatch(m_multiRowPstmt, 0, m_rowsPerStatement);
+                    }
+                    for (int i = firstPending; i < m_rows.size(); i++) {
+                        bindRow(m_pstmt, 0, m_rows.get(i));
+                        addOrExecute(m_pstmt);
+                    }
+                }
+                if (supportsBatchUpdates && firstPending < m_rows.size()) {
+                    executeBatch(m_pstmt, firstPending, 1);
+                }
+            }
+
+            private void executeBatch(PreparedStatement stmt, int firstRow, int rowsPerStatement) throws SQLException {
+                try {
+                    stmt.executeBatch();
+                } catch (BatchUpdateException e) {
+                    logBatchErrors(e, m_rows, firstRow, rowsPerStatement);
+                    throw e;
+                }
+            }
+
+            void commit() throws SQLException {
+                m_conn.commit();
+                m_committed = true;
+            }
+
+            /*
+             * Get ready for the rows of the next block, after this one was committed.
+             */
+            void reset() {
+                m_rows.clear();
+                m_pendingRows = 0;
+                m_committed = false;
+            }
+
+            /*
+             * Roll back whatever wasn't committed and hand the connection back to the pool.
+             */
+            void close() {
+                try {
+                    if (!m_committed) {
+                        m_conn.rollback();
+                    }
+                } catch (Exception e) {
+                    m_logger.warn("Exception rolling back for table " + m_source.tableName, e);
+                }
+                try {
+                    if (m_pstmt != null) {
+                        m_pstmt.close();
+                    }
+                    if (m_multiRowPstmt != null) {
+                        m_multiRowPstmt.close();
+                    }
+                } catch (Exception e) {
+                    m_logger.warn("Exception closing pstmt for reset for table " + m_source.tableName, e);
+                }
+                closeConnection(m_conn);
+            }
+        }
 
         @Override
         public ListeningExecutorService getExecutor() {
@@ -171,14 +330,21 @@ public class JDBCExportClient extends ExportClientBase {
                 m_logger.debug("New JDBCDecoder for " + m_source.tableName);
             }
             m_ds = ds;
+            m_columnTypes = source.columnTypes.toArray(new VoltType[source.columnTypes.size()]);
             m_es =
                     CoreUtils.getListeningSingleThreadExecutor(
                             "JDBC Export decoder for partition " + source.partitionId
                             + " table " + source.tableName + " generation " + source.m_generation, CoreUtils.MEDIUM_STACK_SIZE);
-
+            if (m_parallelConnections > 1) {
+                m_writers = CoreUtils.getListeningExecutorService(
+                        "JDBC Export writer for partition " + source.partitionId
+                        + " table " + source.tableName + " generation " + source.m_generation, m_parallelConnections);
+            } else {
+                m_writers = null;
+            }
         }
 
-        private void initialize() throws SQLException {
+        private void initialize(Connection conn) throws SQLException {
             boolean supportsBatchUpdatesTmp;
             String identifierQuoteTemp = "";
             DatabaseMetaData md = conn.getMetaData();
@@ -222,7 +388,7 @@ public class JDBCExportClient extends ExportClientBase {
 
             firstField = getFirstField(skipInternals);
             if (m_createTable){
-                createTable(dbType, schemaAndTable, identifierQuote);
+                createTable(conn, dbType, schemaAndTable, identifierQuote);
             }
 
             String pstmtStringTmp = "INSERT INTO " + schemaAndTable + " (";
@@ -234,22 +400,37 @@ public class JDBCExportClient extends ExportClientBase {
                 String columnName = m_lowercaseNames ? m_source.columnNames.get(i).toLowerCase() : m_source.columnNames.get(i);
                 pstmtStringTmp += identifierQuote + columnName + identifierQuote;
             }
-            pstmtStringTmp += ") VALUES (";
+            pstmtStringTmp += ") VALUES ";
+            String values = "(";
             for (int i = firstField; i < m_source.columnNames.size(); i++) {
                 if (i != firstField) {
-                    pstmtStringTmp += ", ";
+                    values += ", ";
                 }
 
-                pstmtStringTmp += "?";
+                values += "?";
+            }
+            values += ")";
+
+            int rowsPerStatement = getRowsPerStatement(dbType, m_source.columnNames.size() - firstField);
+            if (rowsPerStatement > 1 && !supportsMultiRowInsert.contains(dbType)) {
+                m_logger.warn("JDBC export target " + dbName + " doesn't take multi-row inserts, inserting one row per statement");
+                rowsPerStatement = 1;
             }
-            pstmtStringTmp += ")";
-            pstmtString = pstmtStringTmp;
+            if (rowsPerStatement > 1) {
+                StringBuilder multiRow = new StringBuilder(pstmtStringTmp);
+                for (int i = 0; i < rowsPerStatement; i++) {
+                    multiRow.append(i == 0 ? "" : ", ").append(values);
+                }
+                m_multiRowPstmtString = multiRow.toString();
+            }
+            m_rowsPerStatement = rowsPerStatement;
+            pstmtString = pstmtStringTmp + values;
             if (m_logger.isDebugEnabled()) {
                 m_logger.debug(pstmtString);
             }
         }
 
-        private void createTable(DatabaseType dbType, String schemaAndTable, String identifierQuote){
+        private void createTable(Connection conn, DatabaseType dbType, String schemaAndTable, String identifierQuote){
 
             Statement stmt = null;
             try {
@@ -486,82 +667,155 @@ public class JDBCExportClient extends ExportClientBase {
 
         @Override
         public void onBlockStart() throws RestartBlockException {
-            m_dataRows.clear();
-            if (conn == null) {
-                if (pstmt != null) {
-                    try {
-                        pstmt.close();
-                    } catch (Exception e) {}
-                    finally {
-                        pstmt = null;
-                    }
-                }
-                try {
-                    conn = m_ds.getDataSource().getConnection();
-                    conn.setAutoCommit(false);
-                } catch (SQLException e) {
-                    m_logger.warn("JDBC export unable to connect", e);
-                    closeConnection();
-                    throw new RestartBlockException(true);
-                }
+            if (m_batch != null) {
+                // the block is being decoded again
+                m_batch.close();
+                m_batch = null;
+            }
+            if (m_idleBatch != null) {
+                m_batch = m_idleBatch;
+                m_idleBatch = null;
+                return;
+            }
+            Connection conn = null;
+            try {
+                conn = m_ds.getDataSource().getConnection();
+                conn.setAutoCommit(false);
+            } catch (SQLException e) {
+                m_logger.warn("JDBC export unable to connect", e);
+                closeConnection(conn);
+                throw new RestartBlockException(true);
             }
             if (pstmtString == null) {
                 try {
-                    initialize();
+                    initialize(conn);
                 } catch (Exception e) {
                     m_logger.warn("JDBC export unable to initialize jdbc target database", e);
-                    closeConnection();
                 }
             }
             //We could not initialize this JDBCDecoder others may be done...
             if (pstmtString == null) {
+                closeConnection(conn);
                 throw new RestartBlockException(true);
             }
-            if (pstmt == null) {
-                try {
-                    if (m_logger.isDebugEnabled()) {
-                        m_logger.debug(pstmtString);
-                    }
-                    pstmt = conn.prepareStatement(pstmtString);
-                } catch (SQLException e) {
-                    m_logger.warn("JDBC export unable to prepare insert statement", e);
-                    closeConnection();
-                    throw new RestartBlockException(true);
-                }
+            try {
+                m_batch = new Batch(conn);
+            } catch (SQLException e) {
+                m_logger.warn("JDBC export unable to prepare insert statement", e);
+                closeConnection(conn);
+                throw new RestartBlockException(true);
             }
         }
 
         @Override
         public void onBlockCompletion() throws RestartBlockException {
+            ListenableFuture<?> committed = onBlockCompletionAsync();
             try {
-                if (supportsBatchUpdates) {
-                    pstmt.executeBatch();
+                committed.get();
+            } catch (InterruptedException e) {
+                Throwables.propagate(e);
+            } catch (ExecutionException e) {
+                Throwables.propagateIfInstanceOf(e.getCause(), RestartBlockException.class);
+                Throwables.propagate(e.getCause());
+            }
+        }
+
+        /**
+         * Insert and commit the rows of the block. With one connection per source that
+         * happens right away, otherwise on one of the m_writers threads while the next
+         * blocks are decoded and the previous one commits. The blocks start inserting and
+         * commit in the order they were decoded, so a database that locks the table for
+         * the inserts has each block wait on the one before it, never the other way around.
+         */
+        @Override
+        public ListenableFuture<?> onBlockCompletionAsync() throws RestartBlockException {
+            final Batch batch = m_batch;
+            m_batch = null;
+            if (m_writers == null) {
+                insertAndCommit(batch, null, null);
+                batch.reset();
+                m_idleBatch = batch;
+                return Futures.immediateFuture(null);
+            }
+            final ListenableFuture<?> previousInsert = m_lastInsert;
+            final ListenableFuture<?> previousCommit = m_lastCommit;
+            final SettableFuture<Object> inserted = SettableFuture.create();
+            m_lastInsert = inserted;
+            m_lastCommit = m_writers.submit(new Callable<Object>() {
+                @Override
+                public Object call() throws RestartBlockException {
+                    try {
+                        Uninterruptibles.getUninterruptibly(previousInsert);
+                    } catch (ExecutionException e) {
+                        // only ever set
+                    }
+                    insertAndCommit(batch, inserted, previousCommit);
+                    return null;
                 }
-                conn.commit();
-            } catch(BatchUpdateException e){
-                logBatchErrors(e);
+            });
+            return m_lastCommit;
+        }
+
+        /**
+         * Insert and commit the rows of batch. The batch is closed unless it was committed
+         * without m_writers, in which case the next block goes on with it.
+         */
+        private void insertAndCommit(Batch batch, SettableFuture<Object> inserted, ListenableFuture<?> previousCommit)
+                throws RestartBlockException {
+            boolean keep = false;
+            try {
+                try {
+                    batch.execute();
+                } finally {
+                    if (inserted != null) {
+                        inserted.set(null);
+                    }
+                }
+                if (previousCommit != null) {
+                    try {
+                        previousCommit.get();
+                    } catch (ExecutionException e) {
+                        // decoded again after the block before it
+                        throw new RestartBlockException("Previous block of table " + m_source.tableName
+                                + " was not committed", false);
+                    }
+                }
+                batch.commit();
+                keep = m_writers == null;
+            } catch (BatchUpdateException e) {
                 throw new RestartBlockException(true);
-            } catch (SQLException e) {
+            } catch (SQLException | IOException e) {
                 rateLimitedLogError(m_logger, "commit() failed for row in table %s %s", m_source.tableName, Throwables.getStackTraceAsString(e));
                 throw new RestartBlockException(true);
-            } finally{
-                m_dataRows.clear();
-                closeConnection();
+            } catch (InterruptedException e) {
+                throw new RestartBlockException("Interrupted committing table " + m_source.tableName, e, true);
+            } finally {
+                if (!keep) {
+                    batch.close();
+                }
             }
         }
 
-        private void logBatchErrors(BatchUpdateException e){
+        private void logBatchErrors(BatchUpdateException e, List<byte[]> rows, int firstRow, int rowsPerStatement) {
 
            int [] results = e.getUpdateCounts();
            StringBuilder builder = new StringBuilder();
            for(int i = 0; i < results.length; i++){
                 if(results[i] == Statement.EXECUTE_FAILED){
-                    Object row[] = m_dataRows.get(i);
-                    for (int j = firstField; j < m_source.columnTypes.size(); j++) {
-                        builder.append((j == firstField) ? "":", ");
-                        formatValue(row[j], m_source.columnTypes.get(j), builder);
+                    int first = firstRow + i * rowsPerStatement;
+                    for (int r = first; r < Math.min(first + rowsPerStatement, rows.size()); r++) {
+                        Object row[];
+                        try {
+                            row = decodeRow(rows.get(r)).values;
+                        } catch (IOException e1) {
+                            continue;
+                        }
+                        for (int j = firstField; j < m_source.columnTypes.size(); j++) {
+                            builder.append((j == firstField) ? "":", ");
+                            formatValue(row[j], m_source.columnTypes.get(j), builder);
+                        }
+                        builder.append("\n");
                     }
-                    builder.append("\n");
                 }
             }
             Throwable rootCause = ExceptionUtils.getRootCause(e);
@@ -601,96 +855,154 @@ public class JDBCExportClient extends ExportClientBase {
                 m_logger.debug("In processRow for table " + m_source.tableName);
             }
 
-            ExportRowData rowinst = null;
             try {
-                rowinst = decodeRow(rowData);
+                m_batch.add(rowData);
             } catch (IOException e) {
                 rateLimitedLogError(m_logger, "Unable to decode row for table: %s %s", m_source.tableName, Throwables.getStackTraceAsString(e));
                 return false;
+            } catch (SQLException e) {
+                rateLimitedLogError(m_logger, "executeUpdate() failed in processRow() for table %s %s", m_source.tableName, Throwables.getStackTraceAsString(e));
+                m_batch.close();
+                m_batch = null;
+                throw new RestartBlockException(true);
             }
-            Object[] row = rowinst.values;
-            boolean restartBlock = false;
-            try {
-                for (int i = firstField; i < m_source.columnTypes.size(); i++) {
-                    final int pstmtIndex = i + 1 - firstField;
-                    if (row[i] == null) {
-                        pstmt.setNull(pstmtIndex, Types.NULL);
-                    } else if (m_source.columnTypes.get(i) == VoltType.DECIMAL) {
-                        pstmt.setBigDecimal(pstmtIndex, (BigDecimal)row[i]);
-                    } else if (m_source.columnTypes.get(i) == VoltType.TINYINT) {
-                        pstmt.setByte(pstmtIndex, (Byte)row[i]);
-                    } else if (m_source.columnTypes.get(i) == VoltType.SMALLINT) {
-                        pstmt.setShort(pstmtIndex, (Short)row[i]);
-                    } else if (m_source.columnTypes.get(i) == VoltType.INTEGER) {
-                        pstmt.setInt(pstmtIndex, (Integer)row[i]);
-                    } else if (m_source.columnTypes.get(i) == VoltType.BIGINT) {
-                        pstmt.setLong(pstmtIndex, (Long)row[i]);
-                    } else if (m_source.columnTypes.get(i) == VoltType.FLOAT) {
-                        pstmt.setDouble(pstmtIndex, (Double)row[i]);
-                    } else if (m_source.columnTypes.get(i) == VoltType.STRING) {
-                        pstmt.setString(pstmtIndex, (String)row[i]);
-                    } else if (m_source.columnTypes.get(i) == VoltType.TIMESTAMP) {
-                        TimestampType timestamp = (TimestampType)row[i];
-                        pstmt.setTimestamp(pstmtIndex, timestamp.asJavaTimestamp());
-                    } else if (m_source.columnTypes.get(i) == VoltType.GEOGRAPHY_POINT) {
-                        GeographyPointValue gpv = (GeographyPointValue)row[i];
-                        pstmt.setString(pstmtIndex, gpv.toWKT());
-                    } else if (m_source.columnTypes.get(i) == VoltType.GEOGRAPHY) {
-                        GeographyValue gv = (GeographyValue)row[i];
-                        pstmt.setString(pstmtIndex, gv.toWKT());
-                    } else if (m_source.columnTypes.get(i) == VoltType.VARBINARY) {
-                        byte[] bytes = (byte[])row[i];
-                        pstmt.setBytes(pstmtIndex, bytes);
-                    }
-                }
+            return true;
+        }
 
-                try {
-                    if (supportsBatchUpdates) {
-                        pstmt.addBatch();
-                        m_dataRows.add(row);
-                    } else {
-                        pstmt.executeUpdate();
+        /**
+         * Bind the columns of an encoded row to the parameters of stmt after offset,
+         * reading each value from the row straight into its typed setter. Only rows in
+         * the current format are read that way, legacy rows go through decodeRow().
+         */
+        private void bindRow(PreparedStatement stmt, int offset, byte[] rowData) throws IOException, SQLException {
+            if (m_source.exportFormat != ExportFormat.FOURDOTFOUR) {
+                bindRow(stmt, offset, decodeRow(rowData).values);
+                return;
+            }
+            ByteBuffer bb = ByteBuffer.wrap(rowData);
+            bb.order(ByteOrder.LITTLE_ENDIAN);
+            // the null flags are the leading bytes, one bit per column
+            bb.position((m_columnTypes.length + 7) >> 3);
+            for (int i = 0; i < m_columnTypes.length; i++) {
+                final boolean isNull = (rowData[i >> 3] & (0x80 >>> (i & 7))) != 0;
+                if (i < firstField) {
+                    if (!isNull) {
+                        skipColumn(bb, m_columnTypes[i]);
                     }
-                } catch (SQLException e) {
-                    rateLimitedLogError(m_logger, "executeUpdate() failed in processRow() for table %s %s", m_source.tableName, Throwables.getStackTraceAsString(e));
-                    restartBlock = true;
+                    continue;
+                }
+                final int pstmtIndex = offset + i + 1 - firstField;
+                if (isNull) {
+                    stmt.setNull(pstmtIndex, Types.NULL);
+                    continue;
+                }
+                switch (m_columnTypes[i]) {
+                case TINYINT:
+                    stmt.setByte(pstmtIndex, bb.get());
+                    break;
+                case SMALLINT:
+                    stmt.setShort(pstmtIndex, bb.getShort());
+                    break;
+                case INTEGER:
+                    stmt.setInt(pstmtIndex, bb.getInt());
+                    break;
+                case BIGINT:
+                    stmt.setLong(pstmtIndex, bb.getLong());
+                    break;
+                case FLOAT:
+                    stmt.setDouble(pstmtIndex, bb.getDouble());
+                    break;
+                case TIMESTAMP: {
+                    // as TimestampType.asJavaTimestamp() does
+                    final long micros = bb.getLong();
+                    final int usecs = (int) (micros % 1000);
+                    Timestamp timestamp = new Timestamp((micros - usecs) / 1000);
+                    timestamp.setNanos(timestamp.getNanos() + usecs * 1000);
+                    stmt.setTimestamp(pstmtIndex, timestamp);
+                    break;
+                }
+                case STRING:
+                    stmt.setString(pstmtIndex, decodeString(bb));
+                    break;
+                case DECIMAL:
+                    stmt.setBigDecimal(pstmtIndex, decodeDecimal(bb));
+                    break;
+                case VARBINARY:
+                    stmt.setBytes(pstmtIndex, (byte[]) decodeVarbinary(bb));
+                    break;
+                case GEOGRAPHY_POINT:
+                    stmt.setString(pstmtIndex, decodeGeographyPoint(bb).toWKT());
+                    break;
+                case GEOGRAPHY:
+                    stmt.setString(pstmtIndex, decodeGeography(bb).toWKT());
+                    break;
+                default:
+                    throw new IOException("Invalid column type: " + m_columnTypes[i]);
                 }
-            } catch (Exception e) {
-                rateLimitedLogError(m_logger, "processRow() failed in table %s, %s", m_source.tableName, Throwables.getStackTraceAsString(e));
-                restartBlock = true;
             }
+        }
 
-            if (restartBlock) {
-                closeConnection();
-                throw new RestartBlockException(true);
+        private void skipColumn(ByteBuffer bb, VoltType type) throws IOException {
+            switch (type) {
+            case TINYINT:
+            case SMALLINT:
+            case INTEGER:
+            case BIGINT:
+            case FLOAT:
+            case TIMESTAMP:
+                bb.position(bb.position() + type.getLengthInBytesForFixedTypes());
+                break;
+            default:
+                decodeNextColumn(bb, type);
             }
+        }
 
-            return true;
+        private void bindRow(PreparedStatement stmt, int offset, Object[] row) throws SQLException {
+            for (int i = firstField; i < m_columnTypes.length; i++) {
+                final int pstmtIndex = offset + i + 1 - firstField;
+                if (row[i] == null) {
+                    stmt.setNull(pstmtIndex, Types.NULL);
+                } else if (m_columnTypes[i] == VoltType.DECIMAL) {
+                    stmt.setBigDecimal(pstmtIndex, (BigDecimal)row[i]);
+                } else if (m_columnTypes[i] == VoltType.TINYINT) {
+                    stmt.setByte(pstmtIndex, (Byte)row[i]);
+                } else if (m_columnTypes[i] == VoltType.SMALLINT) {
+                    stmt.setShort(pstmtIndex, (Short)row[i]);
+                } else if (m_columnTypes[i] == VoltType.INTEGER) {
+                    stmt.setInt(pstmtIndex, (Integer)row[i]);
+                } else if (m_columnTypes[i] == VoltType.BIGINT) {
+                    stmt.setLong(pstmtIndex, (Long)row[i]);
+                } else if (m_columnTypes[i] == VoltType.FLOAT) {
+                    stmt.setDouble(pstmtIndex, (Double)row[i]);
+                } else if (m_columnTypes[i] == VoltType.STRING) {
+                    stmt.setString(pstmtIndex, (String)row[i]);
+                } else if (m_columnTypes[i] == VoltType.TIMESTAMP) {
+                    TimestampType timestamp = (TimestampType)row[i];
+                    stmt.setTimestamp(pstmtIndex, timestamp.asJavaTimestamp());
+                } else if (m_columnTypes[i] == VoltType.GEOGRAPHY_POINT) {
+                    GeographyPointValue gpv = (GeographyPointValue)row[i];
+                    stmt.setString(pstmtIndex, gpv.toWKT());
+                } else if (m_columnTypes[i] == VoltType.GEOGRAPHY) {
+                    GeographyValue gv = (GeographyValue)row[i];
+                    stmt.setString(pstmtIndex, gv.toWKT());
+                } else if (m_columnTypes[i] == VoltType.VARBINARY) {
+                    byte[] bytes = (byte[])row[i];
+                    stmt.setBytes(pstmtIndex, bytes);
+                }
+            }
         }
 
         /*
          * If there is any kind of exception from the DB call this to get a clean slate
-         * and retry will recreate the connection and prepared statement.
+         * and retry will get a connection and prepare the statements again.
          */
-        private void closeConnection() {
+        private void closeConnection(Connection conn) {
             try {
-                try {
-                    if (pstmt != null) {
-                        pstmt.close();
-                    }
-                } catch (Exception e) {
-                    m_logger.warn("Exception closing pstmt for reset for table " + m_source.tableName, e);
+                if (conn != null) {
+                    conn.close();
                 }
-                try {
-                    if (conn != null) {
-                        conn.close();
-                    }
-                } catch (Exception e) {
-                    m_logger.warn("Exception closing conn for reset for table " + m_source.tableName, e);
-                }
-            } finally {
-                conn = null;
-                pstmt = null;
+            } catch (Exception e) {
+                m_logger.warn("Exception closing conn for reset for table " + m_source.tableName, e);
             }
         }
 
@@ -699,10 +1011,21 @@ public class JDBCExportClient extends ExportClientBase {
             m_es.shutdown();
             try {
                 m_es.awaitTermination(356, TimeUnit.DAYS);
+                if (m_writers != null) {
+                    m_writers.shutdown();
+                    m_writers.awaitTermination(356, TimeUnit.DAYS);
+                }
             } catch (InterruptedException e) {
                 Throwables.propagate(e);
             }
-            closeConnection();
+            if (m_batch != null) {
+                m_batch.close();
+                m_batch = null;
+            }
+            if (m_idleBatch != null) {
+                m_idleBatch.close();
+                m_idleBatch = null;
+            }
         }
     }
 
@@ -771,6 +1094,13 @@ public class JDBCExportClient extends ExportClientBase {
             }
         }
 
+        m_rowsPerInsert = getPositiveInt(config, "rowsperinsert");
+        m_parallelConnections = getPositiveInt(config, "parallelconnections");
+        if (m_parallelConnections > 1) {
+            // a block per connection, unless the processor's maxinflightblocks says otherwise
+            setMaxInFlightBlocks(m_parallelConnections);
+        }
+
         String maxStatementsCached = config.getProperty("maxstatementscached", "").trim();
         int maxStatementsCachedVal;
         if (!maxStatementsCached.isEmpty()) {
@@ -862,6 +1192,20 @@ public class JDBCExportClient extends ExportClientBase {
         } while (!m_cpds.compareAndSet(cpds, builder.build()));
     }
 
+    private static int getPositiveInt(Properties config, String name) {
+        String value = config.getProperty(name, "1").trim();
+        int intValue;
+        try {
+            intValue = Integer.parseInt(value);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("\"" + name + "\" must be integer");
+        }
+        if (intValue < 1) {
+            throw new IllegalArgumentException("\"" + name + "\" must be at least 1");
+        }
+        return intValue;
+    }
+
     @Override
     public void shutdown() {
         ImmutableMap.Builder<URI,RefCountedDS> builder;
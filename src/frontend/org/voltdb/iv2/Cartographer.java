@@ -59,6 +59,7 @@ import org.voltdb.VoltZK.MailboxType;
 import org.voltdb.iv2.LeaderCache.LeaderCallBackInfo;
 import com.google_voltpatches.common.base.Preconditions;
 import com.google_voltpatches.common.collect.ArrayListMultimap;
+import com.google_voltpatches.common.collect.ImmutableList;
 import com.google_voltpatches.common.collect.ImmutableMap;
 import com.google_voltpatches.common.collect.Lists;
 import com.google_voltpatches.common.collect.Maps;
@@ -77,6 +78,7 @@ public class Cartographer extends StatsSource
     private static final VoltLogger hostLog = new VoltLogger("HOST");
     private final LeaderCacheReader m_iv2Masters;
     private final LeaderCacheReader m_iv2Mpi;
+    private final ReplicaCache m_replicas;
     private final Set<Long> m_currentSPMasters = new HashSet<Long>();
     private final HostMessenger m_hostMessenger;
     private final ZooKeeper m_zk;
@@ -221,10 +223,12 @@ public class Cartographer extends StatsSource
         m_zk = hostMessenger.getZK();
         m_iv2Masters = new LeaderCache(m_zk, VoltZK.iv2masters, m_SPIMasterCallback);
         m_iv2Mpi = new LeaderCache(m_zk, VoltZK.iv2mpi, m_MPICallback);
+        m_replicas = new ReplicaCache(m_zk, VoltZK.leaders_initiators);
         m_configuredReplicationFactor = configuredReplicationFactor;
         try {
             m_iv2Masters.start(true);
             m_iv2Mpi.start(true);
+            m_replicas.start(true);
         } catch (Exception e) {
             VoltDB.crashLocalVoltDB("Screwed", true, e);
         }
@@ -357,25 +361,30 @@ public class Cartographer extends StatsSource
         return partitions;
     }
 
+    /**
+     * Returns the IDs of the partitions currently in the cluster, including the MP PID.
+     * Served from the replica cache.
+     */
     public List<Integer> getPartitions() {
-        return Cartographer.getPartitions(m_zk);
+        return new ArrayList<Integer>(m_replicas.pointInTimeCache().keySet());
     }
 
     public int getPartitionCount()
     {
         // The list returned by getPartitions includes the MP PID.  Need to remove that for the
         // true partition count.
-        return Cartographer.getPartitions(m_zk).size() - 1;
+        return getPartitions().size() - 1;
     }
 
     private Multimap<Integer, Integer> getHostToPartitionMap() {
         Multimap<Integer, Integer> hostToPartitions = ArrayListMultimap.create();
-        for (int pId : getPartitions()) {
+        // one snapshot so every partition is seen at the same point
+        for (Entry<Integer, ImmutableList<Long>> e : m_replicas.pointInTimeCache().entrySet()) {
+            final int pId = e.getKey();
             if (pId == MpInitiator.MP_INIT_PID) {
                 continue;
             }
-            List<Long> hsIDs = getReplicasForPartition(pId);
-            hsIDs.forEach(hsId -> hostToPartitions.put(CoreUtils.getHostIdFromHSId(hsId), pId));
+            e.getValue().forEach(hsId -> hostToPartitions.put(CoreUtils.getHostIdFromHSId(hsId), pId));
         }
         return hostToPartitions;
     }
@@ -417,25 +426,15 @@ public class Cartographer extends StatsSource
     }
 
     /**
-     * Given a partition ID, return a list of HSIDs of all the sites with copies of that partition
+     * Given a partition ID, return a list of HSIDs of all the sites with copies of that partition.
      */
     public List<Long> getReplicasForPartition(int partition) {
-        String zkpath = LeaderElector.electionDirForPartition(VoltZK.leaders_initiators, partition);
-        List<Long> retval = new ArrayList<Long>();
-        try {
-            List<String> children = m_zk.getChildren(zkpath, null);
-            for (String child : children) {
-                retval.add(Long.valueOf(child.split("_")[0]));
-            }
-        }
-        catch (KeeperException.NoNodeException e) {
+        List<Long> replicas = m_replicas.get(partition);
+        if (replicas == null) {
             //Can happen when partitions are being removed
-        } catch (KeeperException | InterruptedException e) {
-            org.voltdb.VoltDB.crashLocalVoltDB("Exception getting replicas for partition: " + partition,
-                    true, e);
+            return new ArrayList<Long>();
         }
-
-        return retval;
+        return new ArrayList<Long>(replicas);
     }
 
     /**
@@ -445,47 +444,28 @@ public class Cartographer extends StatsSource
      * @return  a site id or null if there is no such a site
      */
     public Long getHSIDForPartitionHost(int hostId, int partition) {
-        List<Long> hsids = getReplicasForPartition(partition);
-        for (Long hsid : hsids) {
-           if (hostId == CoreUtils.getHostIdFromHSId(hsid)){
-               return hsid;
-           }
+        List<Long> hsids = m_replicas.get(partition);
+        if (hsids != null) {
+            for (Long hsid : hsids) {
+                if (hostId == CoreUtils.getHostIdFromHSId(hsid)){
+                    return hsid;
+                }
+            }
         }
         return null;
     }
 
     /**
-     * Given a set of partition IDs, return a map of partition to a list of HSIDs of all the sites with copies of each partition
+     * Given a set of partition IDs, return a map of partition to a list of HSIDs of all the sites with copies of each partition.
      */
     public Map<Integer, List<Long>> getReplicasForPartitions(Collection<Integer> partitions) {
         Map<Integer, List<Long>> retval = new HashMap<Integer, List<Long>>();
-        List<Pair<Integer,ZKUtil.ChildrenCallback>> callbacks = new ArrayList<Pair<Integer, ZKUtil.ChildrenCallback>>();
-
+        ImmutableMap<Integer, ImmutableList<Long>> replicas = m_replicas.pointInTimeCache();
         for (Integer partition : partitions) {
-            String zkpath = LeaderElector.electionDirForPartition(VoltZK.leaders_initiators, partition);
-            ZKUtil.ChildrenCallback cb = new ZKUtil.ChildrenCallback();
-            callbacks.add(Pair.of(partition, cb));
-            m_zk.getChildren(zkpath, false, cb, null);
-        }
-
-        for (Pair<Integer, ZKUtil.ChildrenCallback> p : callbacks ) {
-            final Integer partition = p.getFirst();
-            try {
-                List<String> children = p.getSecond().getChildren();
-                List<Long> sites = new ArrayList<Long>();
-                for (String child : children) {
-                    sites.add(Long.valueOf(child.split("_")[0]));
-                }
-                retval.put(partition, sites);
-            } catch (KeeperException.NoNodeException e) {
-                //This can happen when a partition is being removed from the system
-            } catch (KeeperException ke) {
-                org.voltdb.VoltDB.crashLocalVoltDB("KeeperException getting replicas for partition: " + partition,
-                        true, ke);
-            }
-            catch (InterruptedException ie) {
-                org.voltdb.VoltDB.crashLocalVoltDB("InterruptedException getting replicas for partition: " +
-                        partition, true, ie);
+            List<Long> sites = replicas.get(partition);
+            //Partitions being removed from the system are left out
+            if (sites != null) {
+                retval.put(partition, new ArrayList<Long>(sites));
             }
         }
         return retval;
@@ -495,7 +475,8 @@ public class Cartographer extends StatsSource
      * Convenience method to return the immediate count of replicas for the given partition
      */
     public int getReplicaCountForPartition(int partition) {
-        return getReplicasForPartition(partition).size();
+        List<Long> replicas = m_replicas.get(partition);
+        return replicas == null ? 0 : replicas.size();
     }
 
     /**
@@ -617,6 +598,7 @@ public class Cartographer extends StatsSource
     {
         m_iv2Masters.shutdown();
         m_iv2Mpi.shutdown();
+        m_replicas.shutdown();
         m_es.shutdown();
     }
 
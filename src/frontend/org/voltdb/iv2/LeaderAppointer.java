@@ -112,6 +112,25 @@ public class LeaderAppointer implements Promotable
     private final ExecutorService m_es =
         CoreUtils.getCachedSingleThreadExecutor("LeaderAppointer-Babysitters", 15000);
 
+    /*
+     * A host failure wakes up the babysitter of every partition it had a replica of, and
+     * all of those callbacks are queued on m_es together. Rather than doing a full k-safety
+     * scan and a synchronous appointee write per partition, the first callback of such a
+     * batch does the scan and queues m_endBatch behind the rest, which writes all the
+     * appointments made in the meantime to ZK in one go. m_batchOpen is only touched
+     * on m_es. m_pendingAppointees is also written at promotion and emptied of partitions
+     * that are removed, which may happen on other threads, so it is guarded by itself.
+     */
+    private final Map<Integer, Long> m_pendingAppointees = new HashMap<Integer, Long>();
+    private boolean m_batchOpen = false;
+    private final Runnable m_endBatch = new Runnable() {
+        @Override
+        public void run() {
+            m_batchOpen = false;
+            writePendingAppointees();
+        }
+    };
+
     private class PartitionCallback extends BabySitter.Callback
     {
         final int m_partitionId;
@@ -205,10 +224,14 @@ public class LeaderAppointer implements Promotable
                             "for k-safety before startup");
                 }
             } else {
-                 // Check for k-safety
-                if (!isClusterKSafe(null)) {
-                    VoltDB.crashGlobalVoltDB("Some partitions have no replicas.  Cluster has become unviable.",
-                            false, null);
+                 // Check for k-safety, once per batch of callbacks unless this partition
+                 // just lost its last replica
+                if (!m_batchOpen || (updatedHSIds.isEmpty() && !missingHSIds.isEmpty())) {
+                    openBatch();
+                    if (!isClusterKSafe(null)) {
+                        VoltDB.crashGlobalVoltDB("Some partitions have no replicas.  Cluster has become unviable.",
+                                false, null);
+                    }
                 }
                 // Check if replay has completed
                 if (m_replayComplete.get() == false) {
@@ -276,11 +299,10 @@ public class LeaderAppointer implements Promotable
             }
             tmLog.info("Appointing HSId " + CoreUtils.hsIdToString(masterHSId) + " as leader for partition " +
                         partitionId);
-            try {
-                m_iv2appointees.put(partitionId, masterHSId);
-            } catch (Exception e) {
-                VoltDB.crashLocalVoltDB("Unable to appoint new master for partition " + partitionId, true, e);
+            synchronized (m_pendingAppointees) {
+                m_pendingAppointees.put(partitionId, masterHSId);
             }
+            openBatch();
             return masterHSId;
         }
     }
@@ -526,6 +548,9 @@ public class LeaderAppointer implements Promotable
                 }
             }
             m_removedPartitionsAtPromotionTime = null;
+            // the babysitters ran their first callbacks inline, make sure the leaders
+            // they appointed are out before the MPI starts its repair
+            writePendingAppointees();
             // just go ahead and promote our MPI
             m_MPI.acceptPromotion();
             // set up a watcher on the partitions dir so that new partitions will be picked up
@@ -564,6 +589,45 @@ public class LeaderAppointer implements Promotable
         m_partitionWatchers.put(pid, babySitter);
     }
 
+    /**
+     * Start a batch of babysitter callbacks if one isn't open already. The
+     * batch ends once the callbacks queued on m_es so far have run.
+     */
+    private void openBatch()
+    {
+        if (m_batchOpen) {
+            return;
+        }
+        try {
+            m_es.execute(m_endBatch);
+            m_batchOpen = true;
+        } catch (RejectedExecutionException e) {
+            // shutting down, nothing left to write the appointees for
+        }
+    }
+
+    /**
+     * Write the leaders appointed since the last call to ZK as a single
+     * pipelined batch instead of waiting on a round trip for each partition.
+     */
+    private void writePendingAppointees()
+    {
+        // held while writing so a partition removed meanwhile has its nodes
+        // deleted after they are written, not before
+        synchronized (m_pendingAppointees) {
+            if (m_pendingAppointees.isEmpty()) {
+                return;
+            }
+            try {
+                m_iv2appointees.putAll(m_pendingAppointees);
+            } catch (Exception e) {
+                VoltDB.crashLocalVoltDB("Unable to appoint new masters for partitions " +
+                        m_pendingAppointees.keySet(), true, e);
+            }
+            m_pendingAppointees.clear();
+        }
+    }
+
     public boolean isClusterKSafe(Set<Integer> failedHosts)
     {
         boolean retval = true;
@@ -709,6 +773,10 @@ public class LeaderAppointer implements Promotable
             sitter.shutdown();
         }
         m_callbacks.remove(pid);
+        // don't let a batch that is still open write the appointee back after it is deleted
+        synchronized (m_pendingAppointees) {
+            m_pendingAppointees.remove(pid);
+        }
         try {
             ZKUtil.asyncDeleteRecursively(m_zk, ZKUtil.joinZKPath(VoltZK.iv2masters, String.valueOf(pid)));
             ZKUtil.asyncDeleteRecursively(m_zk, ZKUtil.joinZKPath(VoltZK.iv2appointees, String.valueOf(pid)));
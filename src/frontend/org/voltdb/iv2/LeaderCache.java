@@ -21,6 +21,7 @@ import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
 import java.util.TreeSet;
@@ -154,6 +155,19 @@ public class LeaderCache implements LeaderCacheReader, LeaderCacheWriter {
         }
     }
 
+    /**
+     * Create or update the rootNode children of all the given partitions,
+     * writing them to ZK as one pipelined batch.
+     */
+    public void putAll(Map<Integer, Long> HSIds) throws KeeperException, InterruptedException {
+        Map<String, byte[]> nodes = new HashMap<String, byte[]>();
+        for (Entry<Integer, Long> e : HSIds.entrySet()) {
+            nodes.put(ZKUtil.joinZKPath(m_rootNode, Integer.toString(e.getKey())),
+                    Long.toString(e.getValue()).getBytes(Charsets.UTF_8));
+        }
+        ZKUtil.createOrSetAll(m_zk, nodes);
+    }
+
     // check if the cache contains the partition
     public boolean contain(int partitionId) {
         return m_publicCache.containsKey(partitionId);
@@ -0,0 +1,264 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2017 VoltDB Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with VoltDB.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.voltdb.iv2;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.apache.zookeeper_voltpatches.KeeperException;
+import org.apache.zookeeper_voltpatches.WatchedEvent;
+import org.apache.zookeeper_voltpatches.Watcher;
+import org.apache.zookeeper_voltpatches.ZooKeeper;
+import org.voltcore.utils.CoreUtils;
+import org.voltcore.zk.LeaderElector;
+import org.voltcore.zk.ZKUtil;
+
+import com.google_voltpatches.common.collect.ImmutableList;
+import com.google_voltpatches.common.collect.ImmutableMap;
+import com.google_voltpatches.common.util.concurrent.ListeningExecutorService;
+
+/**
+ * Tracks the replicas of every partition, the participants under each
+ * partition's election directory, and keeps a snapshot of them current with
+ * ZK watches so looking up the replicas of a partition doesn't go to ZK.
+ *
+ * Once started the snapshot is the Cartographer's only source of replica
+ * placement. Like the {@link LeaderCache} the Cartographer takes leadership
+ * decisions from, it trails ZK by the time it takes to process a watch.
+ */
+public class ReplicaCache {
+
+    /** Instantiate a ReplicaCache of election root rootNode. The rootNode must exist. */
+    public ReplicaCache(ZooKeeper zk, String rootNode)
+    {
+        m_zk = zk;
+        m_rootNode = rootNode;
+    }
+
+    /** Initialize and start watching the cache. */
+    public void start(boolean block) throws InterruptedException, ExecutionException {
+        Future<?> task = m_es.submit(new ParentEvent(null));
+        if (block) {
+            task.get();
+        }
+    }
+
+    /** Stop caring */
+    public void shutdown() throws InterruptedException {
+        m_shutdown.set(true);
+        m_es.shutdown();
+        m_es.awaitTermination(356, TimeUnit.DAYS);
+    }
+
+    /**
+     * Get a current snapshot of the replicas of every partition. This snapshot
+     * promises no cross-partition atomicity guarantees.
+     */
+    public ImmutableMap<Integer, ImmutableList<Long>> pointInTimeCache() {
+        if (m_shutdown.get()) {
+            throw new RuntimeException("Requested cache from shutdown ReplicaCache.");
+        }
+        return m_publicCache;
+    }
+
+    /**
+     * Read the replicas of a single partition.
+     * @return the HSIds of the replicas, or null if the partition isn't known yet
+     */
+    public ImmutableList<Long> get(int partitionId) {
+        return m_publicCache.get(partitionId);
+    }
+
+    /**
+     * Extract the replica HSIds from the participant node names of an election directory.
+     */
+    public static List<Long> parseReplicas(List<String> children) {
+        List<Long> replicas = new ArrayList<Long>(children.size());
+        for (String child : children) {
+            replicas.add(Long.valueOf(child.split("_")[0]));
+        }
+        return replicas;
+    }
+
+    private final ZooKeeper m_zk;
+    private final AtomicBoolean m_shutdown = new AtomicBoolean(false);
+
+    // the children of this node are the partition election directories.
+    private final String m_rootNode;
+
+    // All watch processing is run serially in this thread.
+    private final ListeningExecutorService m_es = CoreUtils.getCachedSingleThreadExecutor("ReplicaCache", 15000);
+
+    // previous election directories snapshot for internal use.
+    private Set<String> m_lastChildren = new HashSet<String>();
+
+    // the cache exposed to the public. Start empty.
+    private volatile ImmutableMap<Integer, ImmutableList<Long>> m_publicCache = ImmutableMap.of();
+
+    // root node sees a partition added or removed
+    private class ParentEvent implements Runnable {
+        private final WatchedEvent m_event;
+        public ParentEvent(WatchedEvent event) {
+            m_event = event;
+        }
+
+        @Override
+        public void run() {
+            // connection state changes leave the snapshot as it is
+            if (m_event != null && m_event.getType() == Watcher.Event.EventType.None) {
+                return;
+            }
+            try {
+                processParentEvent();
+            } catch (Exception e) {
+                // ignore post-shutdown session termination exceptions.
+                if (!m_shutdown.get()) {
+                    org.voltdb.VoltDB.crashLocalVoltDB("Unexpected failure in ReplicaCache.", true, e);
+                }
+            }
+        }
+    }
+
+    // election directory sees a replica join or leave
+    private class ChildEvent implements Runnable {
+        private final WatchedEvent m_event;
+        public ChildEvent(WatchedEvent event) {
+            m_event = event;
+        }
+
+        @Override
+        public void run() {
+            try {
+                processChildEvent(m_event);
+            } catch (Exception e) {
+                // ignore post-shutdown session termination exceptions.
+                if (!m_shutdown.get()) {
+                    org.voltdb.VoltDB.crashLocalVoltDB("Unexpected failure in ReplicaCache.", true, e);
+                }
+            }
+        }
+    }
+
+    // Boilerplate to forward zookeeper watches to the executor service
+    private final Watcher m_parentWatch = new Watcher() {
+        @Override
+        public void process(final WatchedEvent event) {
+            try {
+                if (!m_shutdown.get()) {
+                    m_es.submit(new ParentEvent(event));
+                }
+            } catch (RejectedExecutionException e) {
+                if (m_es.isShutdown()) {
+                    return;
+                } else {
+                    org.voltdb.VoltDB.crashLocalVoltDB("Unexpected rejected execution exception", false, e);
+                }
+            }
+        }
+    };
+
+    // Boilerplate to forward zookeeper watches to the executor service
+    private final Watcher m_childWatch = new Watcher() {
+        @Override
+        public void process(final WatchedEvent event) {
+            try {
+                if (!m_shutdown.get()) {
+                    m_es.submit(new ChildEvent(event));
+                }
+            } catch (RejectedExecutionException e) {
+                if (m_es.isShutdown()) {
+                    return;
+                } else {
+                    org.voltdb.VoltDB.crashLocalVoltDB("Unexpected rejected execution exception", false, e);
+                }
+            }
+        }
+    };
+
+    // example zkPath string: /db/leaders/initiators/partition_1
+    private static int getPartitionIdFromZKPath(String zkPath)
+    {
+        return LeaderElector.getPartitionFromElectionDir(zkPath.substring(zkPath.lastIndexOf('/') + 1));
+    }
+
+    /**
+     * Rebuild the snapshot when election directories come and go, and set
+     * watches on the new ones. Directories already watched keep their entries.
+     */
+    private void processParentEvent() throws Exception {
+        // get current children snapshot and reset this watch.
+        Set<String> children = new HashSet<String>(m_zk.getChildren(m_rootNode, m_parentWatch));
+        Set<String> newChildren = new HashSet<String>(children);
+        newChildren.removeAll(m_lastChildren);
+        m_lastChildren = children;
+
+        List<ZKUtil.ChildrenCallback> callbacks = new ArrayList<ZKUtil.ChildrenCallback>();
+        for (String child : newChildren) {
+            ZKUtil.ChildrenCallback cb = new ZKUtil.ChildrenCallback();
+            m_zk.getChildren(ZKUtil.joinZKPath(m_rootNode, child), m_childWatch, cb, null);
+            callbacks.add(cb);
+        }
+
+        // keep the partitions that are still around, drop the rest.
+        Map<Integer, ImmutableList<Long>> cache = new HashMap<Integer, ImmutableList<Long>>();
+        for (String child : children) {
+            int partitionId = LeaderElector.getPartitionFromElectionDir(child);
+            ImmutableList<Long> replicas = m_publicCache.get(partitionId);
+            if (replicas != null) {
+                cache.put(partitionId, replicas);
+            }
+        }
+        for (ZKUtil.ChildrenCallback cb : callbacks) {
+            try {
+                List<String> replicas = cb.getChildren();
+                cache.put(getPartitionIdFromZKPath((String) cb.get()[1]), ImmutableList.copyOf(parseReplicas(replicas)));
+            } catch (KeeperException.NoNodeException e) {
+                // directory may have been deleted between the parent trigger and getChildren.
+            }
+        }
+
+        m_publicCache = ImmutableMap.copyOf(cache);
+    }
+
+    /**
+     * Refresh the replicas of one partition after its election directory changed.
+     */
+    private void processChildEvent(WatchedEvent event) throws Exception {
+        if (event.getType() == Watcher.Event.EventType.None) {
+            return;
+        }
+        final int partitionId = getPartitionIdFromZKPath(event.getPath());
+        HashMap<Integer, ImmutableList<Long>> cacheCopy = new HashMap<Integer, ImmutableList<Long>>(m_publicCache);
+        try {
+            List<String> replicas = m_zk.getChildren(event.getPath(), m_childWatch);
+            cacheCopy.put(partitionId, ImmutableList.copyOf(parseReplicas(replicas)));
+        } catch (KeeperException.NoNodeException e) {
+            cacheCopy.remove(partitionId);
+        }
+        m_publicCache = ImmutableMap.copyOf(cacheCopy);
+    }
+}
@@ -834,7 +834,7 @@ public class Site implements Runnable, SiteProcedureConnection, SiteSnapshotConn
                         // remove the task from the scheduler and give it to task log.
                         // Otherwise, keep the task in the scheduler and let the next loop take and handle it
                         if (m_rejoinState != kStateRunning) {
-                            m_scheduler.poll();
+                            m_scheduler.remove(task);
                             task.runForRejoin(getSiteProcedureConnection(), m_rejoinTaskLog);
                         }
                     } else {
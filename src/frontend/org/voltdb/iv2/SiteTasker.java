@@ -24,6 +24,19 @@ import org.voltdb.rejoin.TaskLog;
 
 public abstract class SiteTasker {
 
+    /**
+     * The classes the site queue can order tasks by when it is prioritized, see
+     * {@link SiteTaskerQueue}. Tasks of one class always run in the order they were offered.
+     */
+    public enum Priority {
+        // command log completion checks and repair log truncation
+        DURABILITY,
+        // transactions and anything else that has to stay in order with them
+        TRANSACTION,
+        // snapshot work and ticks
+        BACKGROUND
+    }
+
     private long queueOfferTime = -1L;
 
     public void setQueueOfferTime() {
@@ -69,4 +82,12 @@ public abstract class SiteTasker {
     public String getTaskInfo() {
         return getClass().getSimpleName();
     }
+
+    /**
+     * Only tasks that may run before or after the transactions queued around them
+     * can be anything but {@link Priority#TRANSACTION}.
+     */
+    public Priority getPriority() {
+        return Priority.TRANSACTION;
+    }
 }
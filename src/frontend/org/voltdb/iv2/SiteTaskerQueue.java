@@ -17,22 +17,73 @@
 
 package org.voltdb.iv2;
 
+import java.io.IOException;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.LinkedTransferQueue;
+import java.util.concurrent.TimeUnit;
 
 import org.voltcore.utils.CoreUtils;
 import org.voltdb.QueueDepthTracker;
+import org.voltdb.SiteProcedureConnection;
 import org.voltdb.StarvationTracker;
+import org.voltdb.rejoin.TaskLog;
 
-/** SiteTaskerScheduler orders SiteTaskers for execution. */
+/**
+ * SiteTaskerScheduler orders SiteTaskers for execution.
+ *
+ * By default the tasks run in the order they were offered. With SITE_TASK_PRIORITIES set
+ * the queue runs the tasks of a higher {@link SiteTasker.Priority} first, unless the oldest
+ * task of a lower one has waited more than SITE_TASK_AGING_MICROS. Tasks of the same
+ * priority still run in the order they were offered.
+ *
+ * Offered to by any thread, and taken from by the site thread only.
+ */
 public class SiteTaskerQueue
 {
+    static final boolean PRIORITIES_ENABLED = Boolean.getBoolean("SITE_TASK_PRIORITIES");
+    static final long AGING_NANOS =
+            TimeUnit.MICROSECONDS.toNanos(Integer.getInteger("SITE_TASK_AGING_MICROS", 10_000));
+
+    private static final SiteTasker.Priority[] PRIORITIES = SiteTasker.Priority.values();
+
+    // Queued in m_tasks behind every task queued on one of the other priorities,
+    // so that a take() blocked on m_tasks wakes up for it
+    private static final SiteTasker WAKEUP = new SiteTasker() {
+        @Override
+        public void run(SiteProcedureConnection siteConnection) {}
+
+        @Override
+        public void runForRejoin(SiteProcedureConnection siteConnection, TaskLog rejoinTaskLog)
+                throws IOException {}
+    };
+
+    // All tasks when the queue isn't prioritized, otherwise the TRANSACTION ones
     private final LinkedTransferQueue<SiteTasker> m_tasks = new LinkedTransferQueue<SiteTasker>();
+    // The other priorities, null when the queue isn't prioritized
+    private final Queue<SiteTasker>[] m_prioritizedTasks;
+    private final long m_agingNanos;
     private StarvationTracker m_starvationTracker;
     private QueueDepthTracker m_queueDepthTracker;
     private int m_partitionId;
 
     public SiteTaskerQueue(int partitionId) {
+        this(partitionId, PRIORITIES_ENABLED, AGING_NANOS);
+    }
+
+    @SuppressWarnings("unchecked")
+    SiteTaskerQueue(int partitionId, boolean prioritized, long agingNanos) {
         m_partitionId = partitionId;
+        m_agingNanos = agingNanos;
+        if (prioritized) {
+            m_prioritizedTasks = new Queue[PRIORITIES.length];
+            for (SiteTasker.Priority priority : PRIORITIES) {
+                m_prioritizedTasks[priority.ordinal()] = priority == SiteTasker.Priority.TRANSACTION ?
+                        m_tasks : new ConcurrentLinkedQueue<SiteTasker>();
+            }
+        } else {
+            m_prioritizedTasks = null;
+        }
     }
 
     public int getPartitionId() {
@@ -47,25 +98,34 @@ public class SiteTaskerQueue
         // the queue depth before it is incremented
         // i.e. avoid queueDepth < 0
         m_queueDepthTracker.offerUpdate();
-        return m_tasks.offer(task);
+        if (m_prioritizedTasks == null || task.getPriority() == SiteTasker.Priority.TRANSACTION) {
+            return m_tasks.offer(task);
+        }
+        m_prioritizedTasks[task.getPriority().ordinal()].offer(task);
+        return m_tasks.offer(WAKEUP);
     }
 
     // Block on the site tasker queue.
     public SiteTasker take() throws InterruptedException
     {
-        SiteTasker task = m_tasks.poll();
-
-        if (task == null) {
-            m_starvationTracker.beginStarvation();
-        } else {
-            m_queueDepthTracker.pollUpdate(task.getQueueOfferTime());
+        SiteTasker task = poll();
+        if (task != null) {
             return task;
         }
+
+        m_starvationTracker.beginStarvation();
         try {
-            task = CoreUtils.queueSpinTake(m_tasks);
-            // task is never null
-            m_queueDepthTracker.pollUpdate(task.getQueueOfferTime());
-            return task;
+            while (true) {
+                task = CoreUtils.queueSpinTake(m_tasks);
+                if (task != WAKEUP) {
+                    m_queueDepthTracker.pollUpdate(task.getQueueOfferTime(), task.getPriority());
+                    return task;
+                }
+                task = poll();
+                if (task != null) {
+                    return task;
+                }
+            }
         } finally {
             m_starvationTracker.endStarvation();
         }
@@ -74,9 +134,17 @@ public class SiteTaskerQueue
     // Non-blocking poll on the site tasker queue.
     public SiteTasker poll()
     {
-        SiteTasker task = m_tasks.poll();
+        SiteTasker task;
+        if (m_prioritizedTasks == null) {
+            task = m_tasks.poll();
+        } else {
+            task = next(true);
+            if (task != null) {
+                m_prioritizedTasks[task.getPriority().ordinal()].poll();
+            }
+        }
         if (task != null) {
-            m_queueDepthTracker.pollUpdate(task.getQueueOfferTime());
+            m_queueDepthTracker.pollUpdate(task.getQueueOfferTime(), task.getPriority());
         }
         return task;
     }
@@ -84,11 +152,75 @@ public class SiteTaskerQueue
     // Non-blocking peek on the site tasker queue.
     public SiteTasker peek()
     {
-        return m_tasks.peek();
+        if (m_prioritizedTasks == null) {
+            return m_tasks.peek();
+        }
+        return next(false);
+    }
+
+    /**
+     * Remove a task returned by {@link #peek()}, which it still is at the head of
+     * the queue of its priority.
+     */
+    public boolean remove(SiteTasker task)
+    {
+        Queue<SiteTasker> tasks = m_prioritizedTasks == null ?
+                m_tasks : m_prioritizedTasks[task.getPriority().ordinal()];
+        if (tasks.remove(task)) {
+            m_queueDepthTracker.pollUpdate(task.getQueueOfferTime(), task.getPriority());
+            return true;
+        }
+        return false;
     }
 
     public boolean isEmpty() {
-        return m_tasks.isEmpty();
+        return peek() == null;
+    }
+
+    /**
+     * The task to run next, the head of the highest priority that has one, or the oldest
+     * head of a lower priority that has waited too long.
+     * @param consume whether this is the site thread about to take the task, which
+     * drops the wakeups at the head of m_tasks on the way
+     */
+    private SiteTasker next(boolean consume) {
+        SiteTasker next = null;
+        long now = 0;
+        for (SiteTasker.Priority priority : PRIORITIES) {
+            SiteTasker head = priority == SiteTasker.Priority.TRANSACTION ?
+                    transactionHead(consume) : m_prioritizedTasks[priority.ordinal()].peek();
+            if (head == null) {
+                continue;
+            }
+            if (next == null) {
+                next = head;
+                continue;
+            }
+            if (now == 0) {
+                now = System.nanoTime();
+            }
+            if (now - head.getQueueOfferTime() > m_agingNanos &&
+                    head.getQueueOfferTime() - next.getQueueOfferTime() < 0) {
+                next = head;
+            }
+        }
+        return next;
+    }
+
+    private SiteTasker transactionHead(boolean consume) {
+        if (consume) {
+            SiteTasker head;
+            while ((head = m_tasks.peek()) == WAKEUP) {
+                m_tasks.poll();
+            }
+            return head;
+        }
+        for (SiteTasker task : m_tasks) {
+            if (task != WAKEUP) {
+                return task;
+            }
+        }
+        return null;
     }
 
     public void setStarvationTracker(StarvationTracker tracker) {
@@ -96,7 +228,7 @@ public class SiteTaskerQueue
     }
 
     public QueueDepthTracker setupQueueDepthTracker(long siteId) {
-        m_queueDepthTracker = new QueueDepthTracker(siteId, m_tasks);
+        m_queueDepthTracker = new QueueDepthTracker(siteId, this);
         return m_queueDepthTracker;
     }
 }
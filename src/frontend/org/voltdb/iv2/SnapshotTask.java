@@ -37,4 +37,11 @@ public class SnapshotTask extends SiteTasker
     {
         throw new RuntimeException("Snapshot task attempted snapshot on partial rejoin state.");
     }
+
+    @Override
+    public Priority getPriority()
+    {
+        // copy on write keeps the snapshot consistent whenever the work is done
+        return Priority.BACKGROUND;
+    }
 }
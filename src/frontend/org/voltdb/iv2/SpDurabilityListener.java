@@ -120,56 +120,129 @@ public class SpDurabilityListener implements DurabilityListener {
         }
     }
 
+    /**
+     * Reusable ring of sync logged transactions waiting on durability. Tasks are numbered by a
+     * monotonically increasing sequence as the command log thread adds them, so a batch only needs
+     * to remember the sequence of its last task and the site thread can release everything up
+     * to that point in one pass without a per batch task list.
+     */
+    static class PendingDurabilityRing {
+        private final int m_initialCapacity;
+        private TransactionTask[] m_tasks;
+        // Sequence of the oldest task not yet released
+        private long m_head = 0;
+        // Sequence the next added task will get
+        private long m_tail = 0;
+        // Tasks taken out of the ring to be released without holding its lock, only used by the site thread
+        private final TransactionTask[] m_releasing;
+
+        PendingDurabilityRing(int initialCapacity) {
+            m_initialCapacity = Integer.highestOneBit(Math.max(initialCapacity, 2) - 1) << 1;
+            m_tasks = new TransactionTask[m_initialCapacity];
+            m_releasing = new TransactionTask[m_initialCapacity];
+        }
+
+        synchronized long add(TransactionTask task) {
+            if (m_tail - m_head == m_tasks.length) {
+                resize(m_tasks.length * 2);
+            }
+            m_tasks[(int) (m_tail & (m_tasks.length - 1))] = task;
+            return ++m_tail;
+        }
+
+        synchronized long getTail() {
+            return m_tail;
+        }
+
+        synchronized int size() {
+            return (int) (m_tail - m_head);
+        }
+
+        synchronized int capacity() {
+            return m_tasks.length;
+        }
+
+        /**
+         * Release every task with a sequence lower than durableSeq back to the listener. The tasks
+         * are taken out of the ring under its lock and released after letting go of it, so adding
+         * tasks isn't held up by the release.
+         */
+        void releaseUpTo(long durableSeq, SpDurabilityListener listener) {
+            final TransactionTask[] released;
+            final int count;
+            synchronized (this) {
+                assert durableSeq <= m_tail;
+                if (durableSeq <= m_head) {
+                    return;
+                }
+                count = (int) (durableSeq - m_head);
+                released = count <= m_releasing.length ? m_releasing : new TransactionTask[count];
+                final int mask = m_tasks.length - 1;
+                for (int i = 0; i < count; i++) {
+                    final int idx = (int) (m_head++ & mask);
+                    released[i] = m_tasks[idx];
+                    m_tasks[idx] = null;
+                }
+                // Give back what a burst grew the ring to once it is mostly empty again
+                if (m_tasks.length > m_initialCapacity && size() <= m_tasks.length / 4) {
+                    resize(m_tasks.length / 2);
+                }
+            }
+            for (int i = 0; i < count; i++) {
+                listener.releaseDurableTask(released[i]);
+                released[i] = null;
+            }
+        }
+
+        private void resize(int capacity) {
+            final TransactionTask[] tasks = new TransactionTask[capacity];
+            final int oldMask = m_tasks.length - 1;
+            final int newMask = tasks.length - 1;
+            for (long seq = m_head; seq < m_tail; seq++) {
+                tasks[(int) (seq & newMask)] = m_tasks[(int) (seq & oldMask)];
+            }
+            m_tasks = tasks;
+        }
+    }
+
     class SyncCompletionChecks extends AsyncCompletionChecks {
-        ArrayList<TransactionTask> m_pendingTransactions;
+        // Sequence in m_pendingDurability of the first and one past the last task in this batch
+        final long m_firstSeq;
+        long m_endSeq;
 
-        public SyncCompletionChecks(long lastSpUniqueId, long lastMpUniqueId, int startSize) {
+        public SyncCompletionChecks(long lastSpUniqueId, long lastMpUniqueId, long firstSeq) {
             super(lastSpUniqueId, lastMpUniqueId);
-            m_pendingTransactions = new ArrayList<TransactionTask>(startSize);
+            m_firstSeq = firstSeq;
+            m_endSeq = firstSeq;
         }
 
         @Override
         public CommandLog.CompletionChecks startNewCheckList(int startSize) {
-            return new SyncCompletionChecks(m_lastSpUniqueId, m_lastMpUniqueId, startSize);
+            return new SyncCompletionChecks(m_lastSpUniqueId, m_lastMpUniqueId, m_endSeq);
         }
 
         @Override
         public void addTask(TransactionTask task) {
-            m_pendingTransactions.add(task);
+            m_endSeq = m_pendingDurability.add(task);
             super.addTask(task);
         }
 
         @Override
         public boolean isChanged() {
-            return !m_pendingTransactions.isEmpty();
+            return m_endSeq != m_firstSeq;
         }
 
         @Override
         public int getTaskListSize() {
-            return m_pendingTransactions.size();
-        }
-
-        private void queuePendingTasks() {
-            // Notify all sync transactions and the SP UniqueId listeners
-            for (TransactionTask o : m_pendingTransactions) {
-                final VoltTrace.TraceEventBatch traceLog = VoltTrace.log(VoltTrace.Category.SPI);
-                if (traceLog != null) {
-                    traceLog.add(() -> VoltTrace.endAsync("durability",
-                                                          MiscUtils.hsIdTxnIdToString(m_spScheduler.m_mailbox.getHSId(),
-                                                                                      o.getSpHandle())));
-                }
-
-                m_pendingTasks.offer(o);
-                // Make sure all queued tasks for this MP txn are released
-                if (!o.getTransactionState().isSinglePartition()) {
-                    m_spScheduler.offerPendingMPTasks(o.getTxnId());
-                }
-            }
+            return (int) (m_endSeq - m_firstSeq);
         }
 
         @Override
         public void processChecks() {
-            queuePendingTasks();
+            // Notify all sync transactions and the SP UniqueId listeners
+            m_traceLog = VoltTrace.log(VoltTrace.Category.SPI);
+            m_pendingDurability.releaseUpTo(m_endSeq, SpDurabilityListener.this);
+            m_traceLog = null;
             super.processChecks();
         }
     }
@@ -180,6 +253,11 @@ public class SpDurabilityListener implements DurabilityListener {
     private final TransactionTaskQueue m_pendingTasks;
     private boolean m_commandLoggingEnabled;
 
+    // Only used with synchronous command logging
+    private PendingDurabilityRing m_pendingDurability = null;
+    // Trace log of the batch being released, looked up once per batch rather than per task
+    private VoltTrace.TraceEventBatch m_traceLog = null;
+
     private final ArrayList<DurableUniqueIdListener> m_uniqueIdListeners = new ArrayList<DurableUniqueIdListener>(2);
 
     public SpDurabilityListener(SpScheduler spScheduler, TransactionTaskQueue pendingTasks) {
@@ -235,13 +313,33 @@ public class SpDurabilityListener implements DurabilityListener {
         }
         else
         if (isSyncLogging) {
-            m_currentCompletionChecks = new SyncCompletionChecks(Long.MIN_VALUE, Long.MIN_VALUE, 16);
+            m_pendingDurability = new PendingDurabilityRing(1024);
+            m_currentCompletionChecks = new SyncCompletionChecks(Long.MIN_VALUE, Long.MIN_VALUE,
+                                                                 m_pendingDurability.getTail());
         }
         else {
             m_currentCompletionChecks = new AsyncCompletionChecks(Long.MIN_VALUE, Long.MIN_VALUE);
         }
     }
 
+    /**
+     * Hand a transaction that is now durable back to the task queue. Called on the site thread
+     * for each task covered by a completed sync.
+     */
+    void releaseDurableTask(TransactionTask task) {
+        if (m_traceLog != null) {
+            m_traceLog.add(() -> VoltTrace.endAsync("durability",
+                                                    MiscUtils.hsIdTxnIdToString(m_spScheduler.m_mailbox.getHSId(),
+                                                                                task.getSpHandle())));
+        }
+
+        m_pendingTasks.offer(task);
+        // Make sure all queued tasks for this MP txn are released
+        if (!task.getTransactionState().isSinglePartition()) {
+            m_spScheduler.offerPendingMPTasks(task.getTxnId());
+        }
+    }
+
     @Override
     public boolean completionCheckInitialized() {
         return (m_currentCompletionChecks != null);
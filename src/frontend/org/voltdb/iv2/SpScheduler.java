@@ -1535,6 +1535,12 @@ public class SpScheduler extends Scheduler implements SnapshotCompletionInterest
                     currentChecks.processChecks();
                 }
             }
+
+            @Override
+            public Priority getPriority() {
+                // the checks only release responses of transactions already logged
+                return Priority.DURABILITY;
+            }
         };
         if (InitiatorMailbox.SCHEDULE_IN_SITE_THREAD) {
             if (hostLog.isDebugEnabled()) {
@@ -1656,6 +1662,11 @@ public class SpScheduler extends Scheduler implements SnapshotCompletionInterest
                     }
                 }
             }
+
+            @Override
+            public Priority getPriority() {
+                return Priority.DURABILITY;
+            }
         };
         if (hostLog.isDebugEnabled()) {
             r.taskInfo = "Repair Log Truncate Message Handle:" + m_repairLogTruncationHandle;
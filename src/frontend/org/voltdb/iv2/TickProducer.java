@@ -108,4 +108,10 @@ public class TickProducer extends SiteTasker implements Runnable
     {
         siteConnection.tick();
     }
+
+    @Override
+    public Priority getPriority()
+    {
+        return Priority.BACKGROUND;
+    }
 }
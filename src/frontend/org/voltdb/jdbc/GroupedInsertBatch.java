@@ -0,0 +1,347 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2017 VoltDB Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with VoltDB.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.voltdb.jdbc;
+
+import java.io.IOException;
+import java.sql.BatchUpdateException;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.voltdb.ParameterConverter;
+import org.voltdb.VoltTable;
+import org.voltdb.VoltType;
+import org.voltdb.client.ClientImpl;
+import org.voltdb.client.ClientResponse;
+import org.voltdb.client.ProcCallException;
+import org.voltdb.client.ProcedureCallback;
+import org.voltdb.jdbc.JDBC4Statement.VoltSQL;
+
+/**
+ * Runs a batch of a single-row INSERT or UPSERT of every column of a table, or of the table's
+ * default insert or upsert procedure, as one multi-row load per partition instead of one
+ * invocation per row. Rows are grouped by the client's hashinator and each group is sent to
+ * its partition with @LoadSinglepartitionTable, or to @LoadMultipartitionTable for a
+ * replicated table, the way VoltBulkLoader does it.
+ *
+ * A group is loaded in one transaction. A group that fails is rolled back, and its rows are
+ * run again one at a time in batch order so that every entry gets its own update count or
+ * EXECUTE_FAILED. Unlike an ungrouped batch, the rows after a failed one still run.
+ */
+class GroupedInsertBatch
+{
+    // INSERT or UPSERT INTO table [(columns)] VALUES (?, ..., ?)
+    private static final Pattern INSERT_VALUES = Pattern.compile(
+            "^\\s*(INSERT|UPSERT)\\s+INTO\\s+(\\w+)\\s*(?:\\(([\\w\\s,]+)\\))?\\s*" +
+            "VALUES\\s*\\(\\s*\\?(?:\\s*,\\s*\\?)*\\s*\\)\\s*;*\\s*$",
+            Pattern.CASE_INSENSITIVE);
+    // The default procedures take every column of the table in order
+    private static final Pattern DEFAULT_PROCEDURE = Pattern.compile(
+            "^(\\w+)\\.(insert|upsert)$", Pattern.CASE_INSENSITIVE);
+
+    /**
+     * Columns of a table as the grouped loads need them, cached per connection
+     */
+    static class TableLayout
+    {
+        final String[] columnNames;
+        final VoltType[] columnTypes;
+        final int partitionColumn;
+
+        TableLayout(String[] columnNames, VoltType[] columnTypes, int partitionColumn)
+        {
+            this.columnNames = columnNames;
+            this.columnTypes = columnTypes;
+            this.partitionColumn = partitionColumn;
+        }
+
+        boolean isReplicated()
+        {
+            return partitionColumn == -1;
+        }
+
+        VoltTable newTable()
+        {
+            VoltTable.ColumnInfo[] columns = new VoltTable.ColumnInfo[columnNames.length];
+            for (int i = 0; i < columns.length; i++) {
+                columns[i] = new VoltTable.ColumnInfo(columnNames[i], columnTypes[i]);
+            }
+            return new VoltTable(columns);
+        }
+    }
+
+    final String tableName;
+    final boolean upsert;
+    // Columns named by the statement, null if it names none
+    final String[] columns;
+
+    GroupedInsertBatch(String tableName, boolean upsert, String[] columns)
+    {
+        this.tableName = tableName;
+        this.upsert = upsert;
+        this.columns = columns;
+    }
+
+    /**
+     * @return how to group batches of the given statement, or null if they can't be grouped
+     */
+    static GroupedInsertBatch forStatement(VoltSQL query)
+    {
+        if (query.isOfType(VoltSQL.TYPE_EXEC)) {
+            Matcher m = DEFAULT_PROCEDURE.matcher(query.toSqlString());
+            if (!m.matches()) {
+                return null;
+            }
+            return new GroupedInsertBatch(m.group(1).toUpperCase(Locale.ROOT),
+                    m.group(2).equalsIgnoreCase("upsert"), null);
+        }
+        if (query.isOfType(VoltSQL.TYPE_UPDATE)) {
+            Matcher m = INSERT_VALUES.matcher(query.toSqlString());
+            if (!m.matches()) {
+                return null;
+            }
+            String[] columns = null;
+            if (m.group(3) != null) {
+                columns = m.group(3).trim().split("\\s*,\\s*");
+            }
+            return new GroupedInsertBatch(m.group(2).toUpperCase(Locale.ROOT),
+                    m.group(1).equalsIgnoreCase("upsert"), columns);
+        }
+        return null;
+    }
+
+    /**
+     * Group the entries of the batch by partition and load each group with a single call.
+     * @return the update count of each entry in batch order, or null if the batch can't be
+     *         grouped and has to run one entry at a time
+     * @throws BatchUpdateException if any of the entries failed
+     */
+    int[] execute(JDBC4Connection connection, List<VoltSQL> batch, long timeout, TimeUnit unit)
+            throws SQLException
+    {
+        final ClientImpl client;
+        try {
+            client = connection.NativeConnection.getClient();
+        }
+        catch (IOException e) {
+            throw SQLError.get(e, SQLError.CONNECTION_FAILURE, e.getMessage());
+        }
+        if (!client.isHashinatorInitialized()) {
+            return null;
+        }
+        final TableLayout layout = getTableLayout(connection, timeout, unit);
+        if (layout == null) {
+            return null;
+        }
+        if (!namesEveryColumn(layout)) {
+            return null;
+        }
+
+        // Rows of each partition in batch order, -1 for a replicated table
+        Map<Long, List<Integer>> groups = new LinkedHashMap<Long, List<Integer>>();
+        List<Object[]> rows = new ArrayList<Object[]>(batch.size());
+        for (int i = 0; i < batch.size(); i++) {
+            Object[] row = batch.get(i).getBatchValues();
+            if (row.length != layout.columnTypes.length) {
+                // The table changed since it was cached
+                connection.batchTables.remove(tableName);
+                return null;
+            }
+            rows.add(row);
+            long partition = -1;
+            if (!layout.isReplicated()) {
+                try {
+                    partition = client.getPartitionForParameter(
+                            layout.columnTypes[layout.partitionColumn].getValue(), row[layout.partitionColumn]);
+                }
+                catch (RuntimeException e) {
+                    // The value can't be hashed, the row is sure to fail on its own
+                    partition = Long.MIN_VALUE;
+                }
+            }
+            List<Integer> group = groups.get(partition);
+            if (group == null) {
+                group = new ArrayList<Integer>();
+                groups.put(partition, group);
+            }
+            group.add(i);
+        }
+
+        // Send every group before waiting for any of them
+        final List<List<Integer>> sent = new ArrayList<List<Integer>>(groups.size());
+        final ClientResponse[] responses = new ClientResponse[groups.size()];
+        final CountDownLatch done = new CountDownLatch(groups.size());
+        for (Map.Entry<Long, List<Integer>> e : groups.entrySet()) {
+            final int index = sent.size();
+            sent.add(e.getValue());
+            VoltTable table = e.getKey() == Long.MIN_VALUE ? null : toTable(layout, rows, e.getValue());
+            boolean queued = false;
+            if (table != null) {
+                ProcedureCallback callback = new ProcedureCallback() {
+                    @Override
+                    public void clientCallback(ClientResponse response)
+                    {
+                        responses[index] = response;
+                        done.countDown();
+                    }
+                };
+                try {
+                    if (layout.isReplicated()) {
+                        queued = connection.NativeConnection.executeAsync(callback, timeout, unit,
+                                "@LoadMultipartitionTable", tableName, (byte) (upsert ? 1 : 0), table);
+                    }
+                    else {
+                        Object partitionValue = VoltType.valueToBytes(
+                                table.fetchRow(0).get(layout.partitionColumn, layout.columnTypes[layout.partitionColumn]));
+                        queued = connection.NativeConnection.executeAsync(callback, timeout, unit,
+                                "@LoadSinglepartitionTable", partitionValue, tableName, (byte) (upsert ? 1 : 0), table);
+                    }
+                }
+                catch (IOException ignored) {
+                    // The rows of the group are run one at a time below and fail there
+                }
+            }
+            if (!queued) {
+                done.countDown();
+            }
+        }
+        try {
+            done.await();
+        }
+        catch (InterruptedException e) {
+            throw SQLError.get(e, SQLError.GENERAL_ERROR, e.getMessage());
+        }
+
+        int[] updateCounts = new int[batch.size()];
+        SQLException firstFailure = null;
+        for (int g = 0; g < sent.size(); g++) {
+            if (responses[g] != null && responses[g].getStatus() == ClientResponse.SUCCESS) {
+                for (int i : sent.get(g)) {
+                    updateCounts[i] = 1;
+                }
+                continue;
+            }
+            // The group was rolled back, find out which of its rows fail
+            connection.batchTables.remove(tableName);
+            for (int i : sent.get(g)) {
+                try {
+                    updateCounts[i] = JDBC4Statement.getBatchUpdateCount(
+                            batch.get(i).execute(connection.NativeConnection, timeout, unit));
+                }
+                catch (SQLException e) {
+                    updateCounts[i] = Statement.EXECUTE_FAILED;
+                    if (firstFailure == null) {
+                        firstFailure = e;
+                    }
+                }
+            }
+        }
+        if (firstFailure != null) {
+            throw new BatchUpdateException(updateCounts, firstFailure);
+        }
+        return updateCounts;
+    }
+
+    private boolean namesEveryColumn(TableLayout layout)
+    {
+        if (columns == null) {
+            return true;
+        }
+        if (columns.length != layout.columnNames.length) {
+            return false;
+        }
+        for (int i = 0; i < columns.length; i++) {
+            if (!columns[i].equalsIgnoreCase(layout.columnNames[i])) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return the rows of a group as a table to load, or null if a value doesn't fit its column
+     */
+    private static VoltTable toTable(TableLayout layout, List<Object[]> rows, List<Integer> group)
+    {
+        VoltTable table = layout.newTable();
+        Object[] converted = new Object[layout.columnTypes.length];
+        try {
+            for (int i : group) {
+                Object[] row = rows.get(i);
+                for (int c = 0; c < converted.length; c++) {
+                    converted[c] = ParameterConverter.tryToMakeCompatible(
+                            layout.columnTypes[c].classFromType(), row[c]);
+                }
+                table.addRow(converted);
+            }
+        }
+        catch (RuntimeException e) {
+            return null;
+        }
+        return table;
+    }
+
+    private TableLayout getTableLayout(JDBC4Connection connection, long timeout, TimeUnit unit) throws SQLException
+    {
+        TableLayout layout = connection.batchTables.get(tableName);
+        if (layout != null) {
+            return layout;
+        }
+        final VoltTable columns;
+        try {
+            columns = connection.NativeConnection.execute("@SystemCatalog", timeout, unit, "COLUMNS").getResults()[0];
+        }
+        catch (ProcCallException e) {
+            // Not allowed to read the catalog, the batch can still run ungrouped
+            return null;
+        }
+        catch (IOException e) {
+            throw SQLError.get(e, SQLError.CONNECTION_FAILURE, e.getMessage());
+        }
+        Map<Integer, String> names = new TreeMap<Integer, String>();
+        Map<Integer, VoltType> types = new TreeMap<Integer, VoltType>();
+        int partitionColumn = -1;
+        while (columns.advanceRow()) {
+            if (!tableName.equalsIgnoreCase(columns.getString("TABLE_NAME"))) {
+                continue;
+            }
+            int index = (int) columns.getLong("ORDINAL_POSITION") - 1;
+            names.put(index, columns.getString("COLUMN_NAME"));
+            types.put(index, VoltType.typeFromString(columns.getString("TYPE_NAME")));
+            if ("PARTITION_COLUMN".equalsIgnoreCase(columns.getString("REMARKS"))) {
+                partitionColumn = index;
+            }
+        }
+        if (names.isEmpty()) {
+            return null;
+        }
+        layout = new TableLayout(names.values().toArray(new String[names.size()]),
+                types.values().toArray(new VoltType[types.size()]), partitionColumn);
+        connection.batchTables.put(tableName, layout);
+        return layout;
+    }
+}
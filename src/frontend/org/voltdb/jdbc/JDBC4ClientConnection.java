@@ -426,6 +426,41 @@ public class JDBC4ClientConnection implements Closeable {
         }
     }
 
+    /**
+     * Executes a procedure asynchronously with a client side timeout, then calls the provided
+     * user callback with the server response upon completion.
+     *
+     * @param callback
+     *            the user-specified callback to call with the server response upon execution
+     *            completion.
+     * @param timeout
+     *            the client side timeout for the call.
+     * @param unit
+     *            the unit of the timeout, seconds if <code>null</code>.
+     * @param procedure
+     *            the name of the procedure to call.
+     * @param parameters
+     *            the list of parameters to pass to the procedure.
+     * @return the result of the submission false if the client connection was terminated and unable
+     *         to post the request to the server, true otherwise.
+     */
+    public boolean executeAsync(ProcedureCallback callback, long timeout, TimeUnit unit, String procedure,
+            Object... parameters) throws NoConnectionsException, IOException
+    {
+        ClientImpl currentClient = this.getClient();
+        if (unit == null) {
+            unit = TimeUnit.SECONDS;
+        }
+        try {
+            return currentClient.callProcedureWithClientTimeout(new TrackingCallback(this, procedure, callback),
+                    BatchTimeoutOverrideType.NO_TIMEOUT, procedure, timeout, unit, parameters);
+        }
+        catch (NoConnectionsException e) {
+            this.dropClient(currentClient);
+            throw e;
+        }
+    }
+
     /**
      * Executes a procedure asynchronously, returning a Future that can be used by the caller to
      * wait upon completion before processing the server response.
@@ -34,6 +34,7 @@ import java.sql.Statement;
 import java.sql.Struct;
 import java.util.Map;
 import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.Executor;
 import java.util.concurrent.TimeUnit;
 
@@ -52,6 +53,9 @@ public class JDBC4Connection implements java.sql.Connection, IVoltDBConnection
     private boolean isClosed = false;
     private Properties props;
     private boolean autoCommit = true;
+    // Tables batches of whole-row inserts were grouped for
+    final Map<String, GroupedInsertBatch.TableLayout> batchTables =
+            new ConcurrentHashMap<String, GroupedInsertBatch.TableLayout>();
 
     public JDBC4Connection(JDBC4ClientConnection connection, Properties props)
     {
@@ -45,6 +45,7 @@ public class JDBC4PreparedStatement extends JDBC4Statement implements java.sql.P
     private final VoltSQL Query;
     private Object[] parameters;
     private final JDBC4ParameterMetaData parameterMetaData;
+    private final GroupedInsertBatch groupedBatch;
     JDBC4PreparedStatement(JDBC4Connection connection, String sql) throws SQLException
     {
         super(connection);
@@ -52,6 +53,7 @@ public class JDBC4PreparedStatement extends JDBC4Statement implements java.sql.P
         this.Query = query;
         this.parameters = this.Query.getParameterArray();
         this.parameterMetaData = new JDBC4ParameterMetaData(this, this.Query.getParameterCount()); // to be replaced with actual param count (!)
+        this.groupedBatch = GroupedInsertBatch.forStatement(query);
     }
 
     protected JDBC4PreparedStatement(JDBC4Connection connection, String sql, boolean isCallableStatement) throws SQLException
@@ -72,6 +74,7 @@ public class JDBC4PreparedStatement extends JDBC4Statement implements java.sql.P
         this.Query = query;
         this.parameters = this.Query.getParameterArray();
         this.parameterMetaData = new JDBC4ParameterMetaData(this, this.Query.getParameterCount()); // to be replaced with actual param count (!)
+        this.groupedBatch = GroupedInsertBatch.forStatement(query);
     }
 
     protected synchronized void checkParameterBounds(int parameterIndex) throws SQLException
@@ -87,13 +90,20 @@ public class JDBC4PreparedStatement extends JDBC4Statement implements java.sql.P
     public void addBatch() throws SQLException
     {
         checkClosed();
-        if (this.Query.isOfType(VoltSQL.TYPE_EXEC,VoltSQL.TYPE_SELECT)) {
+        if (this.Query.isOfType(VoltSQL.TYPE_SELECT)) {
             throw SQLError.get(SQLError.ILLEGAL_STATEMENT, this.Query.toSqlString());
         }
         this.addBatch(this.Query.getExecutableQuery(this.parameters));
         this.parameters = this.Query.getParameterArray();
     }
 
+    // Every entry of the batch is this statement, inserts of whole rows can be grouped by partition
+    @Override
+    protected GroupedInsertBatch getGroupedBatch()
+    {
+        return this.groupedBatch;
+    }
+
     // Clears the current parameter values immediately.
     @Override
     public void clearParameters() throws SQLException
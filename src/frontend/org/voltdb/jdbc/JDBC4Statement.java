@@ -154,6 +154,18 @@ public class JDBC4Statement implements java.sql.Statement
             }
         }
 
+        /**
+         * @return the values bound to an executable query from a batch, without the SQL text
+         *         of a prepared statement
+         */
+        Object[] getBatchValues()
+        {
+            if (this.queryType == TYPE_EXEC) {
+                return this.parameters;
+            }
+            return Arrays.copyOfRange(this.parameters, 1, this.parameters.length);
+        }
+
         public static boolean isUpdateResult(VoltTable table)
         {
             return ((table.getColumnName(0).length() == 0 || table.getColumnName(0).equals("modified_tuples"))&& table.getRowCount() == 1 && table.getColumnCount() == 1 && table.getColumnType(0) == VoltType.BIGINT);
@@ -427,18 +439,31 @@ public class JDBC4Statement implements java.sql.Statement
 
         int i = 0;
         try {
-            for (; i < batch.size(); i++) {
-
-                setCurrentResult(
-                        null,
-                        (int) batch.get(i).execute(
-                                sourceConnection.NativeConnection,
-                                this.m_timeout,
-                                sourceConnection.queryTimeOutUnit)[0].fetchRow(
-                                0).getLong(0));
-                updateCounts[i] = this.lastUpdateCount;
-                runningUpdateCount += this.lastUpdateCount;
+            GroupedInsertBatch grouped = getGroupedBatch();
+            int[] groupedCounts = null;
+            if (grouped != null) {
+                groupedCounts = grouped.execute(sourceConnection, batch, this.m_timeout, sourceConnection.queryTimeOutUnit);
+            }
+            if (groupedCounts != null) {
+                updateCounts = groupedCounts;
+                for (int count : updateCounts) {
+                    runningUpdateCount += Math.max(count, 0);
+                }
+            }
+            else {
+                for (; i < batch.size(); i++) {
+                    setCurrentResult(
+                            null,
+                            getBatchUpdateCount(batch.get(i).execute(
+                                    sourceConnection.NativeConnection,
+                                    this.m_timeout,
+                                    sourceConnection.queryTimeOutUnit)));
+                    updateCounts[i] = this.lastUpdateCount;
+                    runningUpdateCount += Math.max(this.lastUpdateCount, 0);
+                }
             }
+        } catch (BatchUpdateException x) {
+            throw x;
         } catch (SQLException x) {
             updateCounts[i] = EXECUTE_FAILED;
             throw new BatchUpdateException(Arrays.copyOf(updateCounts, i + 1),
@@ -453,6 +478,23 @@ public class JDBC4Statement implements java.sql.Statement
         return updateCounts;
     }
 
+    /**
+     * @return how to run the current batch as one multi-row call per partition, null to run
+     *         it one entry at a time
+     */
+    protected GroupedInsertBatch getGroupedBatch()
+    {
+        return null;
+    }
+
+    static int getBatchUpdateCount(VoltTable[] results)
+    {
+        if (results.length == 0 || !VoltSQL.isUpdateResult(results[0])) {
+            return SUCCESS_NO_INFO;
+        }
+        return (int) results[0].fetchRow(0).getLong(0);
+    }
+
     protected ResultSet executeQuery(VoltSQL query) throws SQLException
     {
         setCurrentResult(query.execute(this.sourceConnection.NativeConnection, this.m_timeout, this.sourceConnection.queryTimeOutUnit), -1);
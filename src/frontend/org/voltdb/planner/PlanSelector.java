@@ -107,8 +107,8 @@ public class PlanSelector implements Cloneable {
      * @param parsedStmt
      */
     public void outputParsedStatement(AbstractParsedStmt parsedStmt) {
-        // output a description of the parsed stmt
-        if (!m_quietPlanner) {
+        // output a description of the parsed stmt, it only goes to the debug output
+        if (!m_quietPlanner && m_fullDebug) {
             BuildDirectoryUtils.writeFile("statement-parsed", m_procName + "_" + m_stmtName + ".txt",
                     parsedStmt.toString(), true);
         }
@@ -169,7 +169,11 @@ public class PlanSelector implements Cloneable {
             //* enable for debug */ System.out.println("DEBUG [Best plan] updated ***\n");
         }
 
-        outputPlan(plan, planGraph, filename);
+        // Explaining every candidate is only useful for the debug output,
+        // the explained plan of the winner is generated in finalizeOutput()
+        if (m_fullDebug) {
+            outputPlan(plan, planGraph, filename);
+        }
     }
 
     public void finalizeOutput() {
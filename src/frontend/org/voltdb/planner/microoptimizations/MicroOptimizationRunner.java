@@ -88,7 +88,7 @@ public class MicroOptimizationRunner {
                     planString = ex.getMessage();
                 }
                 m_logger.debug("Microoptimization: " + opt + "\n"
-                           + "Input:\n" + plan.explainedPlan + "\n"
+                           + "Input:\n" + plan.rootPlanGraph.toExplainPlanString() + "\n"
                            + ":-----------:\n"
                            + planString
                            + "\n");
@@ -45,6 +45,7 @@ import java.util.Set;
 import java.util.TreeMap;
 import java.util.TreeSet;
 import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.TimeUnit;
@@ -85,12 +86,14 @@ import org.voltdb.catalog.Table;
 import org.voltdb.client.ClientResponse;
 import org.voltdb.common.Constants;
 import org.voltdb.settings.NodeSettings;
+import org.voltdb.sysprocs.saverestore.TableSaveFileScanner.ScannedFile;
 import org.voltdb.utils.CatalogUtil;
 import org.voltdb.utils.VoltFile;
 
 import com.google_voltpatches.common.base.Throwables;
 import com.google_voltpatches.common.util.concurrent.ListenableFuture;
 import com.google_voltpatches.common.util.concurrent.SettableFuture;
+import com.google_voltpatches.common.util.concurrent.Uninterruptibles;
 
 public class SnapshotUtil {
 
@@ -801,11 +804,67 @@ public class SnapshotUtil {
             boolean validate,
             SnapshotPathType stype,
             VoltLogger logger) {
+        retrieveSnapshotFiles(directory, namedSnapshotMap, filter, validate, stype, logger,
+                TableSaveFileScanner.DEFAULT_THREADS);
+    }
+
+    /**
+     * Same as above, reading the table files threads at a time with {@link TableSaveFileScanner}
+     * once the directory has been walked.
+     * @param threads
+     */
+    public static void retrieveSnapshotFiles(
+            File directory,
+            Map<String, Snapshot> namedSnapshotMap,
+            FileFilter filter,
+            boolean validate,
+            SnapshotPathType stype,
+            VoltLogger logger,
+            int threads) {
 
         NamedSnapshots namedSnapshots = new NamedSnapshots(namedSnapshotMap, stype);
-        retrieveSnapshotFilesInternal(directory, namedSnapshots, filter, validate, stype, logger, 0);
+        List<File> tableFiles = new ArrayList<File>();
+        retrieveSnapshotFilesInternal(directory, namedSnapshots, filter, validate, stype, logger, tableFiles, 0);
+
+        List<ListenableFuture<ScannedFile>> scans = TableSaveFileScanner.scan(tableFiles, validate, threads, logger);
+        for (int ii = 0; ii < tableFiles.size(); ii++) {
+            File f = tableFiles.get(ii);
+            ScannedFile saveFile;
+            try {
+                saveFile = Uninterruptibles.getUninterruptibly(scans.get(ii));
+            } catch (ExecutionException e) {
+                if (e.getCause() instanceof FileNotFoundException) {
+                    System.err.println(e.getCause().getMessage());
+                    continue;
+                }
+                // the scan only throws IOException otherwise
+                Throwables.propagateIfPossible(e.getCause());
+                System.err.println(e.getCause().getMessage());
+                System.err.println("Error: Unable to process " + f.getPath());
+                continue;
+            }
+            HashSet<Integer> partitionIds = new HashSet<Integer>(saveFile.m_partitionIds);
+            partitionIds.removeAll(saveFile.m_corruptPartitionIds);
+            String nonce = parseNonceFromSnapshotFilename(f.getName());
+            Snapshot named_s = namedSnapshots.get(nonce);
+            named_s.setTxnId(saveFile.m_txnId);
+            TableFiles namedTableFiles = named_s.m_tableFiles.get(saveFile.m_tableName);
+            if (namedTableFiles == null) {
+                namedTableFiles = new TableFiles(saveFile.m_isReplicated);
+                named_s.m_tableFiles.put(saveFile.m_tableName, namedTableFiles);
+            }
+            namedTableFiles.m_files.add(f);
+            namedTableFiles.m_completed.add(saveFile.m_completed);
+            namedTableFiles.m_validPartitionIds.add(partitionIds);
+            namedTableFiles.m_corruptParititionIds.add(saveFile.m_corruptPartitionIds);
+            namedTableFiles.m_totalPartitionCounts.add(saveFile.m_totalPartitions);
+        }
     }
 
+    /**
+     * Reads the digests, catalogs and hashinator configs of the directory as it walks it,
+     * leaving the table files in tableFiles to be scanned together.
+     */
     private static void retrieveSnapshotFilesInternal(
             File directory,
             NamedSnapshots namedSnapshots,
@@ -813,6 +872,7 @@ public class SnapshotUtil {
             boolean validate,
             SnapshotPathType stype,
             VoltLogger logger,
+            List<File> tableFiles,
             int recursion) {
 
         if (recursion == 32) {
@@ -838,7 +898,8 @@ public class SnapshotUtil {
                     System.err.println("Warning: Skipping directory " + f.getPath()
                             + " due to lack of read permission");
                 } else {
-                    retrieveSnapshotFilesInternal(f, namedSnapshots, filter, validate, stype, logger, recursion++);
+                    retrieveSnapshotFilesInternal(f, namedSnapshots, filter, validate, stype, logger,
+                            tableFiles, recursion++);
                 }
                 continue;
             }
@@ -846,6 +907,11 @@ public class SnapshotUtil {
                 System.err.println("Warning: " + f.getPath() + " is not readable");
                 continue;
             }
+            if (!f.getName().endsWith(".digest") && !f.getName().endsWith(".jar")
+                    && !f.getName().endsWith(HASH_EXTENSION)) {
+                tableFiles.add(f);
+                continue;
+            }
 
             FileInputStream fis = null;
             try {
@@ -897,38 +963,6 @@ public class SnapshotUtil {
                             continue;
                         }
                     }
-                } else {
-                    HashSet<Integer> partitionIds = new HashSet<Integer>();
-                    TableSaveFile saveFile = new TableSaveFile(fis, 1, null, true);
-                    try {
-                        for (Integer partitionId : saveFile.getPartitionIds()) {
-                            partitionIds.add(partitionId);
-                        }
-                        if (validate && saveFile.getCompleted()) {
-                            while (saveFile.hasMoreChunks()) {
-                                BBContainer cont = saveFile.getNextChunk();
-                                if (cont != null) {
-                                    cont.discard();
-                                }
-                            }
-                        }
-                        partitionIds.removeAll(saveFile.getCorruptedPartitionIds());
-                        String nonce = parseNonceFromSnapshotFilename(f.getName());
-                        Snapshot named_s = namedSnapshots.get(nonce);
-                        named_s.setTxnId(saveFile.getTxnId());
-                        TableFiles namedTableFiles = named_s.m_tableFiles.get(saveFile.getTableName());
-                        if (namedTableFiles == null) {
-                            namedTableFiles = new TableFiles(saveFile.isReplicated());
-                            named_s.m_tableFiles.put(saveFile.getTableName(), namedTableFiles);
-                        }
-                        namedTableFiles.m_files.add(f);
-                        namedTableFiles.m_completed.add(saveFile.getCompleted());
-                        namedTableFiles.m_validPartitionIds.add(partitionIds);
-                        namedTableFiles.m_corruptParititionIds.add(saveFile.getCorruptedPartitionIds());
-                        namedTableFiles.m_totalPartitionCounts.add(saveFile.getTotalPartitions());
-                    } finally {
-                        saveFile.close();
-                    }
                 }
             } catch (IOException e) {
                 System.err.println(e.getMessage());
@@ -0,0 +1,243 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2017 VoltDB Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with VoltDB.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.voltdb.sysprocs.saverestore;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.voltcore.logging.VoltLogger;
+import org.voltcore.utils.CoreUtils;
+import org.voltcore.utils.DBBPool.BBContainer;
+
+import com.google_voltpatches.common.util.concurrent.ListenableFuture;
+import com.google_voltpatches.common.util.concurrent.ListeningExecutorService;
+
+/**
+ * Reads the headers of table save files, and when asked to the chunks after them to check
+ * their CRCs, several files at a time on a bounded pool of threads.
+ *
+ * What was read from a file is cached keyed by its path, size and modification time, so
+ * a file that has not changed since it was last scanned, e.g. by @SnapshotScan before
+ * a restore, or by the snapshot verifier run again over the same directories, is not
+ * read again.
+ */
+public class TableSaveFileScanner {
+
+    /** Files read at a time when the caller does not say */
+    public static final int DEFAULT_THREADS = Integer.getInteger("SNAPSHOT_SCAN_THREADS", 4);
+
+    private static final int CACHE_SIZE = Integer.getInteger("SNAPSHOT_SCAN_CACHE_SIZE", 10000);
+    private static final long PROGRESS_INTERVAL_MS = TimeUnit.SECONDS.toMillis(10);
+    // modification times may only have a resolution of a second, a file written to that
+    // recently is not cached as it could still change without its size or time changing
+    private static final long MIN_CACHED_AGE_MS = 2000;
+
+    private static final Map<String, ScannedFile> s_cache = new LinkedHashMap<String, ScannedFile>(16, 0.75f, true) {
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, ScannedFile> eldest) {
+            return size() > CACHE_SIZE;
+        }
+    };
+
+    /**
+     * What was read from one table save file, never modified.
+     */
+    public static class ScannedFile {
+        public final long m_length;
+        public final long m_lastModified;
+        public final long m_txnId;
+        public final long m_timestamp;
+        public final String m_tableName;
+        public final boolean m_isReplicated;
+        public final boolean m_completed;
+        public final int m_totalPartitions;
+        /** In the order they are listed in the header */
+        public final Set<Integer> m_partitionIds;
+        /** Empty unless the chunks were read */
+        public final Set<Integer> m_corruptPartitionIds;
+        /** Whether the chunks of the file were read, they are not if it is not completed */
+        public final boolean m_validated;
+
+        private ScannedFile(long length, long lastModified, TableSaveFile saveFile, boolean validated) {
+            m_length = length;
+            m_lastModified = lastModified;
+            m_txnId = saveFile.getTxnId();
+            m_timestamp = saveFile.getTimestamp();
+            m_tableName = saveFile.getTableName();
+            m_isReplicated = saveFile.isReplicated();
+            m_completed = saveFile.getCompleted();
+            m_totalPartitions = saveFile.getTotalPartitions();
+            Set<Integer> partitionIds = new LinkedHashSet<Integer>();
+            for (int partitionId : saveFile.getPartitionIds()) {
+                partitionIds.add(partitionId);
+            }
+            m_partitionIds = Collections.unmodifiableSet(partitionIds);
+            m_corruptPartitionIds =
+                    Collections.unmodifiableSet(new HashSet<Integer>(saveFile.getCorruptedPartitionIds()));
+            m_validated = validated;
+        }
+    }
+
+    /**
+     * Scan the given table save files, reading up to threads of them at a time. The scan
+     * of a file that fails to open or read fails with the IOException doing so.
+     *
+     * @param validate whether to read the chunks of the completed files and check their CRCs
+     * @param threads the number of files to read at a time, 1 or less to read them
+     * one after the other before returning
+     * @param logger where to report the progress of a scan that takes a while
+     * @return the future result of each file, in the order of the files
+     */
+    public static List<ListenableFuture<ScannedFile>> scan(
+            List<File> files, final boolean validate, int threads, VoltLogger logger) {
+        final List<ListenableFuture<ScannedFile>> results = new ArrayList<ListenableFuture<ScannedFile>>(files.size());
+        if (files.isEmpty()) {
+            return results;
+        }
+        final Progress progress = new Progress(files.size(), logger);
+        final ListeningExecutorService es;
+        if (threads > 1) {
+            es = CoreUtils.getListeningExecutorService("Snapshot Scan", Math.min(threads, files.size()));
+        } else {
+            es = CoreUtils.LISTENINGSAMETHREADEXECUTOR;
+        }
+        try {
+            for (final File f : files) {
+                results.add(es.submit(new Callable<ScannedFile>() {
+                    @Override
+                    public ScannedFile call() throws IOException {
+                        boolean cached = false;
+                        try {
+                            ScannedFile scanned = getCached(f, validate);
+                            cached = scanned != null;
+                            return cached ? scanned : scan(f, validate);
+                        } finally {
+                            progress.scanned(cached);
+                        }
+                    }
+                }));
+            }
+        } finally {
+            if (es != CoreUtils.LISTENINGSAMETHREADEXECUTOR) {
+                // lets the queued scans finish
+                es.shutdown();
+            }
+        }
+        return results;
+    }
+
+    private static ScannedFile getCached(File f, boolean validate) {
+        final ScannedFile scanned;
+        synchronized (s_cache) {
+            scanned = s_cache.get(f.getAbsolutePath());
+        }
+        if (scanned != null && (scanned.m_validated || !validate)
+                && scanned.m_length == f.length() && scanned.m_lastModified == f.lastModified()) {
+            return scanned;
+        }
+        return null;
+    }
+
+    private static ScannedFile scan(File f, boolean validate) throws IOException {
+        // before reading, so a change while reading the file shows on the next scan
+        final long length = f.length();
+        final long lastModified = f.lastModified();
+        final ScannedFile scanned;
+        FileInputStream fis = new FileInputStream(f);
+        try {
+            TableSaveFile saveFile = new TableSaveFile(fis, 1, null, true);
+            try {
+                if (validate && saveFile.getCompleted()) {
+                    while (saveFile.hasMoreChunks()) {
+                        BBContainer cont = saveFile.getNextChunk();
+                        if (cont != null) {
+                            cont.discard();
+                        }
+                    }
+                }
+                scanned = new ScannedFile(length, lastModified, saveFile, validate);
+            } finally {
+                saveFile.close();
+            }
+        } finally {
+            fis.close();
+        }
+        if (System.currentTimeMillis() - lastModified >= MIN_CACHED_AGE_MS) {
+            synchronized (s_cache) {
+                s_cache.put(f.getAbsolutePath(), scanned);
+            }
+        }
+        return scanned;
+    }
+
+    /**
+     * Forget every file scanned so far
+     */
+    static void clearCache() {
+        synchronized (s_cache) {
+            s_cache.clear();
+        }
+    }
+
+    private static class Progress {
+        private final int m_total;
+        private final VoltLogger m_logger;
+        private final long m_start = System.currentTimeMillis();
+        private final AtomicLong m_lastReport = new AtomicLong(m_start);
+        private final AtomicInteger m_scanned = new AtomicInteger();
+        private final AtomicInteger m_cached = new AtomicInteger();
+
+        Progress(int total, VoltLogger logger) {
+            m_total = total;
+            m_logger = logger;
+        }
+
+        void scanned(boolean cached) {
+            if (cached) {
+                m_cached.incrementAndGet();
+            }
+            final int scanned = m_scanned.incrementAndGet();
+            final long now = System.currentTimeMillis();
+            final long lastReport = m_lastReport.get();
+            if (scanned == m_total) {
+                // quiet unless the scan took long enough to report its progress
+                if (lastReport != m_start) {
+                    m_logger.info(String.format("Scanned %d snapshot files in %d ms, %d of them unchanged since last scanned",
+                            m_total, now - m_start, m_cached.get()));
+                }
+            } else if (now - lastReport >= PROGRESS_INTERVAL_MS && m_lastReport.compareAndSet(lastReport, now)) {
+                m_logger.info(String.format("Scanned %d of %d snapshot files", scanned, m_total));
+            }
+        }
+    }
+}
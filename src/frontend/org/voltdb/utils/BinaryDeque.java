@@ -23,6 +23,8 @@ import org.voltcore.utils.DBBPool.BBContainer;
 import org.voltcore.utils.DeferredSerialization;
 import org.voltcore.utils.Pair;
 
+import com.google_voltpatches.common.util.concurrent.ListenableFuture;
+
 /**
  * Specialized deque interface for storing binary objects. Objects can be provided as a buffer chain
  * and will be returned as a single buffer. Technically not a deque because removal at
@@ -92,6 +94,28 @@ public interface BinaryDeque {
      */
     public void sync() throws IOException;
 
+    /**
+     * Persist all objects in the queue to the backing store without waiting for it
+     * @return a future that is done once the objects offered so far are persisted,
+     * or fails with the error persisting them
+     */
+    public ListenableFuture<?> syncAsync();
+
+    /**
+     * The position of the last object offered or pushed, which advances by one for every object
+     * @return the position to pass to {@link #awaitDurable(long)}
+     */
+    public long getOfferedPosition();
+
+    /**
+     * Persist the objects up to a position returned by {@link #getOfferedPosition()}, grouping
+     * them with the objects of other waits that come in while a previous one is persisting
+     * @param position
+     * @return a future that is done once the objects up to the position are persisted,
+     * or fails with the error persisting them
+     */
+    public ListenableFuture<?> awaitDurable(long position);
+
     public void parseAndTruncate(BinaryDequeTruncator truncator) throws IOException;
 
     /**
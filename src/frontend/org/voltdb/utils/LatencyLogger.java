@@ -32,7 +32,9 @@ import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
 
 import org.HdrHistogram_voltpatches.AbstractHistogram;
+import org.HdrHistogram_voltpatches.EncodableHistogram;
 import org.HdrHistogram_voltpatches.Histogram;
+import org.HdrHistogram_voltpatches.HistogramLogReader;
 import org.voltcore.utils.CompressionStrategySnappy;
 import org.voltdb.VoltTable;
 import org.voltdb.client.Client;
@@ -182,6 +184,10 @@ public class LatencyLogger {
     }
 
     public static void readHistogramFromFile(String filename) {
+        if (isHistogramLog(filename)) {
+            readHistogramLog(filename);
+            return;
+        }
         System.out.println("Reading histograms from " + filename);
         Hashtable<String, Histogram> histograms = new Hashtable<String, Histogram>();
         Hashtable<String, Long> timestamps = new Hashtable<String, Long>();
@@ -265,4 +271,53 @@ public class LatencyLogger {
 
     }
 
-}
\ No newline at end of file
+    /*
+     * An HdrHistogram log, as written by ClientStatsContext.writeLatencyHistogram(),
+     * starts with a comment or the legend
+     */
+    private static boolean isHistogramLog(String filename) {
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(filename)))) {
+            String line = reader.readLine();
+            return line != null && (line.startsWith("#") || line.startsWith("\"StartTimestamp\""));
+        } catch (IOException e) {
+            // reported by the reader
+            return false;
+        }
+    }
+
+    /*
+     * The intervals of an HdrHistogram log hold the latencies of each interval,
+     * there is nothing to diff
+     */
+    private static void readHistogramLog(String filename) {
+        System.out.println("Reading histogram log " + filename);
+        System.out.printf(
+                "%23s, %10s, %10s, %10s, %10s, %10s, %10s, %10s\n",
+                "TIMESTAMP", "COUNT", "TPS", "95", "99", "99.9", "99.99",
+                "99.999");
+        HistogramLogReader reader;
+        try {
+            reader = new HistogramLogReader(filename);
+        } catch (FileNotFoundException e) {
+            System.err.println(
+                    "Histogram file '" + filename + "' could not be found.");
+            System.exit(-1);
+            return;
+        }
+        SimpleDateFormat sdf = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss.SSS");
+        EncodableHistogram interval;
+        while ((interval = reader.nextIntervalHistogram()) != null) {
+            Histogram histogram = (Histogram) interval;
+            long totalCount = histogram.getTotalCount();
+            double seconds = Math.max(1, histogram.getEndTimeStamp() - histogram.getStartTimeStamp()) / 1000.0;
+            System.out.printf(
+                    "%23s, %10d, %10.0f, %8.2fms, %8.2fms, %8.2fms, %8.2fms, %8.2fms\n",
+                    sdf.format(new Date(histogram.getEndTimeStamp())), totalCount, totalCount / seconds,
+                    histogram.getValueAtPercentile(95.0D) / 1000.0D,
+                    histogram.getValueAtPercentile(99) / 1000.0D,
+                    histogram.getValueAtPercentile(99.9) / 1000.0D,
+                    histogram.getValueAtPercentile(99.99) / 1000.0D,
+                    histogram.getValueAtPercentile(99.999) / 1000.0D);
+        }
+    }
+}
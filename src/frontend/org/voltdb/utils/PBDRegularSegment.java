@@ -30,6 +30,7 @@ import java.io.File;
 import java.io.IOException;
 import java.io.RandomAccessFile;
 import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.util.HashMap;
 import java.util.Map;
 
@@ -52,9 +53,12 @@ public class PBDRegularSegment extends PBDSegment {
     private int m_size = -1;
 
     private DBBPool.BBContainer m_tmpHeaderBuf = null;
+    // the object header and payload of an offer, written in one call
+    private final ByteBuffer[] m_writeBufs = new ByteBuffer[2];
+    private boolean m_openForWrite = false;
 
-    public PBDRegularSegment(Long index, File file) {
-        super(file);
+    public PBDRegularSegment(Long index, File file, FileRetirer retirer) {
+        super(file, retirer);
         m_index = index;
         reset();
     }
@@ -98,7 +102,7 @@ public class PBDRegularSegment extends PBDSegment {
             m_numOfEntries = 0;
             m_size = 0;
         }
-        if (wasClosed) closeReadersAndFile();
+        if (wasClosed) closeReadersAndFile(false);
         return m_numOfEntries;
     }
 
@@ -161,6 +165,7 @@ public class PBDRegularSegment extends PBDSegment {
         }
         m_fc.position(SEGMENT_HEADER_BYTES);
 
+        m_openForWrite = forWrite;
         m_closed = false;
     }
 
@@ -202,7 +207,9 @@ public class PBDRegularSegment extends PBDSegment {
 
     @Override
     public void closeAndDelete() throws IOException {
-        close();
+        m_closedCursors.clear();
+        // nothing to retire, the writes are being thrown away
+        closeReadersAndFile(false);
         m_file.delete();
 
         m_numOfEntries = -1;
@@ -218,30 +225,44 @@ public class PBDRegularSegment extends PBDSegment {
     @Override
     public void close() throws IOException {
         m_closedCursors.clear();
-        closeReadersAndFile();
+        closeReadersAndFile(true);
     }
 
-    private void closeReadersAndFile() throws IOException {
+    /**
+     * @param retire true to hand a file that was written to over to the retirer,
+     * which may still be forcing the channel of this segment
+     */
+    private void closeReadersAndFile(boolean retire) throws IOException {
         m_readCursors.clear();
         try {
             if (m_ras != null) {
-                m_ras.close();
+                if (retire && m_openForWrite && m_retirer != null) {
+                    m_retirer.retire(m_ras);
+                } else {
+                    m_ras.close();
+                }
             }
         } finally {
             m_ras = null;
             m_fc = null;
+            m_openForWrite = false;
             m_closed = true;
             reset();
         }
     }
 
     @Override
-    public void sync() throws IOException {
-        if (m_closed) throw new IOException("Segment closed");
-        if (!m_syncedSinceLastEdit) {
-            m_fc.force(true);
+    public FileChannel prepareSync() {
+        if (m_closed || !m_openForWrite || m_syncedSinceLastEdit) {
+            return null;
         }
         m_syncedSinceLastEdit = true;
+        return m_fc;
+    }
+
+    @Override
+    public void syncFailed() {
+        m_syncedSinceLastEdit = false;
     }
 
     @Override
@@ -289,16 +310,15 @@ public class PBDRegularSegment extends PBDSegment {
             }
 
             m_tmpHeaderBuf.b().flip();
-            while (m_tmpHeaderBuf.b().hasRemaining()) {
-                m_fc.write(m_tmpHeaderBuf.b());
-            }
-
-            while (destBuf.b().hasRemaining()) {
-                m_fc.write(destBuf.b());
+            m_writeBufs[0] = m_tmpHeaderBuf.b();
+            m_writeBufs[1] = destBuf.b();
+            while (m_writeBufs[0].hasRemaining() || m_writeBufs[1].hasRemaining()) {
+                m_fc.write(m_writeBufs);
             }
 
             incrementNumEntries(remaining);
         } finally {
+            m_writeBufs[0] = m_writeBufs[1] = null;
             destBuf.discard();
             if (compress) {
                 cont.discard();
@@ -502,7 +522,7 @@ public class PBDRegularSegment extends PBDSegment {
             m_readCursors.remove(m_cursorId);
             m_closedCursors.put(m_cursorId, this);
             if (m_readCursors.isEmpty()) {
-                closeReadersAndFile();
+                closeReadersAndFile(true);
             }
         }
 
@@ -96,6 +96,14 @@ public abstract class PBDSegment {
         public boolean isClosed();
     }
 
+    /**
+     * Takes over the file of a segment that was written to once the segment is closed,
+     * to force what was written to it and close it off the writer's path.
+     */
+    interface FileRetirer {
+        void retire(RandomAccessFile file);
+    }
+
     private static final String TRUNCATOR_CURSOR = "__truncator__";
     static final int NO_FLAGS = 0;
     static final int FLAG_COMPRESSED = 1;
@@ -108,6 +116,7 @@ public abstract class PBDSegment {
     static final int OBJECT_HEADER_BYTES = 8;
     static final int SEGMENT_HEADER_BYTES = 8;
     protected final File m_file;
+    protected final FileRetirer m_retirer;
 
     protected boolean m_closed = true;
     protected RandomAccessFile m_ras;
@@ -115,9 +124,10 @@ public abstract class PBDSegment {
     //Avoid unecessary sync with this flag
     protected boolean m_syncedSinceLastEdit = true;
 
-    public PBDSegment(File file)
+    public PBDSegment(File file, FileRetirer retirer)
     {
         m_file = file;
+        m_retirer = retirer;
     }
 
     abstract long segmentId();
@@ -154,7 +164,17 @@ public abstract class PBDSegment {
 
     abstract void close() throws IOException;
 
-    abstract void sync() throws IOException;
+    /**
+     * Called with the deque locked ahead of forcing the segment without the lock,
+     * marks the segment as synced.
+     * @return the channel to force, or null if nothing was written since the segment was last synced
+     */
+    abstract FileChannel prepareSync();
+
+    /**
+     * Called with the deque locked when forcing the channel returned by {@link #prepareSync()} failed
+     */
+    abstract void syncFailed();
 
     abstract boolean hasAllFinishedReading() throws IOException;
 
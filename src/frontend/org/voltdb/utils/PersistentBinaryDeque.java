@@ -19,16 +19,26 @@ package org.voltdb.utils;
 import java.io.File;
 import java.io.FileFilter;
 import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.RandomAccessFile;
 import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
 import java.util.ArrayDeque;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashMap;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
 import java.util.NoSuchElementException;
+import java.util.SortedMap;
 import java.util.TreeMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
 
 import org.voltcore.logging.VoltLogger;
+import org.voltcore.utils.CoreUtils;
 import org.voltcore.utils.DBBPool;
 import org.voltcore.utils.DBBPool.BBContainer;
 import org.voltcore.utils.DeferredSerialization;
@@ -39,6 +49,9 @@ import org.voltdb.utils.PBDSegment.PBDSegmentReader;
 
 import com.google_voltpatches.common.base.Joiner;
 import com.google_voltpatches.common.base.Throwables;
+import com.google_voltpatches.common.util.concurrent.Futures;
+import com.google_voltpatches.common.util.concurrent.ListenableFuture;
+import com.google_voltpatches.common.util.concurrent.SettableFuture;
 
 /**
  * A deque that specializes in providing persistence of binary objects to disk. Any object placed
@@ -49,10 +62,17 @@ import com.google_voltpatches.common.base.Throwables;
  * once all objects from the segment have been polled and all the containers returned by poll have been discarded.
  * Push is implemented by creating new segments at the head of the deque containing the objects to be pushed.
  *
+ * Writes are forced to disk by a flusher shared by all the deques, never by the thread offering objects.
+ * Every object offered or pushed advances the offered position, and {@link #awaitDurable(long)} tells when
+ * the objects up to a position are on disk. Waits that come in while the flusher is forcing are grouped
+ * into the next force.
  */
 public class PersistentBinaryDeque implements BinaryDeque {
     private static final VoltLogger LOG = new VoltLogger("HOST");
 
+    private static final Executor s_flusher =
+            CoreUtils.getListeningExecutorService("PBD Flusher", Integer.getInteger("PBD_FLUSHER_THREADS", 2));
+
     public static class UnsafeOutputContainerFactory implements OutputContainerFactory {
         @Override
         public BBContainer getContainer(int minimumSize) {
@@ -255,6 +275,30 @@ public class PersistentBinaryDeque implements BinaryDeque {
     private int m_numObjects;
     private int m_numDeleted;
 
+    // Objects offered or pushed so far, and how many of them are known to be on disk
+    private long m_offeredPosition = 0;
+    private long m_durablePosition = 0;
+    private final TreeMap<Long, SettableFuture<Object>> m_durableWaiters = new TreeMap<>();
+    // Files of the segments closed since the last flush, to be forced and closed by the next one
+    private final List<RandomAccessFile> m_retiredFiles = new ArrayList<>();
+    private boolean m_flushRunning = false;
+    private boolean m_flushRequested = false;
+    private final Runnable m_flush = new Runnable() {
+        @Override
+        public void run() {
+            flush();
+        }
+    };
+    private final PBDSegment.FileRetirer m_retirer = new PBDSegment.FileRetirer() {
+        @Override
+        public void retire(RandomAccessFile file) {
+            synchronized (PersistentBinaryDeque.this) {
+                m_retiredFiles.add(file);
+                requestFlush();
+            }
+        }
+    };
+
     /**
      * Create a persistent binary deque with the specified nonce and storage
      * back at the specified path. Existing files will
@@ -445,6 +489,8 @@ public class PersistentBinaryDeque implements BinaryDeque {
          * If it was found that no truncation is necessary, lastSegmentIndex will be null.
          * Return and the parseAndTruncate is a noop.
          */
+        // so that the next sync forces the truncation
+        m_offeredPosition++;
         if (lastSegmentIndex == null)  {
             // Reopen the last segment for write
             peekLastSegment().openForWrite(true);
@@ -483,7 +529,7 @@ public class PersistentBinaryDeque implements BinaryDeque {
     }
 
     private PBDSegment newSegment(long segmentId, File file) {
-        return new PBDRegularSegment(segmentId, file);
+        return new PBDRegularSegment(segmentId, file, m_retirer);
     }
 
     /**
@@ -554,6 +600,7 @@ public class PersistentBinaryDeque implements BinaryDeque {
             }
         }
         m_numObjects++;
+        m_offeredPosition++;
         assertions();
     }
 
@@ -574,6 +621,7 @@ public class PersistentBinaryDeque implements BinaryDeque {
             }
         }
         m_numObjects++;
+        m_offeredPosition++;
         assertions();
         return written;
     }
@@ -657,6 +705,7 @@ public class PersistentBinaryDeque implements BinaryDeque {
             while (currentSegmentContents.peek() != null) {
                 writeSegment.offer(currentSegmentContents.pollFirst(), false);
                 m_numObjects++;
+                m_offeredPosition++;
             }
 
             // Don't close the last one, it'll be used for writes
@@ -755,14 +804,156 @@ public class PersistentBinaryDeque implements BinaryDeque {
         return true;
     }
 
+    /**
+     * Forces without holding the lock of the deque, so offers carry on meanwhile. The calling
+     * thread does the flush if none is running, otherwise it waits for the flusher.
+     */
     @Override
-    public synchronized void sync() throws IOException {
+    public void sync() throws IOException {
         if (m_closed) {
             throw new IOException("Cannot sync(): PBD has been Closed");
         }
-        for (PBDSegment segment : m_segments.values()) {
-            if (!segment.isClosed()) {
-                segment.sync();
+        final ListenableFuture<?> durable;
+        final boolean flushHere;
+        synchronized (this) {
+            durable = awaitDurable(m_offeredPosition, false);
+            flushHere = !durable.isDone() && !m_flushRunning;
+            if (flushHere) {
+                m_flushRunning = true;
+            }
+        }
+        if (flushHere) {
+            flush();
+        }
+        try {
+            durable.get();
+        } catch (InterruptedException e) {
+            throw new InterruptedIOException("Interrupted waiting for PBD sync");
+        } catch (ExecutionException e) {
+            Throwables.propagateIfInstanceOf(e.getCause(), IOException.class);
+            throw Throwables.propagate(e.getCause());
+        }
+    }
+
+    @Override
+    public synchronized ListenableFuture<?> syncAsync() {
+        return awaitDurable(m_offeredPosition);
+    }
+
+    @Override
+    public synchronized long getOfferedPosition() {
+        return m_offeredPosition;
+    }
+
+    @Override
+    public synchronized ListenableFuture<?> awaitDurable(long position) {
+        return awaitDurable(position, true);
+    }
+
+    /**
+     * @param schedule false to leave starting the flush to the caller
+     */
+    private ListenableFuture<?> awaitDurable(long position, boolean schedule) {
+        assert(Thread.holdsLock(this));
+        if (position <= m_durablePosition) {
+            return Futures.immediateFuture(null);
+        }
+        SettableFuture<Object> durable = m_durableWaiters.get(position);
+        if (durable == null) {
+            durable = SettableFuture.create();
+            m_durableWaiters.put(position, durable);
+        }
+        m_flushRequested = true;
+        if (schedule) {
+            requestFlush();
+        }
+        return durable;
+    }
+
+    private void requestFlush() {
+        assert(Thread.holdsLock(this));
+        m_flushRequested = true;
+        if (!m_flushRunning) {
+            m_flushRunning = true;
+            s_flusher.execute(m_flush);
+        }
+    }
+
+    /**
+     * Force the segments written to and the retired files, without holding the lock of the deque
+     * while forcing. Everything offered before the segments are collected is in one of them.
+     */
+    private void flush() {
+        final long position;
+        final List<Pair<PBDSegment, FileChannel>> toForce = new ArrayList<>();
+        final List<RandomAccessFile> retired;
+        synchronized (this) {
+            m_flushRequested = false;
+            position = m_offeredPosition;
+            for (PBDSegment segment : m_segments.values()) {
+                FileChannel fc = segment.prepareSync();
+                if (fc != null) {
+                    toForce.add(Pair.of(segment, fc));
+                }
+            }
+            retired = new ArrayList<>(m_retiredFiles);
+            m_retiredFiles.clear();
+        }
+
+        IOException failure = null;
+        final List<PBDSegment> failedSegments = new ArrayList<>();
+        for (Pair<PBDSegment, FileChannel> p : toForce) {
+            try {
+                p.getSecond().force(true);
+            } catch (ClosedChannelException e) {
+                // the segment was deleted while being forced
+            } catch (IOException e) {
+                failure = e;
+                failedSegments.add(p.getFirst());
+            }
+        }
+        final List<RandomAccessFile> failedFiles = new ArrayList<>();
+        for (RandomAccessFile file : retired) {
+            try {
+                file.getChannel().force(true);
+            } catch (IOException e) {
+                failure = e;
+                // keep it for the next flush to retry
+                failedFiles.add(file);
+                continue;
+            }
+            try {
+                file.close();
+            } catch (IOException e) {
+                LOG.warn("Exception closing PBD segment file", e);
+            }
+        }
+
+        final List<SettableFuture<Object>> done;
+        synchronized (this) {
+            if (failure == null) {
+                m_durablePosition = Math.max(m_durablePosition, position);
+            } else {
+                for (PBDSegment segment : failedSegments) {
+                    segment.syncFailed();
+                }
+                m_retiredFiles.addAll(failedFiles);
+            }
+            SortedMap<Long, SettableFuture<Object>> waiters = m_durableWaiters.headMap(position, true);
+            done = new ArrayList<>(waiters.values());
+            waiters.clear();
+            if (m_flushRequested) {
+                s_flusher.execute(m_flush);
+            } else {
+                m_flushRunning = false;
+            }
+        }
+        // completed without the lock, the listeners may use the deque
+        for (SettableFuture<Object> durable : done) {
+            if (failure == null) {
+                durable.set(null);
+            } else {
+                durable.setException(failure);
             }
         }
     }
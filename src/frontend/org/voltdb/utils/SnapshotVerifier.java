@@ -32,6 +32,7 @@ import org.voltdb.sysprocs.saverestore.SnapshotUtil.Snapshot;
 import org.voltdb.sysprocs.saverestore.SnapshotUtil.SnapshotFilter;
 import org.voltdb.sysprocs.saverestore.SnapshotPathType;
 import org.voltdb.sysprocs.saverestore.SnapshotUtil.SpecificSnapshotFilter;
+import org.voltdb.sysprocs.saverestore.TableSaveFileScanner;
 
 /**
  * A command line utility for scanning and validating snapshots. Provides detailed information about the files
@@ -50,11 +51,22 @@ public class SnapshotVerifier {
         }
 
         HashSet<String> snapshotNames = new HashSet<String>();
+        int threads = TableSaveFileScanner.DEFAULT_THREADS;
         for (int ii = 0; ii < args.length; ii++) {
             if (args[ii].equals("--dir")) {
                 ii++;
                 continue;
             }
+            if (args[ii].equals("--threads")) {
+                try {
+                    threads = Integer.parseInt(args[ii + 1]);
+                } catch (ArrayIndexOutOfBoundsException | NumberFormatException e) {
+                    System.err.println("Error: No number of threads specified after --threads");
+                    printHelpAndQuit(-1);
+                }
+                ii++;
+                continue;
+            }
             snapshotNames.add(args[ii]);
         }
 
@@ -75,7 +87,7 @@ public class SnapshotVerifier {
             directories.add(".");
         }
 
-        verifySnapshots(directories, snapshotNames, false);
+        verifySnapshots(directories, snapshotNames, false, threads);
     }
 
     /**
@@ -85,6 +97,17 @@ public class SnapshotVerifier {
      */
     public static void verifySnapshots(
             final List<String> directories, final Set<String> snapshotNames, boolean expectHashinator) {
+        verifySnapshots(directories, snapshotNames, expectHashinator, TableSaveFileScanner.DEFAULT_THREADS);
+    }
+
+    /**
+     * Perform snapshot verification, validating threads table files at a time.
+     * @param directories list of directories to search for snapshots
+     * @param snapshotNames set of snapshot names/nonces to verify
+     * @param threads number of table files to validate at a time
+     */
+    public static void verifySnapshots(
+            final List<String> directories, final Set<String> snapshotNames, boolean expectHashinator, int threads) {
 
         FileFilter filter = new SnapshotFilter();
         if (!snapshotNames.isEmpty()) {
@@ -93,7 +116,8 @@ public class SnapshotVerifier {
 
         Map<String, Snapshot> snapshots = new HashMap<String, Snapshot>();
         for (String directory : directories) {
-            SnapshotUtil.retrieveSnapshotFiles(new File(directory), snapshots, filter, true, SnapshotPathType.SNAP_PATH, CONSOLE_LOG);
+            SnapshotUtil.retrieveSnapshotFiles(new File(directory), snapshots, filter, true, SnapshotPathType.SNAP_PATH, CONSOLE_LOG,
+                    threads);
         }
 
         if (snapshots.isEmpty()) {
@@ -110,6 +134,7 @@ public class SnapshotVerifier {
         System.out.println("Usage: snapshotverifier --help");
         System.out.println("Specific snapshot: snapshotverifier snapshot_name --dir dir1 --dir dir2 --dir dir3");
         System.out.println("All snapshots: snapshotverifier --dir dir1 --dir dir2 --dir dir3");
+        System.out.println("Files validated at a time: snapshotverifier --threads 8 --dir dir1");
         System.exit(code);
     }
 }
@@ -0,0 +1,180 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2017 VoltDB Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+ * OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package org.voltcore.network;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.GatheringByteChannel;
+
+import org.voltcore.utils.ChunkedDeferredSerialization;
+import org.voltcore.utils.DeferredSerialization;
+import org.voltdb.microbench.MicroBenchmark;
+
+/**
+ * Writes one large response to a client that takes it a little at a time, and reports
+ * the most network buffer memory the write stream held at once. The chunked variant is
+ * how ClientInterface writes large responses, the plain one flattens the response first.
+ */
+public class LargeResponseMicroBenchmark extends MicroBenchmark {
+
+    private static final int RESPONSE_SIZE = 16 * 1024 * 1024;
+    // what the client's socket takes between selects
+    private static final int BYTES_PER_DRAIN = 256 * 1024;
+
+    private final boolean m_chunked;
+
+    private final GatheringByteChannel m_slowClient = new GatheringByteChannel() {
+        private int m_taken = 0;
+
+        @Override
+        public int write(ByteBuffer src) {
+            int written = Math.min(src.remaining(), BYTES_PER_DRAIN - m_taken);
+            src.position(src.position() + written);
+            m_taken += written;
+            if (m_taken == BYTES_PER_DRAIN) {
+                m_taken = 0;
+            }
+            return written;
+        }
+
+        @Override
+        public long write(ByteBuffer[] srcs, int offset, int length) {
+            long written = 0;
+            for (int i = offset; i < offset + length; i++) {
+                written += write(srcs[i]);
+            }
+            return written;
+        }
+
+        @Override
+        public long write(ByteBuffer[] srcs) {
+            return write(srcs, 0, srcs.length);
+        }
+
+        @Override
+        public boolean isOpen() {
+            return true;
+        }
+
+        @Override
+        public void close() {
+        }
+    };
+
+    private NetworkDBBPool m_pool;
+    private VoltNIOWriteStream m_stream;
+    private long m_peakBytes;
+
+    public LargeResponseMicroBenchmark(boolean chunked) {
+        super("VoltNIOWriteStream.slowClient16MB" + (chunked ? "Chunked" : "Flattened"));
+        m_chunked = chunked;
+    }
+
+    private DeferredSerialization response() {
+        if (m_chunked) {
+            return new ChunkedDeferredSerialization() {
+                private int m_written = 0;
+
+                @Override
+                public boolean serializeChunk(ByteBuffer buf) {
+                    int chunk = Math.min(buf.remaining(), RESPONSE_SIZE - m_written);
+                    buf.position(buf.position() + chunk);
+                    m_written += chunk;
+                    return m_written == RESPONSE_SIZE;
+                }
+
+                @Override
+                public void serialize(ByteBuffer buf) throws IOException {
+                    buf.position(buf.position() + RESPONSE_SIZE);
+                }
+
+                @Override
+                public void cancel() {
+                }
+
+                @Override
+                public int getSerializedSize() {
+                    return RESPONSE_SIZE;
+                }
+            };
+        }
+        return new DeferredSerialization() {
+            @Override
+            public void serialize(ByteBuffer buf) throws IOException {
+                buf.position(buf.position() + RESPONSE_SIZE);
+            }
+
+            @Override
+            public void cancel() {
+            }
+
+            @Override
+            public int getSerializedSize() {
+                return RESPONSE_SIZE;
+            }
+        };
+    }
+
+    @Override
+    public void setUp() {
+        m_pool = new NetworkDBBPool("benchmark");
+        m_stream = new VoltNIOWriteStream(new MockConnection() {
+            @Override
+            public void enableWriteSelection() {
+            }
+        });
+    }
+
+    @Override
+    public void beginMeasurement() {
+        m_peakBytes = 0;
+    }
+
+    @Override
+    public long run(int ops) throws Exception {
+        long sink = 0;
+        for (int i = 0; i < ops; i++) {
+            m_stream.enqueue(response());
+            do {
+                m_stream.serializeQueuedWrites(m_pool);
+                // the flattened response is also held in the heap while it is copied
+                long held = m_pool.getAllocatedBytes() - m_pool.getPooledBytes() + (m_chunked ? 0 : RESPONSE_SIZE);
+                m_peakBytes = Math.max(m_peakBytes, held);
+                sink += m_stream.drainTo(m_slowClient);
+            } while (!m_stream.isEmpty());
+        }
+        return sink;
+    }
+
+    @Override
+    public void endMeasurement() {
+        reportMetric("peakBufferedBytes", m_peakBytes, "bytes");
+    }
+
+    @Override
+    public void tearDown() {
+        m_stream.shutdown();
+        m_pool.clear();
+    }
+}
@@ -104,7 +104,7 @@ public class TestNIOReadStream extends TestCase {
     public void setUp() {
         channel = new MockReadableByteChannel();
         stream = new NIOReadStream();
-        pool = new NetworkDBBPool();
+        pool = new NetworkDBBPool("test");
     }
 
     @Override
@@ -57,8 +57,11 @@ import java.net.UnknownHostException;
 import java.nio.ByteBuffer;
 import java.nio.channels.GatheringByteChannel;
 import java.nio.channels.SelectionKey;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicLong;
 
+import org.voltcore.utils.ChunkedDeferredSerialization;
+import org.voltcore.utils.DBBPool.BBContainer;
 import org.voltcore.utils.EstTime;
 import org.voltcore.utils.EstTimeUpdater;
 import org.voltdb.AdmissionControlGroup;
@@ -99,7 +102,7 @@ public class TestNIOWriteStream extends TestCase {
     @Override
     public void setUp() {
         //Use low size for each buffer in pool
-        pool = new NetworkDBBPool(64, 4);
+        pool = new NetworkDBBPool("test", 64, 4);
     }
 
     @Override
@@ -389,6 +392,114 @@ public class TestNIOWriteStream extends TestCase {
         wstream.shutdown();
     }
 
+    public void testLargeChunkedWrite() throws IOException {
+        MockChannel channel = new MockChannel(MockChannel.SINK, 0);
+        MockPort port = new MockPort();
+        VoltNIOWriteStream wstream = new VoltNIOWriteStream(port);
+
+        final int size = 1000;
+        wstream.enqueue(new ChunkedDeferredSerialization() {
+            int m_next = 0;
+
+            @Override
+            public void serialize(ByteBuffer buf) {
+                fail("Large chunked message should not be serialized in one piece");
+            }
+
+            @Override
+            public boolean serializeChunk(ByteBuffer buf) {
+                while (buf.hasRemaining() && m_next < size) {
+                    buf.put((byte)m_next++);
+                }
+                return m_next == size;
+            }
+
+            @Override
+            public void cancel() {}
+
+            @Override
+            public int getSerializedSize() {
+                return size;
+            }
+        });
+        // Queued behind the large message, must not overtake it
+        wstream.enqueue(ByteBuffer.wrap(new byte[] { -1, -1 }));
+
+        // Message should be spread across the small pooled buffers in order, a few at a time
+        int expected = 0;
+        int drained = 0;
+        int rounds = 0;
+        while (!wstream.isEmpty()) {
+            wstream.serializeQueuedWrites(pool);
+            assertTrue(wstream.m_queuedBuffers.size() <= 5);
+            for (BBContainer c : wstream.m_queuedBuffers) {
+                ByteBuffer b = c.b().duplicate();
+                b.flip();
+                while (b.hasRemaining()) {
+                    if (expected < size) {
+                        assertEquals((byte)expected, b.get());
+                    } else {
+                        assertEquals(-1, b.get());
+                    }
+                    expected++;
+                }
+            }
+            drained += wstream.drainTo(channel);
+            rounds++;
+        }
+        assertEquals(size + 2, expected);
+        assertEquals(size + 2, drained);
+        assertTrue(rounds > 1);
+        wstream.shutdown();
+    }
+
+    public void testLargeChunkedWriteWaitsForSocket() throws IOException {
+        MockChannel channel = new MockChannel(MockChannel.FULL, 0);
+        MockPort port = new MockPort();
+        VoltNIOWriteStream wstream = new VoltNIOWriteStream(port);
+
+        final AtomicBoolean canceled = new AtomicBoolean();
+        wstream.enqueue(new ChunkedDeferredSerialization() {
+            @Override
+            public void serialize(ByteBuffer buf) {
+                fail("Large chunked message should not be serialized in one piece");
+            }
+
+            @Override
+            public boolean serializeChunk(ByteBuffer buf) {
+                buf.position(buf.limit());
+                return false;
+            }
+
+            @Override
+            public void cancel() {
+                canceled.set(true);
+            }
+
+            @Override
+            public int getSerializedSize() {
+                return 1000 * 1000;
+            }
+        });
+
+        // Socket takes nothing, serialization must stop instead of filling more buffers
+        for (int i = 0; i < 10; i++) {
+            wstream.serializeQueuedWrites(pool);
+            wstream.drainTo(channel);
+        }
+        assertTrue(wstream.m_queuedBuffers.size() <= 5);
+        assertFalse(wstream.isEmpty());
+
+        // A write queued behind the unfinished message is still counted as outstanding
+        wstream.enqueue(ByteBuffer.wrap(new byte[] { -1, -1 }));
+        wstream.serializeQueuedWrites(pool);
+        assertEquals(wstream.m_queuedBuffers.size() + 2, wstream.getOutstandingMessageCount());
+
+        wstream.shutdown();
+        assertTrue(canceled.get());
+        assertEquals(0, wstream.getOutstandingMessageCount());
+    }
+
     public void testLastWriteDelta() throws Exception {
         EstTimeUpdater.pause = true;
         Thread.sleep(10);
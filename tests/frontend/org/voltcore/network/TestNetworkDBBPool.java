@@ -0,0 +1,138 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2017 VoltDB Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+ * OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package org.voltcore.network;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.voltcore.utils.DBBPool.BBContainer;
+
+import junit.framework.TestCase;
+
+public class TestNetworkDBBPool extends TestCase {
+
+    private static List<BBContainer> acquire(NetworkDBBPool pool, int count) {
+        List<BBContainer> conts = new ArrayList<BBContainer>();
+        for (int i = 0; i < count; i++) {
+            conts.add(pool.acquire());
+        }
+        return conts;
+    }
+
+    private static void discard(List<BBContainer> conts) {
+        for (BBContainer c : conts) {
+            c.discard();
+        }
+        conts.clear();
+    }
+
+    public void testAccounting() {
+        NetworkDBBPool pool = new NetworkDBBPool("test", 4, 1024);
+        List<BBContainer> conts = acquire(pool, 6);
+        assertEquals(6 * 1024, pool.getAllocatedBytes());
+        assertEquals(0, pool.getPooledBytes());
+
+        // Only up to the limit is kept around, the rest is freed
+        discard(conts);
+        assertEquals(4 * 1024, pool.getAllocatedBytes());
+        assertEquals(4 * 1024, pool.getPooledBytes());
+
+        // Reuses the pooled buffers before allocating
+        conts = acquire(pool, 3);
+        assertEquals(4 * 1024, pool.getAllocatedBytes());
+        assertEquals(1024, pool.getPooledBytes());
+
+        discard(conts);
+        pool.clear();
+        assertEquals(0, pool.getAllocatedBytes());
+        assertEquals(0, pool.getPooledBytes());
+    }
+
+    public void testTrimReleasesIdleBuffers() {
+        NetworkDBBPool pool = new NetworkDBBPool("test", 8, 1024);
+        discard(acquire(pool, 8));
+        assertEquals(8 * 1024, pool.getPooledBytes());
+
+        // Nothing acquired before the first trim counts as idle yet
+        assertEquals(0, pool.trim());
+
+        // Steady traffic that never needs more than 3 buffers at a time
+        for (int i = 0; i < 10; i++) {
+            discard(acquire(pool, 3));
+        }
+        assertEquals(5, pool.trim());
+        assertEquals(3 * 1024, pool.getAllocatedBytes());
+        assertEquals(3 * 1024, pool.getPooledBytes());
+
+        // The working set is kept while in use
+        discard(acquire(pool, 3));
+        assertEquals(0, pool.trim());
+        assertEquals(3 * 1024, pool.getPooledBytes());
+
+        // Then released once the pool sits idle for a whole interval
+        assertEquals(3, pool.trim());
+        assertEquals(0, pool.getAllocatedBytes());
+    }
+
+    public void testDiscardFromAnotherThread() throws Exception {
+        final NetworkDBBPool pool = new NetworkDBBPool("test", 16, 1024);
+        final List<BBContainer> conts = acquire(pool, 16);
+        Thread t = new Thread() {
+            @Override
+            public void run() {
+                discard(conts);
+            }
+        };
+        t.start();
+        t.join();
+        assertEquals(16 * 1024, pool.getPooledBytes());
+        assertEquals(16 * 1024, pool.getAllocatedBytes());
+        pool.clear();
+        assertEquals(0, pool.getAllocatedBytes());
+    }
+
+    public void testPoolsAreListedUntilCleared() {
+        NetworkDBBPool first = new NetworkDBBPool("first", 4, 1024);
+        NetworkDBBPool second = new NetworkDBBPool("second", 4, 2048);
+        List<BBContainer> conts = acquire(first, 2);
+        discard(acquire(second, 1));
+
+        assertTrue(NetworkDBBPool.getPools().contains(first));
+        assertTrue(NetworkDBBPool.getPools().contains(second));
+        // Each pool only reports its own buffers
+        assertEquals(2 * 1024, first.getAllocatedBytes());
+        assertEquals(0, first.getPooledBytes());
+        assertEquals(2048, second.getAllocatedBytes());
+        assertEquals(2048, second.getPooledBytes());
+        assertEquals(2048, second.getAllocationSize());
+
+        second.clear();
+        assertTrue(NetworkDBBPool.getPools().contains(first));
+        assertFalse(NetworkDBBPool.getPools().contains(second));
+
+        discard(conts);
+        first.clear();
+        assertFalse(NetworkDBBPool.getPools().contains(first));
+    }
+}
@@ -0,0 +1,127 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2017 VoltDB Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+ * OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package org.voltcore.network;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.GatheringByteChannel;
+
+import org.voltcore.utils.DeferredSerialization;
+import org.voltdb.microbench.MicroBenchmark;
+
+/**
+ * Queues a burst of responses on a write stream, serializes them into the network
+ * pool and drains them to a channel that accepts everything, the way the network
+ * thread writes responses to a client connection.
+ */
+public class WriteStreamMicroBenchmark extends MicroBenchmark {
+
+    private static final int MESSAGES = 64;
+    private static final int MESSAGE_SIZE = 256;
+
+    private final DeferredSerialization m_message = new DeferredSerialization() {
+        @Override
+        public void serialize(ByteBuffer buf) throws IOException {
+            buf.putInt(MESSAGE_SIZE - 4);
+            buf.position(buf.position() + MESSAGE_SIZE - 4);
+        }
+
+        @Override
+        public void cancel() {
+        }
+
+        @Override
+        public int getSerializedSize() {
+            return MESSAGE_SIZE;
+        }
+    };
+
+    private final GatheringByteChannel m_sink = new GatheringByteChannel() {
+        @Override
+        public int write(ByteBuffer src) {
+            int remaining = src.remaining();
+            src.position(src.limit());
+            return remaining;
+        }
+
+        @Override
+        public long write(ByteBuffer[] srcs, int offset, int length) {
+            long written = 0;
+            for (int i = offset; i < offset + length; i++) {
+                written += write(srcs[i]);
+            }
+            return written;
+        }
+
+        @Override
+        public long write(ByteBuffer[] srcs) {
+            return write(srcs, 0, srcs.length);
+        }
+
+        @Override
+        public boolean isOpen() {
+            return true;
+        }
+
+        @Override
+        public void close() {
+        }
+    };
+
+    private NetworkDBBPool m_pool;
+    private VoltNIOWriteStream m_stream;
+
+    public WriteStreamMicroBenchmark() {
+        super("VoltNIOWriteStream.serializeAndDrain64x256");
+    }
+
+    @Override
+    public void setUp() {
+        m_pool = new NetworkDBBPool("benchmark");
+        m_stream = new VoltNIOWriteStream(new MockConnection() {
+            @Override
+            public void enableWriteSelection() {
+            }
+        });
+    }
+
+    @Override
+    public long run(int ops) throws Exception {
+        long sink = 0;
+        for (int i = 0; i < ops; i++) {
+            for (int m = 0; m < MESSAGES; m++) {
+                m_stream.enqueue(m_message);
+            }
+            m_stream.serializeQueuedWrites(m_pool);
+            sink += m_stream.drainTo(m_sink);
+        }
+        return sink;
+    }
+
+    @Override
+    public void tearDown() {
+        m_stream.shutdown();
+        m_pool.clear();
+    }
+}
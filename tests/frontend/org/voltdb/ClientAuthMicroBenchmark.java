@@ -0,0 +1,114 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2017 VoltDB Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+ * OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package org.voltdb;
+
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import org.voltcore.utils.CoreUtils;
+import org.voltdb.microbench.MicroBenchmark;
+
+/**
+ * Authenticates storms of connections that all arrive at once, the way clients
+ * reconnect after a failover. Every handshake blocks its thread for 1ms, one in
+ * twenty is a slow client that takes 20ms. The acceptor hands connections either
+ * to a ClientAuthExecutor or to the synchronous hand off it used before, retrying
+ * every millisecond while all threads are busy. One operation is one connection
+ * authenticated.
+ */
+public class ClientAuthMicroBenchmark extends MicroBenchmark {
+
+    private static final long FAST_MILLIS = 1;
+    private static final long SLOW_MILLIS = 20;
+
+    private final int m_threads;
+    private final boolean m_queued;
+    private ClientAuthExecutor m_executor;
+    private ThreadPoolExecutor m_handOff;
+    private final Random m_random = new Random(0);
+
+    public ClientAuthMicroBenchmark(int threads, boolean queued) {
+        super("ClientAuth.storm" + (queued ? "Queued" : "HandOff") + threads);
+        m_threads = threads;
+        m_queued = queued;
+    }
+
+    @Override
+    public void setUp() {
+        if (m_queued) {
+            m_executor = new ClientAuthExecutor(m_threads, 4096,
+                    CoreUtils.getThreadFactory("Client authentication threads", "Client authenticator"));
+        } else {
+            m_handOff = CoreUtils.getBoundedThreadPoolExecutor(m_threads, 10L, TimeUnit.SECONDS,
+                    CoreUtils.getThreadFactory("Client authentication threads", "Client authenticator"));
+        }
+    }
+
+    @Override
+    public long run(int ops) throws Exception {
+        final CountDownLatch authenticated = new CountDownLatch(ops);
+        for (int i = 0; i < ops; i++) {
+            final long handshakeMillis = m_random.nextInt(20) == 0 ? SLOW_MILLIS : FAST_MILLIS;
+            Runnable auth = new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        Thread.sleep(handshakeMillis);
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                    authenticated.countDown();
+                }
+            };
+            if (m_queued) {
+                m_executor.execute(auth);
+            } else {
+                while (true) {
+                    try {
+                        m_handOff.execute(auth);
+                        break;
+                    } catch (RejectedExecutionException e) {
+                        Thread.sleep(1);
+                    }
+                }
+            }
+        }
+        authenticated.await();
+        return ops;
+    }
+
+    @Override
+    public void tearDown() throws Exception {
+        if (m_queued) {
+            m_executor.shutdownNow();
+            m_executor.awaitTermination(1, TimeUnit.MINUTES);
+        } else {
+            m_handOff.shutdownNow();
+            m_handOff.awaitTermination(1, TimeUnit.MINUTES);
+        }
+    }
+}
@@ -0,0 +1,110 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2017 VoltDB Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+ * OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package org.voltdb;
+
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+
+import org.voltdb.CatalogContext.ProcedurePartitionInfo;
+import org.voltdb.microbench.MicroBenchmark;
+
+/**
+ * Finds the partition of a procedure invocation that came off the wire, either
+ * by deserializing the whole parameter set, by deserializing just the partition
+ * parameter, or through the procedure's {@link PartitionKeyRouter}. The small
+ * invocation has its key first, the large one has it after some 5KB of other
+ * parameters.
+ */
+public class PartitionKeyRouterMicroBenchmark extends MicroBenchmark {
+
+    public enum Lookup { DESERIALIZE, PEEK, ROUTER }
+
+    private static final int PARTITIONS = 8;
+
+    private final Lookup m_lookup;
+    private final Object[] m_params;
+    private final VoltType m_keyType;
+    private final int m_keyIndex;
+    private ProcedurePartitionInfo m_ppi;
+    private StoredProcedureInvocation m_task;
+
+    public PartitionKeyRouterMicroBenchmark(boolean large, Lookup lookup) {
+        super("ProcedurePartitionInfo." + (large ? "large" : "small") + "Params"
+                + lookup.name().charAt(0) + lookup.name().substring(1).toLowerCase());
+        m_lookup = lookup;
+        if (large) {
+            m_params = new Object[24];
+            for (int i = 0; i < 20; i++) {
+                m_params[i] = "a string parameter that has to be skipped " + i;
+            }
+            m_params[20] = new byte[4096];
+            m_params[21] = new BigDecimal("1234.5");
+            m_params[22] = "customer-42";
+            m_params[23] = 5L;
+            m_keyType = VoltType.STRING;
+            m_keyIndex = 22;
+        }
+        else {
+            m_params = new Object[] { 42L, "small", 7 };
+            m_keyType = VoltType.BIGINT;
+            m_keyIndex = 0;
+        }
+    }
+
+    @Override
+    public void setUp() throws Exception {
+        TheHashinator.initialize(ElasticHashinator.class,
+                ElasticHashinator.getConfigureBytes(PARTITIONS, ElasticHashinator.DEFAULT_TOTAL_TOKENS));
+        m_ppi = new ProcedurePartitionInfo(m_keyType, m_keyIndex);
+
+        StoredProcedureInvocation spi = new StoredProcedureInvocation();
+        spi.setProcName("Foo");
+        spi.setParams(m_params);
+        ByteBuffer buf = ByteBuffer.allocate(spi.getSerializedSize());
+        spi.flattenToBuffer(buf);
+        buf.flip();
+        m_task = new StoredProcedureInvocation();
+        m_task.initFromBuffer(buf);
+    }
+
+    @Override
+    public long run(int ops) throws Exception {
+        long sink = 0;
+        for (int i = 0; i < ops; i++) {
+            switch (m_lookup) {
+            case DESERIALIZE:
+                ParameterSet params = ParameterSet.fromByteBuffer(m_task.getSerializedParams());
+                sink += TheHashinator.getPartitionForParameter(m_keyType, params.getParam(m_keyIndex));
+                break;
+            case PEEK:
+                sink += TheHashinator.getPartitionForParameter(m_keyType, m_task.getParameterAtIndex(m_keyIndex));
+                break;
+            case ROUTER:
+                sink += m_ppi.getPartition(m_task);
+                break;
+            }
+        }
+        return sink;
+    }
+}
@@ -0,0 +1,114 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2017 VoltDB Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+ * OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package org.voltdb;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.voltcore.utils.CoreUtils;
+
+import junit.framework.TestCase;
+
+public class TestClientAuthExecutor extends TestCase {
+
+    private static ClientAuthExecutor executor(int threads, int queued) {
+        return new ClientAuthExecutor(threads, queued, CoreUtils.getThreadFactory("test", "test"));
+    }
+
+    public void testRejectsNonPositiveThreads() {
+        for (int threads : new int[] { 0, -1 }) {
+            try {
+                executor(threads, 16);
+                fail("Expected " + threads + " threads to be rejected");
+            } catch (IllegalArgumentException expected) {
+            }
+        }
+        try {
+            executor(1, -1);
+            fail("Expected a negative queue to be rejected");
+        } catch (IllegalArgumentException expected) {
+        }
+    }
+
+    public void testBlocksWhenThreadsAndQueueAreFull() throws Exception {
+        final ClientAuthExecutor executor = executor(2, 2);
+        final CountDownLatch release = new CountDownLatch(1);
+        final CountDownLatch done = new CountDownLatch(5);
+        final Runnable blocked = new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                done.countDown();
+            }
+        };
+        // two authenticating and two waiting
+        for (int i = 0; i < 4; i++) {
+            executor.execute(blocked);
+        }
+
+        final CountDownLatch submitted = new CountDownLatch(1);
+        Thread acceptor = new Thread() {
+            @Override
+            public void run() {
+                try {
+                    executor.execute(blocked);
+                    submitted.countDown();
+                } catch (InterruptedException e) {
+                }
+            }
+        };
+        acceptor.start();
+        assertFalse(submitted.await(200, TimeUnit.MILLISECONDS));
+
+        // a finished authentication makes room for the waiting connection
+        release.countDown();
+        assertTrue(submitted.await(10, TimeUnit.SECONDS));
+        acceptor.join();
+        assertTrue(done.await(10, TimeUnit.SECONDS));
+
+        executor.shutdownNow();
+        assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+    }
+
+    public void testFailedAuthenticationReleasesItsSlot() throws Exception {
+        final ClientAuthExecutor executor = executor(1, 0);
+        final CountDownLatch ran = new CountDownLatch(3);
+        for (int i = 0; i < 3; i++) {
+            executor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    ran.countDown();
+                    throw new RuntimeException("login failed");
+                }
+            });
+        }
+        assertTrue(ran.await(10, TimeUnit.SECONDS));
+        executor.shutdownNow();
+        assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+    }
+}
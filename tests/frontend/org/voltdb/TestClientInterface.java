@@ -331,6 +331,35 @@ public class TestClientInterface {
         assertTrue(resp.getResults()[0].getLong(0) > 10000);
     }
 
+    @Test
+    public void testResponseSegmentsMatchFlatten() throws Exception {
+        VoltTable t1 = new VoltTable(new ColumnInfo("A", VoltType.BIGINT),
+                                     new ColumnInfo("B", VoltType.STRING));
+        for (int i = 0; i < 100; i++) {
+            t1.addRow(i, "row" + i);
+        }
+        VoltTable t2 = new VoltTable(new ColumnInfo("C", VoltType.INTEGER));
+        ClientResponseImpl response = new ClientResponseImpl(ClientResponse.SUCCESS,
+                new VoltTable[] { t1, t2 }, "status", 42);
+
+        ByteBuffer flat = ByteBuffer.allocate(response.getSerializedSize());
+        response.flattenToBuffer(flat);
+        flat.flip();
+
+        ByteBuffer segmented = ByteBuffer.allocate(response.getSerializedSize());
+        for (ByteBuffer segment : response.flattenToSegments()) {
+            segmented.put(segment);
+        }
+        assertEquals(0, segmented.remaining());
+        segmented.flip();
+        assertEquals(flat, segmented);
+
+        ClientResponseImpl copy = new ClientResponseImpl();
+        copy.initFromBuffer(segmented);
+        assertEquals(2, copy.getResults().length);
+        assertEquals(t1, copy.getResults()[0]);
+    }
+
     @Test
     public void testSystemInformation() throws Exception {
         ByteBuffer msg = createMsg("@SystemInformation");
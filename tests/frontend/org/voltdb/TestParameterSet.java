@@ -55,6 +55,7 @@ import java.math.BigDecimal;
 import java.nio.ByteBuffer;
 import java.util.Arrays;
 import java.util.Date;
+import java.util.concurrent.CyclicBarrier;
 
 import junit.framework.TestCase;
 
@@ -537,4 +538,95 @@ public class TestParameterSet extends TestCase {
 
         assertTrue(Arrays.deepEquals(pset1array, pset2array));
     }
+
+    public void testLazyDeserialization() throws IOException {
+        VoltTable table = new VoltTable(new VoltTable.ColumnInfo("foo", VoltType.INTEGER),
+                new VoltTable.ColumnInfo("bar", VoltType.STRING));
+        table.addRow(Integer.MAX_VALUE, "ry@nlikestheyankees");
+        table.addRow(5, null);
+        ParameterSet pset = ParameterSet.fromArrayNoCopy(
+                (byte) 2, null, "ABCDE", new byte[] { 1, 2, 3 }, new TimestampType(12345),
+                new BigDecimal(7654321).setScale(VoltDecimalHelper.kDefaultScale), table,
+                new long[] { 1, 2, 3 }, new String[] { "ABC", null, "HIJ" },
+                VoltType.NULL_STRING_OR_VARBINARY, Long.MIN_VALUE, 5.5);
+
+        // trailing bytes after the parameters must be left alone
+        ByteBuffer buf = ByteBuffer.allocate(pset.getSerializedSize() + 4);
+        pset.flattenToBuffer(buf);
+        buf.putInt(42);
+        buf.flip();
+        ParameterSet eager = ParameterSet.fromByteBuffer(buf.duplicate());
+        ParameterSet lazy = ParameterSet.fromByteBufferLazily(buf);
+        assertEquals(pset.getSerializedSize(), buf.position());
+        assertEquals(42, buf.getInt());
+
+        // the serialized form is written back out without decoding anything
+        assertEquals(eager.size(), lazy.size());
+        assertEquals(eager.getSerializedSize(), lazy.getSerializedSize());
+        ByteBuffer out = ByteBuffer.allocate(lazy.getSerializedSize());
+        lazy.flattenToBuffer(out);
+        ByteBuffer expected = ByteBuffer.allocate(eager.getSerializedSize());
+        eager.flattenToBuffer(expected);
+        assertTrue(Arrays.equals(expected.array(), out.array()));
+
+        // read out of order, then all at once
+        assertEquals(eager.getParam(6), lazy.getParam(6));
+        assertNull(lazy.getParam(1));
+        assertEquals("ABCDE", lazy.getParam(2));
+        assertSame(lazy.getParam(6), lazy.getParam(6));
+        assertTrue(Arrays.deepEquals(eager.toArray(), lazy.toArray()));
+        assertEquals(eager, lazy);
+        assertEquals(eager.toJSONString(), lazy.toJSONString());
+
+        // a truncated parameter set fails up front like the eager one
+        ByteBuffer truncated = ByteBuffer.wrap(Arrays.copyOf(out.array(), out.capacity() - 3));
+        try {
+            ParameterSet.fromByteBufferLazily(truncated);
+            fail();
+        }
+        catch (RuntimeException expectedFailure) {}
+    }
+
+    public void testLazyDecodeFromManyThreads() throws Exception {
+        VoltTable table = new VoltTable(new VoltTable.ColumnInfo("foo", VoltType.INTEGER));
+        table.addRow(1);
+        ParameterSet pset = ParameterSet.fromArrayNoCopy(table, "ABCDE", new byte[] { 1, 2, 3 });
+        ByteBuffer buf = ByteBuffer.allocate(pset.getSerializedSize());
+        pset.flattenToBuffer(buf);
+
+        for (int round = 0; round < 50; round++) {
+            buf.flip();
+            final ParameterSet lazy = ParameterSet.fromByteBufferLazily(buf);
+            final Object[][] seen = new Object[4][];
+            final CyclicBarrier start = new CyclicBarrier(seen.length);
+            Thread[] threads = new Thread[seen.length];
+            for (int t = 0; t < threads.length; t++) {
+                final int thread = t;
+                threads[t] = new Thread() {
+                    @Override
+                    public void run() {
+                        try {
+                            start.await();
+                        }
+                        catch (Exception e) {
+                            return;
+                        }
+                        seen[thread] = new Object[] { lazy.getParam(0), lazy.getParam(1), lazy.getParam(2) };
+                    }
+                };
+                threads[t].start();
+            }
+            for (Thread thread : threads) {
+                thread.join();
+            }
+            // every thread gets the one decoded copy, a table passed to a procedure must not fork
+            for (Object[] params : seen) {
+                assertNotNull(params);
+                for (int i = 0; i < params.length; i++) {
+                    assertSame(seen[0][i], params[i]);
+                    assertSame(lazy.getParam(i), params[i]);
+                }
+            }
+        }
+    }
 }
@@ -0,0 +1,135 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2017 VoltDB Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+ * OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package org.voltdb;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+import junit.framework.TestCase;
+
+import org.voltdb.CatalogContext.ProcedurePartitionInfo;
+import org.voltdb.types.GeographyPointValue;
+import org.voltdb.types.TimestampType;
+
+public class TestPartitionKeyRouter extends TestCase {
+
+    private static final VoltType[] PARTITION_TYPES = {
+        VoltType.TINYINT, VoltType.SMALLINT, VoltType.INTEGER, VoltType.BIGINT,
+        VoltType.STRING, VoltType.VARBINARY
+    };
+
+    private static final Object[] KEYS = {
+        (byte) 7, VoltType.NULL_TINYINT, (short) -300, VoltType.NULL_SMALLINT,
+        70000, VoltType.NULL_INTEGER, 5000000000L, -1L, 0L, VoltType.NULL_BIGINT,
+        "", "key-17", "élève", "12345", "not a number", null,
+        new byte[0], new byte[] { 1, 2, 3 }, new byte[] { 7, 0, 0, 0, 0, 0, 0, 0 },
+        new long[] { 1, 2 }
+    };
+
+    // parameters in front of the partition parameter that the router has to skip
+    private static final Object[] PREFIX = {
+        "some string", new long[] { 1, 2, 3 }, new BigDecimal("12.5"), new TimestampType(123456),
+        null, new byte[] { 9, 9 }, new String[] { "a", null, "b" }, 3.5, (byte) 1,
+        new GeographyPointValue(10.5, 20.25), (short) 2, 3
+    };
+
+    private static StoredProcedureInvocation fromWire(Object... params) throws IOException {
+        StoredProcedureInvocation spi = new StoredProcedureInvocation();
+        spi.setProcName("Foo");
+        spi.setParams(params);
+        ByteBuffer buf = ByteBuffer.allocate(spi.getSerializedSize());
+        spi.flattenToBuffer(buf);
+        buf.flip();
+
+        StoredProcedureInvocation wire = new StoredProcedureInvocation();
+        wire.initFromBuffer(buf);
+        assertNotNull(wire.getSerializedParams());
+        return wire;
+    }
+
+    private static Object expectedPartition(VoltType type, Object key) {
+        try {
+            return TheHashinator.getPartitionForParameter(type, key);
+        }
+        catch (Exception e) {
+            return e.getClass();
+        }
+    }
+
+    private static Object routedPartition(ProcedurePartitionInfo ppi, StoredProcedureInvocation task) {
+        try {
+            return ppi.getPartition(task);
+        }
+        catch (Exception e) {
+            return e.getClass();
+        }
+    }
+
+    private void checkAllKeys() throws IOException {
+        for (VoltType type : PARTITION_TYPES) {
+            for (Object key : KEYS) {
+                // the parameter set stores java nulls for strings as the volt null
+                Object expected = expectedPartition(type,
+                        key == null ? VoltType.NULL_STRING_OR_VARBINARY : key);
+                for (int prefix : new int[] { 0, 1, PREFIX.length }) {
+                    Object[] params = Arrays.copyOf(PREFIX, prefix + 2);
+                    params[prefix] = key;
+                    params[prefix + 1] = "trailing";
+                    ProcedurePartitionInfo ppi = new ProcedurePartitionInfo(type, prefix);
+
+                    String msg = type + " " + key + " at " + prefix;
+                    assertEquals(msg, expected, routedPartition(ppi, fromWire(params)));
+
+                    StoredProcedureInvocation local = new StoredProcedureInvocation();
+                    local.setProcName("Foo");
+                    local.setParams(params);
+                    assertEquals(msg, expected, routedPartition(ppi, local));
+                }
+            }
+        }
+    }
+
+    public void testMatchesHashinator() throws IOException {
+        TheHashinator.initialize(ElasticHashinator.class,
+                ElasticHashinator.getConfigureBytes(8, ElasticHashinator.DEFAULT_TOTAL_TOKENS));
+        checkAllKeys();
+        TheHashinator.initialize(LegacyHashinator.class, LegacyHashinator.getConfigureBytes(8));
+        checkAllKeys();
+    }
+
+    public void testBadPartitionIndex() throws IOException {
+        TheHashinator.initialize(ElasticHashinator.class,
+                ElasticHashinator.getConfigureBytes(8, ElasticHashinator.DEFAULT_TOTAL_TOKENS));
+        ProcedurePartitionInfo ppi = new ProcedurePartitionInfo(VoltType.BIGINT, 2);
+        try {
+            ppi.getPartition(fromWire(1L, 2L));
+            fail();
+        }
+        catch (RuntimeException expected) {
+            assertTrue(expected.getMessage().contains("Invalid partitionIndex"));
+        }
+    }
+}
@@ -0,0 +1,192 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2017 VoltDB Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+ * OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package org.voltdb;
+
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+
+import junit.framework.TestCase;
+
+import org.voltdb.types.TimestampType;
+import org.voltdb.types.VoltDecimalHelper;
+
+public class TestVoltTableCursor extends TestCase {
+
+    private static VoltTable makeTable(int rows) {
+        VoltTable t = new VoltTable(
+                new VoltTable.ColumnInfo("TINY", VoltType.TINYINT),
+                new VoltTable.ColumnInfo("NAME", VoltType.STRING),
+                new VoltTable.ColumnInfo("ID", VoltType.BIGINT),
+                new VoltTable.ColumnInfo("BLOB", VoltType.VARBINARY),
+                new VoltTable.ColumnInfo("RATIO", VoltType.FLOAT),
+                new VoltTable.ColumnInfo("TS", VoltType.TIMESTAMP),
+                new VoltTable.ColumnInfo("AMOUNT", VoltType.DECIMAL),
+                new VoltTable.ColumnInfo("SMALL", VoltType.SMALLINT),
+                new VoltTable.ColumnInfo("NUM", VoltType.INTEGER));
+        for (int i = 0; i < rows; i++) {
+            if (i % 7 == 3) {
+                t.addRow(null, null, null, null, null, null, null, null, null);
+            }
+            else {
+                t.addRow((byte) (i % 100),
+                         (i % 5 == 0) ? "élève-" + i : "name-" + i,
+                         (long) i * 1000,
+                         new byte[] { (byte) i, (byte) (i >> 8), 7 },
+                         i / 4.0,
+                         new TimestampType((long) i * 1000000),
+                         new BigDecimal(i).movePointLeft(2),
+                         (short) i,
+                         i);
+            }
+        }
+        return t;
+    }
+
+    /** Round trip through serialization so the table looks like it does on a client. */
+    private static VoltTable roundTrip(VoltTable t) {
+        ByteBuffer buf = ByteBuffer.allocate(t.getSerializedSize());
+        t.flattenToBuffer(buf);
+        buf.flip();
+        buf.getInt(); // ignore length prefix here
+        return PrivateVoltTableFactory.createVoltTableFromBuffer(buf.slice(), false);
+    }
+
+    private static void checkAgainstRowApi(VoltTable t) {
+        VoltTableCursor cursor = t.cursor();
+        VoltTableCursor.StringView name = new VoltTableCursor.StringView(4);
+        t.resetRowPosition();
+        int rows = 0;
+        while (cursor.advance()) {
+            assertTrue(t.advanceRow());
+            assertEquals(rows, cursor.getActiveRowIndex());
+
+            // read out of column order to exercise partial offset computation
+            assertEquals(t.getLong(2), cursor.getLong(cursor.getColumnIndex("ID")));
+            assertEquals(t.wasNull(), cursor.wasNull());
+            assertEquals(t.getLong(0), cursor.getLong(0));
+            assertEquals(t.wasNull(), cursor.wasNull());
+            assertEquals(t.getLong(7), cursor.getLong(7));
+            assertEquals(t.getLong(8), cursor.getLong(8));
+            assertEquals(t.getDouble(4), cursor.getDouble(4));
+            assertEquals(t.wasNull(), cursor.wasNull());
+            assertEquals(t.getTimestampAsLong(5), cursor.getTimestampAsLong(5));
+            assertEquals(t.wasNull(), cursor.wasNull());
+
+            BigDecimal bd = t.getDecimalAsBigDecimal(6);
+            long unscaled = cursor.getDecimalAsUnscaledLong(6);
+            if (bd == null) {
+                assertTrue(cursor.wasNull());
+            }
+            else {
+                assertFalse(cursor.wasNull());
+                assertEquals(bd, BigDecimal.valueOf(unscaled, VoltDecimalHelper.kDefaultScale));
+            }
+
+            String s = t.getString(1);
+            VoltTableCursor.StringView view = cursor.getString(1, name);
+            if (s == null) {
+                assertNull(view);
+                assertTrue(cursor.wasNull());
+            }
+            else {
+                assertSame(name, view);
+                assertEquals(s, view.toString());
+                assertTrue(view.contentEquals(s));
+            }
+
+            byte[] bin = t.getVarbinary(3);
+            ByteBuffer bytes = cursor.getBytes(3);
+            if (bin == null) {
+                assertNull(bytes);
+            }
+            else {
+                byte[] copy = new byte[bytes.remaining()];
+                bytes.get(copy);
+                assertTrue(java.util.Arrays.equals(bin, copy));
+            }
+            rows++;
+        }
+        assertFalse(t.advanceRow());
+        assertEquals(t.getRowCount(), rows);
+        assertFalse(cursor.advance());
+    }
+
+    public void testMatchesRowApi() {
+        VoltTable t = makeTable(200);
+        checkAgainstRowApi(t);
+        checkAgainstRowApi(roundTrip(t));
+        checkAgainstRowApi(makeTable(0));
+    }
+
+    public void testResetAndColumnLookup() {
+        VoltTable t = makeTable(3);
+        VoltTableCursor cursor = t.cursor();
+        assertEquals(2, cursor.getColumnIndex("id"));
+        assertEquals(2, cursor.getColumnIndex("Id"));
+        try {
+            cursor.getColumnIndex("MISSING");
+            fail();
+        }
+        catch (IllegalArgumentException expected) {}
+
+        try {
+            cursor.getLong(0);
+            fail();
+        }
+        catch (RuntimeException expected) {}
+
+        while (cursor.advance()) {}
+        t.addRow((byte) 1, "added", 99L, new byte[0], 1.0, null, null, (short) 1, 1);
+        assertFalse(cursor.advance());
+        cursor.reset();
+        assertEquals(4, cursor.getRowCount());
+        for (int i = 0; i < 4; i++) {
+            assertTrue(cursor.advance());
+        }
+        assertEquals(3, cursor.getActiveRowIndex());
+        assertEquals(99L, cursor.getLong(2));
+        assertEquals(0, cursor.getBytes(3).remaining());
+
+        try {
+            cursor.getDouble(0);
+            fail();
+        }
+        catch (IllegalArgumentException expected) {}
+    }
+
+    public void testDecimalRange() {
+        VoltTable t = new VoltTable(new VoltTable.ColumnInfo("D", VoltType.DECIMAL));
+        t.addRow(new BigDecimal("-1.5"));
+        t.addRow(new BigDecimal("99999999999999999999999.5"));
+        VoltTableCursor cursor = t.cursor();
+        assertTrue(cursor.advance());
+        assertEquals(-1500000000000L, cursor.getDecimalAsUnscaledLong(0));
+        assertTrue(cursor.advance());
+        try {
+            cursor.getDecimalAsUnscaledLong(0);
+            fail();
+        }
+        catch (ArithmeticException expected) {}
+    }
+}
@@ -56,4 +56,48 @@ public class TestCatalogSerialization extends TestCase {
         assertTrue(catalog1.equals(catalog2));
         assertTrue(catalog1.equals(catalog3));
     }
+
+    public void testCommandLineEndings() throws IOException
+    {
+        Catalog catalog1 = TPCCProjectBuilder.getTPCCSchemaCatalog();
+        String commands = catalog1.serialize();
+
+        // Windows line endings, blank lines and no trailing newline all parse the same
+        Catalog catalog2 = new Catalog();
+        catalog2.execute("\n" + commands.replace("\n", "\r\n\n").trim());
+        assertEquals(commands, catalog2.serialize());
+    }
+
+    public void testRelativeIndexesAfterDiff()
+    {
+        Catalog catalog = new Catalog();
+        catalog.execute("add / clusters cluster\n" +
+                        "add /clusters#cluster databases database\n" +
+                        "add /clusters#cluster/databases#database tables B\n" +
+                        "add /clusters#cluster/databases#database tables D\n");
+        CatalogMap<Table> tables = catalog.getClusters().get("cluster").getDatabases().get("database").getTables();
+        assertEquals(1, tables.get("B").getRelativeIndex());
+        assertEquals(2, tables.get("D").getRelativeIndex());
+
+        // Indexes follow adds and deletes, in the original and in a copy
+        Catalog copy = catalog.deepCopy();
+        catalog.execute("add /clusters#cluster/databases#database tables A\n" +
+                        "add /clusters#cluster/databases#database tables C\n");
+        assertEquals(1, tables.get("A").getRelativeIndex());
+        assertEquals(2, tables.get("B").getRelativeIndex());
+        assertEquals(3, tables.get("C").getRelativeIndex());
+        assertEquals(4, tables.get("D").getRelativeIndex());
+
+        catalog.execute("delete /clusters#cluster/databases#database tables B\n");
+        Catalog copy2 = catalog.deepCopy();
+        CatalogMap<Table> copiedTables = copy2.getClusters().get("cluster").getDatabases().get("database").getTables();
+        assertEquals(1, copiedTables.get("A").getRelativeIndex());
+        assertEquals(2, copiedTables.get("C").getRelativeIndex());
+        assertEquals(3, copiedTables.get("D").getRelativeIndex());
+        assertEquals(3, tables.get("D").getRelativeIndex());
+
+        copiedTables = copy.getClusters().get("cluster").getDatabases().get("database").getTables();
+        assertEquals(2, copiedTables.size());
+        assertEquals(2, copiedTables.get("D").getRelativeIndex());
+    }
 }
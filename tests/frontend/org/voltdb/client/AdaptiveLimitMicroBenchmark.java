@@ -0,0 +1,155 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2017 VoltDB Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+ * OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package org.voltdb.client;
+
+import java.nio.channels.SocketChannel;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.HdrHistogram_voltpatches.Histogram;
+import org.voltdb.microbench.MicroBenchmark;
+
+/**
+ * Sends requests as fast as the client allows to a mock server that answers one
+ * request at a time and, every 300ms, is ten times slower for 100ms, with the fixed
+ * limit on outstanding requests or the adaptive limit. One operation is one request
+ * answered, the round trip latency and the limit at the end of the slowdowns are
+ * reported alongside.
+ */
+public class AdaptiveLimitMicroBenchmark extends MicroBenchmark {
+
+    private static final int PORT = 20000;
+    private static final long FAST_NANOS = TimeUnit.MICROSECONDS.toNanos(100);
+    private static final long SLOW_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+    private static final long FAST_MILLIS = 200;
+    private static final long SLOW_MILLIS = 100;
+    private static final int MAX_OUTSTANDING = 3000;
+
+    private final boolean m_adaptive;
+    private TestDistributer.MockVolt m_volt;
+    private Distributer m_dist;
+    private Thread m_slowdowns;
+    private volatile boolean m_stop;
+    private final Histogram m_latency = new Histogram(TimeUnit.MINUTES.toMicros(2), 2);
+    private final ProcedureCallback m_callback = new ProcedureCallback() {
+        @Override
+        public void clientCallback(ClientResponse response) {
+            synchronized (m_latency) {
+                m_latency.recordValue(Math.min(m_latency.getHighestTrackableValue(),
+                        TimeUnit.NANOSECONDS.toMicros(response.getClientRoundtripNanos())));
+            }
+        }
+    };
+    private final AtomicLong m_limits = new AtomicLong();
+    private final AtomicLong m_slowdownCount = new AtomicLong();
+    private int m_handle = 0;
+
+    public AdaptiveLimitMicroBenchmark(boolean adaptive) {
+        super("Distributer.slowdown" + (adaptive ? "AdaptiveLimit" : "FixedLimit"));
+        m_adaptive = adaptive;
+    }
+
+    @Override
+    public void setUp() throws Exception {
+        m_volt = new TestDistributer().new MockVolt(PORT);
+        m_volt.start();
+        m_dist = new Distributer(false,
+                ClientConfig.DEFAULT_PROCEDURE_TIMOUT_NANOS,
+                ClientConfig.DEFAULT_CONNECTION_TIMOUT_MS,
+                false, false, null /* subject */, null);
+        m_dist.m_rateLimiter.setLimits(Integer.MAX_VALUE, MAX_OUTSTANDING);
+        if (m_adaptive) {
+            m_dist.enableAdaptiveLimit(50, MAX_OUTSTANDING);
+        }
+        m_dist.createConnection("localhost", "", "", PORT, ClientAuthScheme.HASH_SHA1);
+        while (m_volt.handler == null) {
+            Thread.sleep(10);
+        }
+        // as a server would, otherwise a few outstanding requests wait on delayed acks
+        for (SocketChannel channel : m_volt.channels) {
+            channel.socket().setTcpNoDelay(true);
+        }
+        m_volt.handler.serviceNanos = FAST_NANOS;
+        m_stop = false;
+        m_slowdowns = new Thread("Mock server slowdowns") {
+            @Override
+            public void run() {
+                try {
+                    while (!m_stop) {
+                        m_volt.handler.serviceNanos = FAST_NANOS;
+                        Thread.sleep(FAST_MILLIS);
+                        m_volt.handler.serviceNanos = SLOW_NANOS;
+                        Thread.sleep(SLOW_MILLIS);
+                        m_limits.addAndGet(m_dist.createStatsContext().fetch().getStats().getOutstandingLimit());
+                        m_slowdownCount.incrementAndGet();
+                    }
+                } catch (InterruptedException e) {
+                }
+            }
+        };
+        m_slowdowns.start();
+    }
+
+    @Override
+    public void beginMeasurement() {
+        synchronized (m_latency) {
+            m_latency.reset();
+        }
+        m_limits.set(0);
+        m_slowdownCount.set(0);
+    }
+
+    @Override
+    public long run(int ops) throws Exception {
+        for (int i = 0; i < ops; i++) {
+            ProcedureInvocation pi = new ProcedureInvocation(++m_handle, "i1", 1);
+            while (!m_dist.queue(pi, m_callback, false, System.nanoTime(), 0)) {
+                Thread.sleep(1);
+            }
+        }
+        m_dist.drain();
+        return m_handle;
+    }
+
+    @Override
+    public void endMeasurement() {
+        synchronized (m_latency) {
+            reportMetric("latencyP50", m_latency.getValueAtPercentile(50), "us");
+            reportMetric("latencyP99", m_latency.getValueAtPercentile(99), "us");
+            reportMetric("latencyP99.9", m_latency.getValueAtPercentile(99.9), "us");
+        }
+        final long slowdowns = m_slowdownCount.get();
+        reportMetric("limitAfterSlowdown", !m_adaptive || slowdowns == 0 ? MAX_OUTSTANDING : (double) m_limits.get() / slowdowns,
+                "requests");
+    }
+
+    @Override
+    public void tearDown() throws Exception {
+        m_stop = true;
+        m_slowdowns.interrupt();
+        m_slowdowns.join();
+        m_dist.shutdown();
+        m_volt.shutdown();
+    }
+}
@@ -0,0 +1,125 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2017 VoltDB Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+ * OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package org.voltdb.client;
+
+import java.lang.management.ManagementFactory;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+
+import org.voltdb.microbench.MicroBenchmark;
+
+/**
+ * Fetches the stats of every procedure on every connection and diffs them against the
+ * previous fetch, as a service polling the stats each second does, when a tenth of the
+ * procedures were called since the previous fetch. The cloned variant copies every
+ * histogram on each fetch, as snapshots did before they were shared. One operation is
+ * one fetch, the memory it allocates is reported alongside.
+ */
+public class ClientStatsSnapshotMicroBenchmark extends MicroBenchmark {
+
+    private final int m_connections;
+    private final int m_procs;
+    private final boolean m_cloned;
+    private final com.sun.management.ThreadMXBean m_threads =
+            (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+    private final Map<Long, Map<String, ClientStatsRecorder>> m_recorders = new TreeMap<>();
+    private Map<Long, Map<String, ClientStats>> m_previous;
+    private long m_polls = 0;
+    private long m_allocated;
+    private long m_ops;
+
+    public ClientStatsSnapshotMicroBenchmark(int connections, int procs, boolean cloned) {
+        super("ClientStatsContext.fetch" + connections + "x" + procs + "Procs" + (cloned ? "Cloned" : ""));
+        m_connections = connections;
+        m_procs = procs;
+        m_cloned = cloned;
+    }
+
+    @Override
+    public void setUp() {
+        for (long c = 0; c < m_connections; c++) {
+            Map<String, ClientStatsRecorder> connRecorders = new TreeMap<>();
+            for (int p = 0; p < m_procs; p++) {
+                ClientStatsRecorder recorder = new ClientStatsRecorder("proc" + p, c, "localhost", 21212);
+                recorder.update(TimeUnit.MILLISECONDS.toNanos(1), 1, false, false, false);
+                connRecorders.put("proc" + p, recorder);
+            }
+            m_recorders.put(c, connRecorders);
+        }
+        m_previous = fetch();
+    }
+
+    private Map<Long, Map<String, ClientStats>> fetch() {
+        Map<Long, Map<String, ClientStats>> retval = new TreeMap<>();
+        for (Map.Entry<Long, Map<String, ClientStatsRecorder>> e : m_recorders.entrySet()) {
+            Map<String, ClientStats> snapshot = ClientStatsRecorder.snapshot(e.getValue(), 0);
+            if (m_cloned) {
+                for (Map.Entry<String, ClientStats> stats : snapshot.entrySet()) {
+                    stats.setValue((ClientStats) stats.getValue().clone());
+                }
+            }
+            retval.put(e.getKey(), snapshot);
+        }
+        return retval;
+    }
+
+    @Override
+    public long run(int ops) {
+        final long threadId = Thread.currentThread().getId();
+        long allocated = 0;
+        long sink = 0;
+        for (int i = 0; i < ops; i++) {
+            final long poll = m_polls++;
+            int called = 0;
+            for (Map<String, ClientStatsRecorder> connRecorders : m_recorders.values()) {
+                for (ClientStatsRecorder recorder : connRecorders.values()) {
+                    if (called++ % 10 == poll % 10) {
+                        recorder.update(TimeUnit.MILLISECONDS.toNanos(2), 1, false, false, false);
+                    }
+                }
+            }
+            // only the fetch is what the allocations are reported for
+            final long bytes = m_threads.getThreadAllocatedBytes(threadId);
+            Map<Long, Map<String, ClientStats>> current = fetch();
+            sink += TestClientStatsRecorder.context(m_previous, current).getStats().getInvocationsCompleted();
+            allocated += m_threads.getThreadAllocatedBytes(threadId) - bytes;
+            m_previous = current;
+        }
+        m_allocated += allocated;
+        m_ops += ops;
+        return sink;
+    }
+
+    @Override
+    public void beginMeasurement() {
+        m_allocated = 0;
+        m_ops = 0;
+    }
+
+    @Override
+    public void endMeasurement() {
+        reportMetric("allocatedPerOp", m_ops == 0 ? 0 : (double) m_allocated / m_ops, "B");
+    }
+}
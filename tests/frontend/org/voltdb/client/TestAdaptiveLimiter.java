@@ -0,0 +1,139 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2017 VoltDB Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+ * OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package org.voltdb.client;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.Test;
+
+public class TestAdaptiveLimiter {
+
+    private static final long TARGET = TimeUnit.MILLISECONDS.toNanos(10);
+    private static final long FAST = TimeUnit.MILLISECONDS.toNanos(1);
+    private static final long SLOW = TimeUnit.MILLISECONDS.toNanos(100);
+
+    private static void acquireAll(AdaptiveLimiter limiter) {
+        while (limiter.tryAcquire()) {}
+    }
+
+    @Test
+    public void testLimitRisesWithFastResponses() {
+        AdaptiveLimiter limiter = new AdaptiveLimiter(TARGET, 100);
+        acquireAll(limiter);
+        assertEquals(AdaptiveLimiter.INITIAL_LIMIT, limiter.getOutstanding());
+
+        // about a limit's worth of fast responses raise the limit by one
+        long now = System.nanoTime();
+        for (int i = 0; i <= AdaptiveLimiter.INITIAL_LIMIT; i++) {
+            limiter.release(now, FAST, false);
+            assertTrue(limiter.tryAcquire());
+        }
+        assertEquals(AdaptiveLimiter.INITIAL_LIMIT + 1, limiter.getLimit());
+
+        // but not while most of it goes unused
+        for (int i = 0; i < AdaptiveLimiter.INITIAL_LIMIT; i++) {
+            limiter.release(now, FAST, false);
+        }
+        int limit = limiter.getLimit();
+        for (int i = 0; i < 1000; i++) {
+            assertTrue(limiter.tryAcquire());
+            limiter.release(now, FAST, false);
+        }
+        assertEquals(limit, limiter.getLimit());
+    }
+
+    @Test
+    public void testLimitCutOncePerRoundTrip() {
+        AdaptiveLimiter limiter = new AdaptiveLimiter(TARGET, 100);
+        acquireAll(limiter);
+        long now = System.nanoTime() + SLOW;
+        limiter.release(now, SLOW, false);
+        assertEquals(15, limiter.getLimit());
+
+        // the other requests were sent before the cut
+        limiter.release(now + FAST, SLOW, false);
+        limiter.release(now + FAST, FAST, true);
+        assertEquals(15, limiter.getLimit());
+
+        // those sent after it show the server is still slow
+        limiter.release(now + 2 * SLOW, SLOW, false);
+        assertEquals(11, limiter.getLimit());
+        limiter.release(now + 4 * SLOW, SLOW, true);
+        assertEquals(8, limiter.getLimit());
+    }
+
+    @Test
+    public void testLimitBounds() {
+        AdaptiveLimiter limiter = new AdaptiveLimiter(TARGET, 5);
+        assertEquals(5, limiter.getLimit());
+        acquireAll(limiter);
+        long now = System.nanoTime();
+        for (int i = 0; i < 100; i++) {
+            limiter.release(now, FAST, false);
+            assertTrue(limiter.tryAcquire());
+        }
+        assertEquals(5, limiter.getLimit());
+
+        for (int i = 1; i <= 100; i++) {
+            limiter.release(now + i * SLOW, SLOW, false);
+            limiter.tryAcquire();
+        }
+        assertEquals(1, limiter.getLimit());
+    }
+
+    @Test
+    public void testAcquireWaitsForRelease() throws Exception {
+        final AdaptiveLimiter limiter = new AdaptiveLimiter(TARGET, 1);
+        assertTrue(limiter.tryAcquire());
+        assertFalse(limiter.tryAcquire());
+        try {
+            limiter.acquire(System.nanoTime(), TimeUnit.MILLISECONDS.toNanos(50));
+            fail("Expected no permit");
+        } catch (TimeoutException expected) {}
+
+        final AtomicLong acquired = new AtomicLong();
+        Thread sender = new Thread() {
+            @Override
+            public void run() {
+                try {
+                    acquired.set(limiter.acquire(System.nanoTime(), TimeUnit.MINUTES.toNanos(1)));
+                } catch (TimeoutException e) {}
+            }
+        };
+        sender.start();
+        Thread.sleep(100);
+        assertTrue(sender.isAlive());
+        limiter.release();
+        sender.join(TimeUnit.SECONDS.toMillis(10));
+        assertTrue(acquired.get() != 0);
+        assertEquals(1, limiter.getOutstanding());
+    }
+}
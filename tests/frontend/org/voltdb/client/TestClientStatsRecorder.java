@@ -0,0 +1,165 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2017 VoltDB Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+ * OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package org.voltdb.client;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.HdrHistogram_voltpatches.Histogram;
+import org.HdrHistogram_voltpatches.HistogramLogReader;
+import org.HdrHistogram_voltpatches.HistogramLogWriter;
+import org.junit.Test;
+
+public class TestClientStatsRecorder {
+
+    private static ClientStatsRecorder recorder(String procName, long connectionId) {
+        return new ClientStatsRecorder(procName, connectionId, "localhost", 21212);
+    }
+
+    static ClientStatsContext context(Map<Long, Map<String, ClientStats>> baseline,
+            Map<Long, Map<String, ClientStats>> current) {
+        ClientStatsContext context = new ClientStatsContext(null, current,
+                new HashMap<Long, ClientIOStats>(), new HashMap<Integer, ClientAffinityStats>());
+        context.m_baseline = baseline;
+        context.m_baselineTS = 1500000000000L;
+        context.m_currentTS = 1500000001000L;
+        return context;
+    }
+
+    @Test
+    public void testSnapshotsAccumulate() {
+        ClientStatsRecorder recorder = recorder("proc", 1);
+        ClientStats empty = recorder.snapshot(0);
+        assertEquals(0, empty.getInvocationsCompleted());
+
+        recorder.update(TimeUnit.MILLISECONDS.toNanos(2), 1, false, false, false);
+        recorder.update(TimeUnit.MILLISECONDS.toNanos(4), 3, true, true, true);
+        ClientStats first = recorder.snapshot(0);
+        assertNotSame(empty, first);
+        assertEquals(2, first.getInvocationsCompleted());
+        assertEquals(1, first.getInvocationAborts());
+        assertEquals(1, first.getInvocationErrors());
+        assertEquals(1, first.getInvocationTimeouts());
+        assertEquals(3.0, first.getAverageLatency(), 0.01);
+        assertEquals(2, first.m_latencyHistogram.getTotalCount());
+        // published stats are not modified
+        assertEquals(0, empty.getInvocationsCompleted());
+
+        recorder.update(TimeUnit.MILLISECONDS.toNanos(6), 5, false, false, false);
+        ClientStats second = recorder.snapshot(0);
+        assertEquals(3, second.getInvocationsCompleted());
+        assertEquals(3, second.m_latencyHistogram.getTotalCount());
+        ClientStats delta = ClientStats.diff(second, first);
+        assertEquals(1, delta.getInvocationsCompleted());
+        assertEquals(6, delta.kPercentileLatency(0.5));
+    }
+
+    @Test
+    public void testIdleSnapshotsShared() {
+        ClientStatsRecorder recorder = recorder("proc", 1);
+        recorder.update(TimeUnit.MILLISECONDS.toNanos(2), 1, false, false, false);
+        ClientStats first = recorder.snapshot(5);
+        assertSame(first, recorder.snapshot(5));
+
+        ClientStats delta = ClientStats.diff(first, first);
+        assertEquals(0, delta.getInvocationsCompleted());
+        assertEquals(0, delta.kPercentileLatency(0.99));
+        assertEquals(5, delta.getOutstandingLimit());
+
+        // a new limit is a new snapshot
+        ClientStats limited = recorder.snapshot(4);
+        assertNotSame(first, limited);
+        assertEquals(4, limited.getOutstandingLimit());
+        assertEquals(1, limited.getInvocationsCompleted());
+    }
+
+    @Test
+    public void testSnapshotWhileRecording() throws Exception {
+        final ClientStatsRecorder recorder = recorder("proc", 1);
+        final int invocations = 2000000;
+        Thread network = new Thread() {
+            @Override
+            public void run() {
+                for (int i = 0; i < invocations; i++) {
+                    recorder.update(TimeUnit.MICROSECONDS.toNanos(100 + i % 1000), 1, false, false, false);
+                }
+            }
+        };
+        network.start();
+        ClientStats previous = recorder.snapshot(0);
+        while (network.isAlive()) {
+            ClientStats stats = recorder.snapshot(0);
+            assertEquals(stats.getInvocationsCompleted(), stats.m_latencyHistogram.getTotalCount());
+            assertTrue(stats.getInvocationsCompleted() >= previous.getInvocationsCompleted());
+            previous = stats;
+        }
+        network.join();
+        ClientStats stats = recorder.snapshot(0);
+        assertEquals(invocations, stats.getInvocationsCompleted());
+        assertEquals(invocations, stats.m_latencyHistogram.getTotalCount());
+    }
+
+    @Test
+    public void testLatencyLog() throws Exception {
+        ClientStatsRecorder recorder = recorder("proc", 1);
+        recorder.update(TimeUnit.MILLISECONDS.toNanos(2), 1, false, false, false);
+        Map<Long, Map<String, ClientStats>> baseline = new TreeMap<>();
+        baseline.put(1L, ClientStatsRecorder.snapshot(recorderMap(recorder), 0));
+        for (int i = 0; i < 10; i++) {
+            recorder.update(TimeUnit.MILLISECONDS.toNanos(3), 1, false, false, false);
+        }
+        Map<Long, Map<String, ClientStats>> current = new TreeMap<>();
+        current.put(1L, ClientStatsRecorder.snapshot(recorderMap(recorder), 0));
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        HistogramLogWriter log = new HistogramLogWriter(out);
+        log.outputLogFormatVersion();
+        log.outputStartTime(1500000000000L);
+        log.outputLegend();
+        context(baseline, current).writeLatencyHistogram(log);
+
+        HistogramLogReader reader = new HistogramLogReader(new ByteArrayInputStream(out.toByteArray()));
+        Histogram interval = (Histogram) reader.nextIntervalHistogram();
+        assertEquals(10, interval.getTotalCount());
+        assertEquals(3.0, interval.getValueAtPercentile(50) / 1000.0, 0.1);
+        assertEquals(1500000000000L, interval.getStartTimeStamp());
+        assertEquals(1500000001000L, interval.getEndTimeStamp());
+    }
+
+    private static Map<String, ClientStatsRecorder> recorderMap(ClientStatsRecorder recorder) {
+        Map<String, ClientStatsRecorder> recorders = new TreeMap<>();
+        recorders.put("proc", recorder);
+        return recorders;
+    }
+}
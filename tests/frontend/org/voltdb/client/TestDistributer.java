@@ -32,10 +32,13 @@ import java.nio.channels.SocketChannel;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Semaphore;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
 
 import org.junit.Test;
 import org.voltcore.network.Connection;
@@ -43,6 +46,7 @@ import org.voltcore.network.QueueMonitor;
 import org.voltcore.network.ReverseDNSCache;
 import org.voltcore.network.VoltNetworkPool;
 import org.voltcore.network.VoltProtocolHandler;
+import org.voltcore.utils.CoreUtils;
 import org.voltdb.ClientResponseImpl;
 import org.voltdb.StoredProcedureInvocation;
 import org.voltdb.VoltTable;
@@ -60,6 +64,10 @@ public class TestDistributer extends TestCase {
         volatile Semaphore invokedSubscribe = new Semaphore(0);
         volatile Semaphore invokedTopology = new Semaphore(0);
         volatile Semaphore invokedSystemInformation = new Semaphore(0);
+        // when set, responses are sent in order by one thread that takes this long for each
+        volatile long serviceNanos = 0;
+        private ExecutorService site = null;
+        private long siteBusyUntil = 0;
 
         @Override
         public int getMaxRead() {
@@ -99,10 +107,14 @@ public class TestDistributer extends TestCase {
                         response = new ClientResponseImpl(ClientResponseImpl.SUCCESS, vt,
                                 "Extra String", spi.getClientHandle());
                     }
-                    ByteBuffer buf = ByteBuffer.allocate(4 + response.getSerializedSize());
+                    final ByteBuffer buf = ByteBuffer.allocate(4 + response.getSerializedSize());
                     buf.putInt(buf.capacity() - 4);
                     response.flattenToBuffer(buf);
                     buf.clear();
+                    if (serviceNanos > 0) {
+                        respondInOrder(buf, c);
+                        return;
+                    }
                     c.writeStream().enqueue(buf);
                     roundTrips.incrementAndGet();
                     System.err.println("Sending response.");
@@ -165,6 +177,31 @@ public class TestDistributer extends TestCase {
         public void stopResponding() {
 
         }
+
+        private synchronized void respondInOrder(final ByteBuffer buf, final Connection c) {
+            if (site == null) {
+                site = CoreUtils.getSingleThreadExecutor("Mock site");
+            }
+            site.execute(new Runnable() {
+                @Override
+                public void run() {
+                    // oversleeping one response leaves less time for the next ones
+                    siteBusyUntil = Math.max(siteBusyUntil, System.nanoTime()) + serviceNanos;
+                    long remaining;
+                    while ((remaining = siteBusyUntil - System.nanoTime()) > 0) {
+                        LockSupport.parkNanos(remaining);
+                    }
+                    c.writeStream().enqueue(buf);
+                    roundTrips.incrementAndGet();
+                }
+            });
+        }
+
+        synchronized void shutdown() {
+            if (site != null) {
+                site.shutdownNow();
+            }
+        }
     }
 
     // A fake server.
@@ -256,6 +293,9 @@ public class TestDistributer extends TestCase {
         public void shutdown() throws InterruptedException {
             shutdown.set(true);
             join();
+            if (handler != null) {
+                handler.shutdown();
+            }
 
             try {
                 network.shutdown();
@@ -0,0 +1,68 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2017 VoltDB Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+ * OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package org.voltdb.compiler;
+
+import java.io.File;
+
+import org.voltdb.microbench.MicroBenchmark;
+
+/**
+ * Compiles a generated schema of partitioned tables, each with a handful of single
+ * statement procedures, into a catalog jar from scratch.
+ */
+public class CatalogCompileMicroBenchmark extends MicroBenchmark {
+
+    private static final int TABLES = 50;
+
+    private final String m_ddl;
+    private File m_jar;
+
+    public CatalogCompileMicroBenchmark(int procsPerTable) {
+        super("VoltCompiler.compile" + TABLES * (procsPerTable + 1) + "Procedures");
+        m_ddl = TestLargeSchemaCompile.generateSchema(TABLES, procsPerTable);
+    }
+
+    @Override
+    public void setUp() throws Exception {
+        m_jar = File.createTempFile("microbench", ".jar");
+    }
+
+    @Override
+    public long run(int ops) throws Exception {
+        long sink = 0;
+        for (int i = 0; i < ops; i++) {
+            VoltCompiler compiler = new VoltCompiler(false);
+            if (!compiler.compileDDLString(m_ddl, m_jar.getPath())) {
+                throw new RuntimeException("Failed to compile the generated schema");
+            }
+            sink += compiler.getCatalog().serialize().length();
+        }
+        return sink;
+    }
+
+    @Override
+    public void tearDown() {
+        m_jar.delete();
+    }
+}
@@ -0,0 +1,78 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2017 VoltDB Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+ * OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package org.voltdb.compiler;
+
+import java.io.File;
+
+import org.voltdb.catalog.Catalog;
+import org.voltdb.microbench.MicroBenchmark;
+import org.voltdb.utils.CatalogUtil;
+import org.voltdb.utils.InMemoryJarfile;
+
+/**
+ * Applies a single statement of live DDL to a generated schema with views and a
+ * row limit delete, the way an @AdHoc DDL statement recompiles the catalog.
+ */
+public class LiveDDLMicroBenchmark extends MicroBenchmark {
+
+    private static final int PROCS_PER_TABLE = 8;
+
+    private final int m_tables;
+    private InMemoryJarfile m_base;
+    private String m_serializedCatalog;
+
+    public LiveDDLMicroBenchmark(int tables) {
+        super("VoltCompiler.liveDDL" + tables * (PROCS_PER_TABLE + 1) + "Procedures");
+        m_tables = tables;
+    }
+
+    @Override
+    public void setUp() throws Exception {
+        File jar = File.createTempFile("microbench", ".jar");
+        try {
+            String ddl = TestLargeSchemaCompile.generateSchemaWithViews(m_tables, PROCS_PER_TABLE);
+            if (!new VoltCompiler(false).compileDDLString(ddl, jar.getPath())) {
+                throw new RuntimeException("Failed to compile the generated schema");
+            }
+            m_base = new InMemoryJarfile(jar);
+        }
+        finally {
+            jar.delete();
+        }
+        m_serializedCatalog = CatalogUtil.getSerializedCatalogStringFromJar(m_base);
+    }
+
+    @Override
+    public long run(int ops) throws Exception {
+        long sink = 0;
+        for (int i = 0; i < ops; i++) {
+            Catalog catalog = new Catalog();
+            catalog.execute(m_serializedCatalog);
+            InMemoryJarfile jar = m_base.deepCopy();
+            new VoltCompiler(false).compileInMemoryJarfileWithNewDDL(jar, "CREATE INDEX t0_w ON t0 (w);", catalog);
+            sink += jar.size();
+        }
+        return sink;
+    }
+}
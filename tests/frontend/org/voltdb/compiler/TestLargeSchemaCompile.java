@@ -0,0 +1,164 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2017 VoltDB Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+ * OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package org.voltdb.compiler;
+
+import java.io.File;
+import java.io.IOException;
+
+import junit.framework.TestCase;
+
+import org.voltdb.catalog.Catalog;
+import org.voltdb.common.Constants;
+import org.voltdb.utils.CatalogUtil;
+import org.voltdb.utils.InMemoryJarfile;
+
+public class TestLargeSchemaCompile extends TestCase {
+
+    /**
+     * A schema of partitioned tables sharing a replicated lookup table, with a mix of
+     * single statement procedures on each: point reads, aggregates, updates and joins.
+     */
+    static String generateSchema(int tables, int procsPerTable) {
+        StringBuilder sb = new StringBuilder();
+        sb.append("CREATE TABLE lookup (k VARCHAR(32) NOT NULL, v INTEGER, PRIMARY KEY (k));\n");
+        for (int t = 0; t < tables; t++) {
+            String table = "t" + t;
+            sb.append("CREATE TABLE ").append(table).append(" (id BIGINT NOT NULL, k VARCHAR(32) NOT NULL, ")
+              .append("v INTEGER, w FLOAT, ts TIMESTAMP, PRIMARY KEY (id));\n");
+            sb.append("PARTITION TABLE ").append(table).append(" ON COLUMN id;\n");
+            sb.append("CREATE INDEX ").append(table).append("_k ON ").append(table).append(" (k, v);\n");
+            for (int p = 0; p < procsPerTable; p++) {
+                String sql;
+                switch (p % 4) {
+                case 0:
+                    sql = "SELECT k, v, w FROM " + table + " WHERE id = ? AND v > " + p;
+                    break;
+                case 1:
+                    sql = "SELECT k, COUNT(*), SUM(w) FROM " + table + " WHERE k = ? AND v < " + p +
+                          " GROUP BY k ORDER BY k";
+                    break;
+                case 2:
+                    sql = "UPDATE " + table + " SET v = v + " + p + " WHERE id = ?";
+                    break;
+                default:
+                    sql = "SELECT a.k, b.v FROM " + table + " a, lookup b WHERE a.k = b.k AND a.id = ? AND b.v = " + p;
+                    break;
+                }
+                sb.append("CREATE PROCEDURE ").append(table).append("_p").append(p)
+                  .append(" PARTITION ON TABLE ").append(table).append(" COLUMN id AS ").append(sql).append(";\n");
+            }
+            // and one multi partition procedure per table
+            sb.append("CREATE PROCEDURE ").append(table).append("_mp AS SELECT k, MAX(v) FROM ").append(table)
+              .append(" WHERE w > ? GROUP BY k;\n");
+        }
+        return sb.toString();
+    }
+
+    /**
+     * The generated schema plus what else live DDL has to carry over: views with min/max
+     * fallback queries, a join view and a table with a row limit delete.
+     */
+    static String generateSchemaWithViews(int tables, int procsPerTable) {
+        StringBuilder sb = new StringBuilder(generateSchema(tables, procsPerTable));
+        for (int t = 0; t < tables; t++) {
+            sb.append("CREATE VIEW t").append(t).append("_v (k, c, s, m) AS SELECT k, COUNT(*), SUM(w), MIN(v) FROM t")
+              .append(t).append(" GROUP BY k;\n");
+        }
+        sb.append("CREATE VIEW joined (k, c, m) AS SELECT a.k, COUNT(*), MAX(b.v) FROM t0 a JOIN lookup b ON a.k = b.k ")
+          .append("GROUP BY a.k;\n");
+        sb.append("CREATE TABLE capped (id BIGINT NOT NULL, ts TIMESTAMP NOT NULL, ")
+          .append("LIMIT PARTITION ROWS 100 EXECUTE (DELETE FROM capped WHERE ts < NOW)); \n");
+        sb.append("CREATE INDEX capped_ts ON capped (ts);\n");
+        return sb.toString();
+    }
+
+    private static InMemoryJarfile compileJar(String ddl) throws IOException {
+        File jar = File.createTempFile("large-schema", ".jar");
+        try {
+            assertTrue(new VoltCompiler(false).compileDDLString(ddl, jar.getPath()));
+            return new InMemoryJarfile(jar);
+        }
+        finally {
+            jar.delete();
+        }
+    }
+
+    private static InMemoryJarfile liveCompile(InMemoryJarfile base, String ddl) throws Exception {
+        Catalog catalog = new Catalog();
+        catalog.execute(CatalogUtil.getSerializedCatalogStringFromJar(base));
+        InMemoryJarfile jar = base.deepCopy();
+        new VoltCompiler(false).compileInMemoryJarfileWithNewDDL(jar, ddl, catalog);
+        return jar;
+    }
+
+    private static String compile(String ddl, boolean inlinePlanWrites) throws IOException {
+        File jar = File.createTempFile("large-schema", ".jar");
+        try {
+            VoltCompiler compiler = new VoltCompiler(false);
+            if (inlinePlanWrites) {
+                // capturing plan detail keeps the plan fragment writes on the compiling thread
+                compiler.enableDetailedCapture();
+            }
+            assertTrue(compiler.compileDDLString(ddl, jar.getPath()));
+            return compiler.getCatalog().serialize();
+        }
+        finally {
+            jar.delete();
+        }
+    }
+
+    public void testPlanWritesAreDeterministic() throws IOException {
+        String ddl = generateSchema(10, 8);
+        String inline = compile(ddl, true);
+        assertTrue(inline.contains("planhash"));
+        assertEquals(inline, compile(ddl, false));
+    }
+
+    /**
+     * Live DDL carries plans over from the previous catalog, what it produces has to
+     * match compiling its resulting schema from scratch.
+     */
+    public void testLiveDDLMatchesFullCompile() throws Exception {
+        InMemoryJarfile base = compileJar(generateSchemaWithViews(6, 4));
+        String[] changes = { "CREATE INDEX t0_w ON t0 (w);",
+                             // the t0 and joined view min/max fallback queries lose their index
+                             "DROP INDEX t0_k;",
+                             "ALTER TABLE lookup ADD COLUMN extra INTEGER;",
+                             "CREATE INDEX capped_id ON capped (id);" };
+        for (String ddl : changes) {
+            long hits = VoltCompiler.m_stmtCacheHits;
+            InMemoryJarfile live = liveCompile(base, ddl);
+            assertTrue(ddl, VoltCompiler.m_stmtCacheHits > hits);
+
+            String canonicalDDL = new String(live.get(VoltCompiler.AUTOGEN_DDL_FILE_NAME), Constants.UTF8ENCODING);
+            assertEquals(ddl, withoutSchemaText(compileJar(canonicalDDL)), withoutSchemaText(live));
+        }
+    }
+
+    // the schema text in the catalog keeps the order the DDL came in
+    private static String withoutSchemaText(InMemoryJarfile jar) {
+        return CatalogUtil.getSerializedCatalogStringFromJar(jar)
+                .replaceAll("(?m)^set /clusters#cluster/databases#database schema .*$", "");
+    }
+}
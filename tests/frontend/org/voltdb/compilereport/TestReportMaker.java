@@ -28,10 +28,13 @@ import java.io.PrintWriter;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.HashMap;
+import java.util.Map;
 import java.util.UUID;
 
 import junit.framework.TestCase;
 
+import org.apache.commons.lang3.StringEscapeUtils;
 import org.voltdb.compiler.VoltCompiler;
 import org.voltdb.utils.CatalogSizing;
 import org.voltdb.utils.InMemoryJarfile;
@@ -361,6 +364,27 @@ public class TestReportMaker extends TestCase {
         assertTrue(report.contains("<p>Read-only by procedures: <a href='#p-INSERT_TABLE_SOURCE1_TABLE_SOURCE2'>INSERT_TABLE_SOURCE1_TABLE_SOURCE2</a></p><p>No indexes defined on table.</p>"));
     }
 
+    public void testFillTemplate() {
+        Map<String, String> values = new HashMap<>();
+        values.put("PROCS", "<p>##SCHEMA##</p>");
+        values.put("SCHEMA", "tables");
+        values.put("EMPTY", "");
+        String template = "<!--##RESOURCES\n##PROCS##\nRESOURCES##--> ##SCHEMA## <!--##PLATFORM2##--> ##EMPTY##|##";
+        // values are not searched for placeholders, unknown ones are left for the live report
+        assertEquals("<!--##RESOURCES\n<p>##SCHEMA##</p>\nRESOURCES##--> tables <!--##PLATFORM2##--> |##",
+                     ReportMaker.fillTemplate(template, values));
+        assertEquals("no placeholders", ReportMaker.fillTemplate("no placeholders", values));
+    }
+
+    public void testEscapeHtml4() {
+        String[] texts = { "", "SELECT * FROM t WHERE a < ? AND b > 'x' & \"c\" <> 1;",
+                           "no escaping needed\n\ttabs", "élève < 5\u00a0\u2022", "\u0001\u007f'" };
+        for (String text : texts) {
+            assertEquals(StringEscapeUtils.escapeHtml4(text), ReportMaker.escapeHtml4(text));
+        }
+        assertNull(ReportMaker.escapeHtml4(null));
+    }
+
     // Under active/active DR, create a DRed table without index will trigger warning
     public void testTableWithIndexNoWarning() throws IOException {
         final String tableName = "TABLE_WITH_INDEX";
@@ -353,6 +353,217 @@ public class TestExportDataSource extends TestCase {
         }
     }
 
+    private static ByteBuffer exportBlock(int rowBytes) {
+        ByteBuffer foo = ByteBuffer.allocateDirect(rowBytes + StreamBlock.HEADER_SIZE);
+        foo.duplicate().put(new byte[rowBytes + StreamBlock.HEADER_SIZE]);
+        return foo;
+    }
+
+    public void testMultipleInFlightBlocks() throws Exception {
+        System.out.println("Running testMultipleInFlightBlocks");
+        VoltDB.replaceVoltDBInstanceForTest(m_mockVoltDB);
+        Table table = m_mockVoltDB.getCatalogContext().database.getTables().get("TableName");
+        ExportDataSource s = new ExportDataSource( Mockito.mock(Runnable.class),
+                "database",
+                table.getTypeName(),
+                m_part,
+                table.getSignature(),
+                0,
+                table.getColumns(),
+                table.getPartitioncolumn(),
+                TEST_DIR.getAbsolutePath());
+        try {
+            final CountDownLatch cdl = new CountDownLatch(1);
+            Runnable cdlWaiter = new Runnable() {
+
+                @Override
+                public void run() {
+                    cdl.countDown();
+                }
+            };
+            s.setOnMastership(cdlWaiter);
+            s.acceptMastership();
+            cdl.await();
+
+            s.pushExportBuffer(0, exportBlock(20), false, false);
+            s.pushExportBuffer(20, exportBlock(20), false, false);
+            s.pushExportBuffer(40, exportBlock(20), false, false);
+            assertEquals(60, s.sizeInBytes());
+
+            //Each poll hands out the next block while the earlier ones are in flight
+            AckingContainer first = (AckingContainer)s.poll().get();
+            AckingContainer second = (AckingContainer)s.poll().get();
+            AckingContainer third = (AckingContainer)s.poll().get();
+            assertEquals(20, first.m_uso);
+            assertEquals(40, second.m_uso);
+            assertEquals(60, third.m_uso);
+
+            ListenableFuture<BBContainer> fut = s.poll();
+            try {
+                fut.get(100, TimeUnit.MILLISECONDS);
+                fail("did not get expected timeout");
+            }
+            catch( TimeoutException ignoreIt) {}
+
+            //Acks ahead of the first block don't release anything
+            third.discard();
+            second.discard();
+            assertEquals(60, s.sizeInBytes());
+
+            //and are applied along with it
+            first.discard();
+            assertEquals(0, s.sizeInBytes());
+
+            //The outstanding poll gets the next block pushed, not one of the acked ones
+            s.pushExportBuffer(60, exportBlock(20), false, false);
+            AckingContainer fourth = (AckingContainer)fut.get();
+            assertEquals(80, fourth.m_uso);
+
+            //End of stream is only seen once the block in flight is acked
+            fut = s.poll();
+            s.pushExportBuffer(80, null, false, true);
+            try {
+                fut.get(100, TimeUnit.MILLISECONDS);
+                fail("did not get expected timeout");
+            }
+            catch( TimeoutException ignoreIt) {}
+            fourth.discard();
+            assertNull(fut.get());
+        } finally {
+            s.close();
+        }
+    }
+
+    public void testForgetInFlightBlocks() throws Exception {
+        System.out.println("Running testForgetInFlightBlocks");
+        VoltDB.replaceVoltDBInstanceForTest(m_mockVoltDB);
+        Table table = m_mockVoltDB.getCatalogContext().database.getTables().get("TableName");
+        ExportDataSource s = new ExportDataSource( Mockito.mock(Runnable.class),
+                "database",
+                table.getTypeName(),
+                m_part,
+                table.getSignature(),
+                0,
+                table.getColumns(),
+                table.getPartitioncolumn(),
+                TEST_DIR.getAbsolutePath());
+        try {
+            final CountDownLatch cdl = new CountDownLatch(1);
+            Runnable cdlWaiter = new Runnable() {
+
+                @Override
+                public void run() {
+                    cdl.countDown();
+                }
+            };
+            s.setOnMastership(cdlWaiter);
+            s.acceptMastership();
+            cdl.await();
+
+            s.pushExportBuffer(0, exportBlock(20), false, false);
+            s.pushExportBuffer(20, exportBlock(20), false, false);
+
+            //A processor polls both blocks and a third time, then is shut down
+            AckingContainer first = (AckingContainer)s.poll().get();
+            AckingContainer second = (AckingContainer)s.poll().get();
+            ListenableFuture<BBContainer> outstanding = s.poll();
+            second.discard();
+            s.forgetInFlightBlocks().get();
+            assertTrue(outstanding.isCancelled());
+
+            //The next processor gets the blocks again from the first one on
+            AckingContainer again = (AckingContainer)s.poll().get();
+            assertEquals(20, again.m_uso);
+
+            //and the late ack of the shut down processor doesn't release it
+            first.discard();
+            assertEquals(40, s.sizeInBytes());
+
+            AckingContainer secondAgain = (AckingContainer)s.poll().get();
+            assertEquals(40, secondAgain.m_uso);
+            again.discard();
+            secondAgain.discard();
+            assertEquals(0, s.sizeInBytes());
+        } finally {
+            s.close();
+        }
+    }
+
+    public void testFailedBlockHoldsBackLaterAcks() throws Exception {
+        System.out.println("Running testFailedBlockHoldsBackLaterAcks");
+        VoltDB.replaceVoltDBInstanceForTest(m_mockVoltDB);
+        Table table = m_mockVoltDB.getCatalogContext().database.getTables().get("TableName");
+        ExportDataSource s = new ExportDataSource( Mockito.mock(Runnable.class),
+                "database",
+                table.getTypeName(),
+                m_part,
+                table.getSignature(),
+                0,
+                table.getColumns(),
+                table.getPartitioncolumn(),
+                TEST_DIR.getAbsolutePath());
+        try {
+            final CountDownLatch cdl = new CountDownLatch(1);
+            Runnable cdlWaiter = new Runnable() {
+
+                @Override
+                public void run() {
+                    cdl.countDown();
+                }
+            };
+            Mailbox mockedMbox = Mockito.mock(Mailbox.class);
+            s.updateAckMailboxes(Pair.<Mailbox,ImmutableList<Long>>of(mockedMbox, ImmutableList.<Long>of(42L)));
+            s.setOnMastership(cdlWaiter);
+            s.acceptMastership();
+            cdl.await();
+
+            s.pushExportBuffer(0, exportBlock(20), false, false);
+            s.pushExportBuffer(20, exportBlock(20), false, false);
+            s.pushExportBuffer(40, exportBlock(20), false, false);
+            s.pushExportBuffer(60, exportBlock(20), false, false);
+
+            //Block N fails after N+1 succeeded, the processor decodes N again
+            AckingContainer failed = (AckingContainer)s.poll().get();
+            AckingContainer succeeded = (AckingContainer)s.poll().get();
+            succeeded.discard();
+            assertEquals(80, s.sizeInBytes());
+            verify(mockedMbox, Mockito.never()).send(eq(42L), any(BinaryPayloadMessage.class));
+
+            //Resending and acking N releases both
+            failed.discard();
+            assertEquals(40, s.sizeInBytes());
+            verify(mockedMbox, times(1)).send(eq(42L), any(BinaryPayloadMessage.class));
+            verify(mockedMbox).send(eq(42L), argThat(ackPayloadIs(m_part, table.getSignature(), 40)));
+
+            //Block N fails after N+1 succeeded and the processor is shut down
+            failed = (AckingContainer)s.poll().get();
+            succeeded = (AckingContainer)s.poll().get();
+            assertEquals(60, failed.m_uso);
+            assertEquals(80, succeeded.m_uso);
+            succeeded.discard();
+            s.forgetInFlightBlocks().get();
+
+            //A late ack of N from that processor doesn't release anything either
+            failed.discard();
+            assertEquals(40, s.sizeInBytes());
+            verify(mockedMbox, times(1)).send(eq(42L), any(BinaryPayloadMessage.class));
+
+            //The next processor resends N and N+1, and only its acks release them
+            AckingContainer resent = (AckingContainer)s.poll().get();
+            assertEquals(60, resent.m_uso);
+            AckingContainer next = (AckingContainer)s.poll().get();
+            assertEquals(80, next.m_uso);
+            next.discard();
+            assertEquals(40, s.sizeInBytes());
+            resent.discard();
+            assertEquals(0, s.sizeInBytes());
+            verify(mockedMbox).send(eq(42L), argThat(ackPayloadIs(m_part, table.getSignature(), 80)));
+            verify(mockedMbox, times(2)).send(eq(42L), any(BinaryPayloadMessage.class));
+        } finally {
+            s.close();
+        }
+    }
+
     public void testReplicatedPoll() throws Exception {
         System.out.println("Running testReplicatedPoll");
         VoltDB.replaceVoltDBInstanceForTest(m_mockVoltDB);
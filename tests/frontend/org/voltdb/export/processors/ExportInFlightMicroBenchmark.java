@@ -0,0 +1,192 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2017 VoltDB Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+ * OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package org.voltdb.export.processors;
+
+import java.io.File;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.mockito.Mockito;
+import org.voltcore.logging.VoltLogger;
+import org.voltcore.utils.CoreUtils;
+import org.voltdb.MockVoltDB;
+import org.voltdb.VoltDB;
+import org.voltdb.VoltDBInterface;
+import org.voltdb.VoltType;
+import org.voltdb.catalog.Table;
+import org.voltdb.export.AdvertisedDataSource;
+import org.voltdb.export.AdvertisedDataSource.ExportFormat;
+import org.voltdb.export.ExportDataSource;
+import org.voltdb.export.StreamBlock;
+import org.voltdb.exportclient.ExportDecoderBase;
+import org.voltdb.microbench.MicroBenchmark;
+import org.voltdb.utils.VoltFile;
+
+import com.google_voltpatches.common.util.concurrent.ListenableFuture;
+import com.google_voltpatches.common.util.concurrent.ListeningExecutorService;
+import com.google_voltpatches.common.util.concurrent.SettableFuture;
+
+/**
+ * Exports blocks of 100 rows through a {@link GuestProcessor.BlockPoller} to a
+ * destination that takes 2ms to complete each block's write, with up to a given
+ * number of blocks in flight. One operation is one block exported and acked.
+ */
+public class ExportInFlightMicroBenchmark extends MicroBenchmark {
+
+    private static final VoltLogger LOG = new VoltLogger("EXPORT");
+    private static final int PARTITION = 2;
+    private static final int ROWS_PER_BLOCK = 100;
+    // each row is a length prefix and a sequence number
+    private static final int ROW_SIZE = 4 + 8;
+    private static final long LATENCY_MICROS = 2000;
+
+    private final int m_window;
+    private File m_dir;
+    private MockVoltDB m_mockVoltDB;
+    // put back when done, so the benchmarks run after this one don't use the shut down mock
+    private VoltDBInterface m_previousVoltDB;
+    private ExportDataSource m_source;
+    private ScheduledExecutorService m_ses;
+    private Decoder m_edb;
+    private GuestProcessor.BlockPoller m_poller;
+    private long m_uso = 0;
+    private long m_pushedBlocks = 0;
+
+    /**
+     * Hands the rows of a block off when it is decoded and writes them after a delay.
+     */
+    private class Decoder extends ExportDecoderBase {
+        final ListeningExecutorService m_es = CoreUtils.getListeningSingleThreadExecutor("Export decoder");
+        final AtomicLong m_writtenBlocks = new AtomicLong();
+
+        Decoder() {
+            super(new AdvertisedDataSource(PARTITION, "signature", "TableName", null, System.currentTimeMillis(), 0,
+                    new ArrayList<String>(), new ArrayList<VoltType>(), new ArrayList<Integer>(),
+                    ExportFormat.FOURDOTFOUR));
+        }
+
+        @Override
+        public boolean processRow(int rowSize, byte[] rowData) {
+            return true;
+        }
+
+        @Override
+        public ListenableFuture<?> onBlockCompletionAsync() {
+            final SettableFuture<Object> done = SettableFuture.create();
+            m_ses.schedule(new Runnable() {
+                @Override
+                public void run() {
+                    m_writtenBlocks.incrementAndGet();
+                    done.set(null);
+                }
+            }, LATENCY_MICROS, TimeUnit.MICROSECONDS);
+            return done;
+        }
+
+        @Override
+        public ListeningExecutorService getExecutor() {
+            return m_es;
+        }
+
+        @Override
+        public void sourceNoLongerAdvertised(AdvertisedDataSource source) {
+            m_es.shutdown();
+        }
+    }
+
+    public ExportInFlightMicroBenchmark(int window) {
+        super("GuestProcessor.exportBlock" + window + "InFlight");
+        m_window = window;
+    }
+
+    @Override
+    public void setUp() throws Exception {
+        m_dir = File.createTempFile("microbench", "export");
+        m_dir.delete();
+        m_dir.mkdir();
+        m_mockVoltDB = new MockVoltDB();
+        m_mockVoltDB.addSite(CoreUtils.getHSIdFromHostAndSite(0, 1), PARTITION);
+        m_mockVoltDB.addTable("TableName", false);
+        m_mockVoltDB.addColumnToTable("TableName", "COL1", VoltType.BIGINT, false, null, VoltType.BIGINT);
+        m_previousVoltDB = VoltDB.instance();
+        VoltDB.replaceVoltDBInstanceForTest(m_mockVoltDB);
+
+        Table table = m_mockVoltDB.getCatalogContext().database.getTables().get("TableName");
+        m_source = new ExportDataSource(Mockito.mock(Runnable.class),
+                "database",
+                table.getTypeName(),
+                PARTITION,
+                table.getSignature(),
+                0,
+                table.getColumns(),
+                table.getPartitioncolumn(),
+                m_dir.getAbsolutePath());
+        m_source.setOnMastership(new Runnable() {
+            @Override
+            public void run() {
+            }
+        });
+        m_source.acceptMastership();
+        m_ses = CoreUtils.getScheduledThreadPoolExecutor("Export completions", 1, CoreUtils.SMALL_STACK_SIZE);
+        m_edb = new Decoder();
+        m_poller = new GuestProcessor.BlockPoller(m_source, m_edb, m_window, LOG);
+        m_poller.poll();
+    }
+
+    @Override
+    public long run(int ops) throws Exception {
+        for (int i = 0; i < ops; i++) {
+            ByteBuffer buf = ByteBuffer.allocateDirect(StreamBlock.HEADER_SIZE + ROWS_PER_BLOCK * ROW_SIZE);
+            ByteBuffer rows = buf.duplicate();
+            rows.position(StreamBlock.HEADER_SIZE);
+            rows.order(ByteOrder.LITTLE_ENDIAN);
+            for (int r = 0; r < ROWS_PER_BLOCK; r++) {
+                rows.putInt(8);
+                rows.putLong(r);
+            }
+            m_source.pushExportBuffer(m_uso, buf, false, false);
+            m_uso += ROWS_PER_BLOCK * ROW_SIZE;
+        }
+        m_pushedBlocks += ops;
+        while (m_edb.m_writtenBlocks.get() < m_pushedBlocks || m_poller.getInFlight() > 0) {
+            Thread.sleep(0, 100000);
+        }
+        return m_edb.m_writtenBlocks.get();
+    }
+
+    @Override
+    public void tearDown() throws Exception {
+        m_poller.shutdown();
+        m_source.close().get();
+        m_edb.sourceNoLongerAdvertised(null);
+        m_ses.shutdownNow();
+        m_mockVoltDB.shutdown(null);
+        VoltDB.replaceVoltDBInstanceForTest(m_previousVoltDB);
+        VoltFile.recursivelyDelete(m_dir);
+    }
+}
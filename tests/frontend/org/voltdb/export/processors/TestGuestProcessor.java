@@ -0,0 +1,350 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2017 VoltDB Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+ * OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package org.voltdb.export.processors;
+
+import java.io.File;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import junit.framework.TestCase;
+
+import org.mockito.Mockito;
+import org.voltcore.logging.VoltLogger;
+import org.voltcore.utils.CoreUtils;
+import org.voltdb.MockVoltDB;
+import org.voltdb.VoltDB;
+import org.voltdb.VoltType;
+import org.voltdb.catalog.Table;
+import org.voltdb.export.AdvertisedDataSource;
+import org.voltdb.export.AdvertisedDataSource.ExportFormat;
+import org.voltdb.export.ExportDataSource;
+import org.voltdb.export.StreamBlock;
+import org.voltdb.exportclient.ExportDecoderBase;
+import org.voltdb.exportclient.NoOpExporter;
+import org.voltdb.utils.VoltFile;
+
+import com.google_voltpatches.common.util.concurrent.ListenableFuture;
+import com.google_voltpatches.common.util.concurrent.ListeningExecutorService;
+import com.google_voltpatches.common.util.concurrent.SettableFuture;
+
+public class TestGuestProcessor extends TestCase {
+
+    static {
+        org.voltdb.EELibraryLoader.loadExecutionEngineLibrary(true);
+    }
+    private final static File TEST_DIR = new File("/tmp/" + System.getProperty("user.name"));
+    private final static VoltLogger LOG = new VoltLogger("EXPORT");
+
+    // each row is a length prefix and a sequence number
+    private final static int ROW_SIZE = 4 + 8;
+
+    MockVoltDB m_mockVoltDB;
+    int m_host = 0;
+    int m_site = 1;
+    int m_part = 2;
+    ExportDataSource m_source;
+    ScheduledExecutorService m_ses;
+
+    @Override
+    public void setUp() throws Exception {
+        m_mockVoltDB = new MockVoltDB();
+        m_mockVoltDB.addSite(CoreUtils.getHSIdFromHostAndSite(m_host, m_site), m_part);
+        m_mockVoltDB.addTable("TableName", false);
+        m_mockVoltDB.addColumnToTable("TableName", "COL1", VoltType.BIGINT, false, null, VoltType.BIGINT);
+        VoltDB.replaceVoltDBInstanceForTest(m_mockVoltDB);
+
+        if (TEST_DIR.exists()) {
+            for (File f : TEST_DIR.listFiles()) {
+                VoltFile.recursivelyDelete(f);
+            }
+            TEST_DIR.delete();
+        }
+        TEST_DIR.mkdir();
+
+        Table table = m_mockVoltDB.getCatalogContext().database.getTables().get("TableName");
+        m_source = new ExportDataSource(Mockito.mock(Runnable.class),
+                "database",
+                table.getTypeName(),
+                m_part,
+                table.getSignature(),
+                0,
+                table.getColumns(),
+                table.getPartitioncolumn(),
+                TEST_DIR.getAbsolutePath());
+        final CountDownLatch cdl = new CountDownLatch(1);
+        m_source.setOnMastership(new Runnable() {
+            @Override
+            public void run() {
+                cdl.countDown();
+            }
+        });
+        m_source.acceptMastership();
+        cdl.await();
+        m_ses = CoreUtils.getScheduledThreadPoolExecutor("Export completions", 1, CoreUtils.SMALL_STACK_SIZE);
+    }
+
+    @Override
+    public void tearDown() throws Exception {
+        m_source.close();
+        m_ses.shutdownNow();
+        m_mockVoltDB.shutdown(null);
+        System.gc();
+        System.runFinalization();
+        Thread.sleep(200);
+    }
+
+    /**
+     * Stands in for a decoder that writes to a remote system: rows of a block are
+     * handed off when it is decoded and written after a delay.
+     */
+    class LatencyDecoder extends ExportDecoderBase {
+        final ListeningExecutorService m_es = CoreUtils.getListeningSingleThreadExecutor("Latency decoder");
+        final long m_minLatencyMicros;
+        final long m_maxLatencyMicros;
+        final Set<Long> m_written = new HashSet<>();
+        final AtomicInteger m_pending = new AtomicInteger();
+        volatile int m_maxPending = 0;
+        // completions to fail with a restart before writing
+        final AtomicInteger m_restarts = new AtomicInteger();
+        // or the first completion of the block starting with this row
+        volatile long m_restartBlock = -1;
+        // the first row of each block decoded, in the order they were decoded
+        final List<Long> m_decoded = new ArrayList<>();
+        List<Long> m_block;
+
+        LatencyDecoder(long minLatencyMicros, long maxLatencyMicros) {
+            super(new AdvertisedDataSource(m_part, "signature", "TableName", null, System.currentTimeMillis(), 0,
+                    new ArrayList<String>(), new ArrayList<VoltType>(), new ArrayList<Integer>(),
+                    ExportFormat.FOURDOTFOUR));
+            m_minLatencyMicros = minLatencyMicros;
+            m_maxLatencyMicros = maxLatencyMicros;
+        }
+
+        @Override
+        public void onBlockStart() {
+            m_block = new ArrayList<>();
+        }
+
+        @Override
+        public boolean processRow(int rowSize, byte[] rowData) {
+            m_block.add(ByteBuffer.wrap(rowData).order(ByteOrder.LITTLE_ENDIAN).getLong());
+            return true;
+        }
+
+        @Override
+        public ListenableFuture<?> onBlockCompletionAsync() {
+            final List<Long> rows = m_block;
+            synchronized (m_decoded) {
+                m_decoded.add(rows.get(0));
+            }
+            final SettableFuture<Object> done = SettableFuture.create();
+            m_maxPending = Math.max(m_maxPending, m_pending.incrementAndGet());
+            final long latency = m_minLatencyMicros == m_maxLatencyMicros ? m_minLatencyMicros :
+                ThreadLocalRandom.current().nextLong(m_minLatencyMicros, m_maxLatencyMicros);
+            m_ses.schedule(new Runnable() {
+                @Override
+                public void run() {
+                    m_pending.decrementAndGet();
+                    if (m_restarts.getAndDecrement() > 0 || rows.get(0) == m_restartBlock) {
+                        m_restartBlock = -1;
+                        done.setException(new RestartBlockException(false));
+                        return;
+                    }
+                    synchronized (m_written) {
+                        m_written.addAll(rows);
+                    }
+                    done.set(null);
+                }
+            }, latency, TimeUnit.MICROSECONDS);
+            return done;
+        }
+
+        @Override
+        public ListeningExecutorService getExecutor() {
+            return m_es;
+        }
+
+        @Override
+        public void sourceNoLongerAdvertised(AdvertisedDataSource source) {
+            m_es.shutdown();
+        }
+
+        int written() {
+            synchronized (m_written) {
+                return m_written.size();
+            }
+        }
+    }
+
+    private void pushBlocks(int blocks, int rowsPerBlock) throws Exception {
+        long seq = 0;
+        for (int b = 0; b < blocks; b++) {
+            ByteBuffer buf = ByteBuffer.allocateDirect(StreamBlock.HEADER_SIZE + rowsPerBlock * ROW_SIZE);
+            ByteBuffer rows = buf.duplicate();
+            rows.position(StreamBlock.HEADER_SIZE);
+            rows.order(ByteOrder.LITTLE_ENDIAN);
+            for (int r = 0; r < rowsPerBlock; r++) {
+                rows.putInt(8);
+                rows.putLong(seq++);
+            }
+            m_source.pushExportBuffer((long) b * rowsPerBlock * ROW_SIZE, buf, false, false);
+        }
+    }
+
+    private void awaitAcked(GuestProcessor.BlockPoller poller, LatencyDecoder edb, int rows) throws Exception {
+        final long deadline = System.currentTimeMillis() + TimeUnit.MINUTES.toMillis(1);
+        while (edb.written() < rows || poller.getInFlight() > 0) {
+            assertTrue("timed out with " + edb.written() + " of " + rows + " rows written",
+                    System.currentTimeMillis() < deadline);
+            Thread.sleep(1);
+        }
+        edb.sourceNoLongerAdvertised(null);
+    }
+
+    public void testOutOfOrderCompletion() throws Exception {
+        final int blocks = 50;
+        final int rowsPerBlock = 10;
+        pushBlocks(blocks, rowsPerBlock);
+
+        LatencyDecoder edb = new LatencyDecoder(0, 5000);
+        GuestProcessor.BlockPoller poller = new GuestProcessor.BlockPoller(m_source, edb, 4, LOG);
+        poller.poll();
+        awaitAcked(poller, edb, blocks * rowsPerBlock);
+
+        // the window was used and never exceeded
+        assertTrue(edb.m_maxPending > 1);
+        assertTrue(edb.m_maxPending <= 4);
+        // every block was acked, in whatever order the writes completed
+        assertEquals(0, m_source.sizeInBytes());
+    }
+
+    public void testRestartAsyncCompletion() throws Exception {
+        final int blocks = 10;
+        final int rowsPerBlock = 5;
+        pushBlocks(blocks, rowsPerBlock);
+
+        LatencyDecoder edb = new LatencyDecoder(100, 1000);
+        edb.m_restarts.set(3);
+        GuestProcessor.BlockPoller poller = new GuestProcessor.BlockPoller(m_source, edb, 3, LOG);
+        poller.poll();
+        awaitAcked(poller, edb, blocks * rowsPerBlock);
+
+        assertEquals(0, m_source.sizeInBytes());
+    }
+
+    public void testMaxInFlightBlocksProperty() throws Exception {
+        GuestProcessor processor = new GuestProcessor();
+        Properties props = new Properties();
+        props.setProperty(GuestProcessor.EXPORT_TO_TYPE, NoOpExporter.class.getName());
+        props.setProperty(GuestProcessor.MAX_INFLIGHT_BLOCKS_PN, "8");
+        processor.checkProcessorConfig(props);
+
+        props.setProperty(GuestProcessor.MAX_INFLIGHT_BLOCKS_PN, "0");
+        try {
+            processor.checkProcessorConfig(props);
+            fail();
+        } catch (IllegalArgumentException expected) {
+        }
+        assertEquals(1, new NoOpExporter().getMaxInFlightBlocks());
+    }
+
+    /**
+     * A restarted block is sent again along with every block sent after it, in the
+     * order they were polled, before any new block is polled.
+     */
+    public void testRestartResendsInOrder() throws Exception {
+        final int blocks = 12;
+        final int rowsPerBlock = 5;
+        pushBlocks(blocks, rowsPerBlock);
+
+        // every block is in flight when the restarted one completes
+        LatencyDecoder edb = new LatencyDecoder(20000, 20000);
+        edb.m_restartBlock = 2 * rowsPerBlock;
+        GuestProcessor.BlockPoller poller = new GuestProcessor.BlockPoller(m_source, edb, 4, LOG);
+        poller.poll();
+        awaitAcked(poller, edb, blocks * rowsPerBlock);
+        assertEquals(0, m_source.sizeInBytes());
+
+        // blocks went out in order up to at least block 3, then again in order from
+        // block 2 on, no block polled after the restart went out ahead of them
+        List<Long> decoded = edb.m_decoded;
+        int resent = -1;
+        for (int i = 1; i < decoded.size(); i++) {
+            if (decoded.get(i) < decoded.get(i - 1)) {
+                assertEquals(decoded.toString(), -1, resent);
+                resent = i;
+            } else {
+                assertEquals(decoded.toString(), decoded.get(i - 1) + rowsPerBlock, decoded.get(i).longValue());
+            }
+        }
+        assertEquals(decoded.toString(), 2 * rowsPerBlock, decoded.get(resent).longValue());
+        assertTrue(decoded.toString(), decoded.get(resent - 1) >= 3 * rowsPerBlock);
+        assertEquals((blocks - 1) * rowsPerBlock, decoded.get(decoded.size() - 1).longValue());
+    }
+
+    /**
+     * Blocks a processor that is shut down didn't get acked are handed to the next
+     * one from the first of them on, and the late acks of the old processor are ignored.
+     */
+    public void testShutdownForgetsInFlightBlocks() throws Exception {
+        final int blocks = 6;
+        final int rowsPerBlock = 5;
+        pushBlocks(blocks, rowsPerBlock);
+
+        LatencyDecoder stuck = new LatencyDecoder(500000, 500000);
+        GuestProcessor.BlockPoller old = new GuestProcessor.BlockPoller(m_source, stuck, 3, LOG);
+        old.poll();
+        final long deadline = System.currentTimeMillis() + TimeUnit.MINUTES.toMillis(1);
+        while (old.getInFlight() < 3) {
+            assertTrue(System.currentTimeMillis() < deadline);
+            Thread.sleep(1);
+        }
+        old.shutdown();
+
+        LatencyDecoder edb = new LatencyDecoder(0, 1000);
+        GuestProcessor.BlockPoller poller = new GuestProcessor.BlockPoller(m_source, edb, 3, LOG);
+        poller.poll();
+        awaitAcked(poller, edb, blocks * rowsPerBlock);
+        assertEquals(0, edb.m_decoded.get(0).longValue());
+        assertEquals(0, m_source.sizeInBytes());
+
+        // the old completions discard their blocks without acking anything
+        while (old.getInFlight() > 0) {
+            assertTrue(System.currentTimeMillis() < deadline);
+            Thread.sleep(1);
+        }
+        stuck.sourceNoLongerAdvertised(null);
+        assertEquals(0, m_source.sizeInBytes());
+    }
+}
@@ -0,0 +1,135 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2017 VoltDB Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+ * OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package org.voltdb.exportclient;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.OutputStreamWriter;
+import java.math.BigDecimal;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import org.voltdb.VoltType;
+import org.voltdb.exportclient.decode.CSVWriterDecoder;
+import org.voltdb.microbench.MicroBenchmark;
+import org.voltdb.types.TimestampType;
+
+import au.com.bytecode.opencsv_voltpatches.CSVWriter;
+
+/**
+ * Writes blocks of rows of typical export columns to a file, either as CSV the way
+ * the file export client does or with a {@link ColumnarFileWriter}, flushing after
+ * each block. One operation is one block of 5000 rows written and flushed, the
+ * size of the file per row is reported alongside.
+ */
+public class ColumnarFileMicroBenchmark extends MicroBenchmark {
+
+    static final List<String> NAMES = Arrays.asList("id", "ts", "customer", "status", "amount", "payload");
+    static final List<VoltType> TYPES = Arrays.asList(VoltType.BIGINT, VoltType.TIMESTAMP, VoltType.INTEGER,
+            VoltType.STRING, VoltType.DECIMAL, VoltType.VARBINARY);
+    private static final String[] STATUSES = { "NEW", "PAID", "SHIPPED", "CANCELLED", "RETURNED" };
+    private static final int BLOCK_ROWS = 5000;
+
+    private final boolean m_columnar;
+    private Object[][] m_rows;
+    private File m_file;
+    private CSVWriterDecoder m_csvDecoder;
+    private long m_bytes;
+    private long m_rowCount;
+
+    public ColumnarFileMicroBenchmark(boolean columnar) {
+        super((columnar ? "ColumnarFileWriter" : "CSVWriter") + ".write" + BLOCK_ROWS + "Rows");
+        m_columnar = columnar;
+    }
+
+    /**
+     * Orders with a few repeated statuses and increasing ids and timestamps
+     */
+    static Object[][] orders(int count) {
+        Random r = new Random(0);
+        Object[][] rows = new Object[count][];
+        for (int i = 0; i < count; i++) {
+            byte[] payload = new byte[16];
+            r.nextBytes(payload);
+            rows[i] = new Object[] { 1000000L + i, new TimestampType(1500000000000000L + i * 250L + r.nextInt(100)),
+                    r.nextInt(50000), STATUSES[r.nextInt(STATUSES.length)],
+                    BigDecimal.valueOf(r.nextInt(1000000), 2).setScale(12), payload };
+        }
+        return rows;
+    }
+
+    @Override
+    public void setUp() throws Exception {
+        m_rows = orders(BLOCK_ROWS);
+        m_file = File.createTempFile("microbench", m_columnar ? ".vcol" : ".csv");
+        CSVWriterDecoder.Builder builder = new CSVWriterDecoder.Builder();
+        builder.columnNames(NAMES).columnTypes(TYPES).skipInternalFields(false);
+        m_csvDecoder = builder.build();
+    }
+
+    @Override
+    public long run(int ops) throws Exception {
+        if (m_columnar) {
+            ColumnarFileWriter columnar = new ColumnarFileWriter(m_file, NAMES, TYPES);
+            for (int op = 0; op < ops; op++) {
+                for (Object[] row : m_rows) {
+                    columnar.writeRow(row, 0);
+                }
+                columnar.flush();
+            }
+            columnar.close();
+        } else {
+            CSVWriter csv = new CSVWriter(new BufferedWriter(
+                    new OutputStreamWriter(new FileOutputStream(m_file, false), "UTF-8"), 4096 * 4));
+            for (int op = 0; op < ops; op++) {
+                for (Object[] row : m_rows) {
+                    m_csvDecoder.decode(csv, row);
+                }
+                csv.flush();
+            }
+            csv.close();
+        }
+        m_bytes += m_file.length();
+        m_rowCount += (long) ops * BLOCK_ROWS;
+        return m_file.length();
+    }
+
+    @Override
+    public void beginMeasurement() {
+        m_bytes = 0;
+        m_rowCount = 0;
+    }
+
+    @Override
+    public void endMeasurement() {
+        reportMetric("bytesPerRow", m_rowCount == 0 ? 0 : (double) m_bytes / m_rowCount, "B");
+    }
+
+    @Override
+    public void tearDown() {
+        m_file.delete();
+    }
+}
@@ -0,0 +1,138 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2017 VoltDB Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+ * OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package org.voltdb.exportclient;
+
+import java.io.File;
+import java.math.BigDecimal;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.Callable;
+
+import org.voltcore.utils.CoreUtils;
+import org.voltdb.microbench.MicroBenchmark;
+import org.voltdb.utils.VoltFile;
+
+import com.google_voltpatches.common.util.concurrent.Futures;
+import com.google_voltpatches.common.util.concurrent.ListenableFuture;
+import com.google_voltpatches.common.util.concurrent.ListeningExecutorService;
+
+/**
+ * Exports blocks of 500 rows of many tables at once to CSV files in a local directory
+ * with {@link ExportToFileClient}, optionally gzipped, each table waiting for its
+ * blocks to be written or keeping several in flight. One operation is one block
+ * written, the operations are spread over the tables.
+ */
+public class FileExportMicroBenchmark extends MicroBenchmark {
+
+    private static final int TABLES = 16;
+    private static final int ROWS_PER_BLOCK = 500;
+
+    private final String m_compression;
+    private final int m_inFlight;
+    private File m_dir;
+    private ExportToFileClient m_client;
+    private final List<ExportToFileClient.ExportToFileDecoder> m_decoders = new ArrayList<>();
+    private ListeningExecutorService m_es;
+    private byte[] m_rowBytes;
+
+    public FileExportMicroBenchmark(boolean gzip, int inFlight) {
+        super("ExportToFileClient.export" + ROWS_PER_BLOCK + "Rows" + (gzip ? "Gzip" : "") + inFlight + "InFlight");
+        m_compression = gzip ? "gzip" : "none";
+        m_inFlight = inFlight;
+    }
+
+    @Override
+    public void setUp() throws Exception {
+        long l = System.currentTimeMillis();
+        ExportClientTestBase.vtable.clearRowData();
+        ExportClientTestBase.vtable.addRow(l, l, l, 0, l, l, (byte) 1, (short) 2, 3, 4, 5.5, 6,
+                "a string of some length", new BigDecimal(88),
+                ExportClientTestBase.GEOG_POINT, ExportClientTestBase.GEOG);
+        ExportClientTestBase.vtable.resetRowPosition();
+        ExportClientTestBase.vtable.advanceRow();
+        m_rowBytes = ExportEncoder.encodeRow(ExportClientTestBase.vtable);
+
+        m_dir = File.createTempFile("microbench", "export");
+        m_dir.delete();
+        m_dir.mkdir();
+        m_client = new ExportToFileClient();
+        Properties props = new Properties();
+        props.put("nonce", "microbench");
+        props.put("type", "csv");
+        props.put("outdir", m_dir.getPath());
+        props.put("compression", m_compression);
+        m_client.configure(props);
+        for (int t = 0; t < TABLES; t++) {
+            m_decoders.add(m_client.constructExportDecoder(
+                    ExportClientTestBase.constructTestSource(false, 0, "table" + t)));
+        }
+        m_es = CoreUtils.getListeningExecutorService("File export microbenchmark", TABLES);
+    }
+
+    @Override
+    public long run(final int ops) throws Exception {
+        List<ListenableFuture<Long>> tables = new ArrayList<>();
+        for (int t = 0; t < TABLES; t++) {
+            final ExportToFileClient.ExportToFileDecoder decoder = m_decoders.get(t);
+            final int blocks = ops / TABLES + (t < ops % TABLES ? 1 : 0);
+            tables.add(m_es.submit(new Callable<Long>() {
+                @Override
+                public Long call() throws Exception {
+                    ArrayDeque<ListenableFuture<?>> written = new ArrayDeque<>();
+                    for (int b = 0; b < blocks; b++) {
+                        decoder.onBlockStart();
+                        for (int i = 0; i < ROWS_PER_BLOCK; i++) {
+                            decoder.processRow(m_rowBytes.length, m_rowBytes);
+                        }
+                        written.add(decoder.onBlockCompletionAsync());
+                        if (written.size() >= m_inFlight) {
+                            written.poll().get();
+                        }
+                    }
+                    while (!written.isEmpty()) {
+                        written.poll().get();
+                    }
+                    return (long) blocks;
+                }
+            }));
+        }
+        long sink = 0;
+        for (long blocks : Futures.allAsList(tables).get()) {
+            sink += blocks;
+        }
+        return sink;
+    }
+
+    @Override
+    public void tearDown() throws Exception {
+        m_es.shutdown();
+        m_client.shutdown();
+        for (ExportToFileClient.ExportToFileDecoder decoder : m_decoders) {
+            decoder.sourceNoLongerAdvertised(null);
+        }
+        VoltFile.recursivelyDelete(m_dir);
+    }
+}
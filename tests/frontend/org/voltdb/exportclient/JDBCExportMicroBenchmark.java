@@ -0,0 +1,99 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2017 VoltDB Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+ * OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package org.voltdb.exportclient;
+
+import java.sql.Connection;
+import java.sql.Statement;
+import java.util.ArrayDeque;
+
+import org.voltdb.export.AdvertisedDataSource;
+import org.voltdb.microbench.MicroBenchmark;
+
+import com.google_voltpatches.common.util.concurrent.ListenableFuture;
+
+/**
+ * Exports blocks of 1000 rows with {@link JDBCExportClient} to an in memory HSQL
+ * database, inserting one or many rows per statement over one or several
+ * connections. One operation is one block inserted and committed.
+ */
+public class JDBCExportMicroBenchmark extends MicroBenchmark {
+
+    private static final int ROWS_PER_BLOCK = 1000;
+
+    private final int m_rowsPerInsert;
+    private final int m_connections;
+    private final String m_table;
+    private byte[][] m_rows;
+    private Connection m_conn;
+    private JDBCExportClient m_client;
+    private ExportDecoderBase m_decoder;
+
+    public JDBCExportMicroBenchmark(int rowsPerInsert, int connections) {
+        super("JDBCExportClient.export" + ROWS_PER_BLOCK + "Rows" + rowsPerInsert + "PerInsert" + connections + "Connections");
+        m_rowsPerInsert = rowsPerInsert;
+        m_connections = connections;
+        m_table = "MICROBENCH_" + rowsPerInsert + "_" + connections;
+    }
+
+    @Override
+    public void setUp() throws Exception {
+        m_rows = new byte[ROWS_PER_BLOCK][];
+        for (int i = 0; i < ROWS_PER_BLOCK; i++) {
+            m_rows[i] = TestJDBCExportClient.encodeTestRow(i);
+        }
+        m_conn = TestJDBCExportClient.connectToHsql();
+        AdvertisedDataSource source = TestJDBCExportClient.createHsqlTable(m_conn, m_table);
+        m_client = TestJDBCExportClient.constructHsqlClient(m_rowsPerInsert, m_connections);
+        m_decoder = m_client.constructExportDecoder(source);
+    }
+
+    @Override
+    public long run(int ops) throws Exception {
+        ArrayDeque<ListenableFuture<?>> committed = new ArrayDeque<>();
+        for (int op = 0; op < ops; op++) {
+            m_decoder.onBlockStart();
+            for (byte[] row : m_rows) {
+                m_decoder.processRow(row.length, row);
+            }
+            committed.add(m_decoder.onBlockCompletionAsync());
+            if (committed.size() >= m_client.getMaxInFlightBlocks()) {
+                committed.poll().get();
+            }
+        }
+        while (!committed.isEmpty()) {
+            committed.poll().get();
+        }
+        return ops;
+    }
+
+    @Override
+    public void tearDown() throws Exception {
+        m_decoder.sourceNoLongerAdvertised(null);
+        m_client.shutdown();
+        Statement stmt = m_conn.createStatement();
+        stmt.execute("DROP TABLE " + m_table);
+        stmt.close();
+        m_conn.close();
+    }
+}
@@ -0,0 +1,179 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2017 VoltDB Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+ * OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package org.voltdb.exportclient;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.voltcore.utils.CoreUtils;
+
+import com.google_voltpatches.common.util.concurrent.ListenableFuture;
+import com.google_voltpatches.common.util.concurrent.ListeningExecutorService;
+
+public class TestAsyncFileOutputStream extends ExportClientTestBase {
+
+    private ListeningExecutorService m_pool;
+
+    @Before
+    public void setUp() {
+        m_pool = CoreUtils.getListeningExecutorService("Test file writer", 2);
+    }
+
+    @After
+    public void tearDown() throws InterruptedException {
+        m_pool.shutdownNow();
+        m_pool.awaitTermination(1, TimeUnit.MINUTES);
+    }
+
+    @Test
+    public void testWritesInOrder() throws Exception {
+        Random r = new Random(0);
+        List<ByteArrayOutputStream> targets = new ArrayList<>();
+        List<ByteArrayOutputStream> expected = new ArrayList<>();
+        List<AsyncFileOutputStream> streams = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            targets.add(new ByteArrayOutputStream());
+            expected.add(new ByteArrayOutputStream());
+            streams.add(new AsyncFileOutputStream(targets.get(i), m_pool, 2));
+        }
+        for (int i = 0; i < 2000; i++) {
+            int s = r.nextInt(streams.size());
+            byte[] bytes = new byte[r.nextInt(AsyncFileOutputStream.CHUNK_SIZE / 4)];
+            r.nextBytes(bytes);
+            if (bytes.length == 1) {
+                streams.get(s).write(bytes[0]);
+            } else {
+                streams.get(s).write(bytes);
+            }
+            expected.get(s).write(bytes);
+            if (i % 100 == 0) {
+                streams.get(s).sync().get();
+                assertArrayEquals(expected.get(s).toByteArray(), targets.get(s).toByteArray());
+            }
+        }
+        for (int i = 0; i < streams.size(); i++) {
+            streams.get(i).close();
+            assertArrayEquals(expected.get(i).toByteArray(), targets.get(i).toByteArray());
+        }
+    }
+
+    @Test
+    public void testWritesBlockWhenQueueIsFull() throws Exception {
+        final CountDownLatch writable = new CountDownLatch(1);
+        final ByteArrayOutputStream target = new ByteArrayOutputStream() {
+            @Override
+            public synchronized void write(byte[] b, int off, int len) {
+                try {
+                    writable.await();
+                } catch (InterruptedException e) {
+                    throw new RuntimeException(e);
+                }
+                super.write(b, off, len);
+            }
+        };
+        final AsyncFileOutputStream stream = new AsyncFileOutputStream(target, m_pool, 2);
+        final AtomicInteger chunksWritten = new AtomicInteger();
+        Thread writer = new Thread() {
+            @Override
+            public void run() {
+                try {
+                    for (int i = 0; i < 10; i++) {
+                        stream.write(new byte[AsyncFileOutputStream.CHUNK_SIZE]);
+                        chunksWritten.incrementAndGet();
+                    }
+                    stream.close();
+                } catch (IOException e) {
+                    fail(e.getMessage());
+                }
+            }
+        };
+        writer.start();
+        // two chunks queued, the first of them being written, and one being filled
+        Thread.sleep(500);
+        assertTrue(writer.isAlive());
+        assertEquals(3, chunksWritten.get());
+
+        writable.countDown();
+        writer.join();
+        assertEquals(10 * AsyncFileOutputStream.CHUNK_SIZE, target.size());
+    }
+
+    @Test
+    public void testErrorFailsStreamForGood() throws Exception {
+        final AtomicInteger failures = new AtomicInteger(1);
+        ByteArrayOutputStream target = new ByteArrayOutputStream() {
+            @Override
+            public void flush() throws IOException {
+                if (failures.getAndDecrement() > 0) {
+                    throw new IOException("Not Enough Space.");
+                }
+            }
+        };
+        AsyncFileOutputStream stream = new AsyncFileOutputStream(target, m_pool, 2);
+        stream.write(new byte[] { 1, 2, 3 });
+        assertSyncFails(stream.sync());
+        assertTrue(stream.hasFailed());
+
+        // nothing more reaches the underlying stream, even though it would take it now
+        stream.write(new byte[] { 4 });
+        assertSyncFails(stream.sync());
+        try {
+            stream.write(new byte[AsyncFileOutputStream.CHUNK_SIZE + 1]);
+            fail("Expected the stream to have failed");
+        } catch (IOException expected) {
+            assertEquals("Not Enough Space.", expected.getCause().getMessage());
+        }
+        try {
+            stream.close();
+            fail("Expected the stream to have failed");
+        } catch (IOException expected) {
+            assertEquals("Not Enough Space.", expected.getMessage());
+        }
+        assertEquals(3, target.size());
+    }
+
+    private static void assertSyncFails(ListenableFuture<?> synced) throws InterruptedException {
+        try {
+            synced.get();
+            fail("Expected the flush failure");
+        } catch (ExecutionException e) {
+            assertEquals("Not Enough Space.", e.getCause().getMessage());
+        }
+    }
+}
@@ -0,0 +1,233 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2017 VoltDB Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+ * OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package org.voltdb.exportclient;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.voltdb.VoltType;
+import org.voltdb.exportclient.decode.CSVWriterDecoder;
+import org.voltdb.types.GeographyPointValue;
+import org.voltdb.types.GeographyValue;
+import org.voltdb.types.TimestampType;
+
+import au.com.bytecode.opencsv_voltpatches.CSVWriter;
+
+public class TestColumnarFileWriter {
+
+    static final List<String> NAMES = Arrays.asList("tinyint", "smallint", "integer", "bigint", "float",
+            "timestamp", "string", "decimal", "varbinary", "geog_point", "geog");
+    static final List<VoltType> TYPES = Arrays.asList(VoltType.TINYINT, VoltType.SMALLINT, VoltType.INTEGER,
+            VoltType.BIGINT, VoltType.FLOAT, VoltType.TIMESTAMP, VoltType.STRING, VoltType.DECIMAL,
+            VoltType.VARBINARY, VoltType.GEOGRAPHY_POINT, VoltType.GEOGRAPHY);
+
+    private File m_file;
+
+    @Before
+    public void setUp() throws IOException {
+        m_file = File.createTempFile("columnar", ".vcol");
+    }
+
+    @After
+    public void tearDown() {
+        m_file.delete();
+    }
+
+    private static Object[] row(int i) {
+        if (i % 7 == 3) {
+            return new Object[NAMES.size()];
+        }
+        return new Object[] {
+                (byte) (i % 128 - 64), (short) (i * 3 - 1000), i * 1000 - 50000, Long.MAX_VALUE - i * (long) i,
+                i / 3.0, new TimestampType(1500000000000000L + i * 1000L), "name" + (i % 5),
+                new BigDecimal("-12345678901234567890.123456789012").add(BigDecimal.valueOf(i)),
+                new byte[] { (byte) i, 2, 3 },
+                GeographyPointValue.fromWKT("point(-122 " + (i % 80) + ")"),
+                GeographyValue.fromWKT("polygon((0 0, 1 1, 0 1, 0 0))") };
+    }
+
+    private static void assertRowEquals(Object[] expected, Object[] actual) {
+        assertEquals(expected.length, actual.length);
+        for (int i = 0; i < expected.length; i++) {
+            if (expected[i] instanceof byte[]) {
+                assertArrayEquals((byte[]) expected[i], (byte[]) actual[i]);
+            } else if (expected[i] instanceof GeographyValue) {
+                assertEquals(((GeographyValue) expected[i]).toWKT(), ((GeographyValue) actual[i]).toWKT());
+            } else {
+                assertEquals(NAMES.get(i), expected[i], actual[i]);
+            }
+        }
+    }
+
+    @Test
+    public void testRoundTrip() throws Exception {
+        // row groups of 100 rows, the last one partial
+        try (ColumnarFileWriter writer = new ColumnarFileWriter(m_file, NAMES, TYPES, 100)) {
+            for (int i = 0; i < 250; i++) {
+                writer.writeRow(row(i), 0);
+            }
+            assertEquals(250, writer.getRowCount());
+        }
+
+        try (ColumnarFileReader reader = new ColumnarFileReader(m_file)) {
+            assertEquals(NAMES, reader.getColumnNames());
+            assertEquals(TYPES, reader.getColumnTypes());
+            int i = 0;
+            Object[][] rows;
+            List<Integer> groupSizes = new ArrayList<>();
+            while ((rows = reader.readRowGroup()) != null) {
+                groupSizes.add(rows.length);
+                for (Object[] r : rows) {
+                    assertRowEquals(row(i++), r);
+                }
+            }
+            assertEquals(Arrays.asList(100, 100, 50), groupSizes);
+            assertTrue(reader.isComplete());
+        }
+    }
+
+    @Test
+    public void testInternalFieldsSkipped() throws Exception {
+        try (ColumnarFileWriter writer = new ColumnarFileWriter(m_file, NAMES.subList(3, 4), TYPES.subList(3, 4))) {
+            writer.writeRow(new Object[] { 1L, 2L, 3L, 4L }, 3);
+        }
+        try (ColumnarFileReader reader = new ColumnarFileReader(m_file)) {
+            Object[][] rows = reader.readRowGroup();
+            assertEquals(1, rows.length);
+            assertEquals(4L, rows[0][0]);
+        }
+    }
+
+    @Test
+    public void testStringEncodings() throws Exception {
+        List<String> names = Arrays.asList("repeating", "unique");
+        List<VoltType> types = Arrays.asList(VoltType.STRING, VoltType.STRING);
+        try (ColumnarFileWriter writer = new ColumnarFileWriter(m_file, names, types)) {
+            for (int i = 0; i < 1000; i++) {
+                writer.writeRow(new Object[] { i % 10 == 0 ? null : "état" + (i % 4), "unique" + i }, 0);
+            }
+        }
+        try (ColumnarFileReader reader = new ColumnarFileReader(m_file)) {
+            Object[][] rows = reader.readRowGroup();
+            assertEquals(1000, rows.length);
+            for (int i = 0; i < 1000; i++) {
+                assertEquals(i % 10 == 0 ? null : "état" + (i % 4), rows[i][0]);
+                assertEquals("unique" + i, rows[i][1]);
+            }
+        }
+    }
+
+    @Test
+    public void testIncompleteFile() throws Exception {
+        ColumnarFileWriter writer = new ColumnarFileWriter(m_file, NAMES, TYPES);
+        try {
+            writer.writeRow(row(0), 0);
+            writer.flush();
+            writer.writeRow(row(1), 0);
+            // unflushed rows aren't in the file yet
+            try (ColumnarFileReader reader = new ColumnarFileReader(m_file)) {
+                assertEquals(1, reader.readRowGroup().length);
+                assertNull(reader.readRowGroup());
+                assertFalse(reader.isComplete());
+            }
+        } finally {
+            writer.close();
+        }
+    }
+
+    @Test
+    public void testReset() throws Exception {
+        try (ColumnarFileWriter writer = new ColumnarFileWriter(m_file, NAMES, TYPES)) {
+            writer.writeRow(row(0), 0);
+            writer.flush();
+            long size = writer.getFileSize();
+            assertEquals(size, m_file.length());
+
+            // a flush that failed part way through left some of a row group behind
+            writer.writeRow(row(2), 0);
+            try (FileOutputStream partial = new FileOutputStream(m_file, true)) {
+                partial.write(new byte[] { 0, 0, 0, 1, 0, 0 });
+            }
+            writer.reset();
+            assertEquals(size, m_file.length());
+            writer.writeRow(row(1), 0);
+        }
+        try (ColumnarFileReader reader = new ColumnarFileReader(m_file)) {
+            Object[][] rows = reader.readRowGroup();
+            assertEquals(1, rows.length);
+            assertRowEquals(row(0), rows[0]);
+            rows = reader.readRowGroup();
+            assertEquals(1, rows.length);
+            assertRowEquals(row(1), rows[0]);
+            assertNull(reader.readRowGroup());
+            assertTrue(reader.isComplete());
+        }
+    }
+
+    @Test
+    public void testSmallerThanCSV() throws Exception {
+        final List<String> names = ColumnarFileMicroBenchmark.NAMES;
+        final List<VoltType> types = ColumnarFileMicroBenchmark.TYPES;
+        Object[][] rows = ColumnarFileMicroBenchmark.orders(20000);
+
+        CSVWriterDecoder.Builder builder = new CSVWriterDecoder.Builder();
+        builder.columnNames(names).columnTypes(types).skipInternalFields(false);
+        CSVWriterDecoder csvDecoder = builder.build();
+        File csvFile = File.createTempFile("columnar", ".csv");
+        try {
+            CSVWriter csv = new CSVWriter(new BufferedWriter(
+                    new OutputStreamWriter(new FileOutputStream(csvFile, false), "UTF-8"), 4096 * 4));
+            for (Object[] row : rows) {
+                csvDecoder.decode(csv, row);
+            }
+            csv.close();
+
+            ColumnarFileWriter columnar = new ColumnarFileWriter(m_file, names, types);
+            for (Object[] row : rows) {
+                columnar.writeRow(row, 0);
+            }
+            columnar.close();
+
+            assertTrue(m_file.length() < csvFile.length());
+        } finally {
+            csvFile.delete();
+        }
+    }
+}
@@ -26,9 +26,11 @@ package org.voltdb.exportclient;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
+import java.io.ByteArrayInputStream;
 import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.FileOutputStream;
@@ -37,6 +39,7 @@ import java.math.BigDecimal;
 import java.nio.file.Files;
 import java.util.Properties;
 import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPInputStream;
 
 import org.junit.Before;
 import org.junit.Test;
@@ -53,6 +56,7 @@ import org.voltdb.utils.VoltFile;
 import au.com.bytecode.opencsv_voltpatches.CSVWriter;
 
 import com.google_voltpatches.common.base.Charsets;
+import com.google_voltpatches.common.io.ByteStreams;
 
 @RunWith(PowerMockRunner.class)
 @PrepareForTest(ExportToFileClient.class)
@@ -97,6 +101,39 @@ public class TestExportToFileClient extends ExportClientTestBase {
         props.put("type", "csv");
         eclient.configure(props);
 
+        // Columnar
+        eclient = new ExportToFileClient();
+        props.put("type", "columnar");
+        eclient.configure(props);
+        props.put("type", "csv");
+
+        // Compression
+        eclient = new ExportToFileClient();
+        props.put("compression", "gzip");
+        eclient.configure(props);
+        props.put("compression", "zip");
+        try {
+            eclient.configure(props);
+            fail("Invalid compression");
+        } catch (IllegalArgumentException ex) {}
+        props.put("compression", "gzip");
+        props.put("type", "columnar");
+        try {
+            eclient.configure(props);
+            fail("Columnar files are already compressed");
+        } catch (IllegalArgumentException ex) {}
+        props.put("type", "csv");
+        props.remove("compression");
+
+        // Invalid file size limit
+        eclient = new ExportToFileClient();
+        props.put("maxfilesize", "-1");
+        try {
+            eclient.configure(props);
+            fail("Invalid maxfilesize");
+        } catch (IllegalArgumentException ex) {}
+        props.remove("maxfilesize");
+
         // Invalid period
         props.put("output", "/tmp/");
         props.put("period", "0");
@@ -267,6 +304,116 @@ public class TestExportToFileClient extends ExportClientTestBase {
         assertNotNull("Timed out waiting for file to roll over", rolledOver);
     }
 
+    @Test
+    public void testRollDoesNotWaitForBlocks() throws Exception
+    {
+        ExportToFileClient client = new ExportToFileClient();
+        Properties props = new Properties();
+        props.put("nonce", Long.toString(System.currentTimeMillis()));
+        props.put("type", "csv");
+        props.put("outdir", m_dir);
+        props.put("period", "100"); // 100 second rolling period, rolled by the test
+        props.put("compression", "gzip");
+        client.configure(props);
+
+        final ExportToFileClient.ExportToFileDecoder slow = client.constructExportDecoder(constructTestSource(false, 0, "slow"));
+        final ExportToFileClient.ExportToFileDecoder fast = client.constructExportDecoder(constructTestSource(false, 0, "fast"));
+
+        long l = System.currentTimeMillis();
+        vtable.addRow(l, l, l, 0, l, l, (byte) 1,
+                /* partitioning column */ (short) 2,
+                3, 4, 5.5, 6, "xx", new BigDecimal(88),
+                GEOG_POINT, GEOG);
+        vtable.advanceRow();
+        byte[] rowBytes = ExportEncoder.encodeRow(vtable);
+
+        // the roll swaps batches while a block is being written to the first one
+        slow.onBlockStart();
+        slow.processRow(rowBytes.length, rowBytes);
+        client.roll();
+        fast.onBlockStart();
+        fast.processRow(rowBytes.length, rowBytes);
+        fast.onBlockCompletion();
+        Thread.sleep(200);
+        for (File file : new File(m_dir).listFiles()) {
+            assertTrue(file.getName(), file.getName().startsWith("active"));
+        }
+
+        // the first batch is closed once its block is done
+        slow.onBlockCompletion();
+        File rolledOver = null;
+        final long startTs = System.currentTimeMillis();
+        while (rolledOver == null && System.currentTimeMillis() - startTs < 60 * 1000) {
+            for (File file : new File(m_dir).listFiles()) {
+                if (!file.getName().startsWith("active")) {
+                    rolledOver = file;
+                }
+            }
+            Thread.sleep(100);
+        }
+        assertNotNull("Timed out waiting for file to roll over", rolledOver);
+        assertTrue(rolledOver.getName(), rolledOver.getName().contains("-slow-") && rolledOver.getName().endsWith(".csv.gz"));
+        verifyContent(rolledOver, l);
+        client.shutdown();
+    }
+
+    @Test
+    public void testColumnarRollingOnSize() throws Exception
+    {
+        ExportToFileClient client = new ExportToFileClient();
+        Properties props = new Properties();
+        props.put("nonce", Long.toString(System.currentTimeMillis()));
+        props.put("type", "columnar");
+        props.put("outdir", m_dir);
+        props.put("period", "100"); // 100 second rolling period, rolled by size instead
+        props.put("skipinternals", "true");
+        client.configure(props);
+        client.m_maxFileSize = 1;
+
+        final AdvertisedDataSource source = constructTestSource(false, 0);
+        final ExportToFileClient.ExportToFileDecoder decoder = client.constructExportDecoder(source);
+
+        decoder.onBlockStart();
+        long l = System.currentTimeMillis();
+        vtable.addRow(l, l, l, 0, l, l, (byte) 1,
+                /* partitioning column */ (short) 2,
+                3, 4, 5.5, 6, "xx", new BigDecimal(88),
+                GEOG_POINT, GEOG);
+        vtable.advanceRow();
+        byte[] rowBytes = ExportEncoder.encodeRow(vtable);
+        decoder.processRow(rowBytes.length, rowBytes);
+        decoder.onBlockCompletion();
+
+        File rolledOver = null;
+        final long startTs = System.currentTimeMillis();
+        while (rolledOver == null && System.currentTimeMillis() - startTs < 60 * 1000) {
+            final File[] files = new File(m_dir).listFiles();
+            for (File file : files == null ? new File[0] : files) {
+                if (!file.getName().startsWith("active") && file.getName().endsWith(".vcol")) {
+                    rolledOver = file;
+                }
+            }
+            Thread.sleep(100);
+        }
+        assertNotNull("Timed out waiting for file to roll over", rolledOver);
+
+        try (ColumnarFileReader reader = new ColumnarFileReader(rolledOver)) {
+            assertEquals(COLUMN_NAMES.length - ExportDecoderBase.INTERNAL_FIELD_COUNT, reader.getColumnNames().size());
+            Object[][] rows = reader.readRowGroup();
+            assertEquals(1, rows.length);
+            assertEquals((byte) 1, rows[0][0]);
+            assertEquals((short) 2, rows[0][1]);
+            assertEquals(3, rows[0][2]);
+            assertEquals(4L, rows[0][3]);
+            assertEquals(5.5, rows[0][4]);
+            assertEquals("xx", rows[0][6]);
+            assertEquals(GEOG_POINT, rows[0][8]);
+            assertNull(reader.readRowGroup());
+            assertTrue(reader.isComplete());
+        }
+        client.shutdown();
+    }
+
     @Test
     public void testExportFileUnwritable() throws Exception
     {
@@ -414,8 +561,12 @@ public class TestExportToFileClient extends ExportClientTestBase {
 
     void verifyContent(File f, long ts) throws IOException
     {
+        byte[] content = Files.readAllBytes(f.toPath());
+        if (f.getName().endsWith(".gz")) {
+            content = ByteStreams.toByteArray(new GZIPInputStream(new ByteArrayInputStream(content)));
+        }
         assertEquals(String.format("\"%d\",\"%d\",\"%d\",\"0\",\"%d\",\"%d\",\"1\",\"2\",\"3\",\"4\",\"5.5\",\"1970-01-01 00:00:00.000\",\"xx\",\"88.000000000000\","
                 + "\"" + GEOG_POINT.toWKT() + "\",\"" + GEOG.toWKT() + "\"", ts, ts, ts, ts, ts),
-                new String(Files.readAllBytes(f.toPath()), Charsets.UTF_8).trim());
+                new String(content, Charsets.UTF_8).trim());
     }
 }
@@ -29,9 +29,29 @@ import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Properties;
+import java.util.concurrent.atomic.AtomicInteger;
 
+import org.apache.tomcat.jdbc.pool.DataSource;
 import org.junit.Test;
+import org.mockito.Mockito;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+import org.voltdb.VoltType;
+import org.voltdb.export.AdvertisedDataSource;
+import org.voltdb.exportclient.JDBCExportClient.RefCountedDS;
+import org.voltdb.types.TimestampType;
+
+import com.google_voltpatches.common.util.concurrent.ListenableFuture;
 
 public class TestJDBCExportClient extends ExportClientTestBase {
     @Test
@@ -98,6 +118,29 @@ public class TestJDBCExportClient extends ExportClientTestBase {
         }
     }
 
+    @Test
+    public void testRowsPerStatement() throws Exception
+    {
+        final JDBCExportClient client = new JDBCExportClient();
+        final Properties config = new Properties();
+        config.setProperty("jdbcurl", "fakeurl");
+        config.setProperty("jdbcuser", "fakeuser");
+        config.setProperty("jdbcdriver", "org.voltdb.export.JDBCDriverForTest");
+        config.setProperty("rowsperinsert", "5000");
+        try {
+            client.configure(config);
+            // limited by the parameters per statement
+            assertEquals(2000, client.getRowsPerStatement(JDBCExportClient.DatabaseType.POSTGRES, 1));
+            assertEquals(125, client.getRowsPerStatement(JDBCExportClient.DatabaseType.POSTGRES, 16));
+            assertEquals(125, client.getRowsPerStatement(JDBCExportClient.DatabaseType.SQLSERVER, 16));
+            assertEquals(1, client.getRowsPerStatement(JDBCExportClient.DatabaseType.SQLSERVER, 3000));
+            // SQL Server takes at most 1000 rows per insert
+            assertEquals(1000, client.getRowsPerStatement(JDBCExportClient.DatabaseType.SQLSERVER, 1));
+        } finally {
+            client.shutdown();
+        }
+    }
+
     @Test
     public void testInvalidPoolSize()
     {
@@ -205,4 +248,215 @@ public class TestJDBCExportClient extends ExportClientTestBase {
             client.shutdown();
         }
     }
+
+    @Test
+    public void testInvalidBatchingConfig() throws Exception
+    {
+        for (String name : new String[] { "rowsperinsert", "parallelconnections" }) {
+            for (String value : new String[] { "0", "two" }) {
+                final JDBCExportClient client = new JDBCExportClient();
+                final Properties config = new Properties();
+                config.setProperty("jdbcurl", "fakeurl");
+                config.setProperty("jdbcuser", "fakeuser");
+                config.setProperty("jdbcdriver", "org.voltdb.export.JDBCDriverForTest");
+                config.setProperty(name, value);
+                try {
+                    client.configure(config);
+                    fail("Invalid " + name + " " + value);
+                } catch (IllegalArgumentException expected) {
+                } finally {
+                    client.shutdown();
+                }
+            }
+        }
+
+        final JDBCExportClient client = new JDBCExportClient();
+        final Properties config = new Properties();
+        config.setProperty("jdbcurl", "fakeurl");
+        config.setProperty("jdbcuser", "fakeuser");
+        config.setProperty("jdbcdriver", "org.voltdb.export.JDBCDriverForTest");
+        config.setProperty("parallelconnections", "4");
+        try {
+            client.configure(config);
+            assertEquals(4, client.getMaxInFlightBlocks());
+        } finally {
+            client.shutdown();
+        }
+    }
+
+    private static final String HSQL_URL = "jdbc:hsqldb:mem:jdbcexport";
+
+    static Connection connectToHsql() throws Exception
+    {
+        Class.forName("org.hsqldb_voltpatches.jdbcDriver");
+        return DriverManager.getConnection(HSQL_URL, "sa", "");
+    }
+
+    static JDBCExportClient constructHsqlClient(int rowsPerInsert, int parallelConnections) throws Exception
+    {
+        final JDBCExportClient client = new JDBCExportClient();
+        final Properties config = new Properties();
+        config.setProperty("jdbcurl", HSQL_URL);
+        config.setProperty("jdbcuser", "sa");
+        config.setProperty("jdbcpassword", "");
+        config.setProperty("jdbcdriver", "org.hsqldb_voltpatches.jdbcDriver");
+        config.setProperty("skipinternals", "true");
+        config.setProperty("createtable", "false");
+        config.setProperty("rowsperinsert", Integer.toString(rowsPerInsert));
+        config.setProperty("parallelconnections", Integer.toString(parallelConnections));
+        client.configure(config);
+        return client;
+    }
+
+    /**
+     * The HSQL in the tree doesn't take quoted names in DDL, so create the table the
+     * client would have, with upper case column names its quoted ones can match.
+     */
+    static AdvertisedDataSource createHsqlTable(Connection conn, String table) throws Exception
+    {
+        ArrayList<String> names = new ArrayList<>();
+        StringBuilder ddl = new StringBuilder("CREATE TABLE " + table + " (");
+        for (int i = 0; i < COLUMN_NAMES.length; i++) {
+            names.add("C_" + COLUMN_NAMES[i].toUpperCase());
+            if (i >= ExportDecoderBase.INTERNAL_FIELD_COUNT) {
+                VoltType type = COLUMN_TYPES[i];
+                ddl.append(i == ExportDecoderBase.INTERNAL_FIELD_COUNT ? "" : ", ").append(names.get(i)).append(" ")
+                   .append(type == VoltType.TINYINT ? "SMALLINT"
+                           : type == VoltType.FLOAT ? "FLOAT"
+                           : type == VoltType.DECIMAL ? "DECIMAL(38,12)"
+                           : type == VoltType.STRING || type == VoltType.GEOGRAPHY_POINT || type == VoltType.GEOGRAPHY
+                                   ? "VARCHAR(4096)" : type.name());
+            }
+        }
+        Statement stmt = conn.createStatement();
+        stmt.execute(ddl.append(")").toString());
+        stmt.close();
+        return new AdvertisedDataSource(0, "foo", table, "C_SMALLINT", 0, 32, names,
+                new ArrayList<>(Arrays.asList(COLUMN_TYPES)), Arrays.asList(COLUMN_LENGTHS),
+                AdvertisedDataSource.ExportFormat.FOURDOTFOUR);
+    }
+
+    static byte[] encodeTestRow(int i) throws IOException
+    {
+        vtable.clearRowData();
+        vtable.addRow(i, i, i, 0, i, i, (byte) (i % 100), (short) (i % 1000), i, (long) i, i / 2.0,
+                new TimestampType(1500000000000000L + i), "row " + i, i % 10 == 0 ? null : new BigDecimal(i),
+                GEOG_POINT, GEOG);
+        vtable.resetRowPosition();
+        vtable.advanceRow();
+        return ExportEncoder.encodeRow(vtable);
+    }
+
+    /**
+     * Export the rows in blocks, keeping as many blocks in flight as the client allows.
+     */
+    private static void export(JDBCExportClient client, ExportDecoderBase decoder, byte[][] rows, int rowsPerBlock)
+            throws Exception
+    {
+        ArrayDeque<ListenableFuture<?>> committed = new ArrayDeque<>();
+        for (int first = 0; first < rows.length; first += rowsPerBlock) {
+            decoder.onBlockStart();
+            for (int i = first; i < Math.min(first + rowsPerBlock, rows.length); i++) {
+                decoder.processRow(rows[i].length, rows[i]);
+            }
+            committed.add(decoder.onBlockCompletionAsync());
+            if (committed.size() >= client.getMaxInFlightBlocks()) {
+                committed.poll().get();
+            }
+        }
+        while (!committed.isEmpty()) {
+            committed.poll().get();
+        }
+    }
+
+    @Test
+    public void testExportToHsql() throws Exception
+    {
+        final int rowCount = 250;
+        byte[][] rows = new byte[rowCount][];
+        for (int i = 0; i < rowCount; i++) {
+            rows[i] = encodeTestRow(i);
+        }
+
+        int[][] modes = { { 1, 1 }, { 7, 1 }, { 1, 3 }, { 7, 3 } };
+        try (Connection conn = connectToHsql()) {
+            for (int[] mode : modes) {
+                final String table = "HSQL_" + mode[0] + "_" + mode[1];
+                AdvertisedDataSource source = createHsqlTable(conn, table);
+                final JDBCExportClient client = constructHsqlClient(mode[0], mode[1]);
+                ExportDecoderBase decoder = client.constructExportDecoder(source);
+                try {
+                    export(client, decoder, rows, 100);
+                } finally {
+                    decoder.sourceNoLongerAdvertised(null);
+                    client.shutdown();
+                }
+
+                Statement stmt = conn.createStatement();
+                ResultSet rs = stmt.executeQuery("SELECT C_TINYINT, C_INTEGER, C_TIMESTAMP, C_STRING, C_DECIMAL, "
+                        + "C_GEOG_POINT FROM " + table + " ORDER BY C_INTEGER");
+                for (int i = 0; i < rowCount; i++) {
+                    assertTrue(rs.next());
+                    assertEquals(i % 100, rs.getByte(1));
+                    assertEquals(i, rs.getInt(2));
+                    assertEquals(new TimestampType(1500000000000000L + i).asJavaTimestamp(), rs.getTimestamp(3));
+                    assertEquals("row " + i, rs.getString(4));
+                    if (i % 10 == 0) {
+                        assertNull(rs.getBigDecimal(5));
+                    } else {
+                        assertEquals(i, rs.getBigDecimal(5).intValueExact());
+                    }
+                    assertEquals(GEOG_POINT.toWKT(), rs.getString(6));
+                }
+                assertFalse(table, rs.next());
+                stmt.close();
+            }
+        }
+    }
+
+    @Test
+    public void testConnectionKeptAcrossBlocks() throws Exception
+    {
+        final int rowCount = 250;
+        byte[][] rows = new byte[rowCount][];
+        for (int i = 0; i < rowCount; i++) {
+            rows[i] = encodeTestRow(i);
+        }
+
+        final AtomicInteger connections = new AtomicInteger();
+        DataSource ds = Mockito.mock(DataSource.class);
+        Mockito.when(ds.getConnection()).thenAnswer(new Answer<Connection>() {
+            @Override
+            public Connection answer(InvocationOnMock invocation) throws Throwable {
+                connections.incrementAndGet();
+                return connectToHsql();
+            }
+        });
+
+        try (Connection conn = connectToHsql()) {
+            AdvertisedDataSource source = createHsqlTable(conn, "HSQL_KEPT");
+            final JDBCExportClient client = constructHsqlClient(7, 1);
+            ExportDecoderBase decoder = client.new JDBCDecoder(source, new RefCountedDS(ds, 1));
+            try {
+                // the first block is decoded again, which starts over on a new connection
+                decoder.onBlockStart();
+                for (int i = 0; i < 50; i++) {
+                    decoder.processRow(rows[i].length, rows[i]);
+                }
+                assertEquals(1, connections.get());
+                export(client, decoder, rows, 100);
+                assertEquals(2, connections.get());
+            } finally {
+                decoder.sourceNoLongerAdvertised(null);
+                client.shutdown();
+            }
+
+            Statement stmt = conn.createStatement();
+            ResultSet rs = stmt.executeQuery("SELECT COUNT(*), COUNT(DISTINCT C_INTEGER) FROM HSQL_KEPT");
+            assertTrue(rs.next());
+            assertEquals(rowCount, rs.getInt(1));
+            assertEquals(rowCount, rs.getInt(2));
+            stmt.close();
+        }
+    }
 }
@@ -0,0 +1,109 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2017 VoltDB Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+ * OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package org.voltdb.iv2;
+
+import org.apache.zookeeper_voltpatches.ZooKeeper;
+import org.voltcore.messaging.HostMessenger;
+import org.voltcore.utils.CoreUtils;
+import org.voltcore.zk.LeaderElector;
+import org.voltcore.zk.ZKTestBase;
+import org.voltdb.VoltZK;
+import org.voltdb.microbench.MicroBenchmark;
+
+/**
+ * Looks up the replicas of a partition, either through the Cartographer's
+ * watch-backed cache or by reading the election directory from a single node ZK.
+ */
+public class ReplicaLookupMicroBenchmark extends MicroBenchmark {
+
+    private static final int PARTITIONS = 8;
+    private static final int HOSTS = 3;
+
+    private static class ZK extends ZKTestBase {
+        void start() throws Exception {
+            setUpZK(1);
+        }
+
+        void stop() throws Exception {
+            tearDownZK();
+        }
+
+        HostMessenger messenger() {
+            return m_messengers.get(0);
+        }
+    }
+
+    private final boolean m_fromZK;
+    private final ZK m_zk = new ZK();
+    private Cartographer m_cartographer;
+    private ZooKeeper m_client;
+
+    public ReplicaLookupMicroBenchmark(boolean fromZK) {
+        super("Cartographer.replicasForPartition" + (fromZK ? "FromZK" : "Cached"));
+        m_fromZK = fromZK;
+    }
+
+    @Override
+    public void setUp() throws Exception {
+        m_zk.start();
+        ZooKeeper zk = m_zk.messenger().getZK();
+        VoltZK.createPersistentZKNodes(zk);
+        for (int pid = 0; pid < PARTITIONS; pid++) {
+            String dir = LeaderElector.electionDirForPartition(VoltZK.leaders_initiators, pid);
+            LeaderElector.createRootIfNotExist(zk, dir);
+            for (int hid = 0; hid < HOSTS; hid++) {
+                LeaderElector.createParticipantNode(zk, dir,
+                        Long.toString(CoreUtils.getHSIdFromHostAndSite(hid, pid)), null);
+            }
+        }
+        m_client = zk;
+        m_cartographer = new Cartographer(m_zk.messenger(), 0, false);
+        for (int pid = 0; pid < PARTITIONS; pid++) {
+            while (m_cartographer.getReplicasForPartition(pid).size() != HOSTS) {
+                Thread.sleep(1);
+            }
+        }
+    }
+
+    @Override
+    public long run(int ops) throws Exception {
+        long sink = 0;
+        for (int i = 0; i < ops; i++) {
+            final int pid = i % PARTITIONS;
+            if (m_fromZK) {
+                String dir = LeaderElector.electionDirForPartition(VoltZK.leaders_initiators, pid);
+                sink += ReplicaCache.parseReplicas(m_client.getChildren(dir, null)).size();
+            } else {
+                sink += m_cartographer.getReplicasForPartition(pid).size();
+            }
+        }
+        return sink;
+    }
+
+    @Override
+    public void tearDown() throws Exception {
+        m_cartographer.shutdown();
+        m_zk.stop();
+    }
+}
@@ -0,0 +1,163 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2017 VoltDB Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+ * OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package org.voltdb.iv2;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+import org.HdrHistogram_voltpatches.Histogram;
+import org.voltdb.SiteProcedureConnection;
+import org.voltdb.StarvationTracker;
+import org.voltdb.microbench.MicroBenchmark;
+import org.voltdb.rejoin.TaskLog;
+
+/**
+ * Runs short single partition transactions through a SiteTaskerQueue while a snapshot
+ * keeps a few work units of its own queued at the site, with the queue in offer order
+ * or prioritized. The transactions are offered in bursts of 10 a millisecond apart,
+ * taking about a fifth of the site. One operation is one transaction, the latency from
+ * offering it to it having run is reported alongside.
+ */
+public class SnapshotSpLatencyMicroBenchmark extends MicroBenchmark {
+
+    private static final long SP_WORK_NANOS = TimeUnit.MICROSECONDS.toNanos(20);
+    private static final long SNAPSHOT_WORK_NANOS = TimeUnit.MICROSECONDS.toNanos(300);
+    private static final int SNAPSHOT_TASKS_QUEUED = 3;
+    private static final int BURST = 10;
+
+    private final boolean m_prioritized;
+    private SiteTaskerQueue m_queue;
+    // written by the site thread only while transactions are queued
+    private final Histogram m_spLatency = new Histogram(TimeUnit.SECONDS.toMicros(10), 3);
+    private final AtomicLong m_spRun = new AtomicLong();
+    private final AtomicLong m_snapshotTasksRun = new AtomicLong();
+    private long m_spOffered = 0;
+    private Thread m_site;
+    private volatile boolean m_stop;
+
+    private class SpinTask extends SiteTasker {
+        final Priority m_priority;
+        final long m_workNanos;
+
+        SpinTask(Priority priority, long workNanos) {
+            m_priority = priority;
+            m_workNanos = workNanos;
+        }
+
+        @Override
+        public void run(SiteProcedureConnection siteConnection) {
+            final long start = System.nanoTime();
+            while (System.nanoTime() - start < m_workNanos) {}
+            if (m_priority == Priority.BACKGROUND) {
+                m_snapshotTasksRun.incrementAndGet();
+                // the snapshot queues more work as its buffers are written out
+                if (!m_stop) {
+                    m_queue.offer(new SpinTask(Priority.BACKGROUND, m_workNanos));
+                }
+            } else {
+                m_spLatency.recordValue(Math.min(m_spLatency.getHighestTrackableValue(),
+                        TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - getQueueOfferTime())));
+                m_spRun.incrementAndGet();
+            }
+        }
+
+        @Override
+        public void runForRejoin(SiteProcedureConnection siteConnection, TaskLog rejoinTaskLog)
+                throws IOException {}
+
+        @Override
+        public Priority getPriority() {
+            return m_priority;
+        }
+    }
+
+    public SnapshotSpLatencyMicroBenchmark(boolean prioritized) {
+        super("SiteTaskerQueue.spDuringSnapshot" + (prioritized ? "Prioritized" : "InOrder"));
+        m_prioritized = prioritized;
+    }
+
+    @Override
+    public void setUp() {
+        m_queue = new SiteTaskerQueue(0, m_prioritized, SiteTaskerQueue.AGING_NANOS);
+        m_queue.setStarvationTracker(new StarvationTracker(0));
+        m_queue.setupQueueDepthTracker(0);
+        m_stop = false;
+        for (int i = 0; i < SNAPSHOT_TASKS_QUEUED; i++) {
+            m_queue.offer(new SpinTask(SiteTasker.Priority.BACKGROUND, SNAPSHOT_WORK_NANOS));
+        }
+        m_site = new Thread("Site") {
+            @Override
+            public void run() {
+                while (!m_stop || !m_queue.isEmpty()) {
+                    SiteTasker task = m_queue.poll();
+                    if (task == null) {
+                        LockSupport.parkNanos(TimeUnit.MICROSECONDS.toNanos(50));
+                    } else {
+                        task.run(null);
+                    }
+                }
+            }
+        };
+        m_site.start();
+    }
+
+    @Override
+    public void beginMeasurement() {
+        // no transaction is queued between runs
+        m_spLatency.reset();
+        m_snapshotTasksRun.set(0);
+    }
+
+    @Override
+    public long run(int ops) throws Exception {
+        for (int i = 0; i < ops; i++) {
+            if (i > 0 && i % BURST == 0) {
+                LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(1));
+            }
+            m_queue.offer(new SpinTask(SiteTasker.Priority.TRANSACTION, SP_WORK_NANOS));
+        }
+        m_spOffered += ops;
+        while (m_spRun.get() < m_spOffered) {
+            LockSupport.parkNanos(TimeUnit.MICROSECONDS.toNanos(50));
+        }
+        return m_spRun.get();
+    }
+
+    @Override
+    public void endMeasurement() {
+        reportMetric("latencyP50", m_spLatency.getValueAtPercentile(50), "us");
+        reportMetric("latencyP99", m_spLatency.getValueAtPercentile(99), "us");
+        reportMetric("latencyP99.9", m_spLatency.getValueAtPercentile(99.9), "us");
+        reportMetric("latencyMax", m_spLatency.getMaxValue(), "us");
+        reportMetric("snapshotTasks", m_snapshotTasksRun.get(), "tasks");
+    }
+
+    @Override
+    public void tearDown() throws InterruptedException {
+        m_stop = true;
+        m_site.join();
+    }
+}
@@ -0,0 +1,139 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2017 VoltDB Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+ * OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package org.voltdb.iv2;
+
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+import org.voltdb.CommandLog.CompletionChecks;
+import org.voltdb.StoredProcedureInvocation;
+import org.voltdb.messaging.Iv2InitiateTaskMessage;
+import org.voltdb.microbench.MicroBenchmark;
+
+/**
+ * Logs single partition transactions through SpDurabilityListener with synchronous
+ * command logging, against a fake command log that completes a sync every fsync
+ * latency. The site thread adds each transaction and releases the ones whose sync
+ * completed, the time per operation is the cost of a transaction waiting on the log.
+ */
+public class SyncCommandLogMicroBenchmark extends MicroBenchmark {
+
+    private final long m_fsyncNanos;
+
+    private final Object m_lock = new Object();
+    private final ConcurrentLinkedQueue<CompletionChecks> m_synced = new ConcurrentLinkedQueue<>();
+    private SpDurabilityListener m_listener;
+    private Thread m_commandLog;
+    private volatile boolean m_stop;
+
+    private long m_nextTimestamp = 0;
+    private long m_added = 0;
+    private long m_released = 0;
+    private long m_syncs = 0;
+    private long m_syncedTasks = 0;
+
+    public SyncCommandLogMicroBenchmark(long fsyncMicros) {
+        super("SpDurabilityListener.syncLog" + fsyncMicros + "usFsync");
+        m_fsyncNanos = TimeUnit.MICROSECONDS.toNanos(fsyncMicros);
+    }
+
+    @Override
+    public void setUp() {
+        TransactionTaskQueue taskQueue = new TransactionTaskQueue(null) {
+            @Override
+            synchronized boolean offer(TransactionTask task) {
+                m_released++;
+                return false;
+            }
+        };
+        m_listener = new SpDurabilityListener(null, taskQueue);
+        m_listener.createFirstCompletionCheck(true, true);
+        m_stop = false;
+        m_commandLog = new Thread("Fake command log") {
+            @Override
+            public void run() {
+                while (!m_stop) {
+                    LockSupport.parkNanos(m_fsyncNanos);
+                    final CompletionChecks checks;
+                    synchronized (m_lock) {
+                        checks = m_listener.startNewTaskList(m_listener.getNumberOfTasks());
+                    }
+                    if (checks.isChanged()) {
+                        m_synced.offer(checks);
+                    }
+                }
+            }
+        };
+        m_commandLog.start();
+    }
+
+    private void processSynced() {
+        CompletionChecks checks;
+        while ((checks = m_synced.poll()) != null) {
+            m_syncs++;
+            m_syncedTasks += checks.getTaskListSize();
+            checks.processChecks();
+        }
+    }
+
+    @Override
+    public void beginMeasurement() {
+        m_syncs = 0;
+        m_syncedTasks = 0;
+    }
+
+    @Override
+    public long run(int ops) throws Exception {
+        for (int i = 0; i < ops; i++) {
+            final long uniqueId = UniqueIdGenerator.makeIdFromComponents(m_nextTimestamp++, 0, 0);
+            final Iv2InitiateTaskMessage msg = new Iv2InitiateTaskMessage(0, 0, 0, 0, uniqueId,
+                                                                          false, true, new StoredProcedureInvocation(),
+                                                                          0, 0, false);
+            final SpProcedureTask task = new SpProcedureTask(null, "Hello", null, msg);
+            synchronized (m_lock) {
+                m_listener.addTransaction(task);
+            }
+            m_added++;
+            processSynced();
+        }
+        // wait for the transactions of this batch to be durable
+        while (m_released < m_added) {
+            processSynced();
+            Thread.yield();
+        }
+        return m_released;
+    }
+
+    @Override
+    public void endMeasurement() {
+        reportMetric("tasksPerSync", m_syncs == 0 ? 0 : (double) m_syncedTasks / m_syncs, "tasks");
+    }
+
+    @Override
+    public void tearDown() throws InterruptedException {
+        m_stop = true;
+        m_commandLog.join();
+    }
+}
@@ -25,12 +25,18 @@ package org.voltdb.iv2;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 import static org.mockito.Matchers.any;
 import static org.mockito.Matchers.anyLong;
+import static org.mockito.Matchers.anyBoolean;
+import static org.mockito.Matchers.anyString;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.reset;
+import static org.mockito.Mockito.spy;
 import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
@@ -40,6 +46,7 @@ import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
+import org.apache.zookeeper_voltpatches.Watcher;
 import org.apache.zookeeper_voltpatches.ZooKeeper;
 import org.json_voltpatches.JSONObject;
 import org.junit.After;
@@ -52,6 +59,7 @@ import org.voltcore.messaging.VoltMessage;
 import org.voltcore.utils.CoreUtils;
 import org.voltcore.zk.LeaderElector;
 import org.voltcore.zk.ZKTestBase;
+import org.voltcore.zk.ZKUtil;
 import org.voltdb.VoltDB;
 import org.voltdb.VoltZK;
 
@@ -180,6 +188,7 @@ public class TestCartographer extends ZKTestBase {
         assertEquals(0, partitionId);
         assertEquals(3, initiatorHSId);
         spwriter.shutdown();
+        dut.shutdown();
     }
 
     @Test
@@ -208,6 +217,7 @@ public class TestCartographer extends ZKTestBase {
         assertEquals(MpInitiator.MP_INIT_PID, partitionId);
         assertEquals(3, initiatorHSId);
         mpwriter.shutdown();
+        dut.shutdown();
     }
 
     @Test
@@ -268,10 +278,89 @@ public class TestCartographer extends ZKTestBase {
         List<Integer> expectedPartitions = Lists.newArrayList();
         expectedPartitions.add(1);
         expectedPartitions.add(3);
+        for (int pid = 0; pid < totalPartitions; pid++) {
+            waitForReplicaCount(dut, pid, 1);
+        }
         List<Integer> partitionsToReplace = dut.getIv2PartitionsToReplace(kfactor, sitesPerHost, rejoiningHostId, hostGroups);
         assertTrue(partitionsToReplace.size() == sitesPerHost);
         for (Integer p : partitionsToReplace) {
             assertTrue(expectedPartitions.contains(p));
         }
+        dut.shutdown();
+    }
+
+    @Test
+    public void testReplicaLookupsAreLocal() throws Exception
+    {
+        ZooKeeper zk = getClient(0);
+        VoltZK.createPersistentZKNodes(zk);
+        HostMessenger hm = mock(HostMessenger.class);
+        ZooKeeper cartZk = spy(m_messengers.get(0).getZK());
+        when(hm.getZK()).thenReturn(cartZk);
+        Cartographer dut = new Cartographer(hm, 0, false);
+
+        final int partitionCount = 8;
+        final int hostCount = 3;
+        for (int pid = 0; pid < partitionCount; pid++) {
+            String dir = LeaderElector.electionDirForPartition(VoltZK.leaders_initiators, pid);
+            LeaderElector.createRootIfNotExist(zk, dir);
+            for (int hid = 0; hid < hostCount; hid++) {
+                LeaderElector.createParticipantNode(zk, dir,
+                        Long.toString(CoreUtils.getHSIdFromHostAndSite(hid, pid)), null);
+            }
+        }
+        for (int pid = 0; pid < partitionCount; pid++) {
+            waitForReplicaCount(dut, pid, hostCount);
+        }
+
+        // Every replica lookup is answered by the cache without going to ZK
+        reset(cartZk);
+        List<Integer> partitions = Lists.newArrayList();
+        for (int pid = 0; pid < partitionCount; pid++) {
+            assertEquals(hostCount, dut.getReplicasForPartition(pid).size());
+            assertEquals(hostCount, dut.getReplicaCountForPartition(pid));
+            partitions.add(pid);
+        }
+        assertEquals(partitionCount, dut.getReplicasForPartitions(partitions).size());
+        assertEquals(CoreUtils.getHSIdFromHostAndSite(1, 0), (long)dut.getHSIDForPartitionHost(1, 0));
+        assertNull(dut.getHSIDForPartitionHost(hostCount, 0));
+        assertEquals(Sets.newHashSet(0, 1, 2), dut.getHostIdsWithinPartitionGroup(0));
+        assertEquals(partitionCount, dut.getPartitions().size());
+        verify(cartZk, never()).getChildren(anyString(), any(Watcher.class));
+        verify(cartZk, never()).getChildren(anyString(), anyBoolean());
+        verify(cartZk, never()).getChildren(anyString(), anyBoolean(),
+                any(org.apache.zookeeper_voltpatches.AsyncCallback.ChildrenCallback.class), any());
+
+        // Replicas leaving and partitions going away are picked up by the watches
+        String dir = LeaderElector.electionDirForPartition(VoltZK.leaders_initiators, 0);
+        List<String> children = zk.getChildren(dir, false);
+        zk.delete(ZKUtil.joinZKPath(dir, children.get(0)), -1);
+        waitForReplicaCount(dut, 0, hostCount - 1);
+        assertEquals(hostCount - 1, dut.getReplicaCountForPartition(0));
+
+        String lastDir = LeaderElector.electionDirForPartition(VoltZK.leaders_initiators, partitionCount - 1);
+        for (String child : zk.getChildren(lastDir, false)) {
+            zk.delete(ZKUtil.joinZKPath(lastDir, child), -1);
+        }
+        zk.delete(lastDir, -1);
+        final long deadline = System.currentTimeMillis() + 10000;
+        while (dut.getPartitions().contains(partitionCount - 1)) {
+            assertTrue("Timed out waiting for partition removal", System.currentTimeMillis() < deadline);
+            Thread.sleep(10);
+        }
+        assertEquals(0, dut.getReplicaCountForPartition(partitionCount - 1));
+        assertFalse(dut.getReplicasForPartitions(partitions).containsKey(partitionCount - 1));
+        assertFalse(VoltDB.wasCrashCalled);
+        dut.shutdown();
+    }
+
+    private static void waitForReplicaCount(Cartographer dut, int partition, int expected) throws Exception
+    {
+        final long deadline = System.currentTimeMillis() + 10000;
+        while (dut.getReplicasForPartition(partition).size() != expected) {
+            assertTrue("Timed out waiting for replicas of partition " + partition,
+                    System.currentTimeMillis() < deadline);
+            Thread.sleep(10);
+        }
     }
 }
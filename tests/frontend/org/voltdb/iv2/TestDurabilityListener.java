@@ -152,6 +152,79 @@ public class TestDurabilityListener {
         }
     }
 
+    @Test
+    public void testSyncReleasesInOrderAcrossBatches()
+    {
+        dut.createFirstCompletionCheck(true, true);
+
+        // Enough tasks to wrap and grow the pending ring
+        List<SpProcedureTask> tasks = Lists.newArrayList();
+        for (int i = 0; i < 3000; i++) {
+            SpProcedureTask task = newInitMsg(true, m_taskQueue, UniqueIdGenerator.makeIdFromComponents(i, 0, 0));
+            tasks.add(task);
+            dut.addTransaction(task);
+        }
+        CompletionChecks first = dut.startNewTaskList(dut.getNumberOfTasks());
+        assertEquals(3000, first.getTaskListSize());
+
+        for (int i = 0; i < 10; i++) {
+            SpProcedureTask task = newInitMsg(true, m_taskQueue, UniqueIdGenerator.makeIdFromComponents(3000 + i, 0, 0));
+            tasks.add(task);
+            dut.addTransaction(task);
+        }
+        CompletionChecks second = dut.startNewTaskList(dut.getNumberOfTasks());
+        assertEquals(10, second.getTaskListSize());
+        assertTrue(second.isChanged());
+        assertFalse(dut.startNewTaskList(dut.getNumberOfTasks()).isChanged());
+
+        first.processChecks();
+        ArgumentCaptor<TransactionTask> captor = ArgumentCaptor.forClass(TransactionTask.class);
+        verify(m_taskQueue, times(3000)).offer(captor.capture());
+        assertEquals(tasks.subList(0, 3000), captor.getAllValues());
+
+        second.processChecks();
+        captor = ArgumentCaptor.forClass(TransactionTask.class);
+        verify(m_taskQueue, times(3010)).offer(captor.capture());
+        assertEquals(tasks, captor.getAllValues());
+        assertEquals(tasks.get(3009).getTransactionState().uniqueId, m_listener.m_spUniqueId);
+    }
+
+    @Test
+    public void testRingReleasesOutsideLockAndShrinks()
+    {
+        final SpDurabilityListener.PendingDurabilityRing ring = new SpDurabilityListener.PendingDurabilityRing(16);
+        final List<TransactionTask> released = Lists.newArrayList();
+        SpDurabilityListener listener = new SpDurabilityListener(m_sched, m_taskQueue) {
+            @Override
+            void releaseDurableTask(TransactionTask task) {
+                assertFalse(Thread.holdsLock(ring));
+                released.add(task);
+            }
+        };
+
+        List<SpProcedureTask> tasks = Lists.newArrayList();
+        long seq = 0;
+        for (int i = 0; i < 1000; i++) {
+            SpProcedureTask task = newInitMsg(true, m_taskQueue, UniqueIdGenerator.makeIdFromComponents(i, 0, 0));
+            tasks.add(task);
+            seq = ring.add(task);
+        }
+        assertEquals(1024, ring.capacity());
+
+        // Release more than fit in the reused array, then the rest
+        ring.releaseUpTo(seq - 10, listener);
+        assertEquals(10, ring.size());
+        ring.releaseUpTo(seq, listener);
+        assertEquals(0, ring.size());
+        assertEquals(tasks, released);
+
+        // Shrinks back a step at a time as batches complete, never below the initial size
+        for (int i = 0; i < 10; i++) {
+            ring.releaseUpTo(ring.add(tasks.get(i)), listener);
+        }
+        assertEquals(16, ring.capacity());
+    }
+
     @Test
     public void testProcessDurabilityChecks()
     {
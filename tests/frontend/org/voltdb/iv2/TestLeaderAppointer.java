@@ -39,7 +39,9 @@ import org.json_voltpatches.JSONException;
 import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
+import org.mockito.invocation.Invocation;
 import org.voltcore.messaging.HostMessenger;
+import org.voltcore.utils.CoreUtils;
 import org.voltcore.zk.LeaderElector;
 import org.voltcore.zk.ZKTestBase;
 import org.voltcore.zk.ZKUtil;
@@ -559,4 +561,75 @@ public class TestLeaderAppointer extends ZKTestBase {
         m_dut.acceptPromotion();
         assertFalse(VoltDB.wasCrashCalled);
     }
+
+    /**
+     * A host failure wakes the babysitter of every partition it had a replica of.
+     * Those callbacks are handled as a batch: the k-safety scan of all partitions
+     * runs once for the batch, not once per callback, and the partitions the host
+     * led still get new appointees.
+     */
+    @Test
+    public void testFailoverBatchesKSafetyScans() throws Exception
+    {
+        configure(2, 16, 1, false);
+        final int partitionCount = m_topo.getPartitionCount();
+        // watch the appointer's ZK reads
+        final ZooKeeper zk = spy(m_zk);
+        when(m_hm.getZK()).thenReturn(zk);
+        m_dut.shutdown();
+        createAppointer(false);
+        Thread dutthread = new Thread() {
+            @Override
+            public void run() {
+                try {
+                    m_dut.acceptPromotion();
+                } catch (Exception e) {
+                }
+            }
+        };
+        dutthread.start();
+        // Need to sleep so we don't write to ZK before the LeaderAppointer appears or we'll crash
+        Thread.sleep(1000);
+        // host 0's replicas live in their own session so they all go away when it closes
+        ZooKeeper host0 = getClient(0);
+        for (int pid = 0; pid < partitionCount; pid++) {
+            LeaderElector.createParticipantNode(host0,
+                    LeaderElector.electionDirForPartition(VoltZK.leaders_initiators, pid),
+                    Long.toString(CoreUtils.getHSIdFromHostAndSite(0, pid)), null);
+            addReplica(pid, CoreUtils.getHSIdFromHostAndSite(1, pid));
+        }
+        for (int pid = 0; pid < partitionCount; pid++) {
+            waitForAppointee(pid);
+            registerLeader(pid, m_cache.pointInTimeCache().get(pid));
+        }
+        dutthread.join();
+
+        final int scansBefore = kSafetyScans(zk);
+        host0.close();
+        boolean done = false;
+        while (!done) {
+            Thread.sleep(1);
+            done = true;
+            for (long hsId : m_cache.pointInTimeCache().values()) {
+                done &= CoreUtils.getHostIdFromHSId(hsId) == 1;
+            }
+        }
+        assertFalse(VoltDB.wasCrashCalled);
+        // the babysitter callbacks may straggle in over a couple of batches, but
+        // not one each
+        final int scans = kSafetyScans(zk) - scansBefore;
+        assertTrue("k-safety scans: " + scans, scans >= 1 && scans <= partitionCount / 4);
+    }
+
+    private static int kSafetyScans(ZooKeeper zk)
+    {
+        int scans = 0;
+        for (Invocation invocation : mockingDetails(zk).getInvocations()) {
+            if (invocation.getMethod().getName().equals("getChildren")
+                    && VoltZK.leaders_initiators.equals(invocation.getArguments()[0])) {
+                scans++;
+            }
+        }
+        return scans;
+    }
 }
@@ -0,0 +1,184 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2017 VoltDB Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+ * OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package org.voltdb.iv2;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.Test;
+import org.voltdb.QueueDepthTracker;
+import org.voltdb.SiteProcedureConnection;
+import org.voltdb.StarvationTracker;
+import org.voltdb.VoltTable;
+import org.voltdb.VoltTable.ColumnInfo;
+import org.voltdb.rejoin.TaskLog;
+
+public class TestSiteTaskerQueue {
+
+    private static class Task extends SiteTasker {
+        final String m_name;
+        final Priority m_priority;
+
+        Task(String name, Priority priority) {
+            m_name = name;
+            m_priority = priority;
+        }
+
+        @Override
+        public void run(SiteProcedureConnection siteConnection) {}
+
+        @Override
+        public void runForRejoin(SiteProcedureConnection siteConnection, TaskLog rejoinTaskLog)
+                throws IOException {}
+
+        @Override
+        public Priority getPriority() {
+            return m_priority;
+        }
+
+        @Override
+        public String toString() {
+            return m_name;
+        }
+    }
+
+    private static SiteTaskerQueue getSiteTaskerQueue(boolean prioritized, long agingNanos) {
+        SiteTaskerQueue queue = new SiteTaskerQueue(0, prioritized, agingNanos);
+        queue.setStarvationTracker(new StarvationTracker(0));
+        queue.setupQueueDepthTracker(0);
+        return queue;
+    }
+
+    private static List<String> offerAndDrain(SiteTaskerQueue queue) throws InterruptedException {
+        queue.offer(new Task("B1", SiteTasker.Priority.BACKGROUND));
+        queue.offer(new Task("T1", SiteTasker.Priority.TRANSACTION));
+        queue.offer(new Task("D1", SiteTasker.Priority.DURABILITY));
+        queue.offer(new Task("T2", SiteTasker.Priority.TRANSACTION));
+        queue.offer(new Task("B2", SiteTasker.Priority.BACKGROUND));
+        queue.offer(new Task("D2", SiteTasker.Priority.DURABILITY));
+        List<String> order = new ArrayList<>();
+        while (!queue.isEmpty()) {
+            order.add(queue.take().toString());
+        }
+        assertNull(queue.poll());
+        return order;
+    }
+
+    @Test
+    public void testInOrderByDefault() throws Exception {
+        SiteTaskerQueue queue = getSiteTaskerQueue(false, 0);
+        assertEquals("[B1, T1, D1, T2, B2, D2]", offerAndDrain(queue).toString());
+    }
+
+    @Test
+    public void testPrioritized() throws Exception {
+        SiteTaskerQueue queue = getSiteTaskerQueue(true, TimeUnit.MINUTES.toNanos(1));
+        assertEquals("[D1, D2, T1, T2, B1, B2]", offerAndDrain(queue).toString());
+    }
+
+    @Test
+    public void testAging() throws Exception {
+        SiteTaskerQueue queue = getSiteTaskerQueue(true, TimeUnit.MILLISECONDS.toNanos(1));
+        queue.offer(new Task("B1", SiteTasker.Priority.BACKGROUND));
+        Thread.sleep(10);
+        queue.offer(new Task("T1", SiteTasker.Priority.TRANSACTION));
+        queue.offer(new Task("B2", SiteTasker.Priority.BACKGROUND));
+        // B1 has waited too long, B2 waits its turn behind T1
+        assertEquals("B1", queue.take().toString());
+        assertEquals("T1", queue.take().toString());
+        assertEquals("B2", queue.take().toString());
+    }
+
+    @Test
+    public void testPeekAndRemove() throws Exception {
+        SiteTaskerQueue queue = getSiteTaskerQueue(true, TimeUnit.MINUTES.toNanos(1));
+        QueueDepthTracker tracker = queue.setupQueueDepthTracker(0);
+        queue.offer(new Task("T1", SiteTasker.Priority.TRANSACTION));
+        SiteTasker task = queue.peek();
+        assertEquals("T1", task.toString());
+        // a task of a higher priority coming in between doesn't change which task is removed
+        queue.offer(new Task("D1", SiteTasker.Priority.DURABILITY));
+        assertEquals(2, tracker.getQueueDepth());
+        assertTrue(queue.remove(task));
+        assertEquals(1, tracker.getQueueDepth());
+        assertEquals("D1", queue.poll().toString());
+        assertEquals(0, tracker.getQueueDepth());
+        assertTrue(queue.isEmpty());
+    }
+
+    @Test
+    public void testTakeWakesUpForEveryPriority() throws Exception {
+        final SiteTaskerQueue queue = getSiteTaskerQueue(true, TimeUnit.MINUTES.toNanos(1));
+        for (SiteTasker.Priority priority : SiteTasker.Priority.values()) {
+            final AtomicReference<SiteTasker> taken = new AtomicReference<>();
+            Thread site = new Thread() {
+                @Override
+                public void run() {
+                    try {
+                        taken.set(queue.take());
+                    } catch (InterruptedException e) {}
+                }
+            };
+            site.start();
+            Thread.sleep(50);
+            Task task = new Task(priority.name(), priority);
+            queue.offer(task);
+            site.join(TimeUnit.SECONDS.toMillis(10));
+            assertSame(task, taken.get());
+        }
+    }
+
+    @Test
+    public void testWaitByPriority() throws Exception {
+        SiteTaskerQueue queue = getSiteTaskerQueue(true, TimeUnit.MINUTES.toNanos(1));
+        QueueDepthTracker tracker = queue.setupQueueDepthTracker(0);
+        queue.offer(new Task("B1", SiteTasker.Priority.BACKGROUND));
+        queue.offer(new Task("T1", SiteTasker.Priority.TRANSACTION));
+        Thread.sleep(20);
+        queue.take();
+        queue.take();
+        Thread.sleep(20);
+        queue.offer(new Task("B2", SiteTasker.Priority.BACKGROUND));
+        queue.take();
+
+        VoltTable stats = new VoltTable(tracker.getColumnSchema().toArray(new ColumnInfo[0]));
+        stats.addRow(tracker.getStatsRows(false, System.currentTimeMillis())[0]);
+        stats.advanceRow();
+        final long durabilityMax = stats.getLong("DURABILITY_MAX_WAIT");
+        final long transactionMax = stats.getLong("TRANSACTION_MAX_WAIT");
+        final long backgroundMax = stats.getLong("BACKGROUND_MAX_WAIT");
+        assertEquals(0, durabilityMax);
+        assertTrue(transactionMax >= TimeUnit.MILLISECONDS.toMicros(20));
+        assertTrue(backgroundMax >= transactionMax);
+        assertEquals(backgroundMax, stats.getLong("MAX_WAIT"));
+    }
+}
@@ -0,0 +1,81 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2017 VoltDB Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+ * OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package org.voltdb.jdbc;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+import org.voltdb.jdbc.JDBC4Statement.VoltSQL;
+
+public class TestGroupedInsertBatch {
+
+    private static GroupedInsertBatch prepared(String sql) throws Exception {
+        return GroupedInsertBatch.forStatement(VoltSQL.parseSQL(sql));
+    }
+
+    private static GroupedInsertBatch call(String call) throws Exception {
+        return GroupedInsertBatch.forStatement(VoltSQL.parseCall(call));
+    }
+
+    @Test
+    public void testWholeRowInsertsAreGrouped() throws Exception {
+        GroupedInsertBatch grouped = prepared("insert into votes values (?, ?, ?)");
+        assertEquals("VOTES", grouped.tableName);
+        assertFalse(grouped.upsert);
+        assertNull(grouped.columns);
+
+        grouped = prepared(" UPSERT INTO Votes (phone_number,state , contestant_number) VALUES (?,?,?);");
+        assertEquals("VOTES", grouped.tableName);
+        assertTrue(grouped.upsert);
+        assertArrayEquals(new String[] { "phone_number", "state", "contestant_number" }, grouped.columns);
+
+        grouped = call("{call VOTES.insert(?, ?, ?)}");
+        assertEquals("VOTES", grouped.tableName);
+        assertFalse(grouped.upsert);
+        assertNull(grouped.columns);
+
+        grouped = call("{call contestants.upsert(?, ?)}");
+        assertEquals("CONTESTANTS", grouped.tableName);
+        assertTrue(grouped.upsert);
+    }
+
+    @Test
+    public void testOtherStatementsAreNotGrouped() throws Exception {
+        // Values that aren't all parameters
+        assertNull(prepared("insert into votes values (?, 'MA', ?)"));
+        assertNull(prepared("insert into votes values (?, ?, ? + 1)"));
+        // Not a single row of values
+        assertNull(prepared("insert into votes select * from votes where phone_number = ?"));
+        assertNull(prepared("update votes set state = ? where phone_number = ?"));
+        assertNull(prepared("delete from votes where phone_number = ?"));
+        assertNull(prepared("select * from votes where phone_number = ?"));
+        // Procedures other than the default insert and upsert
+        assertNull(call("{call VOTES.update(?, ?, ?, ?)}"));
+        assertNull(call("{call Vote(?, ?, ?)}"));
+    }
+}
@@ -30,6 +30,8 @@ import static org.junit.Assert.fail;
 
 import java.io.File;
 import java.math.BigDecimal;
+import java.sql.BatchUpdateException;
+import java.sql.CallableStatement;
 import java.sql.Connection;
 import java.sql.DatabaseMetaData;
 import java.sql.Date;
@@ -712,6 +714,111 @@ public class TestJDBCQueries {
 
     }
 
+    @Test
+    public void testQueryBatchWithFailure() throws Exception
+    {
+        Statement batch = conn.createStatement();
+        int[] ids = new int[] { 9001, 9002, 9001, 9003 };
+        for (int id : ids) {
+            batch.addBatch("insert into contestants (contestant_number, contestant_name) values (" +
+                    id + ", 'batch" + id + "')");
+        }
+        try {
+            batch.executeBatch();
+            fail("Duplicate key in batch should fail");
+        }
+        catch (BatchUpdateException e) {
+            // Statements run in order and the batch stops at the first failure
+            int[] counts = e.getUpdateCounts();
+            assertEquals(3, counts.length);
+            assertEquals(1, counts[0]);
+            assertEquals(1, counts[1]);
+            assertEquals(Statement.EXECUTE_FAILED, counts[2]);
+        }
+        ResultSet rs = conn.createStatement().executeQuery(
+                "select count(*) from contestants where contestant_number = 9003");
+        assertTrue(rs.next());
+        assertEquals(0, rs.getLong(1));
+        // Batch is cleared after execution even when it fails
+        assertEquals(0, batch.executeBatch().length);
+
+        Statement stmt = conn.createStatement();
+        stmt.executeUpdate("delete from contestants where contestant_number >= 9001 and contestant_number <= 9003");
+    }
+
+    @Test
+    public void testGroupedBatchWithFailure() throws Exception
+    {
+        PreparedStatement pStmt = conn.prepareStatement(
+                "insert into contestants (contestant_number, contestant_name) values (?, ?)");
+        int[] ids = new int[] { 9001, 9002, 9001, 9003 };
+        for (int id : ids) {
+            pStmt.setInt(1, id);
+            pStmt.setString(2, "batch" + id);
+            pStmt.addBatch();
+        }
+        try {
+            pStmt.executeBatch();
+            fail("Duplicate key in batch should fail");
+        }
+        catch (BatchUpdateException e) {
+            // The failed load is retried row by row, every entry gets its own count
+            int[] counts = e.getUpdateCounts();
+            assertEquals(4, counts.length);
+            assertEquals(1, counts[0]);
+            assertEquals(1, counts[1]);
+            assertEquals(Statement.EXECUTE_FAILED, counts[2]);
+            assertEquals(1, counts[3]);
+        }
+        ResultSet rs = conn.createStatement().executeQuery(
+                "select count(*) from contestants where contestant_number >= 9001 and contestant_number <= 9003");
+        assertTrue(rs.next());
+        assertEquals(3, rs.getLong(1));
+        assertEquals(0, pStmt.executeBatch().length);
+
+        Statement stmt = conn.createStatement();
+        stmt.executeUpdate("delete from contestants where contestant_number >= 9001 and contestant_number <= 9003");
+    }
+
+    @Test
+    public void testGroupedBatchAcrossPartitions() throws Exception
+    {
+        PreparedStatement pStmt = conn.prepareStatement("insert into votes values (?, ?, ?)");
+        for (int i = 0; i < 100; i++) {
+            pStmt.setLong(1, 5550000000L + i);
+            pStmt.setString(2, "MA");
+            pStmt.setInt(3, i % 6);
+            pStmt.addBatch();
+        }
+        int[] counts = pStmt.executeBatch();
+        assertEquals(100, counts.length);
+        for (int count : counts) {
+            assertEquals(1, count);
+        }
+
+        // Batches of the default insert procedure are grouped the same way
+        CallableStatement cStmt = conn.prepareCall("{call VOTES.insert(?, ?, ?)}");
+        for (int i = 100; i < 150; i++) {
+            cStmt.setLong(1, 5550000000L + i);
+            cStmt.setString(2, "NH");
+            cStmt.setInt(3, i % 6);
+            cStmt.addBatch();
+        }
+        counts = cStmt.executeBatch();
+        assertEquals(50, counts.length);
+        for (int count : counts) {
+            assertEquals(1, count);
+        }
+
+        ResultSet rs = conn.createStatement().executeQuery(
+                "select count(*) from votes where phone_number >= 5550000000 and phone_number < 5550000150");
+        assertTrue(rs.next());
+        assertEquals(150, rs.getLong(1));
+
+        Statement stmt = conn.createStatement();
+        stmt.executeUpdate("delete from votes where phone_number >= 5550000000 and phone_number < 5550000150");
+    }
+
     @Test
     public void testParameterizedQueries() throws Exception
     {
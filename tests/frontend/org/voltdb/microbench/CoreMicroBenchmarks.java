@@ -0,0 +1,600 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2017 VoltDB Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+ * OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package org.voltdb.microbench;
+
+import java.io.File;
+import java.lang.management.ManagementFactory;
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.voltcore.logging.VoltLogger;
+import org.voltcore.network.LargeResponseMicroBenchmark;
+import org.voltcore.network.WriteStreamMicroBenchmark;
+import org.voltcore.utils.DBBPool;
+import org.voltcore.utils.DBBPool.BBContainer;
+import org.voltdb.ClientAuthMicroBenchmark;
+import org.voltdb.ElasticHashinator;
+import org.voltdb.ParameterSet;
+import org.voltdb.PartitionKeyRouterMicroBenchmark;
+import org.voltdb.PrivateVoltTableFactory;
+import org.voltdb.StoredProcedureInvocation;
+import org.voltdb.TheHashinator;
+import org.voltdb.VoltTable;
+import org.voltdb.VoltTable.ColumnInfo;
+import org.voltdb.VoltTableCursor;
+import org.voltdb.VoltType;
+import org.voltdb.client.AdaptiveLimitMicroBenchmark;
+import org.voltdb.client.ClientStatsSnapshotMicroBenchmark;
+import org.voltdb.client.HashinatorLite;
+import org.voltdb.client.HashinatorLite.HashinatorLiteType;
+import org.voltdb.compiler.CatalogCompileMicroBenchmark;
+import org.voltdb.compiler.LiveDDLMicroBenchmark;
+import org.voltdb.export.processors.ExportInFlightMicroBenchmark;
+import org.voltdb.exportclient.ColumnarFileMicroBenchmark;
+import org.voltdb.exportclient.FileExportMicroBenchmark;
+import org.voltdb.exportclient.JDBCExportMicroBenchmark;
+import org.voltdb.iv2.ReplicaLookupMicroBenchmark;
+import org.voltdb.iv2.SnapshotSpLatencyMicroBenchmark;
+import org.voltdb.iv2.SyncCommandLogMicroBenchmark;
+import org.voltdb.messaging.FastDeserializer;
+import org.voltdb.messaging.FastSerializer;
+import org.voltdb.sysprocs.saverestore.SnapshotScanMicroBenchmark;
+import org.voltdb.types.TimestampType;
+import org.voltdb.utils.BinaryDeque.BinaryDequeReader;
+import org.voltdb.utils.CompressionService;
+import org.voltdb.utils.PBDOfferSyncMicroBenchmark;
+import org.voltdb.utils.PersistentBinaryDeque;
+import org.voltdb.utils.VoltFile;
+
+/**
+ * Microbenchmarks of the serialization and routing paths every transaction goes
+ * through. Run them with {@code ant microbenchmarks}, see {@link MicroBenchmarkRunner}
+ * for the arguments.
+ */
+public class CoreMicroBenchmarks {
+
+    private static final int PARTITIONS = 8;
+
+    static Object[] parameters() {
+        return new Object[] { 42L, "customer-1234", 7, new TimestampType(1500000000000000L),
+                              new BigDecimal("1234.5678"), new byte[64], new long[] { 1, 2, 3, 4 }, 3.25 };
+    }
+
+    static List<MicroBenchmark> serialization() {
+        List<MicroBenchmark> benchmarks = new ArrayList<>();
+        benchmarks.add(new MicroBenchmark("FastSerializer.writeIntLongString") {
+            final FastSerializer m_fs = new FastSerializer();
+
+            @Override
+            public long run(int ops) throws Exception {
+                long sink = 0;
+                for (int i = 0; i < ops; i++) {
+                    m_fs.clear();
+                    m_fs.writeInt(i);
+                    m_fs.writeLong(i);
+                    m_fs.writeString("a string to serialize");
+                    sink += m_fs.size();
+                }
+                return sink;
+            }
+
+            @Override
+            public void tearDown() {
+                m_fs.discard();
+            }
+        });
+        benchmarks.add(new MicroBenchmark("FastDeserializer.readIntLongString") {
+            ByteBuffer m_buf;
+
+            @Override
+            public void setUp() throws Exception {
+                FastSerializer fs = new FastSerializer();
+                fs.writeInt(1);
+                fs.writeLong(2);
+                fs.writeString("a string to serialize");
+                m_buf = ByteBuffer.wrap(fs.getBytes());
+                fs.discard();
+            }
+
+            @Override
+            public long run(int ops) throws Exception {
+                long sink = 0;
+                for (int i = 0; i < ops; i++) {
+                    FastDeserializer fds = new FastDeserializer(m_buf.duplicate());
+                    sink += fds.readInt();
+                    sink += fds.readLong();
+                    sink += fds.readString().length();
+                }
+                return sink;
+            }
+        });
+        benchmarks.add(new MicroBenchmark("ParameterSet.flatten") {
+            final ParameterSet m_params = ParameterSet.fromArrayNoCopy(parameters());
+            ByteBuffer m_buf;
+
+            @Override
+            public void setUp() {
+                m_buf = ByteBuffer.allocate(m_params.getSerializedSize());
+            }
+
+            @Override
+            public long run(int ops) throws Exception {
+                long sink = 0;
+                for (int i = 0; i < ops; i++) {
+                    m_buf.clear();
+                    m_params.flattenToBuffer(m_buf);
+                    sink += m_buf.position();
+                }
+                return sink;
+            }
+        });
+        benchmarks.add(new MicroBenchmark("ParameterSet.parse") {
+            ByteBuffer m_buf;
+
+            @Override
+            public void setUp() throws Exception {
+                ParameterSet params = ParameterSet.fromArrayNoCopy(parameters());
+                m_buf = ByteBuffer.allocate(params.getSerializedSize());
+                params.flattenToBuffer(m_buf);
+                m_buf.flip();
+            }
+
+            @Override
+            public long run(int ops) throws Exception {
+                long sink = 0;
+                for (int i = 0; i < ops; i++) {
+                    sink += ParameterSet.fromByteBuffer(m_buf.duplicate()).size();
+                }
+                return sink;
+            }
+        });
+        for (boolean lazily : new boolean[] { false, true }) {
+            benchmarks.add(forwardParameters(lazily, false));
+            benchmarks.add(forwardParameters(lazily, true));
+        }
+        benchmarks.add(new MicroBenchmark("StoredProcedureInvocation.roundTrip") {
+            final StoredProcedureInvocation m_invocation = new StoredProcedureInvocation();
+            ByteBuffer m_buf;
+
+            @Override
+            public void setUp() {
+                m_invocation.setProcName("InsertCustomer");
+                m_invocation.setClientHandle(1234);
+                m_invocation.setParams(parameters());
+                m_buf = ByteBuffer.allocate(m_invocation.getSerializedSize());
+            }
+
+            @Override
+            public long run(int ops) throws Exception {
+                long sink = 0;
+                for (int i = 0; i < ops; i++) {
+                    m_buf.clear();
+                    m_invocation.flattenToBuffer(m_buf);
+                    m_buf.flip();
+                    StoredProcedureInvocation read = new StoredProcedureInvocation();
+                    read.initFromBuffer(m_buf);
+                    sink += read.getParams().size();
+                }
+                return sink;
+            }
+        });
+        benchmarks.add(new MicroBenchmark("VoltTable.build100Rows") {
+            @Override
+            public long run(int ops) throws Exception {
+                long sink = 0;
+                for (int i = 0; i < ops; i++) {
+                    sink += table(100).getSerializedSize();
+                }
+                return sink;
+            }
+        });
+        benchmarks.add(new MicroBenchmark("VoltTable.iterate100Rows") {
+            VoltTable m_table;
+
+            @Override
+            public void setUp() {
+                m_table = table(100);
+            }
+
+            @Override
+            public long run(int ops) throws Exception {
+                long sink = 0;
+                for (int i = 0; i < ops; i++) {
+                    m_table.resetRowPosition();
+                    while (m_table.advanceRow()) {
+                        sink += m_table.getLong(0) + m_table.getString(1).length() + (long) m_table.getDouble(2);
+                    }
+                }
+                return sink;
+            }
+        });
+        benchmarks.add(new MicroBenchmark("VoltTable.scanResult1000Rows") {
+            VoltTable m_table;
+
+            @Override
+            public void setUp() {
+                m_table = resultTable(1000);
+            }
+
+            @Override
+            public long run(int ops) throws Exception {
+                long sink = 0;
+                for (int i = 0; i < ops; i++) {
+                    m_table.resetRowPosition();
+                    while (m_table.advanceRow()) {
+                        sink += m_table.getLong(0);
+                        String name = m_table.getString(1);
+                        sink += name == null ? 0 : name.length();
+                        byte[] bytes = m_table.getVarbinary(2);
+                        sink += bytes == null ? 0 : bytes.length;
+                        sink += (long) m_table.getDouble(3);
+                        TimestampType ts = m_table.getTimestampAsTimestamp(4);
+                        sink += ts == null ? 0 : ts.getTime();
+                        BigDecimal amount = m_table.getDecimalAsBigDecimal(5);
+                        sink += amount == null ? 0 : amount.signum();
+                    }
+                }
+                return sink;
+            }
+        });
+        benchmarks.add(new MicroBenchmark("VoltTableCursor.scanResult1000Rows") {
+            final VoltTableCursor.StringView m_name = new VoltTableCursor.StringView();
+            VoltTable m_table;
+
+            @Override
+            public void setUp() {
+                m_table = resultTable(1000);
+            }
+
+            @Override
+            public long run(int ops) throws Exception {
+                long sink = 0;
+                for (int i = 0; i < ops; i++) {
+                    VoltTableCursor cursor = m_table.cursor();
+                    while (cursor.advance()) {
+                        sink += cursor.getLong(0);
+                        CharSequence name = cursor.getString(1, m_name);
+                        sink += name == null ? 0 : name.length();
+                        ByteBuffer bytes = cursor.getBytes(2);
+                        sink += bytes == null ? 0 : bytes.remaining();
+                        sink += (long) cursor.getDouble(3);
+                        sink += cursor.getTimestampAsLong(4);
+                        sink += Long.signum(cursor.getDecimalAsUnscaledLong(5));
+                    }
+                }
+                return sink;
+            }
+        });
+        return benchmarks;
+    }
+
+    /**
+     * Receive a 1MB parameter set holding a table and a varbinary and pass it on
+     * the way an initiator forwards an invocation to replicas and the command log,
+     * then optionally read every parameter the way a procedure call does.
+     */
+    static MicroBenchmark forwardParameters(final boolean lazily, final boolean readAll) {
+        return new MicroBenchmark("ParameterSet.forward1MB" + (lazily ? "Lazily" : "") + (readAll ? "AndRead" : "")) {
+            final com.sun.management.ThreadMXBean m_threads =
+                    (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+            ByteBuffer m_serialized;
+            ByteBuffer m_forwarded;
+            long m_allocated;
+            long m_ops;
+
+            @Override
+            public void setUp() throws Exception {
+                final int size = 1024 * 1024;
+                VoltTable table = new VoltTable(new ColumnInfo("id", VoltType.BIGINT),
+                                                new ColumnInfo("payload", VoltType.VARBINARY));
+                byte[] payload = new byte[64 * 1024];
+                for (long id = 0; id < size / 2 / payload.length; id++) {
+                    table.addRow(id, payload);
+                }
+                ParameterSet params = ParameterSet.fromArrayNoCopy(7L, "key", table, new byte[size / 2]);
+                m_serialized = ByteBuffer.allocate(params.getSerializedSize());
+                params.flattenToBuffer(m_serialized);
+                m_forwarded = ByteBuffer.allocate(params.getSerializedSize());
+            }
+
+            @Override
+            public long run(int ops) throws Exception {
+                final long threadId = Thread.currentThread().getId();
+                final long allocated = m_threads.getThreadAllocatedBytes(threadId);
+                long sink = 0;
+                for (int i = 0; i < ops; i++) {
+                    m_serialized.rewind();
+                    m_forwarded.clear();
+                    ParameterSet received = lazily ? ParameterSet.fromByteBufferLazily(m_serialized)
+                                                   : ParameterSet.fromByteBuffer(m_serialized);
+                    received.flattenToBuffer(m_forwarded);
+                    sink += m_forwarded.position();
+                    if (readAll) {
+                        sink += received.toArray().length;
+                    }
+                }
+                m_allocated += m_threads.getThreadAllocatedBytes(threadId) - allocated;
+                m_ops += ops;
+                return sink;
+            }
+
+            @Override
+            public void beginMeasurement() {
+                m_allocated = 0;
+                m_ops = 0;
+            }
+
+            @Override
+            public void endMeasurement() {
+                reportMetric("allocatedPerOp", m_ops == 0 ? 0 : (double) m_allocated / m_ops, "B");
+            }
+        };
+    }
+
+    static VoltTable table(int rows) {
+        VoltTable table = new VoltTable(new ColumnInfo("ID", VoltType.BIGINT),
+                                        new ColumnInfo("NAME", VoltType.STRING),
+                                        new ColumnInfo("BALANCE", VoltType.FLOAT));
+        for (int r = 0; r < rows; r++) {
+            table.addRow(r, "customer", r * 1.5);
+        }
+        return table;
+    }
+
+    // a table of every variable and fixed size kind of column with some nulls, deserialized
+    // the way a client receives it
+    static VoltTable resultTable(int rows) {
+        VoltTable table = new VoltTable(new ColumnInfo("ID", VoltType.BIGINT),
+                                        new ColumnInfo("NAME", VoltType.STRING),
+                                        new ColumnInfo("DATA", VoltType.VARBINARY),
+                                        new ColumnInfo("RATIO", VoltType.FLOAT),
+                                        new ColumnInfo("TS", VoltType.TIMESTAMP),
+                                        new ColumnInfo("AMOUNT", VoltType.DECIMAL));
+        for (int r = 0; r < rows; r++) {
+            if (r % 7 == 3) {
+                table.addRow(r, null, null, null, null, null);
+            } else {
+                table.addRow(r, "customer-" + r, new byte[] { (byte) r, 7, 42 }, r / 4.0,
+                             new TimestampType(r * 1000000L), new BigDecimal(r).movePointLeft(2));
+            }
+        }
+        ByteBuffer buf = ByteBuffer.allocate(table.getSerializedSize());
+        table.flattenToBuffer(buf);
+        buf.flip();
+        buf.getInt();
+        return PrivateVoltTableFactory.createVoltTableFromBuffer(buf.slice(), false);
+    }
+
+    static List<MicroBenchmark> routing() {
+        List<MicroBenchmark> benchmarks = new ArrayList<>();
+        benchmarks.add(new MicroBenchmark("ElasticHashinator.partitionForLong") {
+            @Override
+            public void setUp() {
+                TheHashinator.initialize(ElasticHashinator.class,
+                        ElasticHashinator.getConfigureBytes(PARTITIONS, ElasticHashinator.DEFAULT_TOTAL_TOKENS));
+            }
+
+            @Override
+            public long run(int ops) throws Exception {
+                long sink = 0;
+                for (int i = 0; i < ops; i++) {
+                    sink += TheHashinator.getPartitionForParameter(VoltType.BIGINT, (long) i);
+                }
+                return sink;
+            }
+        });
+        benchmarks.add(new MicroBenchmark("ElasticHashinator.partitionForString") {
+            final String[] m_keys = new String[1024];
+
+            @Override
+            public void setUp() {
+                TheHashinator.initialize(ElasticHashinator.class,
+                        ElasticHashinator.getConfigureBytes(PARTITIONS, ElasticHashinator.DEFAULT_TOTAL_TOKENS));
+                for (int i = 0; i < m_keys.length; i++) {
+                    m_keys[i] = "customer-" + i;
+                }
+            }
+
+            @Override
+            public long run(int ops) throws Exception {
+                long sink = 0;
+                for (int i = 0; i < ops; i++) {
+                    sink += TheHashinator.getPartitionForParameter(VoltType.STRING, m_keys[i & (m_keys.length - 1)]);
+                }
+                return sink;
+            }
+        });
+        benchmarks.add(new MicroBenchmark("HashinatorLite.partitionForLong") {
+            HashinatorLite m_hashinator;
+
+            @Override
+            public void setUp() {
+                m_hashinator = new HashinatorLite(HashinatorLiteType.ELASTIC,
+                        ElasticHashinator.getConfigureBytes(PARTITIONS, ElasticHashinator.DEFAULT_TOTAL_TOKENS), false);
+            }
+
+            @Override
+            public long run(int ops) throws Exception {
+                long sink = 0;
+                for (int i = 0; i < ops; i++) {
+                    sink += m_hashinator.getHashedPartitionForParameter(VoltType.BIGINT.getValue(), (long) i);
+                }
+                return sink;
+            }
+        });
+        return benchmarks;
+    }
+
+    static List<MicroBenchmark> storage() {
+        List<MicroBenchmark> benchmarks = new ArrayList<>();
+        benchmarks.add(new MicroBenchmark("CompressionService.compress64k") {
+            byte[] m_data;
+
+            @Override
+            public void setUp() {
+                m_data = compressibleBytes(64 * 1024);
+            }
+
+            @Override
+            public long run(int ops) throws Exception {
+                long sink = 0;
+                for (int i = 0; i < ops; i++) {
+                    sink += CompressionService.compressBytes(m_data).length;
+                }
+                return sink;
+            }
+        });
+        benchmarks.add(new MicroBenchmark("CompressionService.decompress64k") {
+            byte[] m_compressed;
+
+            @Override
+            public void setUp() throws Exception {
+                m_compressed = CompressionService.compressBytes(compressibleBytes(64 * 1024));
+            }
+
+            @Override
+            public long run(int ops) throws Exception {
+                long sink = 0;
+                for (int i = 0; i < ops; i++) {
+                    sink += CompressionService.decompressBytes(m_compressed).length;
+                }
+                return sink;
+            }
+        });
+        benchmarks.add(new MicroBenchmark("PersistentBinaryDeque.offerPoll64k") {
+            File m_dir;
+            PersistentBinaryDeque m_pbd;
+            BinaryDequeReader m_reader;
+            ByteBuffer m_data;
+
+            @Override
+            public void setUp() throws Exception {
+                m_dir = File.createTempFile("microbench", "pbd");
+                m_dir.delete();
+                m_dir.mkdir();
+                m_pbd = new PersistentBinaryDeque("microbench", m_dir, new VoltLogger("HOST"));
+                m_reader = m_pbd.openForRead("microbench");
+                m_data = ByteBuffer.allocateDirect(64 * 1024);
+                m_data.put(compressibleBytes(64 * 1024));
+                m_data.flip();
+            }
+
+            @Override
+            public long run(int ops) throws Exception {
+                long sink = 0;
+                for (int i = 0; i < ops; i++) {
+                    // the deque discards what is offered, it mustn't free the shared buffer
+                    m_pbd.offer(new BBContainer(m_data.duplicate()) {
+                        @Override
+                        public void discard() {
+                            checkDoubleFree();
+                        }
+                    });
+                    BBContainer polled = m_reader.poll(PersistentBinaryDeque.UNSAFE_CONTAINER_FACTORY);
+                    sink += polled.b().remaining();
+                    polled.discard();
+                }
+                return sink;
+            }
+
+            @Override
+            public void tearDown() throws Exception {
+                m_pbd.closeAndDelete();
+                VoltFile.recursivelyDelete(m_dir);
+            }
+        });
+        return benchmarks;
+    }
+
+    // row like data, repetitive enough that compression has something to do
+    static byte[] compressibleBytes(int size) {
+        Random r = new Random(0);
+        byte[] data = new byte[size];
+        for (int i = 0; i < size; i++) {
+            data[i] = (byte) (i % 64 < 48 ? 'a' + (i % 16) : r.nextInt());
+        }
+        return data;
+    }
+
+    public static List<MicroBenchmark> all() {
+        List<MicroBenchmark> benchmarks = new ArrayList<>();
+        benchmarks.addAll(serialization());
+        benchmarks.addAll(routing());
+        benchmarks.addAll(storage());
+        benchmarks.add(new WriteStreamMicroBenchmark());
+        benchmarks.add(new LargeResponseMicroBenchmark(false));
+        benchmarks.add(new LargeResponseMicroBenchmark(true));
+        benchmarks.add(new SyncCommandLogMicroBenchmark(100));
+        benchmarks.add(new SyncCommandLogMicroBenchmark(1000));
+        benchmarks.add(new ReplicaLookupMicroBenchmark(false));
+        benchmarks.add(new ReplicaLookupMicroBenchmark(true));
+        for (PartitionKeyRouterMicroBenchmark.Lookup lookup : PartitionKeyRouterMicroBenchmark.Lookup.values()) {
+            benchmarks.add(new PartitionKeyRouterMicroBenchmark(false, lookup));
+            benchmarks.add(new PartitionKeyRouterMicroBenchmark(true, lookup));
+        }
+        benchmarks.add(new CatalogCompileMicroBenchmark(4));
+        benchmarks.add(new CatalogCompileMicroBenchmark(16));
+        benchmarks.add(new LiveDDLMicroBenchmark(10));
+        benchmarks.add(new LiveDDLMicroBenchmark(40));
+        for (int window : new int[] { 1, 2, 4, 8 }) {
+            benchmarks.add(new ExportInFlightMicroBenchmark(window));
+        }
+        benchmarks.add(new ColumnarFileMicroBenchmark(false));
+        benchmarks.add(new ColumnarFileMicroBenchmark(true));
+        for (boolean gzip : new boolean[] { false, true }) {
+            benchmarks.add(new FileExportMicroBenchmark(gzip, 1));
+            benchmarks.add(new FileExportMicroBenchmark(gzip, 4));
+        }
+        for (int rowsPerInsert : new int[] { 1, 50 }) {
+            benchmarks.add(new JDBCExportMicroBenchmark(rowsPerInsert, 1));
+            benchmarks.add(new JDBCExportMicroBenchmark(rowsPerInsert, 4));
+        }
+        benchmarks.add(new SnapshotSpLatencyMicroBenchmark(false));
+        benchmarks.add(new SnapshotSpLatencyMicroBenchmark(true));
+        benchmarks.add(new AdaptiveLimitMicroBenchmark(false));
+        benchmarks.add(new AdaptiveLimitMicroBenchmark(true));
+        for (int connections : new int[] { 1, 32 }) {
+            benchmarks.add(new ClientStatsSnapshotMicroBenchmark(connections, 100, false));
+            benchmarks.add(new ClientStatsSnapshotMicroBenchmark(connections, 100, true));
+        }
+        benchmarks.add(new PBDOfferSyncMicroBenchmark(1, false));
+        benchmarks.add(new PBDOfferSyncMicroBenchmark(4, false));
+        benchmarks.add(new PBDOfferSyncMicroBenchmark(4, true));
+        benchmarks.add(new SnapshotScanMicroBenchmark(1, false));
+        benchmarks.add(new SnapshotScanMicroBenchmark(4, false));
+        benchmarks.add(new SnapshotScanMicroBenchmark(4, true));
+        for (int threads : new int[] { 128, 512 }) {
+            benchmarks.add(new ClientAuthMicroBenchmark(threads, false));
+            benchmarks.add(new ClientAuthMicroBenchmark(threads, true));
+        }
+        return benchmarks;
+    }
+
+    public static void main(String[] args) {
+        MicroBenchmarkRunner.runAndExit(all(), args);
+    }
+}
@@ -0,0 +1,98 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2017 VoltDB Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+ * OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package org.voltdb.microbench;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * One operation measured by {@link MicroBenchmarkRunner}. The runner calls
+ * {@link #run(int)} with batches of operations and reports the average time
+ * per operation.
+ */
+public abstract class MicroBenchmark {
+
+    /**
+     * A value measured besides the time per operation, e.g. a latency percentile
+     */
+    public static class Metric {
+        public final double m_value;
+        public final String m_unit;
+
+        Metric(double value, String unit) {
+            m_value = value;
+            m_unit = unit;
+        }
+    }
+
+    private final String m_name;
+    private final Map<String, Metric> m_metrics = new LinkedHashMap<>();
+
+    protected MicroBenchmark(String name) {
+        m_name = name;
+    }
+
+    public String getName() {
+        return m_name;
+    }
+
+    /**
+     * Called once before the warmup iterations, state built here is not measured.
+     */
+    public void setUp() throws Exception {
+    }
+
+    /**
+     * Perform the measured operation ops times.
+     * @return a value computed from the results, the runner keeps it so the
+     * work can't be optimized away
+     */
+    public abstract long run(int ops) throws Exception;
+
+    /**
+     * Called after the warmup iterations, before the measured ones.
+     */
+    public void beginMeasurement() throws Exception {
+    }
+
+    /**
+     * Called after the measured iterations, where the benchmark reports what it
+     * measured besides the time per operation with {@link #reportMetric}.
+     */
+    public void endMeasurement() throws Exception {
+    }
+
+    public void tearDown() throws Exception {
+    }
+
+    protected void reportMetric(String name, double value, String unit) {
+        m_metrics.put(name, new Metric(value, unit));
+    }
+
+    Map<String, Metric> takeMetrics() {
+        Map<String, Metric> metrics = new LinkedHashMap<>(m_metrics);
+        m_metrics.clear();
+        return metrics;
+    }
+}
@@ -0,0 +1,263 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2017 VoltDB Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+ * OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package org.voltdb.microbench;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+
+import org.json_voltpatches.JSONException;
+import org.json_voltpatches.JSONStringer;
+import org.voltdb.common.Constants;
+import org.voltdb.microbench.MicroBenchmark.Metric;
+
+/**
+ * Runs {@link MicroBenchmark}s headless: each one gets warmup iterations and then
+ * measured iterations of a fixed duration, and the average time per operation of
+ * every measured iteration is reported, along with what the benchmark measured
+ * besides that, e.g. latency percentiles. Results print as a table and can be written
+ * as JSON in the layout JMH uses for its results, so the tooling that tracks JMH
+ * results over time can read them.
+ *
+ * Arguments, all optional:
+ * <pre>
+ * -wi N       warmup iterations (5)
+ * -i N        measured iterations (10)
+ * -r MS       milliseconds per iteration (500)
+ * -rff FILE   write the results as JSON to FILE
+ * REGEX...    only run benchmarks with a name matching one of these
+ * </pre>
+ */
+public class MicroBenchmarkRunner {
+
+    public static class Result {
+        public final String m_name;
+        public final double[] m_nanosPerOp;
+        public final Map<String, Metric> m_secondaryMetrics;
+
+        Result(String name, double[] nanosPerOp, Map<String, Metric> secondaryMetrics) {
+            m_name = name;
+            m_nanosPerOp = nanosPerOp;
+            m_secondaryMetrics = secondaryMetrics;
+        }
+
+        public double score() {
+            double sum = 0;
+            for (double d : m_nanosPerOp) {
+                sum += d;
+            }
+            return sum / m_nanosPerOp.length;
+        }
+
+        /**
+         * Half width of the 99.9% confidence interval of the score, from the
+         * normal approximation.
+         */
+        public double scoreError() {
+            final int n = m_nanosPerOp.length;
+            if (n < 2) {
+                return Double.NaN;
+            }
+            final double mean = score();
+            double squares = 0;
+            for (double d : m_nanosPerOp) {
+                squares += (d - mean) * (d - mean);
+            }
+            return 3.291 * Math.sqrt(squares / (n - 1)) / Math.sqrt(n);
+        }
+    }
+
+    private int m_warmupIterations = 5;
+    private int m_iterations = 10;
+    private long m_iterationMillis = 500;
+    private File m_jsonFile = null;
+    private final List<Pattern> m_filters = new ArrayList<>();
+
+    // results of the benchmarks are kept here so the work can't be optimized away
+    public static volatile long s_sink;
+
+    public MicroBenchmarkRunner(String... args) {
+        for (int i = 0; i < args.length; i++) {
+            String arg = args[i];
+            switch (arg) {
+            case "-wi":
+                m_warmupIterations = Integer.parseInt(args[++i]);
+                break;
+            case "-i":
+                m_iterations = Integer.parseInt(args[++i]);
+                break;
+            case "-r":
+                m_iterationMillis = Long.parseLong(args[++i]);
+                break;
+            case "-rff":
+                m_jsonFile = new File(args[++i]);
+                break;
+            default:
+                if (arg.startsWith("-")) {
+                    throw new IllegalArgumentException("Unknown option " + arg);
+                }
+                m_filters.add(Pattern.compile(arg));
+            }
+        }
+        if (m_iterations < 1 || m_warmupIterations < 0 || m_iterationMillis < 1) {
+            throw new IllegalArgumentException("Need at least one measured iteration of at least a millisecond");
+        }
+    }
+
+    private boolean selected(MicroBenchmark benchmark) {
+        if (m_filters.isEmpty()) {
+            return true;
+        }
+        for (Pattern p : m_filters) {
+            if (p.matcher(benchmark.getName()).find()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    public List<Result> run(List<MicroBenchmark> benchmarks) throws Exception {
+        List<Result> results = new ArrayList<>();
+        for (MicroBenchmark benchmark : benchmarks) {
+            if (!selected(benchmark)) {
+                continue;
+            }
+            Result result = run(benchmark);
+            System.out.printf("%-50s %12.1f ns/op +- %8.1f%n", result.m_name, result.score(), result.scoreError());
+            for (Map.Entry<String, Metric> e : result.m_secondaryMetrics.entrySet()) {
+                System.out.printf("    %-46s %12.1f %s%n", e.getKey(), e.getValue().m_value, e.getValue().m_unit);
+            }
+            results.add(result);
+        }
+        if (m_jsonFile != null) {
+            try (Writer out = new OutputStreamWriter(new FileOutputStream(m_jsonFile), Constants.UTF8ENCODING)) {
+                out.write(toJSON(results));
+            }
+            System.out.println("Wrote results to " + m_jsonFile.getAbsolutePath());
+        }
+        return results;
+    }
+
+    private Result run(MicroBenchmark benchmark) throws Exception {
+        benchmark.setUp();
+        try {
+            final long iterationNanos = TimeUnit.MILLISECONDS.toNanos(m_iterationMillis);
+            // find a batch size that takes a tenth of an iteration so the clock isn't what is measured
+            int batch = 1;
+            while (batch < (1 << 30)) {
+                long start = System.nanoTime();
+                s_sink += benchmark.run(batch);
+                if (System.nanoTime() - start >= iterationNanos / 10) {
+                    break;
+                }
+                batch *= 2;
+            }
+            for (int i = 0; i < m_warmupIterations; i++) {
+                iteration(benchmark, batch, iterationNanos);
+            }
+            benchmark.beginMeasurement();
+            double[] nanosPerOp = new double[m_iterations];
+            for (int i = 0; i < m_iterations; i++) {
+                nanosPerOp[i] = iteration(benchmark, batch, iterationNanos);
+            }
+            benchmark.endMeasurement();
+            return new Result(benchmark.getName(), nanosPerOp, benchmark.takeMetrics());
+        } finally {
+            benchmark.tearDown();
+        }
+    }
+
+    private static double iteration(MicroBenchmark benchmark, int batch, long iterationNanos) throws Exception {
+        long ops = 0;
+        long elapsed = 0;
+        while (elapsed < iterationNanos) {
+            long start = System.nanoTime();
+            s_sink += benchmark.run(batch);
+            elapsed += System.nanoTime() - start;
+            ops += batch;
+        }
+        return (double) elapsed / ops;
+    }
+
+    String toJSON(List<Result> results) throws JSONException {
+        JSONStringer stringer = new JSONStringer();
+        stringer.array();
+        for (Result result : results) {
+            stringer.object();
+            stringer.keySymbolValuePair("benchmark", result.m_name);
+            stringer.keySymbolValuePair("mode", "avgt");
+            stringer.keySymbolValuePair("threads", 1);
+            stringer.keySymbolValuePair("forks", 0);
+            stringer.keySymbolValuePair("warmupIterations", m_warmupIterations);
+            stringer.keySymbolValuePair("warmupTime", m_iterationMillis + " ms");
+            stringer.keySymbolValuePair("measurementIterations", m_iterations);
+            stringer.keySymbolValuePair("measurementTime", m_iterationMillis + " ms");
+            stringer.key("primaryMetric").object();
+            stringer.key("score").value(result.score());
+            double error = result.scoreError();
+            if (Double.isNaN(error)) {
+                stringer.keySymbolValuePair("scoreError", "NaN");
+            } else {
+                stringer.key("scoreError").value(error);
+            }
+            stringer.keySymbolValuePair("scoreUnit", "ns/op");
+            // one fork
+            stringer.key("rawData").array().array();
+            for (double d : result.m_nanosPerOp) {
+                stringer.value(d);
+            }
+            stringer.endArray().endArray();
+            stringer.endObject();
+            stringer.key("secondaryMetrics").object();
+            for (Map.Entry<String, Metric> e : result.m_secondaryMetrics.entrySet()) {
+                stringer.key(e.getKey()).object();
+                stringer.key("score").value(e.getValue().m_value);
+                stringer.keySymbolValuePair("scoreError", "NaN");
+                stringer.keySymbolValuePair("scoreUnit", e.getValue().m_unit);
+                stringer.key("rawData").array().array().value(e.getValue().m_value).endArray().endArray();
+                stringer.endObject();
+            }
+            stringer.endObject();
+            stringer.endObject();
+        }
+        stringer.endArray();
+        return stringer.toString();
+    }
+
+    static void runAndExit(List<MicroBenchmark> benchmarks, String[] args) {
+        try {
+            new MicroBenchmarkRunner(args).run(benchmarks);
+        } catch (Exception e) {
+            e.printStackTrace();
+            System.exit(1);
+        }
+        System.exit(0);
+    }
+}
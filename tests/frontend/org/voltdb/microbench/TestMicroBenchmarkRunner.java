@@ -0,0 +1,134 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2017 VoltDB Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+ * OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package org.voltdb.microbench;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+import org.json_voltpatches.JSONArray;
+import org.json_voltpatches.JSONObject;
+import org.voltdb.common.Constants;
+
+public class TestMicroBenchmarkRunner extends TestCase {
+
+    static {
+        // the persistent binary deque benchmark needs it
+        org.voltdb.EELibraryLoader.loadExecutionEngineLibrary(true);
+    }
+
+    /**
+     * Every benchmark gets a single short iteration, so the suite keeps working
+     * as the code it measures changes.
+     */
+    public void testAllBenchmarksRun() throws Exception {
+        File json = File.createTempFile("microbench", ".json");
+        try {
+            MicroBenchmarkRunner runner = new MicroBenchmarkRunner("-wi", "0", "-i", "2", "-r", "5",
+                    "-rff", json.getPath());
+            List<MicroBenchmark> benchmarks = CoreMicroBenchmarks.all();
+            List<MicroBenchmarkRunner.Result> results = runner.run(benchmarks);
+            assertEquals(benchmarks.size(), results.size());
+
+            JSONArray parsed = new JSONArray(new String(Files.readAllBytes(json.toPath()), Constants.UTF8ENCODING));
+            assertEquals(benchmarks.size(), parsed.length());
+            for (int i = 0; i < parsed.length(); i++) {
+                JSONObject result = parsed.getJSONObject(i);
+                assertEquals(benchmarks.get(i).getName(), result.getString("benchmark"));
+                JSONObject metric = result.getJSONObject("primaryMetric");
+                assertTrue(metric.getDouble("score") > 0);
+                assertEquals("ns/op", metric.getString("scoreUnit"));
+                assertEquals(2, metric.getJSONArray("rawData").getJSONArray(0).length());
+            }
+        } finally {
+            json.delete();
+        }
+    }
+
+    public void testSecondaryMetrics() throws Exception {
+        final List<String> calls = new ArrayList<>();
+        List<MicroBenchmark> benchmarks = new ArrayList<>();
+        benchmarks.add(new MicroBenchmark("Foo.latency") {
+            long m_measured;
+
+            @Override
+            public void beginMeasurement() {
+                calls.add("begin");
+                m_measured = 0;
+            }
+
+            @Override
+            public long run(int ops) {
+                m_measured += ops;
+                return ops;
+            }
+
+            @Override
+            public void endMeasurement() {
+                calls.add("end");
+                reportMetric("p99", m_measured > 0 ? 42.0 : 0, "us");
+            }
+        });
+        File json = File.createTempFile("microbench", ".json");
+        try {
+            List<MicroBenchmarkRunner.Result> results =
+                    new MicroBenchmarkRunner("-wi", "1", "-i", "1", "-r", "1", "-rff", json.getPath()).run(benchmarks);
+            assertEquals(2, calls.size());
+            assertEquals("begin", calls.get(0));
+            assertEquals(42.0, results.get(0).m_secondaryMetrics.get("p99").m_value, 0.0);
+
+            JSONObject p99 = new JSONArray(new String(Files.readAllBytes(json.toPath()), Constants.UTF8ENCODING))
+                    .getJSONObject(0).getJSONObject("secondaryMetrics").getJSONObject("p99");
+            assertEquals(42.0, p99.getDouble("score"), 0.0);
+            assertEquals("us", p99.getString("scoreUnit"));
+        } finally {
+            json.delete();
+        }
+    }
+
+    public void testFilter() throws Exception {
+        final List<String> ran = new ArrayList<>();
+        List<MicroBenchmark> benchmarks = new ArrayList<>();
+        for (final String name : new String[] { "Foo.one", "Foo.two", "Bar.one" }) {
+            benchmarks.add(new MicroBenchmark(name) {
+                @Override
+                public void setUp() {
+                    ran.add(name);
+                }
+
+                @Override
+                public long run(int ops) {
+                    return ops;
+                }
+            });
+        }
+        new MicroBenchmarkRunner("-wi", "0", "-i", "1", "-r", "1", "^Foo", "two$").run(benchmarks);
+        assertEquals(2, ran.size());
+        assertEquals("Foo.one", ran.get(0));
+        assertEquals("Foo.two", ran.get(1));
+    }
+}
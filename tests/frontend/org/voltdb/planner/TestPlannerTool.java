@@ -27,6 +27,9 @@ import static org.mockito.Mockito.mock;
 
 import java.io.File;
 import java.io.IOException;
+import java.util.Arrays;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.atomic.AtomicReference;
 
 import org.voltcore.messaging.HostMessenger;
 import org.voltdb.CatalogContext;
@@ -139,6 +142,68 @@ public class TestPlannerTool extends TestCase {
         System.out.println(result);
     }
 
+    public void testConcurrentPlanning() throws Exception {
+        TPCCProjectBuilder builder = new TPCCProjectBuilder();
+        builder.addAllDefaults();
+        final File jar = new File("tpcc-oop.jar");
+        jar.deleteOnExit();
+        builder.compile("tpcc-oop.jar");
+
+        byte[] bytes = MiscUtils.fileToBytes(new File("tpcc-oop.jar"));
+        String serializedCatalog = CatalogUtil.getSerializedCatalogStringFromJar(CatalogUtil.loadAndUpgradeCatalogFromJar(bytes, false).getFirst());
+        Catalog catalog = new Catalog();
+        catalog.execute(serializedCatalog);
+        DbSettings settings = new DbSettings(ClusterSettings.create().asSupplier(),NodeSettings.create());
+        CatalogContext context = new CatalogContext(catalog, settings, 0, 0, bytes, null, new byte[] {}, mock(HostMessenger.class));
+
+        m_pt = new PlannerTool(context.database, context.getCatalogHash());
+
+        final String[] queries = new String[] {
+                "select * from warehouse where w_id = %d;",
+                "select c_last, count(*) from customer where c_w_id = %d group by c_last;",
+                "select * from orders, order_line where o_w_id = ol_w_id and o_id = ol_o_id and o_w_id = %d order by o_id;",
+                "select * from stock where s_quantity < %d;"
+        };
+        // Plan each query alone first, then from many threads at once with a mix
+        // of cache hits, parameterized cache hits and misses
+        final byte[][] expected = new byte[queries.length][];
+        for (int i = 0; i < queries.length; i++) {
+            expected[i] = m_pt.planSqlForTest(String.format(queries[i], 0)).core.aggregatorHash;
+        }
+
+        final int threadCount = 8;
+        final AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+        final CyclicBarrier barrier = new CyclicBarrier(threadCount);
+        Thread[] threads = new Thread[threadCount];
+        for (int t = 0; t < threadCount; t++) {
+            final int threadId = t;
+            threads[t] = new Thread() {
+                @Override
+                public void run() {
+                    try {
+                        barrier.await();
+                        for (int n = 0; n < 50; n++) {
+                            int i = (threadId + n) % queries.length;
+                            AdHocPlannedStatement result =
+                                    m_pt.planSqlForTest(String.format(queries[i], (threadId * 50 + n) % 10));
+                            assertTrue(Arrays.equals(expected[i], result.core.aggregatorHash));
+                        }
+                    }
+                    catch (Throwable e) {
+                        failure.compareAndSet(null, e);
+                    }
+                }
+            };
+            threads[t].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        if (failure.get() != null) {
+            throw new AssertionError(failure.get());
+        }
+    }
+
     public void testBadDDL() throws IOException
     {
         // semicolons in in-lined comments are bad
@@ -447,7 +447,7 @@ public class TestStatisticsSuite extends StatisticsTestSuiteBase {
         System.out.println("\n\nTESTING MEMORY STATS\n\n\n");
         Client client  = getFullyConnectedClient();
 
-        ColumnInfo[] expectedSchema = new ColumnInfo[14];
+        ColumnInfo[] expectedSchema = new ColumnInfo[16];
         expectedSchema[0] = new ColumnInfo("TIMESTAMP", VoltType.BIGINT);
         expectedSchema[1] = new ColumnInfo("HOST_ID", VoltType.INTEGER);
         expectedSchema[2] = new ColumnInfo("HOSTNAME", VoltType.STRING);
@@ -462,6 +462,8 @@ public class TestStatisticsSuite extends StatisticsTestSuiteBase {
         expectedSchema[11] = new ColumnInfo("POOLEDMEMORY", VoltType.BIGINT);
         expectedSchema[12] = new ColumnInfo("PHYSICALMEMORY", VoltType.BIGINT);
         expectedSchema[13] = new ColumnInfo("JAVAMAXHEAP", VoltType.INTEGER);
+        expectedSchema[14] = new ColumnInfo("NETWORKBUFFERUSED", VoltType.BIGINT);
+        expectedSchema[15] = new ColumnInfo("NETWORKBUFFERPOOLED", VoltType.BIGINT);
         VoltTable expectedTable = new VoltTable(expectedSchema);
 
         VoltTable[] results = null;
@@ -656,7 +658,7 @@ public class TestStatisticsSuite extends StatisticsTestSuiteBase {
     public void testQueueDepthStatistics() throws Exception {
         System.out.println("\n\nTESTING QUEUEDEPTH STATS\n\n\n");
         Client client  = getFullyConnectedClient();
-        ColumnInfo[] expectedSchema = new ColumnInfo[8];
+        ColumnInfo[] expectedSchema = new ColumnInfo[14];
         expectedSchema[0] = new ColumnInfo("TIMESTAMP", VoltType.BIGINT);
         expectedSchema[1] = new ColumnInfo("HOST_ID", VoltType.INTEGER);
         expectedSchema[2] = new ColumnInfo("HOSTNAME", VoltType.STRING);
@@ -665,6 +667,12 @@ public class TestStatisticsSuite extends StatisticsTestSuiteBase {
         expectedSchema[5] = new ColumnInfo("POLL_COUNT", VoltType.BIGINT);
         expectedSchema[6] = new ColumnInfo("AVG_WAIT", VoltType.BIGINT);
         expectedSchema[7] = new ColumnInfo("MAX_WAIT", VoltType.BIGINT);
+        expectedSchema[8] = new ColumnInfo("DURABILITY_AVG_WAIT", VoltType.BIGINT);
+        expectedSchema[9] = new ColumnInfo("DURABILITY_MAX_WAIT", VoltType.BIGINT);
+        expectedSchema[10] = new ColumnInfo("TRANSACTION_AVG_WAIT", VoltType.BIGINT);
+        expectedSchema[11] = new ColumnInfo("TRANSACTION_MAX_WAIT", VoltType.BIGINT);
+        expectedSchema[12] = new ColumnInfo("BACKGROUND_AVG_WAIT", VoltType.BIGINT);
+        expectedSchema[13] = new ColumnInfo("BACKGROUND_MAX_WAIT", VoltType.BIGINT);
 
         VoltTable expectedTable = new VoltTable(expectedSchema);
 
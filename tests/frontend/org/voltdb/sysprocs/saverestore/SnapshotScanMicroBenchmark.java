@@ -0,0 +1,111 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2017 VoltDB Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+ * OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package org.voltdb.sysprocs.saverestore;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.voltcore.logging.VoltLogger;
+import org.voltdb.microbench.MicroBenchmark;
+import org.voltdb.sysprocs.saverestore.SnapshotUtil.Snapshot;
+import org.voltdb.sysprocs.saverestore.SnapshotUtil.SnapshotFilter;
+import org.voltdb.utils.VoltFile;
+
+/**
+ * Validates a directory of 120 table save files of four snapshots, reading a number
+ * of files at a time, either from scratch or with the files cached from the previous
+ * scan. One operation is one scan of the directory, the rate the files are read at
+ * is reported alongside.
+ */
+public class SnapshotScanMicroBenchmark extends MicroBenchmark {
+
+    private static final int FILES = 120;
+    private static final VoltLogger LOG = new VoltLogger("HOST");
+
+    private final int m_threads;
+    private final boolean m_cached;
+    private File m_dir;
+    private long m_bytes;
+    private long m_scannedBytes;
+    private long m_scanNanos;
+
+    public SnapshotScanMicroBenchmark(int threads, boolean cached) {
+        super("TableSaveFileScanner.validate" + FILES + "Files" + threads + "Threads" + (cached ? "Cached" : ""));
+        m_threads = threads;
+        m_cached = cached;
+    }
+
+    @Override
+    public void setUp() throws Exception {
+        m_dir = File.createTempFile("microbench", "snapshot");
+        m_dir.delete();
+        m_dir.mkdir();
+        m_bytes = 0;
+        for (int ii = 0; ii < FILES; ii++) {
+            File f = TestTableSaveFileScanner.writeTableFile(m_dir, "nonce" + (ii % 4), "TABLE" + (ii / 4), ii % 4,
+                    new int[] { ii % 8 }, 8, 2000);
+            m_bytes += f.length();
+        }
+        TableSaveFileScanner.clearCache();
+    }
+
+    @Override
+    public long run(int ops) throws Exception {
+        long sink = 0;
+        for (int i = 0; i < ops; i++) {
+            if (!m_cached) {
+                TableSaveFileScanner.clearCache();
+            }
+            final long start = System.nanoTime();
+            Map<String, Snapshot> snapshots = new HashMap<String, Snapshot>();
+            SnapshotUtil.retrieveSnapshotFiles(m_dir, snapshots, new SnapshotFilter(), true,
+                    SnapshotPathType.SNAP_PATH, LOG, m_threads);
+            m_scanNanos += System.nanoTime() - start;
+            m_scannedBytes += m_bytes;
+            sink += snapshots.size();
+        }
+        return sink;
+    }
+
+    @Override
+    public void beginMeasurement() {
+        m_scannedBytes = 0;
+        m_scanNanos = 0;
+    }
+
+    @Override
+    public void endMeasurement() {
+        reportMetric("readRate", m_scanNanos == 0 ? 0 :
+                (double) m_scannedBytes * TimeUnit.SECONDS.toNanos(1) / m_scanNanos / (1024 * 1024), "MB/s");
+    }
+
+    @Override
+    public void tearDown() throws IOException {
+        TableSaveFileScanner.clearCache();
+        VoltFile.recursivelyDelete(m_dir);
+    }
+}
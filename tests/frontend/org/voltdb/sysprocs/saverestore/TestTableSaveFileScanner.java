@@ -0,0 +1,299 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2017 VoltDB Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+ * OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package org.voltdb.sysprocs.saverestore;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.voltcore.logging.VoltLogger;
+import org.voltcore.utils.DBBPool;
+import org.voltcore.utils.DBBPool.BBContainer;
+import org.voltdb.DefaultSnapshotDataTarget;
+import org.voltdb.VoltTable;
+import org.voltdb.VoltTable.ColumnInfo;
+import org.voltdb.VoltType;
+import org.voltdb.messaging.FastSerializer;
+import org.voltdb.sysprocs.saverestore.SnapshotUtil.Snapshot;
+import org.voltdb.sysprocs.saverestore.SnapshotUtil.SnapshotFilter;
+import org.voltdb.sysprocs.saverestore.SnapshotUtil.TableFiles;
+import org.voltdb.sysprocs.saverestore.TableSaveFileScanner.ScannedFile;
+import org.voltdb.utils.VoltFile;
+
+import com.google_voltpatches.common.util.concurrent.Callables;
+import com.google_voltpatches.common.util.concurrent.ListenableFuture;
+
+public class TestTableSaveFileScanner {
+    private static final int[] VERSION = { 0, 0, 0, 2 };
+    private static final long TXN_ID = 1234;
+    private static final int TOTAL_PARTITIONS = 8;
+    private static final ColumnInfo[] COLUMNS = new ColumnInfo[] {
+            new ColumnInfo("ID", VoltType.INTEGER),
+            new ColumnInfo("NAME", VoltType.STRING) };
+    private static final VoltLogger LOG = new VoltLogger("TEST");
+
+    static {
+        org.voltdb.EELibraryLoader.loadExecutionEngineLibrary(true);
+    }
+
+    private File m_dir;
+
+    @Before
+    public void setUp() throws IOException {
+        m_dir = new File(System.getProperty("java.io.tmpdir"), "table-save-file-scanner");
+        VoltFile.recursivelyDelete(m_dir);
+        m_dir.mkdirs();
+        TableSaveFileScanner.clearCache();
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        VoltFile.recursivelyDelete(m_dir);
+    }
+
+    /**
+     * Write a table file with chunks of the partitions in turn, modified a minute ago
+     * so the scanner caches it.
+     */
+    private File writeTableFile(String nonce, String table, int hostId, int[] partitionIds,
+            int chunks, int rowsPerChunk) throws Exception {
+        return writeTableFile(m_dir, nonce, table, hostId, partitionIds, chunks, rowsPerChunk);
+    }
+
+    static File writeTableFile(File dir, String nonce, String table, int hostId, int[] partitionIds,
+            int chunks, int rowsPerChunk) throws Exception {
+        File f = new File(dir, nonce + "-" + table + "-host_" + hostId + ".vpt");
+        List<Integer> partIds = new ArrayList<Integer>();
+        for (int partitionId : partitionIds) {
+            partIds.add(partitionId);
+        }
+        DefaultSnapshotDataTarget target = new DefaultSnapshotDataTarget(f,
+                hostId, "TEST_CLUSTER", "TEST_DATABASE", table,
+                TOTAL_PARTITIONS, false, partIds, new VoltTable(COLUMNS, COLUMNS.length),
+                TXN_ID, 5678, VERSION);
+        for (int c = 0; c < chunks; c++) {
+            VoltTable chunk = new VoltTable(COLUMNS, COLUMNS.length);
+            for (int r = 0; r < rowsPerChunk; r++) {
+                chunk.addRow(r, "name of row " + r + " in chunk " + c);
+            }
+            serializeChunk(chunk, target, partitionIds[c % partitionIds.length]);
+        }
+        target.close();
+        assertTrue(f.setLastModified(System.currentTimeMillis() - TimeUnit.MINUTES.toMillis(1)));
+        return f;
+    }
+
+    private static void serializeChunk(VoltTable chunk, DefaultSnapshotDataTarget target, int partitionId)
+            throws Exception {
+        FastSerializer fs = new FastSerializer();
+        fs.writeTable(chunk);
+        BBContainer c = fs.getBBContainer();
+        ByteBuffer b = c.b();
+        b.getInt();
+        int headerLength = b.getInt();
+        b.position(b.position() + headerLength);// at row count
+        BBContainer container = DBBPool.allocateDirect(b.remaining() + 4);
+        ByteBuffer payload = container.b();
+        payload.putInt(partitionId);
+        payload.put(b);
+        payload.flip();
+        c.discard();
+        target.write(Callables.returning(container), -1);
+    }
+
+    /**
+     * Flip the last byte of the file, in the payload of its last chunk, keeping its modification time
+     */
+    private static void corruptLastChunk(File f) throws IOException {
+        long lastModified = f.lastModified();
+        RandomAccessFile raf = new RandomAccessFile(f, "rw");
+        try {
+            raf.seek(raf.length() - 1);
+            byte b = raf.readByte();
+            raf.seek(raf.length() - 1);
+            raf.writeByte(~b);
+        } finally {
+            raf.close();
+        }
+        f.setLastModified(lastModified);
+    }
+
+    private static ScannedFile scanOne(File f, boolean validate) throws Exception {
+        return TableSaveFileScanner.scan(Arrays.asList(f), validate, 1, LOG).get(0).get();
+    }
+
+    @Test
+    public void testScanReadsHeadersInFileOrder() throws Exception {
+        List<File> files = new ArrayList<File>();
+        for (int ii = 0; ii < 6; ii++) {
+            files.add(writeTableFile("nonce", "TABLE" + ii, ii, new int[] { ii + 1, ii }, 4, 100));
+        }
+        List<ListenableFuture<ScannedFile>> scans = TableSaveFileScanner.scan(files, true, 3, LOG);
+        assertEquals(files.size(), scans.size());
+        for (int ii = 0; ii < files.size(); ii++) {
+            ScannedFile scanned = scans.get(ii).get();
+            assertEquals("TABLE" + ii, scanned.m_tableName);
+            assertEquals(TXN_ID, scanned.m_txnId);
+            assertEquals(5678, scanned.m_timestamp);
+            assertTrue(scanned.m_completed);
+            assertFalse(scanned.m_isReplicated);
+            assertEquals(TOTAL_PARTITIONS, scanned.m_totalPartitions);
+            assertEquals(Arrays.asList(ii + 1, ii), new ArrayList<Integer>(scanned.m_partitionIds));
+            assertTrue(scanned.m_validated);
+            assertTrue(scanned.m_corruptPartitionIds.isEmpty());
+            assertEquals(files.get(ii).length(), scanned.m_length);
+        }
+    }
+
+    @Test
+    public void testValidationFindsCorruptChunk() throws Exception {
+        File f = writeTableFile("nonce", "TABLE", 0, new int[] { 0, 1, 2 }, 5, 100);
+        corruptLastChunk(f);
+
+        ScannedFile headerOnly = scanOne(f, false);
+        assertFalse(headerOnly.m_validated);
+        assertTrue(headerOnly.m_corruptPartitionIds.isEmpty());
+
+        // the fifth chunk is of partition 1
+        ScannedFile validated = scanOne(f, true);
+        assertTrue(validated.m_validated);
+        assertEquals(Arrays.asList(1), new ArrayList<Integer>(validated.m_corruptPartitionIds));
+        assertEquals(3, validated.m_partitionIds.size());
+    }
+
+    @Test
+    public void testCachedUntilFileChanges() throws Exception {
+        File f = writeTableFile("nonce", "TABLE", 0, new int[] { 0, 1 }, 2, 100);
+
+        ScannedFile headerOnly = scanOne(f, false);
+        assertSame(headerOnly, scanOne(f, false));
+
+        // reading the header does not tell whether the chunks are intact
+        ScannedFile validated = scanOne(f, true);
+        assertNotSame(headerOnly, validated);
+        assertSame(validated, scanOne(f, true));
+        assertSame(validated, scanOne(f, false));
+
+        assertTrue(f.setLastModified(f.lastModified() + 1000));
+        ScannedFile touched = scanOne(f, true);
+        assertNotSame(validated, touched);
+        assertSame(touched, scanOne(f, true));
+
+        // a file that was just written may still change within the resolution of its time
+        assertTrue(f.setLastModified(System.currentTimeMillis()));
+        assertNotSame(scanOne(f, false), scanOne(f, false));
+    }
+
+    @Test
+    public void testUnreadableFileFails() throws Exception {
+        File good = writeTableFile("nonce", "GOOD", 0, new int[] { 0 }, 1, 10);
+        File bad = new File(m_dir, "nonce-BAD-host_0.vpt");
+        FileOutputStream fos = new FileOutputStream(bad);
+        try {
+            fos.write(new byte[] { 0, 0, 0, 4, 1, 2, 3, 4 });
+        } finally {
+            fos.close();
+        }
+        File missing = new File(m_dir, "nonce-MISSING-host_0.vpt");
+
+        List<ListenableFuture<ScannedFile>> scans =
+                TableSaveFileScanner.scan(Arrays.asList(bad, good, missing), true, 2, LOG);
+        assertEquals("GOOD", scans.get(1).get().m_tableName);
+        for (int ii : new int[] { 0, 2 }) {
+            try {
+                scans.get(ii).get();
+                fail("Expected the scan to fail");
+            } catch (ExecutionException e) {
+                assertTrue(e.getCause() instanceof IOException);
+            }
+        }
+
+        // and the snapshot is listed without it
+        Map<String, Snapshot> snapshots = new HashMap<String, Snapshot>();
+        SnapshotUtil.retrieveSnapshotFiles(m_dir, snapshots, new SnapshotFilter(), true,
+                SnapshotPathType.SNAP_PATH, LOG, 2);
+        assertEquals(1, snapshots.get("nonce").m_tableFiles.size());
+        assertTrue(snapshots.get("nonce").m_tableFiles.containsKey("GOOD"));
+    }
+
+    @Test
+    public void testRetrieveSnapshotFilesSameWithThreads() throws Exception {
+        for (String nonce : new String[] { "first", "second" }) {
+            for (int host = 0; host < 3; host++) {
+                writeTableFile(nonce, "PARTITIONED", host, new int[] { host * 2, host * 2 + 1 }, 4, 100);
+                writeTableFile(nonce, "OTHER", host, new int[] { host * 2, host * 2 + 1 }, 2, 100);
+            }
+        }
+        corruptLastChunk(new File(m_dir, "second-PARTITIONED-host_1.vpt"));
+
+        Map<String, Snapshot> sequential = new HashMap<String, Snapshot>();
+        SnapshotUtil.retrieveSnapshotFiles(m_dir, sequential, new SnapshotFilter(), true,
+                SnapshotPathType.SNAP_PATH, LOG, 1);
+        TableSaveFileScanner.clearCache();
+        Map<String, Snapshot> parallel = new HashMap<String, Snapshot>();
+        SnapshotUtil.retrieveSnapshotFiles(m_dir, parallel, new SnapshotFilter(), true,
+                SnapshotPathType.SNAP_PATH, LOG, 4);
+
+        assertEquals(sequential.keySet(), parallel.keySet());
+        for (String nonce : sequential.keySet()) {
+            Snapshot expected = sequential.get(nonce);
+            Snapshot actual = parallel.get(nonce);
+            assertEquals(TXN_ID, actual.getTxnId());
+            assertEquals(expected.m_tableFiles.keySet(), actual.m_tableFiles.keySet());
+            for (String table : expected.m_tableFiles.keySet()) {
+                TableFiles e = expected.m_tableFiles.get(table);
+                TableFiles a = actual.m_tableFiles.get(table);
+                assertEquals(3, a.m_files.size());
+                assertEquals(e.m_files, a.m_files);
+                assertEquals(e.m_completed, a.m_completed);
+                assertEquals(e.m_validPartitionIds, a.m_validPartitionIds);
+                assertEquals(e.m_corruptParititionIds, a.m_corruptParititionIds);
+                assertEquals(e.m_totalPartitionCounts, a.m_totalPartitionCounts);
+            }
+        }
+        TableFiles corrupted = parallel.get("second").m_tableFiles.get("PARTITIONED");
+        int index = corrupted.m_files.indexOf(new File(m_dir, "second-PARTITIONED-host_1.vpt"));
+        assertEquals(Arrays.asList(3), new ArrayList<Integer>(corrupted.m_corruptParititionIds.get(index)));
+        assertEquals(Arrays.asList(2), new ArrayList<Integer>(corrupted.m_validPartitionIds.get(index)));
+    }
+}
@@ -0,0 +1,173 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2017 VoltDB Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+ * OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package org.voltdb.utils;
+
+import java.io.File;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
+
+import org.HdrHistogram_voltpatches.Histogram;
+import org.voltcore.logging.VoltLogger;
+import org.voltcore.utils.CoreUtils;
+import org.voltcore.utils.DBBPool;
+import org.voltcore.utils.DBBPool.BBContainer;
+import org.voltdb.microbench.MicroBenchmark;
+import org.voltdb.utils.BinaryDeque.BinaryDequeReader;
+
+import com.google_voltpatches.common.util.concurrent.Futures;
+import com.google_voltpatches.common.util.concurrent.ListenableFuture;
+import com.google_voltpatches.common.util.concurrent.ListeningExecutorService;
+
+/**
+ * Offers 1KB objects to a PersistentBinaryDeque from one or several producers that
+ * make what they offered durable every 100 offers. Either each producer syncs, or it
+ * asks for the position it offered up to to be made durable and only waits for the
+ * previous one. One operation is one object offered, the time the offers take and
+ * the time until the objects are on disk are reported alongside. The objects are
+ * polled back at the end of each run so the deque stays within a segment or two.
+ */
+public class PBDOfferSyncMicroBenchmark extends MicroBenchmark {
+
+    private static final int OBJECT_SIZE = 1024;
+    private static final int OFFERS_PER_SYNC = 100;
+    private static final String CURSOR_ID = "microbench";
+
+    private final int m_producers;
+    private final boolean m_pipelined;
+    private File m_dir;
+    private PersistentBinaryDeque m_pbd;
+    private BinaryDequeReader m_reader;
+    private ListeningExecutorService m_es;
+    private final Histogram m_offerLatency = new Histogram(TimeUnit.SECONDS.toNanos(10), 3);
+    private final Histogram m_syncLatency = new Histogram(TimeUnit.SECONDS.toNanos(10), 3);
+
+    public PBDOfferSyncMicroBenchmark(int producers, boolean pipelined) {
+        super("PersistentBinaryDeque.offer1k" + producers + "Producers" + (pipelined ? "AwaitDurable" : "Sync"));
+        m_producers = producers;
+        m_pipelined = pipelined;
+    }
+
+    @Override
+    public void setUp() throws Exception {
+        m_dir = File.createTempFile("microbench", "pbd");
+        m_dir.delete();
+        m_dir.mkdir();
+        m_pbd = new PersistentBinaryDeque("microbench", m_dir, new VoltLogger("HOST"));
+        m_reader = m_pbd.openForRead(CURSOR_ID);
+        m_es = CoreUtils.getListeningExecutorService("PBD producer", m_producers);
+    }
+
+    private static void record(Histogram histogram, long nanos) {
+        synchronized (histogram) {
+            histogram.recordValue(Math.min(nanos, histogram.getHighestTrackableValue()));
+        }
+    }
+
+    private long produce(int offers) throws Exception {
+        ListenableFuture<?> previous = null;
+        for (int i = 1; i <= offers; i++) {
+            final ByteBuffer buf = ByteBuffer.allocateDirect(OBJECT_SIZE);
+            buf.putLong(0, i);
+            final long offerStart = System.nanoTime();
+            m_pbd.offer(DBBPool.wrapBB(buf));
+            record(m_offerLatency, System.nanoTime() - offerStart);
+            if (i % OFFERS_PER_SYNC != 0) {
+                continue;
+            }
+            final long syncStart = System.nanoTime();
+            if (!m_pipelined) {
+                m_pbd.sync();
+                record(m_syncLatency, System.nanoTime() - syncStart);
+                continue;
+            }
+            if (previous != null) {
+                previous.get();
+            }
+            previous = m_pbd.awaitDurable(m_pbd.getOfferedPosition());
+            previous.addListener(new Runnable() {
+                @Override
+                public void run() {
+                    record(m_syncLatency, System.nanoTime() - syncStart);
+                }
+            }, CoreUtils.SAMETHREADEXECUTOR);
+        }
+        if (previous != null) {
+            previous.get();
+        }
+        return offers;
+    }
+
+    @Override
+    public long run(int ops) throws Exception {
+        List<ListenableFuture<Long>> producers = new ArrayList<>();
+        for (int p = 0; p < m_producers; p++) {
+            final int offers = ops / m_producers + (p < ops % m_producers ? 1 : 0);
+            producers.add(m_es.submit(new Callable<Long>() {
+                @Override
+                public Long call() throws Exception {
+                    return produce(offers);
+                }
+            }));
+        }
+        Futures.allAsList(producers).get();
+        long sink = 0;
+        BBContainer polled;
+        while ((polled = m_reader.poll(PersistentBinaryDeque.UNSAFE_CONTAINER_FACTORY)) != null) {
+            sink += polled.b().remaining();
+            polled.discard();
+        }
+        return sink;
+    }
+
+    @Override
+    public void beginMeasurement() {
+        synchronized (m_offerLatency) {
+            m_offerLatency.reset();
+        }
+        synchronized (m_syncLatency) {
+            m_syncLatency.reset();
+        }
+    }
+
+    @Override
+    public void endMeasurement() {
+        synchronized (m_offerLatency) {
+            reportMetric("offerP99", TimeUnit.NANOSECONDS.toMicros(m_offerLatency.getValueAtPercentile(99)), "us");
+        }
+        synchronized (m_syncLatency) {
+            reportMetric("durableAfterP50", TimeUnit.NANOSECONDS.toMicros(m_syncLatency.getValueAtPercentile(50)), "us");
+            reportMetric("durableAfterP99", TimeUnit.NANOSECONDS.toMicros(m_syncLatency.getValueAtPercentile(99)), "us");
+        }
+    }
+
+    @Override
+    public void tearDown() throws Exception {
+        m_es.shutdown();
+        m_pbd.closeAndDelete();
+        VoltFile.recursivelyDelete(m_dir);
+    }
+}
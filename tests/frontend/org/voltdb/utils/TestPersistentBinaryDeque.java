@@ -49,6 +49,7 @@ import org.voltdb.utils.BinaryDeque.BinaryDequeTruncator;
 import org.voltdb.utils.BinaryDeque.TruncatorResponse;
 
 import com.google_voltpatches.common.collect.Sets;
+import com.google_voltpatches.common.util.concurrent.ListenableFuture;
 
 public class TestPersistentBinaryDeque {
 
@@ -1054,6 +1055,35 @@ public class TestPersistentBinaryDeque {
         assert(files[0].getName().equals("pbd_nonce.1.pbd"));
     }
 
+    @Test
+    public void testAwaitDurable() throws Exception {
+        System.out.println("Running testAwaitDurable");
+        assertEquals(0, m_pbd.getOfferedPosition());
+        assertTrue(m_pbd.awaitDurable(0).isDone());
+
+        for (int ii = 0; ii < 150; ii++) {
+            m_pbd.offer(DBBPool.wrapBB(getFilledBuffer(ii)));
+        }
+        assertEquals(150, m_pbd.getOfferedPosition());
+        ListenableFuture<?> first = m_pbd.awaitDurable(1);
+        ListenableFuture<?> all = m_pbd.syncAsync();
+        all.get();
+        assertTrue(first.isDone());
+        // the rolled segments were handed to the flusher, only the tail is left open
+        assertEquals(1, m_pbd.numOpenSegments());
+        assertTrue(m_pbd.awaitDurable(150).isDone());
+
+        m_pbd.push(new BBContainer[] { defaultContainer() });
+        assertEquals(151, m_pbd.getOfferedPosition());
+        m_pbd.sync();
+        assertTrue(m_pbd.awaitDurable(151).isDone());
+
+        m_pbd.close();
+        m_pbd = new PersistentBinaryDeque(TEST_NONCE, TEST_DIR, logger);
+        BinaryDequeReader reader = m_pbd.openForRead(CURSOR_ID);
+        assertEquals(151, reader.getNumObjects());
+    }
+
     @Before
     public void setUp() throws Exception {
         setupTestDir();
@@ -0,0 +1,75 @@
+#!/usr/bin/env bash
+
+APPNAME="connection-storm"
+
+# find voltdb binaries in either installation or distribution directory.
+if [ -n "$(which voltdb 2> /dev/null)" ]; then
+    VOLTDB_BIN=$(dirname "$(which voltdb)")
+else
+    VOLTDB_BIN="$(pwd)/../../../bin"
+fi
+# installation layout has all libraries in $VOLTDB_ROOT/lib/voltdb
+if [ -d "$VOLTDB_BIN/../lib/voltdb" ]; then
+    VOLTDB_BASE=$(dirname "$VOLTDB_BIN")
+    VOLTDB_LIB="$VOLTDB_BASE/lib/voltdb"
+    VOLTDB_VOLTDB="$VOLTDB_LIB"
+# distribution layout has libraries in separate lib and voltdb directories
+elif [ -d "$VOLTDB_BIN/../voltdb" ]; then
+    VOLTDB_BASE=$(dirname "$VOLTDB_BIN")
+    VOLTDB_LIB="$VOLTDB_BASE/lib"
+    VOLTDB_VOLTDB="$VOLTDB_BASE/voltdb"
+else
+    VOLTDB_LIB="`pwd`/../../../lib"
+    VOLTDB_VOLTDB="`pwd`/../../../voltdb"
+fi
+
+CLASSPATH=$(ls -x "$VOLTDB_VOLTDB"/voltdb-*.jar | tr '[:space:]' ':')$(ls -x "$VOLTDB_LIB"/*.jar | egrep -v 'voltdb[a-z0-9.-]+\.jar' | tr '[:space:]' ':')
+VOLTDB="$VOLTDB_BIN/voltdb"
+CLIENTLOG4J="$VOLTDB_VOLTDB/../tests/log4j-allconsole.xml"
+LICENSE="$VOLTDB_VOLTDB/license.xml"
+HOST="localhost"
+
+# remove build artifacts
+function clean() {
+    rm -rf obj debugoutput voltdbroot
+}
+
+# compile the source code for the client
+function srccompile() {
+    mkdir -p obj
+    javac -classpath $CLASSPATH -d obj \
+        src/connectionstorm/*.java
+    # stop if compilation fails
+    if [ $? != 0 ]; then exit; fi
+}
+
+# run the voltdb server locally
+function server() {
+    ulimit -n 65536
+    $VOLTDB init --force -C deployment.xml
+    $VOLTDB start -l $LICENSE -H $HOST
+}
+
+# run the client that drives the example
+function client() {
+    benchmark
+}
+
+function benchmark() {
+    srccompile
+    ulimit -n 65536
+    java -classpath obj:$CLASSPATH:obj -Dlog4j.configuration=file://$CLIENTLOG4J \
+        connectionstorm.ConnectionStormBenchmark \
+        --servers=localhost:21212 \
+        --connections=10000 \
+        --threads=1000
+}
+
+function help() {
+    echo "Usage: ./run.sh {clean|server|client|benchmark}"
+}
+
+# Run the target passed as the first arg on the command line
+# If no first arg, run server
+if [ $# -gt 1 ]; then help; exit; fi
+if [ $# = 1 ]; then $1; else server; fi
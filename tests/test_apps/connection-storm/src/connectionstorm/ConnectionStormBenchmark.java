@@ -0,0 +1,204 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2017 VoltDB Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+ * OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+/*
+ * Opens many client connections at once and measures how long the server
+ * takes to accept and authenticate all of them, the way every client of a
+ * cluster reconnects after a failover.
+ */
+
+package connectionstorm;
+
+import java.io.IOException;
+import java.nio.channels.SocketChannel;
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.voltdb.CLIConfig;
+import org.voltdb.client.Client;
+import org.voltdb.client.ClientAuthScheme;
+import org.voltdb.client.ConnectionUtil;
+import org.voltdb.utils.MiscUtils;
+
+public class ConnectionStormBenchmark {
+
+    // handy, rather than typing this out several times
+    static final String HORIZONTAL_RULE =
+            "----------" + "----------" + "----------" + "----------" +
+            "----------" + "----------" + "----------" + "----------" + "\n";
+
+    // validated command line configuration
+    final StormConfig config;
+
+    /**
+     * Uses included {@link CLIConfig} class to
+     * declaratively state command line options with defaults
+     * and validation.
+     */
+    static class StormConfig extends CLIConfig {
+        @Option(desc = "Server to connect to, of the form server[:port].")
+        String servers = "localhost";
+
+        @Option(desc = "Number of connections to open.")
+        int connections = 10000;
+
+        @Option(desc = "Number of client threads opening connections at once.")
+        int threads = 1000;
+
+        @Option(desc = "Timeout for a single connection to authenticate, in seconds.")
+        int timeout = 60;
+
+        @Option(desc = "User name for connection.")
+        String user = "";
+
+        @Option(desc = "Password for connection.")
+        String password = "";
+
+        @Override
+        public void validate() {
+            if (connections <= 0) exitWithMessageAndUsage("connections must be > 0");
+            if (threads <= 0) exitWithMessageAndUsage("threads must be > 0");
+            if (timeout <= 0) exitWithMessageAndUsage("timeout must be > 0");
+        }
+    }
+
+    public ConnectionStormBenchmark(StormConfig config) {
+        this.config = config;
+
+        System.out.print(HORIZONTAL_RULE);
+        System.out.println(" Command Line Configuration");
+        System.out.println(HORIZONTAL_RULE);
+        System.out.println(config.getConfigDumpString());
+    }
+
+    /**
+     * Open all the connections, hold them until every one has been authenticated,
+     * then close them and print the results.
+     */
+    public void runBenchmark() throws Exception {
+        final String host = MiscUtils.getHostnameFromHostnameColonPort(config.servers);
+        final int port = MiscUtils.getPortFromHostnameColonPort(config.servers, Client.VOLTDB_SERVER_PORT);
+        final byte[] hashedPassword = ConnectionUtil.getHashedPassword(ClientAuthScheme.HASH_SHA256, config.password);
+
+        final ConcurrentLinkedQueue<SocketChannel> channels = new ConcurrentLinkedQueue<SocketChannel>();
+        final long[] latencies = new long[config.connections];
+        final AtomicInteger next = new AtomicInteger();
+        final AtomicInteger failures = new AtomicInteger();
+        final CountDownLatch start = new CountDownLatch(1);
+        final CountDownLatch done = new CountDownLatch(config.connections);
+
+        ExecutorService es = Executors.newFixedThreadPool(config.threads);
+        for (int i = 0; i < config.threads; i++) {
+            es.execute(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        start.await();
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                    int index;
+                    while ((index = next.getAndIncrement()) < config.connections) {
+                        final long connectStart = System.nanoTime();
+                        try {
+                            Object[] connection = ConnectionUtil.getAuthenticatedConnection(
+                                    host, config.user, hashedPassword, port, null,
+                                    ClientAuthScheme.HASH_SHA256, TimeUnit.SECONDS.toMillis(config.timeout));
+                            channels.offer((SocketChannel) connection[0]);
+                            latencies[index] = System.nanoTime() - connectStart;
+                        } catch (IOException e) {
+                            latencies[index] = -1;
+                            if (failures.incrementAndGet() == 1) {
+                                System.err.println("Connection failed: " + e.getMessage());
+                            }
+                        }
+                        done.countDown();
+                    }
+                }
+            });
+        }
+
+        System.out.print(HORIZONTAL_RULE);
+        System.out.println(" Connecting");
+        System.out.println(HORIZONTAL_RULE);
+
+        final long benchmarkStart = System.nanoTime();
+        start.countDown();
+        done.await();
+        final long elapsed = System.nanoTime() - benchmarkStart;
+        es.shutdown();
+
+        for (SocketChannel channel : channels) {
+            try {
+                channel.close();
+            } catch (IOException ignore) {}
+        }
+
+        long[] succeeded = new long[config.connections - failures.get()];
+        int count = 0;
+        for (long latency : latencies) {
+            if (latency >= 0) {
+                succeeded[count++] = latency;
+            }
+        }
+        Arrays.sort(succeeded);
+
+        System.out.print(HORIZONTAL_RULE);
+        System.out.println(" Results");
+        System.out.println(HORIZONTAL_RULE);
+        System.out.printf("Authenticated connections:  %d\n", succeeded.length);
+        System.out.printf("Failed connections:         %d\n", failures.get());
+        System.out.printf("Time to authenticate all:   %,.1f ms\n", elapsed / 1000000.0);
+        if (succeeded.length > 0) {
+            System.out.printf("Connections per second:     %,.0f\n",
+                    succeeded.length / (elapsed / 1000000000.0));
+            System.out.printf("Connect latency 50th:       %,.1f ms\n", percentile(succeeded, 0.5) / 1000000.0);
+            System.out.printf("Connect latency 99th:       %,.1f ms\n", percentile(succeeded, 0.99) / 1000000.0);
+            System.out.printf("Connect latency max:        %,.1f ms\n", succeeded[succeeded.length - 1] / 1000000.0);
+        }
+    }
+
+    private static long percentile(long[] sorted, double percentile) {
+        return sorted[Math.min(sorted.length - 1, (int) (sorted.length * percentile))];
+    }
+
+    /**
+     * Main routine creates a benchmark instance and kicks off the run method.
+     *
+     * @param args Command line arguments.
+     * @throws Exception if anything goes wrong.
+     * @see {@link StormConfig}
+     */
+    public static void main(String[] args) throws Exception {
+        // create a configuration from the arguments
+        StormConfig config = new StormConfig();
+        config.parse(ConnectionStormBenchmark.class.getName(), args);
+
+        ConnectionStormBenchmark benchmark = new ConnectionStormBenchmark(config);
+        benchmark.runBenchmark();
+    }
+}
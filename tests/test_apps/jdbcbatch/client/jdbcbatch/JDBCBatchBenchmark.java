@@ -0,0 +1,149 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2017 VoltDB Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+ * OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package jdbcbatch;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+
+import org.voltdb.CLIConfig;
+
+/**
+ * Inserts rows through the JDBC driver one executeUpdate at a time and with
+ * executeBatch, and prints the throughput of each.
+ */
+public class JDBCBatchBenchmark {
+
+    // handy, rather than typing this out several times
+    static final String HORIZONTAL_RULE = "----------" + "----------"
+            + "----------" + "----------" + "----------" + "----------"
+            + "----------" + "----------" + "\n";
+
+    static class BatchConfig extends CLIConfig {
+        @Option(desc = "Comma separated list of the form server[:port] to connect to.")
+        String servers = "localhost";
+
+        @Option(desc = "Rows inserted by each run.")
+        int rows = 100000;
+
+        @Option(desc = "Rows per executeBatch, 1 inserts with executeUpdate.")
+        int batchsize = 100;
+
+        @Option(desc = "Times each of the three modes is run.")
+        int runs = 3;
+
+        @Override
+        public void validate() {
+            if (rows <= 0)
+                exitWithMessageAndUsage("rows must be > 0");
+            if (batchsize <= 0)
+                exitWithMessageAndUsage("batchsize must be > 0");
+            if (runs <= 0)
+                exitWithMessageAndUsage("runs must be > 0");
+        }
+    }
+
+    final BatchConfig config;
+    Connection conn;
+    long nextId = 0;
+
+    JDBCBatchBenchmark(BatchConfig config) {
+        this.config = config;
+        System.out.print(HORIZONTAL_RULE);
+        System.out.println(" Command Line Configuration");
+        System.out.println(HORIZONTAL_RULE);
+        System.out.println(config.getConfigDumpString());
+    }
+
+    void connect() throws ClassNotFoundException, SQLException {
+        System.out.println("Connecting to VoltDB...");
+        Class.forName("org.voltdb.jdbc.Driver");
+        conn = DriverManager.getConnection("jdbc:voltdb://" + config.servers);
+    }
+
+    /**
+     * Insert config.rows rows, batchSize at a time, with an INSERT statement or the
+     * table's default insert procedure
+     */
+    void run(int batchSize, boolean procedure) throws SQLException {
+        PreparedStatement insert = procedure
+                ? conn.prepareCall("{call BATCH_ROWS.insert(?, ?, ?)}")
+                : conn.prepareStatement("INSERT INTO batch_rows VALUES (?, ?, ?);");
+        long batches = 0;
+        long batchNanos = 0;
+        final long start = System.nanoTime();
+        int pending = 0;
+        for (int i = 0; i < config.rows; i++) {
+            final long id = nextId++;
+            insert.setLong(1, id);
+            insert.setString(2, "row-" + id);
+            insert.setDouble(3, id * 1.5);
+            if (batchSize == 1) {
+                insert.executeUpdate();
+                continue;
+            }
+            insert.addBatch();
+            if (++pending == batchSize || i == config.rows - 1) {
+                final long batchStart = System.nanoTime();
+                insert.executeBatch();
+                batchNanos += System.nanoTime() - batchStart;
+                batches++;
+                pending = 0;
+            }
+        }
+        final long elapsed = System.nanoTime() - start;
+        insert.close();
+
+        System.out.printf("%-13s %-9s %10.0f rows/s", batchSize == 1 ? "executeUpdate" : "executeBatch",
+                procedure ? "procedure" : "statement", config.rows / (elapsed / 1e9));
+        if (batches > 0) {
+            System.out.printf(", %.3f ms per batch of %d", batchNanos / 1e6 / batches, batchSize);
+        }
+        System.out.println();
+
+        conn.createStatement().executeUpdate("DELETE FROM batch_rows;");
+    }
+
+    void runBenchmark() throws Exception {
+        connect();
+        System.out.print(HORIZONTAL_RULE);
+        System.out.println(" Results");
+        System.out.println(HORIZONTAL_RULE);
+        for (int r = 0; r < config.runs; r++) {
+            run(1, false);
+            run(config.batchsize, false);
+            run(config.batchsize, true);
+        }
+        conn.close();
+    }
+
+    public static void main(String[] args) throws Exception {
+        BatchConfig config = new BatchConfig();
+        config.parse(JDBCBatchBenchmark.class.getName(), args);
+
+        JDBCBatchBenchmark benchmark = new JDBCBatchBenchmark(config);
+        benchmark.runBenchmark();
+    }
+}
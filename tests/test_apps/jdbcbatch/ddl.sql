@@ -0,0 +1,14 @@
+file -inlinebatch END_OF_BATCH
+
+DROP TABLE batch_rows IF EXISTS;
+
+CREATE TABLE batch_rows
+(
+  id      BIGINT      NOT NULL
+, name    VARCHAR(64) NOT NULL
+, balance FLOAT       NOT NULL
+, CONSTRAINT PK_batch_rows PRIMARY KEY (id)
+);
+PARTITION TABLE batch_rows ON COLUMN id;
+
+END_OF_BATCH
@@ -0,0 +1,94 @@
+#!/usr/bin/env bash
+
+# leader host for startup purposes only
+# (once running, all nodes are the same -- no leaders)
+STARTUPLEADERHOST="localhost"
+# list of cluster nodes separated by commas in host:[port] format
+SERVERS="localhost"
+
+# find voltdb binaries
+if [ -e ../../bin/voltdb ]; then
+    # assume this is the examples folder for a kit
+    VOLTDB_BIN="$(dirname $(dirname $(pwd)))/bin"
+elif [ -n "$(which voltdb 2> /dev/null)" ]; then
+    # assume we're using voltdb from the path
+    VOLTDB_BIN=$(dirname "$(which voltdb)")
+else
+    echo "Unable to find VoltDB installation."
+    echo "Please add VoltDB's bin directory to your path."
+    exit -1
+fi
+
+# call script to set up paths, including
+# java classpaths and binary paths
+source $VOLTDB_BIN/voltenv
+
+# remove binaries, logs, runtime artifacts, etc... but keep the jars
+function clean() {
+    rm -rf voltdbroot log client/jdbcbatch/*.class
+}
+
+# remove everything from "clean" as well as the jarfiles
+function cleanall() {
+    clean
+    rm -rf client.jar
+}
+
+# compile the client source code into a jarfile
+function jars() {
+    javac -classpath $CLIENTCLASSPATH client/jdbcbatch/*.java
+    jar cf client.jar -C client jdbcbatch
+    rm -rf client/jdbcbatch/*.class
+}
+
+# compile the client jarfile if it doesn't exist
+function jars-ifneeded() {
+    if [ ! -e client.jar ]; then
+        jars;
+    fi
+}
+
+# run the voltdb server locally
+function server() {
+    voltdb init --force
+    voltdb start -H $STARTUPLEADERHOST
+}
+
+# load schema
+function init() {
+    sqlcmd < ddl.sql
+}
+
+# run this target to see what command line options the client offers
+function client-help() {
+    jars-ifneeded
+    java -classpath client.jar:$CLIENTCLASSPATH jdbcbatch.JDBCBatchBenchmark --help
+}
+
+# run the client that inserts through JDBC
+function client() {
+    jars-ifneeded
+    java -classpath client.jar:$CLIENTCLASSPATH jdbcbatch.JDBCBatchBenchmark --servers=$SERVERS $ARGS
+}
+
+function help() {
+    echo "Usage: ./run.sh {clean|cleanall|jars|jars-ifneeded|server|init|client|client-help|help}"
+}
+
+# If no first arg, run server
+if [ $# -eq 0 ]; then server; exit; fi
+
+# Run the targets passed on the command line
+while [ -n "$1" ] ; do
+    CMD="$1"
+    ARGS=
+    if [[ "$1" == "client" ]]; then
+        while [[ "$2" == "--"* ]]; do
+            ARGS="$ARGS $2"
+            shift
+        done
+    fi
+    echo "$0 Performing: $CMD$ARGS"
+    $CMD
+    shift
+done
@@ -0,0 +1,11 @@
+CREATE TABLE kv
+(
+  id     bigint        not null
+, value  varchar(64)   not null
+, PRIMARY KEY (id)
+);
+
+PARTITION TABLE kv ON COLUMN id;
+
+CREATE PROCEDURE GetValue PARTITION ON TABLE kv COLUMN id AS
+    SELECT value FROM kv WHERE id = ?;
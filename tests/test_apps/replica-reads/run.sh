@@ -0,0 +1,86 @@
+#!/usr/bin/env bash
+
+APPNAME="replica-reads"
+
+# find voltdb binaries in either installation or distribution directory.
+if [ -n "$(which voltdb 2> /dev/null)" ]; then
+    VOLTDB_BIN=$(dirname "$(which voltdb)")
+else
+    VOLTDB_BIN="$(pwd)/../../../bin"
+fi
+# installation layout has all libraries in $VOLTDB_ROOT/lib/voltdb
+if [ -d "$VOLTDB_BIN/../lib/voltdb" ]; then
+    VOLTDB_BASE=$(dirname "$VOLTDB_BIN")
+    VOLTDB_LIB="$VOLTDB_BASE/lib/voltdb"
+    VOLTDB_VOLTDB="$VOLTDB_LIB"
+# distribution layout has libraries in separate lib and voltdb directories
+elif [ -d "$VOLTDB_BIN/../voltdb" ]; then
+    VOLTDB_BASE=$(dirname "$VOLTDB_BIN")
+    VOLTDB_LIB="$VOLTDB_BASE/lib"
+    VOLTDB_VOLTDB="$VOLTDB_BASE/voltdb"
+else
+    VOLTDB_LIB="`pwd`/../../../lib"
+    VOLTDB_VOLTDB="`pwd`/../../../voltdb"
+fi
+
+CLASSPATH=$(ls -x "$VOLTDB_VOLTDB"/voltdb-*.jar | tr '[:space:]' ':')$(ls -x "$VOLTDB_LIB"/*.jar | egrep -v 'voltdb[a-z0-9.-]+\.jar' | tr '[:space:]' ':')
+VOLTDB="$VOLTDB_BIN/voltdb"
+SQLCMD="$VOLTDB_BIN/sqlcmd"
+CLIENTLOG4J="$VOLTDB_VOLTDB/../tests/log4j-allconsole.xml"
+LICENSE="$VOLTDB_VOLTDB/license.xml"
+HOST="${HOST:-localhost}"
+SERVERS="${SERVERS:-localhost}"
+HOSTCOUNT="${HOSTCOUNT:-1}"
+KFACTOR="${KFACTOR:-0}"
+
+# remove build artifacts
+function clean() {
+    rm -rf obj debugoutput voltdbroot deployment-k*.xml
+}
+
+# compile the source code for the client
+function srccompile() {
+    mkdir -p obj
+    javac -classpath $CLASSPATH -d obj \
+        src/replicareads/*.java
+    # stop if compilation fails
+    if [ $? != 0 ]; then exit; fi
+}
+
+# run the voltdb server, HOSTCOUNT and KFACTOR pick the cluster shape
+function server() {
+    sed -e "s/HOSTCOUNT/$HOSTCOUNT/" -e "s/KFACTOR/$KFACTOR/" deployment.xml > deployment-k$KFACTOR.xml
+    $VOLTDB init --force -C deployment-k$KFACTOR.xml
+    $VOLTDB start -l $LICENSE -H $HOST -c $HOSTCOUNT
+}
+
+# load the schema
+function init() {
+    $SQLCMD --servers=$SERVERS < ddl.sql
+}
+
+# run the client that drives the example
+function client() {
+    benchmark
+}
+
+function benchmark() {
+    srccompile
+    init
+    java -classpath obj:$CLASSPATH:obj -Dlog4j.configuration=file://$CLIENTLOG4J \
+        replicareads.ReplicaReadBenchmark \
+        --servers=$SERVERS \
+        --keys=100000 \
+        --duration=30 \
+        --warmup=5
+}
+
+function help() {
+    echo "Usage: ./run.sh {clean|server|init|client|benchmark}"
+    echo "       HOSTCOUNT=3 KFACTOR=2 ./run.sh server"
+}
+
+# Run the target passed as the first arg on the command line
+# If no first arg, run server
+if [ $# -gt 1 ]; then help; exit; fi
+if [ $# = 1 ]; then $1; else server; fi
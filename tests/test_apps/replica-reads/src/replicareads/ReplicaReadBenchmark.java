@@ -0,0 +1,201 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2017 VoltDB Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+ * OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+/*
+ * Loads a key-value table and compares single partition read throughput
+ * when reads only go to partition leaders and when they are spread over
+ * every replica of the partition.
+ */
+
+package replicareads;
+
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.voltdb.CLIConfig;
+import org.voltdb.client.Client;
+import org.voltdb.client.ClientAffinityStats;
+import org.voltdb.client.ClientConfig;
+import org.voltdb.client.ClientFactory;
+import org.voltdb.client.ClientResponse;
+import org.voltdb.client.ClientStats;
+import org.voltdb.client.ClientStatsContext;
+import org.voltdb.client.NullCallback;
+import org.voltdb.client.ProcedureCallback;
+
+public class ReplicaReadBenchmark {
+
+    // handy, rather than typing this out several times
+    static final String HORIZONTAL_RULE =
+            "----------" + "----------" + "----------" + "----------" +
+            "----------" + "----------" + "----------" + "----------" + "\n";
+
+    // validated command line configuration
+    final ReadConfig config;
+
+    /**
+     * Uses included {@link CLIConfig} class to
+     * declaratively state command line options with defaults
+     * and validation.
+     */
+    static class ReadConfig extends CLIConfig {
+        @Option(desc = "Comma separated list of the form server1,server2,...")
+        String servers = "localhost";
+
+        @Option(desc = "Number of rows to load before reading.")
+        int keys = 100000;
+
+        @Option(desc = "Length of each read run, in seconds.")
+        int duration = 30;
+
+        @Option(desc = "Warmup before each read run, in seconds.")
+        int warmup = 5;
+
+        @Option(desc = "Maximum TPS rate for the benchmark, zero for none.")
+        int ratelimit = 0;
+
+        @Option(desc = "User name for connection.")
+        String user = "";
+
+        @Option(desc = "Password for connection.")
+        String password = "";
+
+        @Override
+        public void validate() {
+            if (keys <= 0) exitWithMessageAndUsage("keys must be > 0");
+            if (duration <= 0) exitWithMessageAndUsage("duration must be > 0");
+            if (warmup < 0) exitWithMessageAndUsage("warmup must be >= 0");
+            if (ratelimit < 0) exitWithMessageAndUsage("ratelimit must be >= 0");
+        }
+    }
+
+    public ReplicaReadBenchmark(ReadConfig config) {
+        this.config = config;
+
+        System.out.print(HORIZONTAL_RULE);
+        System.out.println(" Command Line Configuration");
+        System.out.println(HORIZONTAL_RULE);
+        System.out.println(config.getConfigDumpString());
+    }
+
+    private Client connect(boolean replicaReads) throws Exception {
+        ClientConfig clientConfig = new ClientConfig(config.user, config.password);
+        clientConfig.setClientAffinity(true);
+        clientConfig.setTopologyChangeAware(true);
+        clientConfig.setSendReadsToReplicasByDefault(replicaReads);
+        if (config.ratelimit > 0) {
+            clientConfig.setMaxTransactionsPerSecond(config.ratelimit);
+        }
+        Client client = ClientFactory.createClient(clientConfig);
+        for (String server : config.servers.split(",")) {
+            client.createConnection(server.trim());
+        }
+        return client;
+    }
+
+    private void load() throws Exception {
+        System.out.print(HORIZONTAL_RULE);
+        System.out.println(" Loading " + config.keys + " rows");
+        System.out.println(HORIZONTAL_RULE);
+
+        Client client = connect(false);
+        client.callProcedure("@AdHoc", "DELETE FROM kv;");
+        NullCallback callback = new NullCallback();
+        for (long id = 0; id < config.keys; id++) {
+            client.callProcedure(callback, "KV.insert", id, "value-" + id);
+        }
+        client.drain();
+        client.close();
+    }
+
+    /**
+     * Call the read procedure as fast as the client allows for the configured
+     * duration and print throughput, latency and how the reads were routed.
+     */
+    private void read(final boolean replicaReads) throws Exception {
+        System.out.print(HORIZONTAL_RULE);
+        System.out.println(replicaReads ? " Reading from all replicas" : " Reading from partition leaders");
+        System.out.println(HORIZONTAL_RULE);
+
+        final Client client = connect(replicaReads);
+        final Random random = new Random();
+        final AtomicLong failures = new AtomicLong();
+        final ProcedureCallback callback = new ProcedureCallback() {
+            @Override
+            public void clientCallback(ClientResponse response) {
+                if (response.getStatus() != ClientResponse.SUCCESS) {
+                    if (failures.incrementAndGet() == 1) {
+                        System.err.println("Read failed: " + response.getStatusString());
+                    }
+                }
+            }
+        };
+
+        long warmupEnd = System.currentTimeMillis() + config.warmup * 1000L;
+        while (System.currentTimeMillis() < warmupEnd) {
+            client.callProcedure(callback, "GetValue", (long) random.nextInt(config.keys));
+        }
+
+        ClientStatsContext stats = client.createStatsContext();
+        long benchmarkEnd = System.currentTimeMillis() + config.duration * 1000L;
+        while (System.currentTimeMillis() < benchmarkEnd) {
+            client.callProcedure(callback, "GetValue", (long) random.nextInt(config.keys));
+        }
+        client.drain();
+
+        ClientStats results = stats.fetch().getStats();
+        ClientAffinityStats affinity = stats.getAggregateAffinityStats();
+        System.out.printf("Reads completed:            %,d\n", results.getInvocationsCompleted());
+        System.out.printf("Failed reads:               %,d\n", failures.get());
+        System.out.printf("Throughput:                 %,d txns/sec\n", results.getTxnThroughput());
+        System.out.printf("Average latency:            %,.2f ms\n", results.getAverageLatency());
+        System.out.printf("95th percentile latency:    %,.2f ms\n", results.kPercentileLatencyAsDouble(.95));
+        System.out.printf("99th percentile latency:    %,.2f ms\n", results.kPercentileLatencyAsDouble(.99));
+        System.out.printf("Reads with affinity:        %,d\n", affinity.getAffinityReads());
+        System.out.printf("Round robin reads:          %,d\n", affinity.getRrReads());
+        System.out.println();
+
+        client.close();
+    }
+
+    public void runBenchmark() throws Exception {
+        load();
+        read(false);
+        read(true);
+    }
+
+    /**
+     * Main routine creates a benchmark instance and kicks off the run method.
+     *
+     * @param args Command line arguments.
+     * @throws Exception if anything goes wrong.
+     * @see {@link ReadConfig}
+     */
+    public static void main(String[] args) throws Exception {
+        // create a configuration from the arguments
+        ReadConfig config = new ReadConfig();
+        config.parse(ReplicaReadBenchmark.class.getName(), args);
+
+        ReplicaReadBenchmark benchmark = new ReplicaReadBenchmark(config);
+        benchmark.runBenchmark();
+    }
+}
@@ -2250,7 +2250,8 @@ public abstract class AbstractHistogram extends AbstractHistogramBase implements
         for (int ii = 0; ii < h.countsArrayLength; ii++) {
             h.counts[ii] = newer.counts[ii] - older.counts[ii];
         }
-        h.reestablishTotalCount();
+        // the max value too, encoding stops at it
+        h.establishInternalTackingValues();
         return h;
     }
 